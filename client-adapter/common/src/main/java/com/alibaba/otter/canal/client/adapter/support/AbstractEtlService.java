@@ -1,6 +1,12 @@
 package com.alibaba.otter.canal.client.adapter.support;
 
+import java.io.File;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -8,6 +14,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,9 +35,20 @@ public abstract class AbstractEtlService {
     }
 
     protected EtlResult importData(String sql, List<String> params) {
+        return importData(sql, null, params);
+    }
+
+    /**
+     * 导入数据
+     *
+     * @param sql 查询源数据的sql
+     * @param splitKey 分段导入使用的整型主键, 为空或者不是整型时按 LIMIT 分页导入
+     * @param params etl条件参数
+     */
+    protected EtlResult importData(String sql, String splitKey, List<String> params) {
         EtlResult etlResult = new EtlResult();
         AtomicLong impCount = new AtomicLong();
-        List<String> errMsg = new ArrayList<>();
+        List<String> errMsg = Collections.synchronizedList(new ArrayList<>());
         if (config == null) {
             logger.warn("{} mapping config is null, etl go end ", type);
             etlResult.setErrorMessage(type + "mapping config is null, etl go end ");
@@ -57,6 +75,12 @@ public abstract class AbstractEtlService {
                 logger.debug("etl sql : {}", sql);
             }
 
+            if (splitKey != null && importByRange(dataSource, sql, splitKey, values, impCount, errMsg)) {
+                logger.info("数据全量导入完成, 一共导入 {} 条数据, 耗时: {}", impCount.get(), System.currentTimeMillis() - start);
+                etlResult.setResultMessage("导入" + type + " 数据：" + impCount.get() + " 条");
+                return finish(etlResult, errMsg);
+            }
+
             // 获取总数
             String countSql = "SELECT COUNT(1) FROM ( " + sql + ") _CNT ";
             long cnt = (Long) Util.sqlRS(dataSource, countSql, values, rs -> {
@@ -111,6 +135,10 @@ public abstract class AbstractEtlService {
             logger.error(e.getMessage(), e);
             errMsg.add(type + " 数据导入异常 =>" + e.getMessage());
         }
+        return finish(etlResult, errMsg);
+    }
+
+    private EtlResult finish(EtlResult etlResult, List<String> errMsg) {
         if (errMsg.isEmpty()) {
             etlResult.setSucceeded(true);
         } else {
@@ -119,6 +147,251 @@ public abstract class AbstractEtlService {
         return etlResult;
     }
 
+    /**
+     * 按主键分段导入
+     *
+     * <pre>
+     * 1. 按主键的MIN/MAX将数据切分为多个分段, 多线程并行导入
+     * 2. 每个分段内按 key > ? AND key <= ? 翻页, 每页通过索引定位, 避免 LIMIT offset 扫描前面所有的行
+     * 3. 每页导入完成后记录断点, 失败后再次执行同样的etl会从断点继续
+     * </pre>
+     *
+     * @return 主键不是整型或者sql无法拼接主键条件时返回false, 由调用方按 LIMIT 分页导入
+     */
+    private boolean importByRange(DataSource dataSource, String sql, String splitKey, List<Object> values,
+                                  AtomicLong impCount, List<String> errMsg) throws Exception {
+        String[] rangeSqls = buildRangeSqls(sql, splitKey, CNT_PER_TASK);
+        if (rangeSqls == null) {
+            return false;
+        }
+
+        String signature = config.getDataSourceKey() + "|" + sql + "|" + values;
+        File checkpointFile = getCheckpointFile(signature);
+        EtlCheckpoint checkpoint = EtlCheckpoint.load(checkpointFile, signature);
+        if (checkpoint != null) {
+            logger.info("resume {} etl from checkpoint: {}", type, checkpointFile);
+        } else {
+            Object[] minMax = (Object[]) Util.sqlRS(dataSource, rangeSqls[0], values, rs -> {
+                try {
+                    return rs.next() ? new Object[] { rs.getObject(1), rs.getObject(2) } : null;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            if (minMax == null || minMax[0] == null || minMax[1] == null) {
+                // 没有数据
+                return true;
+            }
+            if (!isIntegral(minMax[0]) || !isIntegral(minMax[1])) {
+                return false;
+            }
+
+            long min = ((Number) minMax[0]).longValue();
+            long max = ((Number) minMax[1]).longValue();
+            if (max - min < 0) {
+                // 溢出
+                return false;
+            }
+            long ranges = Math.min(Runtime.getRuntime().availableProcessors() * 4L, (max - min) / CNT_PER_TASK + 1);
+            checkpoint = EtlCheckpoint.create(checkpointFile, signature, min, max, (int) ranges);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("etl by range of {}, ranges {}", splitKey, checkpoint.getRanges());
+        }
+
+        ExecutorService executor = Util.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 5000L);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < checkpoint.getRanges(); i++) {
+                int range = i;
+                EtlCheckpoint rangeCheckpoint = checkpoint;
+                futures.add(executor.submit(() -> importRange(dataSource,
+                    rangeSqls[1],
+                    rangeSqls[2],
+                    splitKey,
+                    values,
+                    rangeCheckpoint,
+                    range,
+                    impCount,
+                    errMsg)));
+            }
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (checkpoint.isCompleted()) {
+            checkpoint.delete();
+        }
+        return true;
+    }
+
+    private boolean importRange(DataSource dataSource, String pageSql, String boundarySql, String splitKey,
+                                List<Object> values, EtlCheckpoint checkpoint, int range, AtomicLong impCount,
+                                List<String> errMsg) {
+        long end = checkpoint.getEnd(range);
+        long from = checkpoint.getProgress(range);
+        while (from < end) {
+            List<Object> pageValues = new ArrayList<>(values);
+            pageValues.add(from);
+            pageValues.add(end);
+            // 当前页最后一条数据的主键
+            Object boundary = Util.sqlRS(dataSource, boundarySql, pageValues, rs -> {
+                try {
+                    return rs.next() ? rs.getObject(1) : null;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long to = boundary != null ? ((Number) boundary).longValue() : end;
+
+            pageValues.set(pageValues.size() - 1, to);
+            List<String> pageErrMsg = new ArrayList<>();
+            boolean succeeded = executeSqlImport(dataSource,
+                pageSql,
+                pageValues,
+                config.getMapping(),
+                impCount,
+                pageErrMsg);
+            if (!succeeded || !pageErrMsg.isEmpty()) {
+                errMsg.addAll(pageErrMsg);
+                if (pageErrMsg.isEmpty()) {
+                    errMsg.add(type + " 数据导入失败, " + splitKey + " > " + from + " AND " + splitKey + " <= " + to);
+                }
+                return false;
+            }
+
+            checkpoint.update(range, to);
+            from = to;
+        }
+        return true;
+    }
+
+    /**
+     * 生成按主键分段导入的sql, 主键范围条件直接拼接到源sql的WHERE中, 不在外面包一层子查询
+     *
+     * <pre>
+     * 子查询在MySQL 5.6以及无法合并(merge)的sql上会先物化整个源结果集, 每一页都会扫描全表
+     * sql中带有GROUP BY/HAVING/ORDER BY/LIMIT/UNION时无法直接拼接条件, 返回null
+     * </pre>
+     *
+     * @param sql 源sql, 可以已经带有WHERE条件
+     * @param splitKey 源表上的主键字段, 可以带表别名
+     * @param pageSize 每页条数
+     * @return {MIN/MAX查询, 分页查询, 分页边界查询}, 后两者最后两个参数为主键的范围
+     */
+    static String[] buildRangeSqls(String sql, String splitKey, long pageSize) {
+        int from = -1;
+        int where = -1;
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && Character.isLetter(c) && (i == 0 || !isWordChar(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < sql.length() && isWordChar(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end).toUpperCase();
+                if (from < 0) {
+                    if ("FROM".equals(word)) {
+                        from = i;
+                    }
+                } else if (where < 0 && "WHERE".equals(word)) {
+                    where = i;
+                } else if ("GROUP".equals(word) || "HAVING".equals(word) || "ORDER".equals(word)
+                           || "LIMIT".equals(word) || "UNION".equals(word)) {
+                    return null;
+                }
+                i = end - 1;
+            }
+        }
+        if (from < 0) {
+            return null;
+        }
+
+        String fromSql = sql.substring(from).trim();
+        String range = splitKey + " > ? AND " + splitKey + " <= ?";
+        String rangeSql;
+        if (where < 0) {
+            rangeSql = fromSql + " WHERE " + range;
+        } else {
+            // 原有的条件可能带有OR, 需要加上括号
+            rangeSql = sql.substring(from, where) + "WHERE (" + sql.substring(where + "WHERE".length()).trim()
+                       + ") AND " + range;
+        }
+        String minMaxSql = "SELECT MIN(" + splitKey + "), MAX(" + splitKey + ") " + fromSql;
+        String pageSql = sql.substring(0, from) + rangeSql;
+        String boundarySql = "SELECT " + splitKey + " " + rangeSql + " ORDER BY " + splitKey + " LIMIT "
+                             + (pageSize - 1) + ",1";
+        return new String[] { minMaxSql, pageSql, boundarySql };
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+               || (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64);
+    }
+
+    /**
+     * 断点文件, 放在conf/etl目录下
+     */
+    protected File getCheckpointFile(String signature) {
+        try {
+            String name = type.toLowerCase() + "_" + Integer.toHexString(signature.hashCode()) + ".checkpoint";
+            return new File(new File(Util.getConfDirPath(), "etl"), name);
+        } catch (Exception e) {
+            logger.warn("etl checkpoint is disabled: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 取源表单字段的主键, 用于按主键分段导入
+     *
+     * @return 主键字段名, 没有主键或者是复合主键时返回null
+     */
+    protected String getSplitKey(String database, String table) {
+        DataSource dataSource = DatasourceConfig.DATA_SOURCES.get(config.getDataSourceKey());
+        if (dataSource == null) {
+            return null;
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            List<String> pkNames = new ArrayList<>();
+            try (ResultSet rs = metaData.getPrimaryKeys(StringUtils.trimToNull(Util.cleanColumn(database)),
+                null,
+                Util.cleanColumn(table))) {
+                while (rs.next()) {
+                    pkNames.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            return pkNames.size() == 1 ? pkNames.get(0) : null;
+        } catch (Exception e) {
+            logger.warn("failed to get primary key of {}.{}: {}", database, table, e.getMessage());
+            return null;
+        }
+    }
+
     protected abstract boolean executeSqlImport(DataSource ds, String sql, List<Object> values,
                                                 AdapterConfig.AdapterMapping mapping, AtomicLong impCount,
                                                 List<String> errMsg);
@@ -0,0 +1,245 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 按主键合并同一批次内的DML, 减少写入目标端的次数
+ *
+ * <pre>
+ * 同一张表同一主键的连续变更:
+ * 1. INSERT + UPDATE*  合并为一条最终镜像的INSERT
+ * 2. UPDATE + UPDATE*  合并为一条最终镜像的UPDATE, old取每个字段最早的旧值
+ * 3. INSERT + ... + DELETE 直接抵消
+ * 4. UPDATE + ... + DELETE 合并为DELETE
+ * 合并后的变更放在该主键最后一次变更的位置, 不同主键之间的先后顺序不变
+ * DDL以及INSERT/UPDATE/DELETE之外的操作(如TRUNCATE)会作为屏障, 前后的变更不会合并
+ * 无法取到主键的数据原样保留
+ * </pre>
+ */
+public class DmlConflater {
+
+    private static final String INSERT = "INSERT";
+    private static final String UPDATE = "UPDATE";
+    private static final String DELETE = "DELETE";
+
+    /**
+     * 按源表的主键合并
+     */
+    public static List<Dml> conflate(List<Dml> dmls) {
+        return conflate(dmls, Dml::getPkNames);
+    }
+
+    /**
+     * 合并DML
+     *
+     * @param dmls 批量 DML
+     * @param keyColumns 取dml对应的主键字段名(源表字段), 返回空时不合并该dml
+     * @return 合并后的DML
+     */
+    public static List<Dml> conflate(List<Dml> dmls, Function<Dml, Collection<String>> keyColumns) {
+        if (dmls == null || dmls.size() <= 1) {
+            return dmls;
+        }
+
+        List<Row> rows = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (Dml dml : dmls) {
+            String type = StringUtils.upperCase(dml.getType());
+            if ((dml.getIsDdl() != null && dml.getIsDdl()) || dml.getData() == null
+                || !(INSERT.equals(type) || UPDATE.equals(type) || DELETE.equals(type))) {
+                positions.clear();
+                rows.add(new Row(dml));
+                continue;
+            }
+
+            Collection<String> columns = keyColumns.apply(dml);
+            for (int i = 0; i < dml.getData().size(); i++) {
+                Map<String, Object> data = dml.getData().get(i);
+                Map<String, Object> old = null;
+                if (dml.getOld() != null && i < dml.getOld().size()) {
+                    old = dml.getOld().get(i);
+                }
+
+                Row row = new Row(dml, type, data, old);
+                String key = key(dml, columns, data);
+                if (key == null) {
+                    rows.add(row);
+                    continue;
+                }
+
+                if (row.changeKey(columns)) {
+                    // 主键发生变更, 结束旧主键上的合并
+                    positions.remove(key(dml, columns, merge(data, old)));
+                }
+
+                Integer position = positions.get(key);
+                if (position != null && rows.get(position).canMerge(row, columns)) {
+                    row = rows.get(position).merge(row);
+                    rows.set(position, null);
+                    if (row == null) {
+                        positions.remove(key);
+                        continue;
+                    }
+                }
+                positions.put(key, rows.size());
+                rows.add(row);
+            }
+        }
+
+        return toDmls(rows);
+    }
+
+    private static String key(Dml dml, Collection<String> columns, Map<String, Object> data) {
+        if (columns == null || columns.isEmpty() || data == null) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append(dml.getDestination())
+            .append('|')
+            .append(dml.getGroupId())
+            .append('|')
+            .append(dml.getDatabase())
+            .append('|')
+            .append(dml.getTable());
+        for (String column : columns) {
+            if (!data.containsKey(column)) {
+                return null;
+            }
+            Object value = data.get(column);
+            key.append('|').append(value);
+        }
+        return key.toString();
+    }
+
+    private static Map<String, Object> merge(Map<String, Object> data, Map<String, Object> old) {
+        Map<String, Object> result = new LinkedHashMap<>(data);
+        if (old != null) {
+            result.putAll(old);
+        }
+        return result;
+    }
+
+    /**
+     * 将相邻的同一张表同一类型的变更重新组装为一个Dml
+     */
+    private static List<Dml> toDmls(List<Row> rows) {
+        List<Dml> result = new ArrayList<>();
+        Dml last = null;
+        for (Row row : rows) {
+            if (row == null) {
+                continue;
+            }
+
+            if (row.type == null) {
+                result.add(row.dml);
+                last = null;
+                continue;
+            }
+
+            if (last == null || !sameTarget(last, row)) {
+                last = new Dml();
+                last.setDestination(row.dml.getDestination());
+                last.setGroupId(row.dml.getGroupId());
+                last.setDatabase(row.dml.getDatabase());
+                last.setTable(row.dml.getTable());
+                last.setPkNames(row.dml.getPkNames());
+                last.setIsDdl(false);
+                last.setType(row.type);
+                last.setData(new ArrayList<>());
+                if (UPDATE.equals(row.type)) {
+                    last.setOld(new ArrayList<>());
+                }
+                result.add(last);
+            }
+            last.setEs(row.dml.getEs());
+            last.setTs(row.dml.getTs());
+            last.getData().add(row.data);
+            if (last.getOld() != null) {
+                last.getOld().add(row.old);
+            }
+        }
+        return result;
+    }
+
+    private static boolean sameTarget(Dml dml, Row row) {
+        return row.type.equals(dml.getType()) && StringUtils.equals(dml.getDestination(), row.dml.getDestination())
+               && StringUtils.equals(dml.getGroupId(), row.dml.getGroupId())
+               && StringUtils.equals(dml.getDatabase(), row.dml.getDatabase())
+               && StringUtils.equals(dml.getTable(), row.dml.getTable());
+    }
+
+    /**
+     * 单行变更
+     */
+    private static class Row {
+
+        private final Dml                 dml;
+        private final String              type; // 为null时表示原样保留的dml
+        private final Map<String, Object> data;
+        private final Map<String, Object> old;
+
+        Row(Dml dml){
+            this(dml, null, null, null);
+        }
+
+        Row(Dml dml, String type, Map<String, Object> data, Map<String, Object> old){
+            this.dml = dml;
+            this.type = type;
+            this.data = data;
+            this.old = old;
+        }
+
+        boolean changeKey(Collection<String> columns) {
+            if (old == null) {
+                return false;
+            }
+            for (String column : columns) {
+                if (old.containsKey(column)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean canMerge(Row next, Collection<String> columns) {
+            if (INSERT.equals(type)) {
+                return UPDATE.equals(next.type) || DELETE.equals(next.type);
+            } else if (UPDATE.equals(type)) {
+                // 主键变更过的update需要保留, 目标端还是旧的主键
+                return UPDATE.equals(next.type) || (DELETE.equals(next.type) && !changeKey(columns));
+            }
+            return false;
+        }
+
+        /**
+         * 合并同一主键的后续变更
+         *
+         * @return 合并后的变更, 两条变更相互抵消时返回null
+         */
+        Row merge(Row next) {
+            if (DELETE.equals(next.type)) {
+                return INSERT.equals(type) ? null : next;
+            } else if (INSERT.equals(type)) {
+                return new Row(next.dml, INSERT, next.data, null);
+            } else {
+                Map<String, Object> mergedOld = new LinkedHashMap<>();
+                if (next.old != null) {
+                    mergedOld.putAll(next.old);
+                }
+                if (old != null) {
+                    mergedOld.putAll(old);
+                }
+                return new Row(next.dml, UPDATE, next.data, mergedOld);
+            }
+        }
+    }
+}
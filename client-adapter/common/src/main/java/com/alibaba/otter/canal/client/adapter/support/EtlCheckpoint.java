@@ -0,0 +1,152 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按主键分段导入时每个分段的进度, 导入失败后再次执行同样的etl时从断点继续
+ *
+ * <pre>
+ * 文件格式:
+ * signature=数据源、sql以及参数, 不一致时不使用该断点
+ * ranges=分段数
+ * range.N=起始主键(不含),结束主键(含),已完成的主键(含)
+ * </pre>
+ */
+public class EtlCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(EtlCheckpoint.class);
+
+    private final File          file;
+    private final String        signature;
+    private final long[]        starts;
+    private final long[]        ends;
+    private final long[]        progress;
+
+    private EtlCheckpoint(File file, String signature, int ranges){
+        this.file = file;
+        this.signature = signature;
+        this.starts = new long[ranges];
+        this.ends = new long[ranges];
+        this.progress = new long[ranges];
+    }
+
+    /**
+     * 将(min - 1, max]切分为ranges个分段
+     */
+    public static EtlCheckpoint create(File file, String signature, long min, long max, int ranges) {
+        EtlCheckpoint checkpoint = new EtlCheckpoint(file, signature, ranges);
+        long step = (max - min) / ranges + 1;
+        long start = min - 1;
+        for (int i = 0; i < ranges; i++) {
+            long end = i == ranges - 1 ? max : Math.min(max, start + step);
+            checkpoint.starts[i] = start;
+            checkpoint.ends[i] = end;
+            checkpoint.progress[i] = start;
+            start = end;
+        }
+        checkpoint.save();
+        return checkpoint;
+    }
+
+    /**
+     * 读取断点, 文件不存在或者signature不一致时返回null
+     */
+    public static EtlCheckpoint load(File file, String signature) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+            if (!signature.equals(properties.getProperty("signature"))) {
+                return null;
+            }
+
+            int ranges = Integer.parseInt(properties.getProperty("ranges"));
+            EtlCheckpoint checkpoint = new EtlCheckpoint(file, signature, ranges);
+            for (int i = 0; i < ranges; i++) {
+                String[] range = properties.getProperty("range." + i).split(",");
+                checkpoint.starts[i] = Long.parseLong(range[0]);
+                checkpoint.ends[i] = Long.parseLong(range[1]);
+                checkpoint.progress[i] = Long.parseLong(range[2]);
+            }
+            return checkpoint;
+        } catch (Exception e) {
+            logger.warn("ignore broken etl checkpoint: " + file, e);
+            return null;
+        }
+    }
+
+    public int getRanges() {
+        return starts.length;
+    }
+
+    public long getEnd(int range) {
+        return ends[range];
+    }
+
+    public synchronized long getProgress(int range) {
+        return progress[range];
+    }
+
+    /**
+     * 记录分段的进度, 先写临时文件再rename, 避免进程退出时文件不完整
+     */
+    public synchronized void update(int range, long key) {
+        progress[range] = key;
+        save();
+    }
+
+    public synchronized boolean isCompleted() {
+        for (int i = 0; i < progress.length; i++) {
+            if (progress[i] < ends[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void delete() {
+        if (file != null && file.exists() && !file.delete()) {
+            logger.warn("failed to delete etl checkpoint: {}", file);
+        }
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("signature", signature);
+        properties.setProperty("ranges", String.valueOf(starts.length));
+        for (int i = 0; i < starts.length; i++) {
+            properties.setProperty("range." + i, starts[i] + "," + ends[i] + "," + progress[i]);
+        }
+
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("failed to create dir " + parent);
+            }
+            File tmp = new File(parent, file.getName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+                properties.store(out, null);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 断点只用于失败后续传, 写入失败不影响导入
+            logger.warn("failed to save etl checkpoint: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.druid.filter.FilterAdapter;
+import com.alibaba.druid.filter.FilterChain;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.proxy.jdbc.StatementProxy;
+
+/**
+ * etl按主键分段导入的测试
+ */
+public class AbstractEtlServiceTest {
+
+    private static final String DS_KEY = "etlTestDS";
+
+    private DruidDataSource     dataSource;
+    private File                dir;
+    private File                checkpointFile;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new DruidDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:etl;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setTestWhileIdle(false);
+        // h2不支持mysql流式读取的fetchSize(Integer.MIN_VALUE)
+        dataSource.setProxyFilters(Collections.singletonList(new FilterAdapter() {
+
+            @Override
+            public void statement_setFetchSize(FilterChain chain, StatementProxy statement,
+                                               int rows) throws SQLException {
+                if (rows >= 0) {
+                    super.statement_setFetchSize(chain, statement, rows);
+                }
+            }
+        }));
+        DatasourceConfig.DATA_SOURCES.put(DS_KEY, dataSource);
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE T_ETL (ID BIGINT PRIMARY KEY, NAME VARCHAR(32))");
+            stmt.execute("INSERT INTO T_ETL SELECT X, CONCAT('name', X) FROM SYSTEM_RANGE(1, 30000)");
+        }
+
+        dir = Files.createTempDirectory("etl").toFile();
+        checkpointFile = new File(dir, "test.checkpoint");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE T_ETL");
+        }
+        DatasourceConfig.DATA_SOURCES.remove(DS_KEY);
+        dataSource.close();
+        checkpointFile.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testRangeSqlsWithoutWhere() {
+        String[] sqls = AbstractEtlService.buildRangeSqls("SELECT * FROM test.t_etl", "id", 100);
+        Assert.assertEquals("SELECT MIN(id), MAX(id) FROM test.t_etl", sqls[0]);
+        Assert.assertEquals("SELECT * FROM test.t_etl WHERE id > ? AND id <= ?", sqls[1]);
+        Assert.assertEquals("SELECT id FROM test.t_etl WHERE id > ? AND id <= ? ORDER BY id LIMIT 99,1", sqls[2]);
+    }
+
+    @Test
+    public void testRangeSqlsWithWhere() {
+        String sql = "select a.id as _id, a.name, (select count(1) from role r where r.user_id = a.id) as cnt "
+                     + "from user a left join label b on b.user_id = a.id "
+                     + "where a.status = 'where' or a.c_time >= ?";
+        String[] sqls = AbstractEtlService.buildRangeSqls(sql, "a.id", 100);
+        String from = "from user a left join label b on b.user_id = a.id "
+                      + "WHERE (a.status = 'where' or a.c_time >= ?) AND a.id > ? AND a.id <= ?";
+        Assert.assertEquals("SELECT MIN(a.id), MAX(a.id) from user a left join label b on b.user_id = a.id "
+                            + "where a.status = 'where' or a.c_time >= ?",
+            sqls[0]);
+        Assert.assertEquals("select a.id as _id, a.name, (select count(1) from role r where r.user_id = a.id) as cnt "
+                            + from,
+            sqls[1]);
+        Assert.assertEquals("SELECT a.id " + from + " ORDER BY a.id LIMIT 99,1", sqls[2]);
+    }
+
+    @Test
+    public void testRangeSqlsUnsupported() {
+        Assert.assertNull(AbstractEtlService.buildRangeSqls("select a.id, count(1) from t a group by a.id", "a.id", 100));
+        Assert.assertNull(AbstractEtlService.buildRangeSqls("select * from t order by id", "id", 100));
+        Assert.assertNull(AbstractEtlService.buildRangeSqls("select * from t limit 10", "id", 100));
+        Assert.assertNull(AbstractEtlService.buildRangeSqls("select * from t union select * from t2", "id", 100));
+        // 子查询中的GROUP BY不影响
+        Assert.assertNotNull(AbstractEtlService.buildRangeSqls("select * from (select id from t group by id) a",
+            "a.id",
+            100));
+    }
+
+    @Test
+    public void testImportByRange() {
+        TestEtlService etlService = new TestEtlService("where ID > {}");
+        EtlResult result = etlService.importData("SELECT * FROM T_ETL", "ID", Collections.singletonList("100"));
+        Assert.assertTrue(result.getErrorMessage(), result.getSucceeded());
+        Assert.assertEquals(29900, etlService.ids.size());
+        Assert.assertEquals(29900, etlService.rows.get());
+        Assert.assertFalse(etlService.ids.contains(100L));
+        Assert.assertTrue(etlService.ids.contains(101L));
+        Assert.assertTrue(etlService.ids.contains(30000L));
+        for (String sql : etlService.sqls) {
+            Assert.assertEquals("SELECT * FROM T_ETL WHERE (ID > ?) AND ID > ? AND ID <= ?", sql);
+        }
+        Assert.assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void testPageIteration() {
+        TestEtlService etlService = new TestEtlService(null);
+        // 2个分段 (0, 15000], (15000, 30000], 第一个分段已经导入到5000
+        etlService.checkpointRanges = 2;
+        etlService.checkpointProgress = 5000;
+        EtlResult result = etlService.importData("SELECT * FROM T_ETL", "ID", null);
+        Assert.assertTrue(result.getErrorMessage(), result.getSucceeded());
+        Assert.assertEquals(25000, etlService.ids.size());
+        Assert.assertEquals(25000, etlService.rows.get());
+        Assert.assertFalse(etlService.ids.contains(5000L));
+        Assert.assertTrue(etlService.ids.contains(5001L));
+
+        // 每页最多10000条, 翻页通过上一页最后一条的主键定位
+        List<List<Object>> pages = new ArrayList<>(etlService.pages);
+        Collections.sort(pages, (o1, o2) -> Long.compare(((Number) o1.get(0)).longValue(),
+            ((Number) o2.get(0)).longValue()));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(5000L, 15000L),
+            Arrays.asList(15000L, 25000L),
+            Arrays.asList(25000L, 30000L)), pages);
+        Assert.assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void testFallbackToLimit() {
+        TestEtlService etlService = new TestEtlService(null);
+        EtlResult result = etlService.importData("SELECT * FROM T_ETL ORDER BY NAME", "ID", null);
+        Assert.assertTrue(result.getErrorMessage(), result.getSucceeded());
+        Assert.assertEquals(30000, etlService.ids.size());
+        for (String sql : etlService.sqls) {
+            Assert.assertTrue(sql, sql.startsWith("SELECT * FROM T_ETL ORDER BY NAME LIMIT "));
+        }
+    }
+
+    private class TestEtlService extends AbstractEtlService {
+
+        private final Set<Long>          ids                = ConcurrentHashMap.newKeySet();
+        private final Set<String>        sqls               = ConcurrentHashMap.newKeySet();
+        private final List<List<Object>> pages              = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicLong         rows               = new AtomicLong();
+        private int                      checkpointRanges;
+        private long                     checkpointProgress;
+
+        TestEtlService(String etlCondition){
+            super("TEST", new AdapterConfig() {
+
+                public String getDataSourceKey() {
+                    return DS_KEY;
+                }
+
+                public AdapterMapping getMapping() {
+                    return () -> etlCondition;
+                }
+            });
+        }
+
+        @Override
+        protected File getCheckpointFile(String signature) {
+            if (checkpointRanges > 0 && !checkpointFile.exists()) {
+                EtlCheckpoint checkpoint = EtlCheckpoint.create(checkpointFile, signature, 1, 30000, checkpointRanges);
+                checkpoint.update(0, checkpointProgress);
+            }
+            return checkpointFile;
+        }
+
+        @Override
+        protected boolean executeSqlImport(DataSource ds, String sql, List<Object> values,
+                                           AdapterConfig.AdapterMapping mapping, AtomicLong impCount,
+                                           List<String> errMsg) {
+            sqls.add(sql);
+            if (values.size() >= 2 && sql.endsWith("<= ?")) {
+                pages.add(new ArrayList<>(values.subList(values.size() - 2, values.size())));
+            }
+            Util.sqlRS(ds, sql, values, rs -> {
+                try {
+                    while (rs.next()) {
+                        Assert.assertTrue(ids.add(rs.getLong("ID")));
+                        rows.incrementAndGet();
+                        impCount.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            });
+            return true;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * DmlConflater按主键合并的测试
+ */
+public class DmlConflaterTest {
+
+    @Test
+    public void testInsertUpdate() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("INSERT", row(1, "a", 0), null));
+        for (int i = 1; i <= 100; i++) {
+            dmls.add(dml("UPDATE", row(1, "a", i), row(null, null, i - 1)));
+        }
+
+        List<Dml> result = DmlConflater.conflate(dmls);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("INSERT", result.get(0).getType());
+        Assert.assertEquals(row(1, "a", 100), result.get(0).getData().get(0));
+    }
+
+    @Test
+    public void testUpdates() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("UPDATE", row(1, "b", 1), old("name", "a")));
+        dmls.add(dml("UPDATE", row(1, "b", 2), old("cnt", 1)));
+        dmls.add(dml("UPDATE", row(1, "c", 3), old("name", "b", "cnt", 2)));
+
+        List<Dml> result = DmlConflater.conflate(dmls);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("UPDATE", result.get(0).getType());
+        Assert.assertEquals(row(1, "c", 3), result.get(0).getData().get(0));
+        // old取每个字段最早的旧值
+        Assert.assertEquals(old("name", "a", "cnt", 1), result.get(0).getOld().get(0));
+    }
+
+    @Test
+    public void testInsertDelete() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("INSERT", row(1, "a", 0), null));
+        dmls.add(dml("UPDATE", row(1, "a", 1), old("cnt", 0)));
+        dmls.add(dml("DELETE", row(1, "a", 1), null));
+        dmls.add(dml("UPDATE", row(2, "b", 1), old("cnt", 0)));
+        dmls.add(dml("DELETE", row(2, "b", 1), null));
+
+        List<Dml> result = DmlConflater.conflate(dmls);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("DELETE", result.get(0).getType());
+        Assert.assertEquals(Collections.singletonList(row(2, "b", 1)), result.get(0).getData());
+    }
+
+    @Test
+    public void testOrder() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("UPDATE", row(1, "a", 1), old("cnt", 0)));
+        dmls.add(dml("UPDATE", row(2, "b", 1), old("cnt", 0)));
+        dmls.add(dml("UPDATE", row(1, "a", 2), old("cnt", 1)));
+        Dml ddl = new Dml();
+        ddl.setIsDdl(true);
+        ddl.setType("ALTER");
+        ddl.setSql("alter table user add column age int");
+        dmls.add(ddl);
+        dmls.add(dml("UPDATE", row(2, "b", 2), old("cnt", 1)));
+
+        // 合并后放在最后一次变更的位置, DDL前后不合并
+        List<Dml> result = DmlConflater.conflate(dmls);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(Arrays.asList(row(2, "b", 1), row(1, "a", 2)), result.get(0).getData());
+        Assert.assertSame(ddl, result.get(1));
+        Assert.assertEquals(Collections.singletonList(row(2, "b", 2)), result.get(2).getData());
+    }
+
+    @Test
+    public void testChangeKey() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("UPDATE", row(2, "a", 1), old("id", 1)));
+        dmls.add(dml("UPDATE", row(1, "b", 1), old("name", "a")));
+        dmls.add(dml("DELETE", row(2, "a", 1), null));
+
+        // 主键变更前后的变更不合并, 变更主键的update之后的delete也不合并
+        List<Dml> result = DmlConflater.conflate(dmls);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(2, result.get(0).getData().size());
+        Assert.assertEquals("DELETE", result.get(1).getType());
+    }
+
+    private static Dml dml(String type, Map<String, Object> data, Map<String, Object> old) {
+        Dml dml = new Dml();
+        dml.setDestination("example");
+        dml.setDatabase("mytest");
+        dml.setTable("user");
+        dml.setPkNames(Collections.singletonList("id"));
+        dml.setIsDdl(false);
+        dml.setType(type);
+        dml.setData(new ArrayList<>(Collections.singletonList(data)));
+        if (old != null) {
+            dml.setOld(new ArrayList<>(Collections.singletonList(old)));
+        }
+        return dml;
+    }
+
+    private static Map<String, Object> row(Integer id, String name, Integer cnt) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        if (id != null) {
+            row.put("id", id);
+        }
+        if (name != null) {
+            row.put("name", name);
+        }
+        row.put("cnt", cnt);
+        return row;
+    }
+
+    private static Map<String, Object> old(Object... values) {
+        Map<String, Object> old = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i += 2) {
+            old.put((String) values[i], values[i + 1]);
+        }
+        return old;
+    }
+}
@@ -0,0 +1,70 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * etl分段断点的测试
+ */
+public class EtlCheckpointTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("etl").toFile();
+        file = new File(dir, "rdb_test.checkpoint");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testRanges() {
+        EtlCheckpoint checkpoint = EtlCheckpoint.create(file, "sig", 1, 100, 3);
+        Assert.assertEquals(3, checkpoint.getRanges());
+        // 分段首尾相接, 覆盖 (0, 100]
+        Assert.assertEquals(0, checkpoint.getProgress(0));
+        for (int i = 1; i < checkpoint.getRanges(); i++) {
+            Assert.assertEquals(checkpoint.getEnd(i - 1), checkpoint.getProgress(i));
+        }
+        Assert.assertEquals(100, checkpoint.getEnd(2));
+        Assert.assertFalse(checkpoint.isCompleted());
+
+        // 分段数多于主键个数
+        checkpoint = EtlCheckpoint.create(null, "sig", 5, 6, 4);
+        Assert.assertEquals(4, checkpoint.getProgress(0));
+        Assert.assertEquals(6, checkpoint.getEnd(3));
+    }
+
+    @Test
+    public void testResume() {
+        EtlCheckpoint checkpoint = EtlCheckpoint.create(file, "sig", 1, 100, 2);
+        checkpoint.update(0, 20);
+        Assert.assertTrue(file.exists());
+
+        Assert.assertNull(EtlCheckpoint.load(file, "other"));
+        EtlCheckpoint resumed = EtlCheckpoint.load(file, "sig");
+        Assert.assertNotNull(resumed);
+        Assert.assertEquals(2, resumed.getRanges());
+        Assert.assertEquals(20, resumed.getProgress(0));
+        Assert.assertEquals(checkpoint.getEnd(0), resumed.getProgress(1));
+
+        resumed.update(0, resumed.getEnd(0));
+        resumed.update(1, resumed.getEnd(1));
+        Assert.assertTrue(resumed.isCompleted());
+        resumed.delete();
+        Assert.assertFalse(file.exists());
+        Assert.assertNull(EtlCheckpoint.load(file, "sig"));
+    }
+}
@@ -22,8 +22,7 @@ import com.alibaba.otter.canal.client.adapter.es.core.config.ESSyncConfig.ESMapp
 import com.alibaba.otter.canal.client.adapter.es.core.config.SchemaItem;
 import com.alibaba.otter.canal.client.adapter.es.core.config.SchemaItem.FieldItem;
 import com.alibaba.otter.canal.client.adapter.es.core.config.SchemaItem.ColumnItem;
-import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest;
-import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESBulkResponse;
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkProcessor;
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESDeleteRequest;
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESIndexRequest;
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESUpdateRequest;
@@ -38,26 +37,29 @@ public class ES6xTemplate implements ESTemplate {
     private static final Logger                               logger         = LoggerFactory
         .getLogger(ESTemplate.class);
 
-    private static final int                                  MAX_BATCH_SIZE = 1000;
-
     private ESConnection                                      esConnection;
 
-    private ESBulkRequest                                     esBulkRequest;
+    private ESBulkProcessor                                   bulkProcessor;
 
     // es 字段类型本地缓存
     private static ConcurrentMap<String, Map<String, String>> esFieldTypes   = new ConcurrentHashMap<>();
 
     public ES6xTemplate(ESConnection esConnection){
-        this.esConnection = esConnection;
-        this.esBulkRequest = this.esConnection.new ES6xBulkRequest();
+        this(esConnection, null);
     }
 
-    public ESBulkRequest getBulk() {
-        return esBulkRequest;
+    /**
+     * @param esConnection es连接
+     * @param properties 适配器配置, 读取其中的bulk.*配置
+     */
+    public ES6xTemplate(ESConnection esConnection, Map<String, String> properties){
+        this.esConnection = esConnection;
+        this.bulkProcessor = new ESBulkProcessor(() -> esConnection.new ES6xBulkRequest());
+        this.bulkProcessor.configure(properties);
     }
 
-    public void resetBulkRequestBuilder() {
-        this.esBulkRequest.resetBulk();
+    public ESBulkProcessor getBulkProcessor() {
+        return bulkProcessor;
     }
 
     @Override
@@ -71,7 +73,7 @@ public class ES6xTemplate implements ESTemplate {
                 if (StringUtils.isNotEmpty(parentVal)) {
                     updateRequest.setRouting(parentVal);
                 }
-                getBulk().add(updateRequest);
+                bulkProcessor.add(updateRequest);
             } else {
                 ESIndexRequest indexRequest = esConnection.new ES6xIndexRequest(mapping.get_index(),
                     mapping.get_type(),
@@ -79,9 +81,8 @@ public class ES6xTemplate implements ESTemplate {
                 if (StringUtils.isNotEmpty(parentVal)) {
                     indexRequest.setRouting(parentVal);
                 }
-                getBulk().add(indexRequest);
+                bulkProcessor.add(indexRequest);
             }
-            commitBulk();
         } else {
             ESSearchRequest esSearchRequest = this.esConnection.new ESSearchRequest(mapping.get_index(),
                 mapping.get_type()).setQuery(QueryBuilders.termQuery(mapping.getPk(), pkVal)).size(10000);
@@ -91,8 +92,7 @@ public class ES6xTemplate implements ESTemplate {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES6xUpdateRequest(mapping.get_index(),
                     mapping.get_type(),
                     hit.getId()).setDoc(esFieldData);
-                getBulk().add(esUpdateRequest);
-                commitBulk();
+                bulkProcessor.add(esUpdateRequest);
             }
         }
     }
@@ -102,7 +102,6 @@ public class ES6xTemplate implements ESTemplate {
         Map<String, Object> esFieldDataTmp = new LinkedHashMap<>(esFieldData.size());
         esFieldData.forEach((k, v) -> esFieldDataTmp.put(Util.cleanColumn(k), v));
         append4Update(mapping, pkVal, esFieldDataTmp);
-        commitBulk();
     }
 
     @Override
@@ -131,7 +130,6 @@ public class ES6xTemplate implements ESTemplate {
                 while (rs.next()) {
                     Object idVal = getIdValFromRS(mapping, rs);
                     append4Update(mapping, idVal, esFieldData);
-                    commitBulk();
                     count++;
                 }
             } catch (Exception e) {
@@ -150,8 +148,7 @@ public class ES6xTemplate implements ESTemplate {
             ESDeleteRequest esDeleteRequest = this.esConnection.new ES6xDeleteRequest(mapping.get_index(),
                 mapping.get_type(),
                 pkVal.toString());
-            getBulk().add(esDeleteRequest);
-            commitBulk();
+            bulkProcessor.add(esDeleteRequest);
         } else {
             ESSearchRequest esSearchRequest = this.esConnection.new ESSearchRequest(mapping.get_index(),
                 mapping.get_type()).setQuery(QueryBuilders.termQuery(mapping.getPk(), pkVal)).size(10000);
@@ -160,21 +157,19 @@ public class ES6xTemplate implements ESTemplate {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES6xUpdateRequest(mapping.get_index(),
                     mapping.get_type(),
                     hit.getId()).setDoc(esFieldData);
-                getBulk().add(esUpdateRequest);
-                commitBulk();
+                bulkProcessor.add(esUpdateRequest);
             }
         }
     }
 
     @Override
     public void commit() {
-        if (getBulk().numberOfActions() > 0) {
-            ESBulkResponse response = getBulk().bulk();
-            if (response.hasFailures()) {
-                response.processFailBulkResponse("ES sync commit error ");
-            }
-            resetBulkRequestBuilder();
-        }
+        bulkProcessor.commit();
+    }
+
+    @Override
+    public void destroy() {
+        bulkProcessor.close();
     }
 
     @Override
@@ -335,15 +330,6 @@ public class ES6xTemplate implements ESTemplate {
         return resultIdVal;
     }
 
-    /**
-     * 如果大于批量数则提交批次
-     */
-    private void commitBulk() {
-        if (getBulk().numberOfActions() >= MAX_BATCH_SIZE) {
-            commit();
-        }
-    }
-
     private void append4Update(ESMapping mapping, Object pkVal, Map<String, Object> esFieldData) {
         if (mapping.get_id() != null) {
             String parentVal = (String) esFieldData.remove("$parent_routing");
@@ -354,7 +340,7 @@ public class ES6xTemplate implements ESTemplate {
                 if (StringUtils.isNotEmpty(parentVal)) {
                     esUpdateRequest.setRouting(parentVal);
                 }
-                getBulk().add(esUpdateRequest);
+                bulkProcessor.add(esUpdateRequest);
             } else {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES6xUpdateRequest(mapping.get_index(),
                     mapping.get_type(),
@@ -362,7 +348,7 @@ public class ES6xTemplate implements ESTemplate {
                 if (StringUtils.isNotEmpty(parentVal)) {
                     esUpdateRequest.setRouting(parentVal);
                 }
-                getBulk().add(esUpdateRequest);
+                bulkProcessor.add(esUpdateRequest);
             }
         } else {
             ESSearchRequest esSearchRequest = this.esConnection.new ESSearchRequest(mapping.get_index(),
@@ -372,7 +358,7 @@ public class ES6xTemplate implements ESTemplate {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES6xUpdateRequest(mapping.get_index(),
                     mapping.get_type(),
                     hit.getId()).setDoc(esFieldData);
-                getBulk().add(esUpdateRequest);
+                bulkProcessor.add(esUpdateRequest);
             }
         }
     }
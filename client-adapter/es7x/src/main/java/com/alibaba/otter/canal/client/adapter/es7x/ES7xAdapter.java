@@ -46,7 +46,7 @@ public class ES7xAdapter extends ESAdapter {
             } else {
                 esConnection = new ESConnection(hostArray, properties, ESConnection.ESClientMode.TRANSPORT);
             }
-            this.esTemplate = new ES7xTemplate(esConnection);
+            this.esTemplate = new ES7xTemplate(esConnection, properties);
 
             envProperties.put("es.version", "es7");
             super.init(configuration, envProperties);
@@ -53,7 +53,8 @@ public class ESEtlService extends AbstractEtlService {
         ESMapping mapping = config.getEsMapping();
         logger.info("start etl to import data to index: {}", mapping.get_index());
         String sql = mapping.getSql();
-        return importData(sql, params);
+        // 按_id对应的主表字段分段导入
+        return importData(sql, mapping.getSchemaItem().getIdColumn(mapping), params);
     }
 
     protected boolean executeSqlImport(DataSource ds, String sql, List<Object> values,
@@ -22,8 +22,7 @@ import com.alibaba.otter.canal.client.adapter.es.core.config.ESSyncConfig.ESMapp
 import com.alibaba.otter.canal.client.adapter.es.core.config.SchemaItem;
 import com.alibaba.otter.canal.client.adapter.es.core.config.SchemaItem.ColumnItem;
 import com.alibaba.otter.canal.client.adapter.es.core.config.SchemaItem.FieldItem;
-import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest;
-import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESBulkResponse;
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkProcessor;
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESDeleteRequest;
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESIndexRequest;
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESUpdateRequest;
@@ -38,26 +37,29 @@ public class ES7xTemplate implements ESTemplate {
     private static final Logger                               logger         = LoggerFactory
         .getLogger(ESTemplate.class);
 
-    private static final int                                  MAX_BATCH_SIZE = 1000;
-
     private ESConnection                                      esConnection;
 
-    private ESBulkRequest                                     esBulkRequest;
+    private ESBulkProcessor                                   bulkProcessor;
 
     // es 字段类型本地缓存
     private static ConcurrentMap<String, Map<String, String>> esFieldTypes   = new ConcurrentHashMap<>();
 
     public ES7xTemplate(ESConnection esConnection){
-        this.esConnection = esConnection;
-        this.esBulkRequest = this.esConnection.new ES7xBulkRequest();
+        this(esConnection, null);
     }
 
-    public ESBulkRequest getBulk() {
-        return esBulkRequest;
+    /**
+     * @param esConnection es连接
+     * @param properties 适配器配置, 读取其中的bulk.*配置
+     */
+    public ES7xTemplate(ESConnection esConnection, Map<String, String> properties){
+        this.esConnection = esConnection;
+        this.bulkProcessor = new ESBulkProcessor(() -> esConnection.new ES7xBulkRequest());
+        this.bulkProcessor.configure(properties);
     }
 
-    public void resetBulkRequestBuilder() {
-        this.esBulkRequest.resetBulk();
+    public ESBulkProcessor getBulkProcessor() {
+        return bulkProcessor;
     }
 
     @Override
@@ -70,16 +72,15 @@ public class ES7xTemplate implements ESTemplate {
                 if (StringUtils.isNotEmpty(parentVal)) {
                     updateRequest.setRouting(parentVal);
                 }
-                getBulk().add(updateRequest);
+                bulkProcessor.add(updateRequest);
             } else {
                 ESIndexRequest indexRequest = esConnection.new ES7xIndexRequest(mapping.get_index(), pkVal.toString())
                     .setSource(esFieldData);
                 if (StringUtils.isNotEmpty(parentVal)) {
                     indexRequest.setRouting(parentVal);
                 }
-                getBulk().add(indexRequest);
+                bulkProcessor.add(indexRequest);
             }
-            commitBulk();
         } else {
             ESSearchRequest esSearchRequest = this.esConnection.new ESSearchRequest(mapping.get_index())
                 .setQuery(QueryBuilders.termQuery(mapping.getPk(), pkVal))
@@ -89,8 +90,7 @@ public class ES7xTemplate implements ESTemplate {
             for (SearchHit hit : response.getHits()) {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES7xUpdateRequest(mapping.get_index(),
                     hit.getId()).setDoc(esFieldData);
-                getBulk().add(esUpdateRequest);
-                commitBulk();
+                bulkProcessor.add(esUpdateRequest);
             }
         }
     }
@@ -100,7 +100,6 @@ public class ES7xTemplate implements ESTemplate {
         Map<String, Object> esFieldDataTmp = new LinkedHashMap<>(esFieldData.size());
         esFieldData.forEach((k, v) -> esFieldDataTmp.put(Util.cleanColumn(k), v));
         append4Update(mapping, pkVal, esFieldDataTmp);
-        commitBulk();
     }
 
     @Override
@@ -129,7 +128,6 @@ public class ES7xTemplate implements ESTemplate {
                 while (rs.next()) {
                     Object idVal = getIdValFromRS(mapping, rs);
                     append4Update(mapping, idVal, esFieldData);
-                    commitBulk();
                     count++;
                 }
             } catch (Exception e) {
@@ -147,8 +145,7 @@ public class ES7xTemplate implements ESTemplate {
         if (mapping.get_id() != null) {
             ESDeleteRequest esDeleteRequest = this.esConnection.new ES7xDeleteRequest(mapping.get_index(),
                 pkVal.toString());
-            getBulk().add(esDeleteRequest);
-            commitBulk();
+            bulkProcessor.add(esDeleteRequest);
         } else {
             ESSearchRequest esSearchRequest = this.esConnection.new ESSearchRequest(mapping.get_index())
                 .setQuery(QueryBuilders.termQuery(mapping.getPk(), pkVal))
@@ -157,21 +154,19 @@ public class ES7xTemplate implements ESTemplate {
             for (SearchHit hit : response.getHits()) {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES7xUpdateRequest(mapping.get_index(),
                     hit.getId()).setDoc(esFieldData);
-                getBulk().add(esUpdateRequest);
-                commitBulk();
+                bulkProcessor.add(esUpdateRequest);
             }
         }
     }
 
     @Override
     public void commit() {
-        if (getBulk().numberOfActions() > 0) {
-            ESBulkResponse response = getBulk().bulk();
-            if (response.hasFailures()) {
-                response.processFailBulkResponse("ES sync commit error ");
-            }
-            resetBulkRequestBuilder();
-        }
+        bulkProcessor.commit();
+    }
+
+    @Override
+    public void destroy() {
+        bulkProcessor.close();
     }
 
     @Override
@@ -331,15 +326,6 @@ public class ES7xTemplate implements ESTemplate {
         return resultIdVal;
     }
 
-    /**
-     * 如果大于批量数则提交批次
-     */
-    private void commitBulk() {
-        if (getBulk().numberOfActions() >= MAX_BATCH_SIZE) {
-            commit();
-        }
-    }
-
     private void append4Update(ESMapping mapping, Object pkVal, Map<String, Object> esFieldData) {
         if (mapping.get_id() != null) {
             String parentVal = (String) esFieldData.remove("$parent_routing");
@@ -349,14 +335,14 @@ public class ES7xTemplate implements ESTemplate {
                 if (StringUtils.isNotEmpty(parentVal)) {
                     esUpdateRequest.setRouting(parentVal);
                 }
-                getBulk().add(esUpdateRequest);
+                bulkProcessor.add(esUpdateRequest);
             } else {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES7xUpdateRequest(mapping.get_index(),
                     pkVal.toString()).setDoc(esFieldData);
                 if (StringUtils.isNotEmpty(parentVal)) {
                     esUpdateRequest.setRouting(parentVal);
                 }
-                getBulk().add(esUpdateRequest);
+                bulkProcessor.add(esUpdateRequest);
             }
         } else {
             ESSearchRequest esSearchRequest = this.esConnection.new ESSearchRequest(mapping.get_index())
@@ -366,7 +352,7 @@ public class ES7xTemplate implements ESTemplate {
             for (SearchHit hit : response.getHits()) {
                 ESUpdateRequest esUpdateRequest = this.esConnection.new ES7xUpdateRequest(mapping.get_index(),
                     hit.getId()).setDoc(esFieldData);
-                getBulk().add(esUpdateRequest);
+                bulkProcessor.add(esUpdateRequest);
             }
         }
     }
@@ -3,6 +3,7 @@ package com.alibaba.otter.canal.client.adapter.es7x.support;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -11,6 +12,8 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -25,6 +28,7 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateRequestBuilder;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -417,18 +421,55 @@ public class ESConnection {
             }
         }
 
-        public ESBulkResponse bulk() {
+        public long estimatedSizeInBytes() {
             if (mode == ESClientMode.TRANSPORT) {
-                BulkResponse responses = bulkRequestBuilder.execute().actionGet();
-                return new ES7xBulkResponse(responses);
+                return bulkRequestBuilder.request().estimatedSizeInBytes();
             } else {
-                try {
+                return bulkRequest.estimatedSizeInBytes();
+            }
+        }
+
+        public ESBulkResponse bulk() {
+            try {
+                if (mode == ESClientMode.TRANSPORT) {
+                    BulkResponse responses = bulkRequestBuilder.execute().actionGet();
+                    return new ES7xBulkResponse(responses);
+                } else {
                     BulkResponse responses = restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
                     return new ES7xBulkResponse(responses);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                }
+            } catch (ResponseException e) {
+                if (e.getResponse().getStatusLine().getStatusCode() == RestStatus.TOO_MANY_REQUESTS.getStatus()) {
+                    throw new ESBulkRejectedException(e);
+                }
+                throw new RuntimeException(e);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (RuntimeException e) {
+                if (ExceptionsHelper.status(e) == RestStatus.TOO_MANY_REQUESTS) {
+                    throw new ESBulkRejectedException(e);
+                }
+                throw e;
+            }
+        }
+
+        public ES7xBulkRequest rejected(ESBulkResponse response) {
+            ES7xBulkRequest rejected = new ES7xBulkRequest();
+            List<? extends DocWriteRequest> requests;
+            BulkRequest target;
+            if (mode == ESClientMode.TRANSPORT) {
+                requests = bulkRequestBuilder.request().requests();
+                target = rejected.bulkRequestBuilder.request();
+            } else {
+                requests = bulkRequest.requests();
+                target = rejected.bulkRequest;
+            }
+            for (BulkItemResponse itemResponse : ((ES7xBulkResponse) response).bulkResponse.getItems()) {
+                if (itemResponse.isFailed() && itemResponse.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                    target.add(requests.get(itemResponse.getItemId()));
                 }
             }
+            return rejected;
         }
 
         public BulkRequestBuilder getBulkRequestBuilder() {
@@ -463,10 +504,18 @@ public class ESConnection {
 
         @Override
         public void processFailBulkResponse(String errorMsg) {
+            processFailBulkResponse(errorMsg, false);
+        }
+
+        @Override
+        public void processFailBulkResponse(String errorMsg, boolean skipRejected) {
             for (BulkItemResponse itemResponse : bulkResponse.getItems()) {
                 if (!itemResponse.isFailed()) {
                     continue;
                 }
+                if (skipRejected && itemResponse.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                    continue;
+                }
 
                 if (itemResponse.getFailure().getStatus() == RestStatus.NOT_FOUND) {
                     logger.error(itemResponse.getFailureMessage());
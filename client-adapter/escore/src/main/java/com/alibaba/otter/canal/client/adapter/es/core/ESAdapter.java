@@ -9,6 +9,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.alibaba.otter.canal.client.adapter.es.core.support.ESTemplate;
+import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 
 import com.alibaba.druid.pool.DruidDataSource;
@@ -21,6 +22,7 @@ import com.alibaba.otter.canal.client.adapter.es.core.monitor.ESConfigMonitor;
 import com.alibaba.otter.canal.client.adapter.es.core.service.ESSyncService;
 import com.alibaba.otter.canal.client.adapter.support.DatasourceConfig;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlConflater;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.OuterAdapterConfig;
 
@@ -43,6 +45,8 @@ public abstract class ESAdapter implements OuterAdapter {
 
     protected Properties                             envProperties;
 
+    protected boolean                                conflateDml;                                  // 是否按主键合并批次内的DML
+
     public ESSyncService getEsSyncService() {
         return esSyncService;
     }
@@ -59,6 +63,9 @@ public abstract class ESAdapter implements OuterAdapter {
     public void init(OuterAdapterConfig configuration, Properties envProperties) {
         try {
             this.envProperties = envProperties;
+            if (configuration.getProperties() != null) {
+                conflateDml = BooleanUtils.toBoolean(configuration.getProperties().get("conflateDml"));
+            }
             Map<String, ESSyncConfig> esSyncConfigTmp = ESSyncConfigLoader.load(envProperties);
             // 过滤不匹配的key的配置
             esSyncConfigTmp.forEach((key, config) -> {
@@ -90,6 +97,9 @@ public abstract class ESAdapter implements OuterAdapter {
         if (dmls == null || dmls.isEmpty()) {
             return;
         }
+        if (conflateDml) {
+            dmls = DmlConflater.conflate(dmls);
+        }
         for (Dml dml : dmls) {
             if (!dml.getIsDdl()) {
                 sync(dml);
@@ -128,6 +138,9 @@ public abstract class ESAdapter implements OuterAdapter {
         if (esConfigMonitor != null) {
             esConfigMonitor.destroy();
         }
+        if (esTemplate != null) {
+            esTemplate.destroy();
+        }
     }
 
     @Override
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 
 /**
@@ -143,6 +144,31 @@ public class SchemaItem {
         }
     }
 
+    /**
+     * _id对应的主表字段, 用于etl按主键分段导入
+     *
+     * @return 带表别名的字段名, _id不是主表的单个字段时返回null
+     */
+    public String getIdColumn(ESSyncConfig.ESMapping mapping) {
+        if (mapping.get_id() == null) {
+            return null;
+        }
+        FieldItem idFieldItem = getSelectFields().get(mapping.get_id());
+        if (idFieldItem == null || idFieldItem.isMethod() || idFieldItem.isBinaryOp()
+            || idFieldItem.getColumnItems().size() != 1) {
+            return null;
+        }
+
+        // 关联表的字段可能为null, 按范围导入会漏掉数据
+        ColumnItem columnItem = idFieldItem.getColumn();
+        String owner = columnItem.getOwner();
+        TableItem mainTable = getMainTable();
+        if (mainTable == null || !Objects.equals(owner, mainTable.getAlias())) {
+            return null;
+        }
+        return owner == null ? columnItem.getColumnName() : owner + "." + columnItem.getColumnName();
+    }
+
     public static class TableItem {
 
         private SchemaItem                               schemaItem;
@@ -0,0 +1,382 @@
+package com.alibaba.otter.canal.client.adapter.es.core.support;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESBulkRejectedException;
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESBulkResponse;
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESDeleteRequest;
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESIndexRequest;
+import com.alibaba.otter.canal.client.adapter.es.core.support.ESBulkRequest.ESUpdateRequest;
+import com.alibaba.otter.canal.client.adapter.support.DaemonThreadFactory;
+import com.alibaba.otter.canal.client.adapter.support.Util;
+
+/**
+ * ES bulk异步提交
+ *
+ * <pre>
+ * 1. 当前bulk的条数达到bulkActions、字节数达到bulkSize或者距上次提交超过flushInterval时, 交给后台线程提交, 同时开始构建下一个bulk
+ * 2. 最多concurrentRequests个bulk同时提交, 为0时在调用线程中同步提交; 大于1时不同bulk之间的执行顺序无法保证
+ * 3. 被es拒绝(429)的子请求按backoff指数退避重试retries次
+ * 4. commit()提交当前bulk并等待所有提交中的bulk完成, 后台提交失败的异常在commit()时抛出
+ * </pre>
+ *
+ * 配置项(适配器properties):
+ *
+ * <pre>
+ * bulk.actions: 每个bulk的最大条数, 默认1000
+ * bulk.size: 每个bulk的最大字节数, 默认5MB, 小于等于0时不限制
+ * bulk.flushInterval: 定时提交的间隔(毫秒), 默认1000, 小于等于0时不定时提交
+ * bulk.concurrentRequests: 同时提交的bulk数, 默认1
+ * bulk.retries: 被拒绝(429)时的重试次数, 默认3
+ * bulk.backoff: 首次重试的等待时间(毫秒), 默认100
+ * </pre>
+ */
+public class ESBulkProcessor {
+
+    private static final Logger           logger             = LoggerFactory.getLogger(ESBulkProcessor.class);
+
+    private static final long             STATS_INTERVAL     = 60 * 1000L;                                   // 统计信息输出间隔
+
+    private final Supplier<ESBulkRequest> bulkSupplier;
+
+    private int                           bulkActions        = 1000;
+    private long                          bulkSize           = 5 * 1024 * 1024L;
+    private long                          flushInterval      = 1000L;
+    private int                           concurrentRequests = 1;
+    private int                           retries            = 3;
+    private long                          backoff            = 100L;
+
+    private ESBulkRequest                 bulk;                                                              // 构建中的bulk
+    private long                          lastFlushTime      = System.currentTimeMillis();
+    private volatile RuntimeException     failure;                                                           // 后台提交的异常
+
+    private Semaphore                     semaphore;
+    private ExecutorService               executor;
+    private ScheduledExecutorService      scheduler;
+    private volatile boolean              running            = false;
+
+    // 统计信息
+    private final AtomicLong              bulkCount          = new AtomicLong();
+    private final AtomicLong              actionCount        = new AtomicLong();
+    private final AtomicLong              rejectedCount      = new AtomicLong();
+    private final AtomicLong              failedCount        = new AtomicLong();
+    private final AtomicLong              totalLatency       = new AtomicLong();
+    private final AtomicLong              maxLatency         = new AtomicLong();
+
+    public ESBulkProcessor(Supplier<ESBulkRequest> bulkSupplier){
+        this.bulkSupplier = bulkSupplier;
+        this.bulk = bulkSupplier.get();
+    }
+
+    /**
+     * 读取适配器properties中的bulk.*配置
+     */
+    public void configure(Map<String, String> properties) {
+        if (properties == null) {
+            return;
+        }
+        String value = properties.get("bulk.actions");
+        if (StringUtils.isNotEmpty(value)) {
+            bulkActions = Integer.parseInt(value.trim());
+        }
+        value = properties.get("bulk.size");
+        if (StringUtils.isNotEmpty(value)) {
+            bulkSize = Long.parseLong(value.trim());
+        }
+        value = properties.get("bulk.flushInterval");
+        if (StringUtils.isNotEmpty(value)) {
+            flushInterval = Long.parseLong(value.trim());
+        }
+        value = properties.get("bulk.concurrentRequests");
+        if (StringUtils.isNotEmpty(value)) {
+            concurrentRequests = Integer.parseInt(value.trim());
+        }
+        value = properties.get("bulk.retries");
+        if (StringUtils.isNotEmpty(value)) {
+            retries = Integer.parseInt(value.trim());
+        }
+        value = properties.get("bulk.backoff");
+        if (StringUtils.isNotEmpty(value)) {
+            backoff = Long.parseLong(value.trim());
+        }
+    }
+
+    public synchronized ESBulkProcessor add(ESIndexRequest request) {
+        start();
+        bulk.add(request);
+        flushIfNeeded();
+        return this;
+    }
+
+    public synchronized ESBulkProcessor add(ESUpdateRequest request) {
+        start();
+        bulk.add(request);
+        flushIfNeeded();
+        return this;
+    }
+
+    public synchronized ESBulkProcessor add(ESDeleteRequest request) {
+        start();
+        bulk.add(request);
+        flushIfNeeded();
+        return this;
+    }
+
+    /**
+     * 提交当前bulk并等待所有提交中的bulk完成
+     */
+    public synchronized void commit() {
+        flush();
+        if (semaphore != null) {
+            semaphore.acquireUninterruptibly(concurrentRequests);
+            semaphore.release(concurrentRequests);
+        }
+        RuntimeException e = failure;
+        if (e != null) {
+            failure = null;
+            throw e;
+        }
+    }
+
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        try {
+            commit();
+        } catch (RuntimeException e) {
+            logger.error(e.getMessage(), e);
+        }
+        running = false;
+        scheduler.shutdownNow();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        if (concurrentRequests > 0) {
+            semaphore = new Semaphore(concurrentRequests);
+            executor = Util.newFixedDaemonThreadPool(concurrentRequests, 5000L);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.daemonThreadFactory);
+        if (flushInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::flushByInterval,
+                flushInterval,
+                flushInterval,
+                TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::logStats, STATS_INTERVAL, STATS_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushIfNeeded() {
+        if (bulk.numberOfActions() >= bulkActions || (bulkSize > 0 && bulk.estimatedSizeInBytes() >= bulkSize)) {
+            flush();
+        }
+    }
+
+    private synchronized void flushByInterval() {
+        if (System.currentTimeMillis() - lastFlushTime < flushInterval) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 同步提交时由定时线程记录异常, 在commit()时抛出
+            failure = e;
+        }
+    }
+
+    private void flush() {
+        lastFlushTime = System.currentTimeMillis();
+        if (bulk.numberOfActions() == 0) {
+            return;
+        }
+        final ESBulkRequest request = bulk;
+        bulk = bulkSupplier.get();
+        if (failure != null) {
+            // 已有bulk失败, 整批数据会被重新同步, 不再提交后续的bulk
+            return;
+        }
+
+        if (semaphore == null) {
+            execute(request);
+            return;
+        }
+        semaphore.acquireUninterruptibly();
+        try {
+            executor.execute(() -> {
+                try {
+                    execute(request);
+                } catch (RuntimeException e) {
+                    failure = e;
+                } finally {
+                    semaphore.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 提交bulk, 被拒绝的子请求退避后重试
+     */
+    private void execute(ESBulkRequest request) {
+        long begin = System.currentTimeMillis();
+        int actions = request.numberOfActions();
+        try {
+            for (int i = 0;; i++) {
+                ESBulkResponse response;
+                try {
+                    response = request.bulk();
+                } catch (ESBulkRejectedException e) {
+                    rejectedCount.addAndGet(request.numberOfActions());
+                    if (i >= retries) {
+                        throw e;
+                    }
+                    backoff(i);
+                    continue;
+                }
+                if (!response.hasFailures()) {
+                    return;
+                }
+
+                ESBulkRequest rejected = request.rejected(response);
+                if (rejected.numberOfActions() == 0 || i >= retries) {
+                    response.processFailBulkResponse("ES sync commit error ");
+                    return;
+                }
+                response.processFailBulkResponse("ES sync commit error ", true);
+                rejectedCount.addAndGet(rejected.numberOfActions());
+                backoff(i);
+                request = rejected;
+            }
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            throw e;
+        } finally {
+            long latency = System.currentTimeMillis() - begin;
+            bulkCount.incrementAndGet();
+            actionCount.addAndGet(actions);
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+            if (logger.isDebugEnabled()) {
+                logger.debug("bulk {} actions elapsed time: {}", actions, latency);
+            }
+        }
+    }
+
+    private void backoff(int i) {
+        try {
+            Thread.sleep(backoff << Math.min(i, 16));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void logStats() {
+        long bulks = bulkCount.get();
+        if (bulks == 0) {
+            return;
+        }
+        logger.info("ES bulk stats: bulks {}, actions {}, rejected {}, failed {}, avg latency {}ms, max latency {}ms",
+            bulks,
+            actionCount.get(),
+            rejectedCount.get(),
+            failedCount.get(),
+            totalLatency.get() / bulks,
+            maxLatency.get());
+    }
+
+    // ------ 统计信息 ------
+    public long getBulkCount() {
+        return bulkCount.get();
+    }
+
+    public long getActionCount() {
+        return actionCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getTotalLatency() {
+        return totalLatency.get();
+    }
+
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    // ------ get/set ------
+    public int getBulkActions() {
+        return bulkActions;
+    }
+
+    public void setBulkActions(int bulkActions) {
+        this.bulkActions = bulkActions;
+    }
+
+    public long getBulkSize() {
+        return bulkSize;
+    }
+
+    public void setBulkSize(long bulkSize) {
+        this.bulkSize = bulkSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getConcurrentRequests() {
+        return concurrentRequests;
+    }
+
+    public void setConcurrentRequests(int concurrentRequests) {
+        this.concurrentRequests = concurrentRequests;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public long getBackoff() {
+        return backoff;
+    }
+
+    public void setBackoff(long backoff) {
+        this.backoff = backoff;
+    }
+}
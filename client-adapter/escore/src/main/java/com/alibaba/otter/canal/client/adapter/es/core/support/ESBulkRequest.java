@@ -14,8 +14,24 @@ public interface ESBulkRequest {
 
     int numberOfActions();
 
+    /**
+     * 当前bulk请求的预估字节数
+     */
+    long estimatedSizeInBytes();
+
+    /**
+     * 提交bulk请求, 整个请求因es线程池满被拒绝(429)时抛出ESBulkRejectedException
+     */
     ESBulkResponse bulk();
 
+    /**
+     * 取出被es拒绝(429)的子请求, 组装为新的bulk请求用于重试
+     *
+     * @param response 本请求的返回
+     * @return 被拒绝的子请求, 没有时numberOfActions为0
+     */
+    ESBulkRequest rejected(ESBulkResponse response);
+
     interface ESIndexRequest {
 
         ESIndexRequest setSource(Map<String, ?> source);
@@ -39,5 +55,25 @@ public interface ESBulkRequest {
         boolean hasFailures();
 
         void processFailBulkResponse(String errorMsg);
+
+        /**
+         * 处理失败的子请求
+         *
+         * @param errorMsg 错误信息前缀
+         * @param skipRejected 是否跳过被拒绝(429)的子请求, 这些请求将被重试
+         */
+        void processFailBulkResponse(String errorMsg, boolean skipRejected);
+    }
+
+    /**
+     * 整个bulk请求被es拒绝(429)
+     */
+    class ESBulkRejectedException extends RuntimeException {
+
+        private static final long serialVersionUID = -4281535263571829313L;
+
+        public ESBulkRejectedException(Throwable cause){
+            super(cause);
+        }
     }
 }
@@ -50,6 +50,11 @@ public interface ESTemplate {
      */
     void commit();
 
+    /**
+     * 提交剩余的数据并释放资源
+     */
+    void destroy();
+
     Object getValFromRS(ESMapping mapping, ResultSet resultSet, String fieldName,
                         String columnName) throws SQLException;
 
@@ -0,0 +1,190 @@
+package com.alibaba.otter.canal.client.adapter.es.core.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ESBulkProcessor提交触发条件、429重试以及异常传递的测试
+ */
+public class ESBulkProcessorTest {
+
+    private final List<Integer> sizes    = Collections.synchronizedList(new ArrayList<>()); // 每次提交的bulk条数
+    private final List<Integer> accepted = Collections.synchronizedList(new ArrayList<>()); // 写入成功的数据
+    private final Set<Integer>  seen     = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean    rejectFirst;                                                 // 第一次收到的数据返回429
+    private volatile boolean    broken;                                                      // 模拟es不可用
+
+    @Test
+    public void testFlushByActions() {
+        ESBulkProcessor processor = new ESBulkProcessor(FakeBulkRequest::new);
+        processor.setBulkActions(10);
+        for (int i = 0; i < 25; i++) {
+            processor.add(new FakeIndexRequest(i));
+        }
+        processor.commit();
+        processor.close();
+
+        Assert.assertEquals(3, sizes.size());
+        Assert.assertEquals(25, sizes.stream().mapToInt(Integer::intValue).sum());
+        Assert.assertEquals(25, accepted.size());
+        // 单个bulk并发时保持提交顺序
+        for (int i = 0; i < 25; i++) {
+            Assert.assertEquals(i, accepted.get(i).intValue());
+        }
+        Assert.assertEquals(3, processor.getBulkCount());
+        Assert.assertEquals(25, processor.getActionCount());
+    }
+
+    @Test
+    public void testRejectedRetry() {
+        rejectFirst = true;
+        ESBulkProcessor processor = new ESBulkProcessor(FakeBulkRequest::new);
+        processor.setBulkActions(10);
+        processor.setConcurrentRequests(2);
+        processor.setBackoff(1);
+        for (int i = 0; i < 25; i++) {
+            processor.add(new FakeIndexRequest(i));
+        }
+        processor.commit();
+        processor.close();
+
+        Assert.assertEquals(25, new HashSet<>(accepted).size());
+        Assert.assertEquals(25, processor.getRejectedCount());
+        Assert.assertEquals(0, processor.getFailedCount());
+    }
+
+    @Test
+    public void testFailure() {
+        broken = true;
+        ESBulkProcessor processor = new ESBulkProcessor(FakeBulkRequest::new);
+        processor.setBulkActions(10);
+        for (int i = 0; i < 25; i++) {
+            processor.add(new FakeIndexRequest(i));
+        }
+        try {
+            processor.commit();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertEquals("es unavailable", e.getMessage());
+        }
+
+        // 异常只抛出一次, 恢复后可以继续提交
+        broken = false;
+        processor.add(new FakeIndexRequest(100));
+        processor.commit();
+        processor.close();
+        Assert.assertEquals(Collections.singletonList(100), accepted);
+    }
+
+    private static class FakeIndexRequest implements ESBulkRequest.ESIndexRequest {
+
+        private final int id;
+
+        FakeIndexRequest(int id){
+            this.id = id;
+        }
+
+        @Override
+        public ESBulkRequest.ESIndexRequest setSource(Map<String, ?> source) {
+            return this;
+        }
+
+        @Override
+        public ESBulkRequest.ESIndexRequest setRouting(String routing) {
+            return this;
+        }
+    }
+
+    private class FakeBulkRequest implements ESBulkRequest {
+
+        private final List<Integer> ids = new ArrayList<>();
+
+        @Override
+        public void resetBulk() {
+            ids.clear();
+        }
+
+        @Override
+        public ESBulkRequest add(ESIndexRequest esIndexRequest) {
+            ids.add(((FakeIndexRequest) esIndexRequest).id);
+            return this;
+        }
+
+        @Override
+        public ESBulkRequest add(ESUpdateRequest esUpdateRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ESBulkRequest add(ESDeleteRequest esDeleteRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int numberOfActions() {
+            return ids.size();
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return ids.size() * 100L;
+        }
+
+        @Override
+        public ESBulkResponse bulk() {
+            if (broken) {
+                throw new RuntimeException("es unavailable");
+            }
+            sizes.add(ids.size());
+            List<Integer> rejected = new ArrayList<>();
+            for (Integer id : ids) {
+                if (rejectFirst && seen.add(id)) {
+                    rejected.add(id);
+                } else {
+                    accepted.add(id);
+                }
+            }
+            return new FakeBulkResponse(rejected);
+        }
+
+        @Override
+        public ESBulkRequest rejected(ESBulkResponse response) {
+            FakeBulkRequest request = new FakeBulkRequest();
+            request.ids.addAll(((FakeBulkResponse) response).rejected);
+            return request;
+        }
+    }
+
+    private static class FakeBulkResponse implements ESBulkRequest.ESBulkResponse {
+
+        private final List<Integer> rejected;
+
+        FakeBulkResponse(List<Integer> rejected){
+            this.rejected = rejected;
+        }
+
+        @Override
+        public boolean hasFailures() {
+            return !rejected.isEmpty();
+        }
+
+        @Override
+        public void processFailBulkResponse(String errorMsg) {
+            processFailBulkResponse(errorMsg, false);
+        }
+
+        @Override
+        public void processFailBulkResponse(String errorMsg, boolean skipRejected) {
+            if (!skipRejected && !rejected.isEmpty()) {
+                throw new RuntimeException(errorMsg + rejected);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
@@ -24,6 +25,7 @@ import com.alibaba.otter.canal.client.adapter.hbase.service.HbaseEtlService;
 import com.alibaba.otter.canal.client.adapter.hbase.service.HbaseSyncService;
 import com.alibaba.otter.canal.client.adapter.hbase.support.HbaseTemplate;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlConflater;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.OuterAdapterConfig;
 import com.alibaba.otter.canal.client.adapter.support.SPI;
@@ -49,6 +51,8 @@ public class HbaseAdapter implements OuterAdapter {
 
     private Properties                              envProperties;
 
+    private boolean                                 conflateDml;                                                  // 是否按主键合并批次内的DML
+
     public Map<String, MappingConfig> getHbaseMapping() {
         return hbaseMapping;
     }
@@ -90,6 +94,7 @@ public class HbaseAdapter implements OuterAdapter {
             }
 
             Map<String, String> properties = configuration.getProperties();
+            conflateDml = BooleanUtils.toBoolean(properties.get("conflateDml"));
 
             Configuration hbaseConfig = HBaseConfiguration.create();
             properties.forEach(hbaseConfig::set);
@@ -108,6 +113,9 @@ public class HbaseAdapter implements OuterAdapter {
         if (dmls == null || dmls.isEmpty()) {
             return;
         }
+        if (conflateDml) {
+            dmls = DmlConflater.conflate(dmls);
+        }
         for (Dml dml : dmls) {
             sync(dml);
         }
@@ -81,7 +81,7 @@ public class HbaseEtlService extends AbstractEtlService {
             // 拼接sql
             String sql = "SELECT * FROM `" + config.getHbaseMapping().getDatabase() + "`.`" + hbaseMapping.getTable() + "`";
 
-            return super.importData(sql, params);
+            return super.importData(sql, getSplitKey(hbaseMapping.getDatabase(), hbaseMapping.getTable()), params);
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             errMsg.add("HBase etl error ==>" + e.getMessage());
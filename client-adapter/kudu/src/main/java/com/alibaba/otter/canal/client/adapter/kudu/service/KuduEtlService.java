@@ -46,7 +46,7 @@ public class KuduEtlService extends AbstractEtlService {
         }
         logger.info("{} etl is starting!", kuduMapping.getTargetTable());
         String sql = "SELECT * FROM " + kuduMapping.getDatabase() + "." + kuduMapping.getTable();
-        return importData(sql, params);
+        return importData(sql, getSplitKey(kuduMapping.getDatabase(), kuduMapping.getTable()), params);
     }
 
 
@@ -1,7 +1,10 @@
 package com.alibaba.otter.canal.adapter.launcher.loader;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 import org.slf4j.Logger;
@@ -26,6 +29,8 @@ import com.alibaba.otter.canal.protocol.Message;
  */
 public abstract class AbstractCanalAdapterWorker {
 
+    private static final int                  PIPELINE_QUEUE_SIZE = 4;                                         // 流水线各阶段的队列长度
+
     protected final Logger                    logger  = LoggerFactory.getLogger(this.getClass());
 
     protected String                          canalDestination;                                                // canal实例
@@ -38,6 +43,7 @@ public abstract class AbstractCanalAdapterWorker {
     protected Thread.UncaughtExceptionHandler handler = (t, e) -> logger.error("parse events has an error", e);
 
     protected SyncSwitch                      syncSwitch;
+    protected volatile CanalAdapterPipeline   pipeline;                                                        // MQ同步流水线
 
     public AbstractCanalAdapterWorker(List<List<OuterAdapter>> canalOuterAdapters){
         this.canalOuterAdapters = canalOuterAdapters;
@@ -46,98 +52,59 @@ public abstract class AbstractCanalAdapterWorker {
     }
 
     protected void writeOut(final Message message) {
-        List<Future<Boolean>> futures = new ArrayList<>();
-        // 组间适配器并行运行
-        canalOuterAdapters.forEach(outerAdapters -> {
-            final List<OuterAdapter> adapters = outerAdapters;
-            futures.add(groupInnerExecutorService.submit(() -> {
-                try {
-                    // 组内适配器穿行运行，尽量不要配置组内适配器
-                    adapters.forEach(adapter -> {
-                        long begin = System.currentTimeMillis();
-                        List<Dml> dmls = MessageUtil.parse4Dml(canalDestination, groupId, message);
-                        if (dmls != null) {
-                            batchSync(dmls, adapter);
-
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("{} elapsed time: {}",
-                                    adapter.getClass().getName(),
-                                    (System.currentTimeMillis() - begin));
-                            }
-                        }
-                    });
-                    return true;
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    return false;
-                }
-            }));
-
-            // 等待所有适配器写入完成
-            // 由于是组间并发操作，所以将阻塞直到耗时最久的工作组操作完成
-            RuntimeException exception = null;
-            for (Future<Boolean> future : futures) {
-                try {
-                    if (!future.get()) {
-                        exception = new RuntimeException("Outer adapter sync failed! ");
-                    }
-                } catch (Exception e) {
-                    exception = new RuntimeException(e);
-                }
-            }
-            if (exception != null) {
-                throw exception;
-            }
-        });
+        List<Dml> dmls = MessageUtil.parse4Dml(canalDestination, groupId, message);
+        if (dmls != null) {
+            writeOut(dmls);
+        }
     }
 
-    protected void writeOut(final List<FlatMessage> flatMessages) {
+    /**
+     * 将转换后的dml写入所有适配器组, 组间并行, 组内串行
+     *
+     * @param dmls
+     */
+    protected void writeOut(final List<Dml> dmls) {
         List<Future<Boolean>> futures = new ArrayList<>();
         // 组间适配器并行运行
-        canalOuterAdapters.forEach(outerAdapters -> {
-            futures.add(groupInnerExecutorService.submit(() -> {
-                try {
-                    // 组内适配器穿行运行，尽量不要配置组内适配器
-                    outerAdapters.forEach(adapter -> {
-                        long begin = System.currentTimeMillis();
-                        List<Dml> dmls = MessageUtil.flatMessage2Dml(canalDestination, groupId, flatMessages);
-                        batchSync(dmls, adapter);
-
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("{} elapsed time: {}",
-                                adapter.getClass().getName(),
-                                (System.currentTimeMillis() - begin));
-                        }
-                    });
-                    return true;
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    return false;
-                }
-            }));
-
-            // 等待所有适配器写入完成
-            // 由于是组间并发操作，所以将阻塞直到耗时最久的工作组操作完成
-            RuntimeException exception = null;
-            for (Future<Boolean> future : futures) {
-                try {
-                    if (!future.get()) {
-                        exception = new RuntimeException("Outer adapter sync failed! ");
+        canalOuterAdapters.forEach(outerAdapters -> futures.add(groupInnerExecutorService.submit(() -> {
+            try {
+                // 组内适配器穿行运行，尽量不要配置组内适配器
+                outerAdapters.forEach(adapter -> {
+                    long begin = System.currentTimeMillis();
+                    batchSync(dmls, adapter);
+
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("{} elapsed time: {}",
+                            adapter.getClass().getName(),
+                            (System.currentTimeMillis() - begin));
                     }
-                } catch (Exception e) {
-                    exception = new RuntimeException(e);
-                }
+                });
+                return true;
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                return false;
             }
-            if (exception != null) {
-                throw exception;
+        })));
+
+        // 等待所有适配器写入完成
+        // 由于是组间并发操作，所以将阻塞直到耗时最久的工作组操作完成
+        RuntimeException exception = null;
+        for (Future<Boolean> future : futures) {
+            try {
+                if (!future.get()) {
+                    exception = new RuntimeException("Outer adapter sync failed! ");
+                }
+            } catch (Exception e) {
+                exception = new RuntimeException(e);
             }
-        });
+        }
+        if (exception != null) {
+            throw exception;
+        }
     }
 
-    @SuppressWarnings("unchecked")
     protected boolean mqWriteOutData(int retry, long timeout, int i, final boolean flatMessage,
                                      CanalMQConnector connector) {
-        ExecutorService workerExecutor =  Util.newSingleDaemonThreadExecutor(5000);
         try {
             List<?> messages;
             if (!flatMessage) {
@@ -146,21 +113,16 @@ public abstract class AbstractCanalAdapterWorker {
                 messages = connector.getFlatListWithoutAck(100L, TimeUnit.MILLISECONDS);
             }
             if (messages != null && !messages.isEmpty()) {
-                Future<Boolean> future = workerExecutor.submit(() -> {
-                    if (flatMessage) {
-                        // batch write
-                        writeOut((List<FlatMessage>) messages);
-                        // FIXME xxx
-                        // messages.forEach((message ->
-                        // System.out.println(JSON.toJSONString(message))));
-                    } else {
-                        for (final Object message : messages) {
-                            writeOut((Message) message);
-                        }
-                    }
-                    return true;
-                });
-
+                if (pipeline == null) {
+                    pipeline = new CanalAdapterPipeline(canalDestination + (groupId == null ? "" : "-" + groupId),
+                        PIPELINE_QUEUE_SIZE,
+                        canalClientConfig.getSyncBatchSize(),
+                        this::convert,
+                        this::writeOut);
+                    pipeline.start();
+                }
+                // 转换和写入交给常驻的流水线线程, 当前线程等待写入完成后按顺序ack
+                Future<Boolean> future = pipeline.submit(messages);
                 try {
                     future.get(timeout, TimeUnit.MILLISECONDS);
                 } catch (Exception e) {
@@ -184,12 +146,34 @@ public abstract class AbstractCanalAdapterWorker {
             } catch (InterruptedException e1) {
                 // ignore
             }
-        } finally {
-            workerExecutor.shutdown();
         }
         return false;
     }
 
+    /**
+     * 单条MQ消息转换为dml
+     */
+    private List<Dml> convert(Object message) {
+        if (message instanceof FlatMessage) {
+            Dml dml = MessageUtil.flatMessage2Dml(canalDestination, groupId, (FlatMessage) message);
+            return dml == null ? null : Collections.singletonList(dml);
+        } else {
+            return MessageUtil.parse4Dml(canalDestination, groupId, (Message) message);
+        }
+    }
+
+    /**
+     * 流水线各阶段的队列长度
+     */
+    public Map<String, Integer> getPipelineQueueSize() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        if (pipeline != null) {
+            result.put("convert", pipeline.getConvertQueueSize());
+            result.put("write", pipeline.getWriteQueueSize());
+        }
+        return result;
+    }
+
     /**
      * 分批同步
      *
@@ -251,6 +235,9 @@ public abstract class AbstractCanalAdapterWorker {
                     // ignore
                 }
             }
+            if (pipeline != null) {
+                pipeline.stop();
+            }
             groupInnerExecutorService.shutdown();
             logger.info("destination {} adapters worker thread dead!", canalDestination);
             canalOuterAdapters.forEach(outerAdapters -> outerAdapters.forEach(OuterAdapter::destroy));
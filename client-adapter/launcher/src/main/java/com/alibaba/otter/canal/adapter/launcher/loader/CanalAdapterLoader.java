@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -202,6 +203,15 @@ public class CanalAdapterLoader {
         }
     }
 
+    /**
+     * 各MQ适配器流水线的队列长度
+     */
+    public Map<String, Map<String, Integer>> getPipelineQueueSize() {
+        Map<String, Map<String, Integer>> result = new TreeMap<>();
+        canalMQWorker.forEach((key, worker) -> result.put(key, worker.getPipelineQueueSize()));
+        return result;
+    }
+
     /**
      * 销毁所有适配器 为防止canal实例太多造成销毁阻塞, 并行销毁
      */
@@ -0,0 +1,223 @@
+package com.alibaba.otter.canal.adapter.launcher.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.adapter.support.Dml;
+
+/**
+ * MQ适配器的同步流水线: poll -> convert -> write -> ack
+ *
+ * <pre>
+ * 1. poll/ack: 在worker线程中执行, connector非线程安全且get/ack必须交替调用, ack按poll的顺序执行
+ * 2. convert: 常驻线程, 将消息转换为dml, 每个批次只转换一次, 所有适配器组共用转换结果
+ * 3. write: 常驻线程, 按syncBatchSize切分后的dml依次写入各适配器组
+ * 各阶段之间为有界队列, 下游阻塞时上游随之阻塞; convert与write之间按分片流水执行
+ * </pre>
+ */
+public class CanalAdapterPipeline {
+
+    private static final Logger               logger = LoggerFactory.getLogger(CanalAdapterPipeline.class);
+
+    private final String                      name;
+    private final int                         batchSize;                                             // 每个写入分片的行数
+    private final Function<Object, List<Dml>> converter;                                             // 单条消息转换为dml
+    private final Consumer<List<Dml>>         writer;                                                // 写入所有适配器组
+
+    private final BlockingQueue<Batch>        convertQueue;                                          // poll -> convert
+    private final BlockingQueue<Chunk>        writeQueue;                                            // convert -> write
+
+    private Thread                            convertThread;
+    private Thread                            writeThread;
+    private volatile boolean                  running = false;
+
+    public CanalAdapterPipeline(String name, int queueSize, int batchSize, Function<Object, List<Dml>> converter,
+                                Consumer<List<Dml>> writer){
+        this.name = name;
+        this.batchSize = batchSize;
+        this.converter = converter;
+        this.writer = writer;
+        this.convertQueue = new ArrayBlockingQueue<>(queueSize);
+        this.writeQueue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        convertThread = new Thread(this::convertLoop, "pipeline-convert-" + name);
+        convertThread.setDaemon(true);
+        convertThread.start();
+        writeThread = new Thread(this::writeLoop, "pipeline-write-" + name);
+        writeThread.setDaemon(true);
+        writeThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        convertThread.interrupt();
+        writeThread.interrupt();
+        try {
+            convertThread.join();
+            writeThread.join();
+        } catch (InterruptedException e) {
+            // ignore
+        }
+        convertQueue.forEach(batch -> batch.cancel(true));
+        writeQueue.forEach(chunk -> chunk.batch.cancel(true));
+        convertQueue.clear();
+        writeQueue.clear();
+    }
+
+    /**
+     * 提交一次poll到的消息, 返回的future在所有消息写入完成后结束; 取消future后未写入的分片将被丢弃
+     */
+    public CompletableFuture<Boolean> submit(List<?> messages) throws InterruptedException {
+        Batch batch = new Batch(messages);
+        if (!running) {
+            batch.completeExceptionally(new IllegalStateException("pipeline " + name + " is not running"));
+            return batch;
+        }
+        convertQueue.put(batch);
+        return batch;
+    }
+
+    /**
+     * 等待转换的批次数
+     */
+    public int getConvertQueueSize() {
+        return convertQueue.size();
+    }
+
+    /**
+     * 等待写入的分片数
+     */
+    public int getWriteQueueSize() {
+        return writeQueue.size();
+    }
+
+    private void convertLoop() {
+        while (running) {
+            Batch batch;
+            try {
+                batch = convertQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            try {
+                List<Dml> dmls = new ArrayList<>();
+                int len = 0;
+                for (Object message : batch.messages) {
+                    if (batch.isDone()) {
+                        break;
+                    }
+                    List<Dml> converted = converter.apply(message);
+                    if (converted == null) {
+                        continue;
+                    }
+                    for (Dml dml : converted) {
+                        dmls.add(dml);
+                        len += dml.getData() == null || dml.getData().isEmpty() ? 1 : dml.getData().size();
+                    }
+                    if (len >= batchSize) {
+                        putChunk(new Chunk(batch, dmls, false));
+                        dmls = new ArrayList<>();
+                        len = 0;
+                    }
+                }
+                putChunk(new Chunk(batch, dmls, true));
+            } catch (InterruptedException e) {
+                batch.cancel(true);
+                break;
+            } catch (Throwable e) {
+                batch.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void putChunk(Chunk chunk) throws InterruptedException {
+        // 批次已超时或失败时不再阻塞等待写入线程
+        while (!chunk.batch.isDone()) {
+            if (writeQueue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            Chunk chunk;
+            try {
+                chunk = writeQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            Batch batch = chunk.batch;
+            if (batch.isDone()) {
+                continue;
+            }
+            try {
+                if (!chunk.dmls.isEmpty()) {
+                    long begin = System.currentTimeMillis();
+                    writer.accept(chunk.dmls);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("pipeline {} write {} dmls elapsed time: {}, queue size: convert {}, write {}",
+                            name,
+                            chunk.dmls.size(),
+                            (System.currentTimeMillis() - begin),
+                            getConvertQueueSize(),
+                            getWriteQueueSize());
+                    }
+                }
+                if (chunk.last) {
+                    batch.complete(true);
+                }
+            } catch (Throwable e) {
+                batch.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 一次poll到的消息
+     */
+    private static class Batch extends CompletableFuture<Boolean> {
+
+        private final List<?> messages;
+
+        Batch(List<?> messages){
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * 按batchSize切分后的dml
+     */
+    private static class Chunk {
+
+        private final Batch     batch;
+        private final List<Dml> dmls;
+        private final boolean   last;
+
+        Chunk(Batch batch, List<Dml> dmls, boolean last){
+            this.batch = batch;
+            this.dmls = dmls;
+            this.last = last;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.alibaba.otter.canal.adapter.launcher.loader;
 
+import java.util.Collections;
+import java.util.Map;
+
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
@@ -92,4 +95,15 @@ public class CanalAdapterService {
             logger.info("## canal client adapters are down.");
         }
     }
+
+    /**
+     * 各MQ适配器流水线的队列长度
+     */
+    public Map<String, Map<String, Integer>> getPipelineQueueSize() {
+        CanalAdapterLoader loader = adapterLoader;
+        if (loader == null) {
+            return Collections.emptyMap();
+        }
+        return loader.getPipelineQueueSize();
+    }
 }
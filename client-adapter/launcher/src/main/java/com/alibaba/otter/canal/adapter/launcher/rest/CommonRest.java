@@ -22,6 +22,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.alibaba.otter.canal.adapter.launcher.common.EtlLock;
 import com.alibaba.otter.canal.adapter.launcher.common.SyncSwitch;
 import com.alibaba.otter.canal.adapter.launcher.config.AdapterCanalConfig;
+import com.alibaba.otter.canal.adapter.launcher.loader.CanalAdapterService;
 import com.alibaba.otter.canal.client.adapter.OuterAdapter;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.ExtensionLoader;
@@ -49,6 +50,8 @@ public class CommonRest {
 
     @Resource
     private AdapterCanalConfig            adapterCanalConfig;
+    @Resource
+    private CanalAdapterService           canalAdapterService;
 
     @PostConstruct
     public void init() {
@@ -172,6 +175,14 @@ public class CommonRest {
         return result;
     }
 
+    /**
+     * 返回MQ适配器流水线各阶段的队列长度 curl http://127.0.0.1:8081/pipeline
+     */
+    @GetMapping("/pipeline")
+    public Map<String, Map<String, Integer>> pipeline() {
+        return canalAdapterService.getPipelineQueueSize();
+    }
+
     /**
      * 实例同步开关 curl http://127.0.0.1:8081/syncSwitch/example/off -X PUT
      *
@@ -0,0 +1,304 @@
+package com.alibaba.otter.canal.adapter.launcher.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+
+import com.alibaba.otter.canal.adapter.launcher.config.SpringContext;
+import com.alibaba.otter.canal.client.CanalMQConnector;
+import com.alibaba.otter.canal.client.adapter.OuterAdapter;
+import com.alibaba.otter.canal.client.adapter.support.CanalClientConfig;
+import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+
+/**
+ * MQ适配器同步流水线的测试: 分片、取消、异常以及ack/rollback
+ */
+public class CanalAdapterPipelineTest {
+
+    private final List<List<Dml>> writes = new CopyOnWriteArrayList<>();
+    private CanalAdapterPipeline  pipeline;
+    private TestWorker            worker;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+        if (worker != null) {
+            if (worker.pipeline != null) {
+                worker.pipeline.stop();
+            }
+            worker.groupInnerExecutorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChunking() throws Exception {
+        pipeline = start(3, this::rows, writes::add);
+        // 按行数切分, 每个分片至少batchSize行, 转换结果为null的消息被忽略
+        CompletableFuture<Boolean> future = pipeline.submit(Arrays.asList(1, 1, 1, 1, null, 2, 5, 1));
+        Assert.assertTrue(future.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(3, 3, 5, 1), chunkSizes());
+        Assert.assertEquals(Arrays.asList(1, 1, 1), rowCounts(writes.get(0)));
+        Assert.assertEquals(Arrays.asList(1, 2), rowCounts(writes.get(1)));
+        Assert.assertEquals(Collections.singletonList(5), rowCounts(writes.get(2)));
+        Assert.assertEquals(Collections.singletonList(1), rowCounts(writes.get(3)));
+    }
+
+    @Test
+    public void testBatchesInOrder() throws Exception {
+        pipeline = start(1, this::rows, writes::add);
+        CompletableFuture<Boolean> first = pipeline.submit(Arrays.asList(1, 2));
+        CompletableFuture<Boolean> second = pipeline.submit(Arrays.asList(3));
+        Assert.assertTrue(second.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(first.isDone());
+        Assert.assertEquals(Arrays.asList(1, 2, 3), rowCounts(flatten()));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = start(1, this::rows, dmls -> {
+            writes.add(dmls);
+            writing.countDown();
+            await(release);
+        });
+        CompletableFuture<Boolean> future = pipeline.submit(Arrays.asList(1, 2, 3, 4, 5));
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(future.cancel(true));
+        release.countDown();
+
+        // 取消之后剩余的分片不再写入, 后续批次不受影响
+        Assert.assertTrue(pipeline.submit(Arrays.asList(6)).get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(1, 6), rowCounts(flatten()));
+    }
+
+    @Test
+    public void testWriteError() throws Exception {
+        pipeline = start(1, this::rows, dmls -> {
+            if (dmls.get(0).getData().size() == 2) {
+                throw new RuntimeException("write failed");
+            }
+            writes.add(dmls);
+        });
+        CompletableFuture<Boolean> failed = pipeline.submit(Arrays.asList(1, 2, 3));
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals("write failed", e.getCause().getMessage());
+        }
+
+        Assert.assertTrue(pipeline.submit(Arrays.asList(4)).get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(rowCounts(flatten()).contains(3));
+        Assert.assertTrue(rowCounts(flatten()).contains(4));
+    }
+
+    @Test
+    public void testConvertError() throws Exception {
+        pipeline = start(10, message -> {
+            throw new IllegalArgumentException("bad message");
+        }, writes::add);
+        try {
+            pipeline.submit(Arrays.asList(1)).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        Assert.assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        pipeline = start(1, this::rows, dmls -> {
+            writing.countDown();
+            await(new CountDownLatch(1));
+        });
+        CompletableFuture<Boolean> first = pipeline.submit(Arrays.asList(1));
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> second = pipeline.submit(Arrays.asList(2));
+        pipeline.stop();
+        pipeline = null;
+
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertTrue(second.isCancelled());
+    }
+
+    @Test
+    public void testNotRunning() throws Exception {
+        CanalAdapterPipeline stopped = new CanalAdapterPipeline("test", 1, 1, this::rows, writes::add);
+        try {
+            stopped.submit(Arrays.asList(1)).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testAckAfterWrite() {
+        OuterAdapter adapter = Mockito.mock(OuterAdapter.class);
+        CanalMQConnector connector = connector(2);
+        worker = new TestWorker(adapter);
+        Assert.assertTrue(worker.mqWriteOutData(3, 5000L, 0, true, connector));
+
+        Mockito.verify(adapter).sync(Mockito.argThat(new DmlCountMatcher(2)));
+        Mockito.verify(connector).ack();
+        Mockito.verify(connector, Mockito.never()).rollback();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRollbackOnError() {
+        OuterAdapter adapter = Mockito.mock(OuterAdapter.class);
+        Mockito.doThrow(new RuntimeException("sync failed")).when(adapter).sync(Mockito.anyList());
+        CanalMQConnector connector = connector(1);
+        worker = new TestWorker(adapter);
+
+        // 未到最后一次重试时rollback, 重新消费
+        Assert.assertFalse(worker.mqWriteOutData(3, 5000L, 0, true, connector));
+        Mockito.verify(connector).rollback();
+        Mockito.verify(connector, Mockito.never()).ack();
+
+        // 最后一次重试仍然失败时ack跳过
+        Assert.assertTrue(worker.mqWriteOutData(3, 5000L, 2, true, connector));
+        Mockito.verify(connector).ack();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRollbackOnTimeout() {
+        OuterAdapter adapter = Mockito.mock(OuterAdapter.class);
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(1000);
+            return null;
+        }).when(adapter).sync(Mockito.anyList());
+        CanalMQConnector connector = connector(1);
+        worker = new TestWorker(adapter);
+
+        Assert.assertFalse(worker.mqWriteOutData(3, 100L, 0, true, connector));
+        Mockito.verify(connector).rollback();
+        Mockito.verify(connector, Mockito.never()).ack();
+    }
+
+    private CanalAdapterPipeline start(int batchSize, Function<Object, List<Dml>> converter,
+                                       Consumer<List<Dml>> writer) {
+        CanalAdapterPipeline pipeline = new CanalAdapterPipeline("test", 2, batchSize, converter, writer);
+        pipeline.start();
+        return pipeline;
+    }
+
+    /**
+     * 消息为行数, 转换为一个对应行数的dml
+     */
+    private List<Dml> rows(Object message) {
+        if (message == null) {
+            return null;
+        }
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int i = 0; i < (Integer) message; i++) {
+            data.add(Collections.singletonMap("id", i));
+        }
+        Dml dml = new Dml();
+        dml.setData(data);
+        return Collections.singletonList(dml);
+    }
+
+    private List<Integer> chunkSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<Dml> dmls : writes) {
+            int len = 0;
+            for (Dml dml : dmls) {
+                len += dml.getData().size();
+            }
+            sizes.add(len);
+        }
+        return sizes;
+    }
+
+    private List<Dml> flatten() {
+        List<Dml> dmls = new ArrayList<>();
+        writes.forEach(dmls::addAll);
+        return dmls;
+    }
+
+    private static List<Integer> rowCounts(List<Dml> dmls) {
+        List<Integer> counts = new ArrayList<>();
+        for (Dml dml : dmls) {
+            counts.add(dml.getData().size());
+        }
+        return counts;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static CanalMQConnector connector(int count) {
+        List<FlatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FlatMessage message = new FlatMessage(i);
+            message.setDatabase("test");
+            message.setTable("t");
+            message.setType("INSERT");
+            messages.add(message);
+        }
+        CanalMQConnector connector = Mockito.mock(CanalMQConnector.class);
+        Mockito.when(connector.getFlatListWithoutAck(Mockito.anyLong(), Mockito.any(TimeUnit.class)))
+            .thenReturn(messages);
+        return connector;
+    }
+
+    private static class DmlCountMatcher extends org.mockito.ArgumentMatcher<List<Dml>> {
+
+        private final int count;
+
+        DmlCountMatcher(int count){
+            this.count = count;
+        }
+
+        @Override
+        public boolean matches(Object argument) {
+            return argument instanceof List && ((List<?>) argument).size() == count;
+        }
+    }
+
+    private static class TestWorker extends AbstractCanalAdapterWorker {
+
+        static {
+            new SpringContext().setApplicationContext(Mockito.mock(ApplicationContext.class));
+        }
+
+        TestWorker(OuterAdapter adapter){
+            super(Collections.singletonList(Collections.singletonList(adapter)));
+            this.canalDestination = "example";
+            this.canalClientConfig = new CanalClientConfig();
+        }
+
+        @Override
+        protected void process() {
+        }
+    }
+}
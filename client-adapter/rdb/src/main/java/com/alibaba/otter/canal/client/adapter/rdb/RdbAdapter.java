@@ -2,10 +2,13 @@ package com.alibaba.otter.canal.client.adapter.rdb;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.BooleanUtils;
@@ -24,6 +27,7 @@ import com.alibaba.otter.canal.client.adapter.rdb.service.RdbMirrorDbSyncService
 import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlConflater;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.OuterAdapterConfig;
 import com.alibaba.otter.canal.client.adapter.support.SPI;
@@ -53,6 +57,8 @@ public class RdbAdapter implements OuterAdapter {
 
     private Properties                              envProperties;
 
+    private boolean                                 conflateDml;                                                // 是否按主键合并批次内的DML
+
     public Map<String, MappingConfig> getRdbMapping() {
         return rdbMapping;
     }
@@ -125,6 +131,9 @@ public class RdbAdapter implements OuterAdapter {
         dataSource.setTimeBetweenEvictionRunsMillis(60000);
         dataSource.setMinEvictableIdleTimeMillis(300000);
         dataSource.setUseUnfairLock(true);
+        // 缓存PreparedStatement, 连接归还后再次获取时可复用batchExecutor中的statement
+        dataSource.setPoolPreparedStatements(true);
+        dataSource.setMaxPoolPreparedStatementPerConnectionSize(64);
         // List<String> array = new ArrayList<>();
         // array.add("set names utf8mb4;");
         // dataSource.setConnectionInitSqls(array);
@@ -136,17 +145,20 @@ public class RdbAdapter implements OuterAdapter {
         }
 
         String threads = properties.get("threads");
-        // String commitSize = properties.get("commitSize");
+        String commitSize = properties.get("commitSize");
 
         boolean skipDupException = BooleanUtils.toBoolean(configuration.getProperties()
             .getOrDefault("skipDupException", "true"));
+        conflateDml = BooleanUtils.toBoolean(properties.get("conflateDml"));
         rdbSyncService = new RdbSyncService(dataSource,
             threads != null ? Integer.valueOf(threads) : null,
+            commitSize != null ? Integer.valueOf(commitSize) : null,
             skipDupException);
 
         rdbMirrorDbSyncService = new RdbMirrorDbSyncService(mirrorDbConfigCache,
             dataSource,
             threads != null ? Integer.valueOf(threads) : null,
+            commitSize != null ? Integer.valueOf(commitSize) : null,
             rdbSyncService.getColumnsTypeCache(),
             skipDupException);
 
@@ -165,6 +177,9 @@ public class RdbAdapter implements OuterAdapter {
             return;
         }
         try {
+            if (conflateDml) {
+                dmls = DmlConflater.conflate(dmls, this::getKeyColumns);
+            }
             rdbSyncService.sync(mappingConfigCache, dmls, envProperties);
             rdbMirrorDbSyncService.sync(dmls);
         } catch (Exception e) {
@@ -172,6 +187,33 @@ public class RdbAdapter implements OuterAdapter {
         }
     }
 
+    /**
+     * 取dml合并时使用的主键, 有表映射配置时取目标表主键对应的源字段, 否则取源表主键
+     */
+    private Collection<String> getKeyColumns(Dml dml) {
+        String destination = StringUtils.trimToEmpty(dml.getDestination());
+        String groupId = StringUtils.trimToEmpty(dml.getGroupId());
+        Map<String, MappingConfig> configMap;
+        if (envProperties != null && !"tcp".equalsIgnoreCase(envProperties.getProperty("canal.conf.mode"))) {
+            configMap = mappingConfigCache.get(destination + "-" + groupId + "_" + dml.getDatabase() + "-"
+                                               + dml.getTable());
+        } else {
+            configMap = mappingConfigCache.get(destination + "_" + dml.getDatabase() + "-" + dml.getTable());
+        }
+        if (configMap == null || configMap.isEmpty()) {
+            return dml.getPkNames();
+        }
+
+        Set<String> keyColumns = new LinkedHashSet<>();
+        for (MappingConfig config : configMap.values()) {
+            for (Map.Entry<String, String> entry : config.getDbMapping().getTargetPk().entrySet()) {
+                String srcColumnName = entry.getValue();
+                keyColumns.add(srcColumnName != null ? srcColumnName : Util.cleanColumn(entry.getKey()));
+            }
+        }
+        return keyColumns;
+    }
+
     /**
      * ETL方法
      *
@@ -40,7 +40,7 @@ public class RdbEtlService extends AbstractEtlService {
     public EtlResult importData(List<String> params) {
         DbMapping dbMapping = config.getDbMapping();
         String sql = "SELECT * FROM " + dbMapping.getDatabase() + "." + dbMapping.getTable();
-        return importData(sql, params);
+        return importData(sql, getSplitKey(dbMapping.getDatabase(), dbMapping.getTable()), params);
     }
 
     /**
@@ -45,7 +45,6 @@ public class RdbSyncService {
     private Map<String, Map<String, Integer>> columnsTypeCache;
 
     private int                               threads = 3;
-    private boolean                           skipDupException;
 
     private List<SyncItem>[]                  dmlsPartition;
     private BatchExecutor[]                   batchExecutors;
@@ -60,14 +59,17 @@ public class RdbSyncService {
     }
 
     public RdbSyncService(DataSource dataSource, Integer threads, boolean skipDupException){
-        this(dataSource, threads, new ConcurrentHashMap<>(), skipDupException);
+        this(dataSource, threads, null, new ConcurrentHashMap<>(), skipDupException);
+    }
+
+    public RdbSyncService(DataSource dataSource, Integer threads, Integer commitSize, boolean skipDupException){
+        this(dataSource, threads, commitSize, new ConcurrentHashMap<>(), skipDupException);
     }
 
     @SuppressWarnings("unchecked")
-    public RdbSyncService(DataSource dataSource, Integer threads, Map<String, Map<String, Integer>> columnsTypeCache,
-                          boolean skipDupException){
+    public RdbSyncService(DataSource dataSource, Integer threads, Integer commitSize,
+                          Map<String, Map<String, Integer>> columnsTypeCache, boolean skipDupException){
         this.columnsTypeCache = columnsTypeCache;
-        this.skipDupException = skipDupException;
         try {
             if (threads != null) {
                 this.threads = threads;
@@ -78,6 +80,10 @@ public class RdbSyncService {
             for (int i = 0; i < this.threads; i++) {
                 dmlsPartition[i] = new ArrayList<>();
                 batchExecutors[i] = new BatchExecutor(dataSource);
+                batchExecutors[i].setSkipDupException(skipDupException);
+                if (commitSize != null) {
+                    batchExecutors[i].setCommitSize(commitSize);
+                }
                 executorThreads[i] = Executors.newSingleThreadExecutor();
             }
         } catch (Exception e) {
@@ -273,17 +279,8 @@ public class RdbSyncService {
             BatchExecutor.setValue(values, type, value);
         }
 
-        try {
-            batchExecutor.execute(insertSql.toString(), values);
-        } catch (SQLException e) {
-            if (skipDupException
-                && (e.getMessage().contains("Duplicate entry") || e.getMessage().startsWith("ORA-00001:"))) {
-                // ignore
-                // TODO 增加更多关系数据库的主键冲突的错误码
-            } else {
-                throw e;
-            }
-        }
+        // 主键冲突由batchExecutor根据skipDupException处理
+        batchExecutor.addInsert(insertSql.toString(), values);
         if (logger.isTraceEnabled()) {
             logger.trace("Insert into target table, sql: {}", insertSql);
         }
@@ -345,7 +342,7 @@ public class RdbSyncService {
 
         // 拼接主键
         appendCondition(dbMapping, updateSql, ctype, values, data, old);
-        batchExecutor.execute(updateSql.toString(), values);
+        batchExecutor.addBatch(updateSql.toString(), values);
         if (logger.isTraceEnabled()) {
             logger.trace("Update target table, sql: {}", updateSql);
         }
@@ -373,7 +370,7 @@ public class RdbSyncService {
         List<Map<String, ?>> values = new ArrayList<>();
         // 拼接主键
         appendCondition(dbMapping, sql, ctype, values, data);
-        batchExecutor.execute(sql.toString(), values);
+        batchExecutor.addBatch(sql.toString(), values);
         if (logger.isTraceEnabled()) {
             logger.trace("Delete from target table, sql: {}", sql);
         }
@@ -4,29 +4,61 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * sql批量执行器
  *
+ * <pre>
+ * 1. 连续的相同sql会累积绑定参数, 在sql变化、达到commitSize或者commit时通过executeBatch一次提交
+ * 2. 同一个连接内按sql缓存PreparedStatement
+ * 3. 目标库支持多行VALUES时, 连续的相同insert会合并为 INSERT ... VALUES (...),(...) 执行
+ * </pre>
+ *
  * @author rewerma 2018-11-7 下午06:45:49
  * @version 1.0.0
  */
 public class BatchExecutor implements Closeable {
 
-    private static final Logger logger = LoggerFactory.getLogger(BatchExecutor.class);
+    private static final Logger                 logger                  = LoggerFactory.getLogger(BatchExecutor.class);
+
+    // 支持 INSERT ... VALUES (...),(...) 写法的目标库
+    private static final Set<String>            MULTI_VALUES_DATABASES  = new HashSet<>(Arrays.asList("mysql",
+        "mariadb",
+        "postgresql",
+        "h2"));
+    // 单条sql的最大绑定参数个数, 取postgresql的限制
+    private static final int                    MAX_PARAMETERS          = 32767;
+    private static final int                    MAX_CACHED_STATEMENTS   = 64;
+
+    private DataSource                          dataSource;
+    private Connection                          conn;
+    private AtomicInteger                       idx                     = new AtomicInteger(0);
 
-    private DataSource          dataSource;
-    private Connection          conn;
-    private AtomicInteger       idx    = new AtomicInteger(0);
+    private int                                 commitSize              = 1000;                                        // 单次executeBatch的最大行数
+    private boolean                             skipDupException;                                                      // insert主键冲突时是否忽略
+    private Boolean                             multiValuesInsert;                                                     // 目标库是否支持多行VALUES
+
+    private Map<String, PreparedStatement>      statements              = new StatementCache();
+    // 当前累积的批次
+    private String                              batchSql;
+    private boolean                             batchInsert;
+    private List<List<Map<String, ?>>>          batchValues             = new ArrayList<>();
 
     public BatchExecutor(DataSource dataSource){
         this.dataSource = dataSource;
@@ -51,21 +83,168 @@ public class BatchExecutor implements Closeable {
         values.add(valueItem);
     }
 
+    /**
+     * 判断是否为主键冲突的异常
+     */
+    public static boolean isDuplicateException(SQLException e) {
+        // TODO 增加更多关系数据库的主键冲突的错误码
+        String message = e.getMessage();
+        return message != null && (message.contains("Duplicate entry") || message.startsWith("ORA-00001:"));
+    }
+
+    /**
+     * 立即执行, 执行前会先提交之前累积的批次
+     */
     public void execute(String sql, List<Map<String, ?>> values) throws SQLException {
-        PreparedStatement pstmt = getConn().prepareStatement(sql);
+        flush();
+        executeBatch(sql, Collections.<List<Map<String, ?>>> singletonList(values));
+    }
+
+    /**
+     * 加入批次, 与上一条sql相同时累积参数, 否则先提交之前的批次
+     */
+    public void addBatch(String sql, List<Map<String, ?>> values) throws SQLException {
+        addBatch(sql, values, false);
+    }
+
+    /**
+     * 加入insert批次, 目标库支持时会合并为多行VALUES执行
+     *
+     * @param sql 单行的insert语句, 以 VALUES (?,...,?) 结尾
+     */
+    public void addInsert(String sql, List<Map<String, ?>> values) throws SQLException {
+        addBatch(sql, values, true);
+    }
+
+    private void addBatch(String sql, List<Map<String, ?>> values, boolean insert) throws SQLException {
+        if (!batchValues.isEmpty() && (insert != batchInsert || !sql.equals(batchSql))) {
+            flush();
+        }
+
+        batchSql = sql;
+        batchInsert = insert;
+        batchValues.add(values);
+        if (batchValues.size() >= commitSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 提交当前累积的批次
+     */
+    public void flush() throws SQLException {
+        if (batchValues.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (batchInsert) {
+                executeInsert(batchSql, batchValues);
+            } else {
+                executeBatch(batchSql, batchValues);
+            }
+        } finally {
+            batchSql = null;
+            batchValues.clear();
+        }
+    }
+
+    private void executeInsert(String sql, List<List<Map<String, ?>>> rows) throws SQLException {
+        try {
+            int columns = rows.get(0).size();
+            if (rows.size() > 1 && columns > 0 && isMultiValuesInsert()) {
+                int rowsPerSql = Math.max(1, Math.min(commitSize, MAX_PARAMETERS / columns));
+                for (int from = 0; from < rows.size(); from += rowsPerSql) {
+                    executeMultiValues(sql, rows.subList(from, Math.min(rows.size(), from + rowsPerSql)));
+                }
+            } else {
+                executeBatch(sql, rows);
+            }
+        } catch (SQLException e) {
+            if (!skipDupException || !isDuplicateException(e)) {
+                throw e;
+            }
+
+            // 批量写入有主键冲突时逐行重试, 忽略冲突的行
+            for (List<Map<String, ?>> row : rows) {
+                try {
+                    executeBatch(sql, Collections.<List<Map<String, ?>>> singletonList(row));
+                } catch (SQLException e1) {
+                    if (!isDuplicateException(e1)) {
+                        throw e1;
+                    }
+                }
+            }
+        }
+    }
+
+    private void executeMultiValues(String sql, List<List<Map<String, ?>>> rows) throws SQLException {
+        if (rows.size() == 1) {
+            executeBatch(sql, rows);
+            return;
+        }
+
+        String placeholders = sql.substring(sql.lastIndexOf('('));
+        StringBuilder multiValuesSql = new StringBuilder(sql.length() + (placeholders.length() + 1) * rows.size());
+        multiValuesSql.append(sql);
+        for (int i = 1; i < rows.size(); i++) {
+            multiValuesSql.append(',').append(placeholders);
+        }
+
+        PreparedStatement pstmt = prepareStatement(multiValuesSql.toString());
+        int index = 1;
+        for (List<Map<String, ?>> values : rows) {
+            for (Map<String, ?> value : values) {
+                SyncUtil.setPStmt((Integer) value.get("type"), pstmt, value.get("value"), index++);
+            }
+        }
+        pstmt.execute();
+        idx.addAndGet(rows.size());
+    }
+
+    private void executeBatch(String sql, List<List<Map<String, ?>>> rows) throws SQLException {
+        PreparedStatement pstmt = prepareStatement(sql);
+        if (rows.size() == 1) {
+            setValues(pstmt, rows.get(0));
+            pstmt.execute();
+        } else {
+            for (List<Map<String, ?>> values : rows) {
+                setValues(pstmt, values);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        idx.addAndGet(rows.size());
+    }
+
+    private void setValues(PreparedStatement pstmt, List<Map<String, ?>> values) throws SQLException {
         int len = values.size();
         for (int i = 0; i < len; i++) {
             int type = (Integer) values.get(i).get("type");
             Object value = values.get(i).get("value");
             SyncUtil.setPStmt(type, pstmt, value, i + 1);
         }
+    }
 
-        pstmt.execute();
-        idx.incrementAndGet();
-        pstmt.close();
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt == null) {
+            pstmt = getConn().prepareStatement(sql);
+            statements.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    private boolean isMultiValuesInsert() throws SQLException {
+        if (multiValuesInsert == null) {
+            String productName = getConn().getMetaData().getDatabaseProductName();
+            multiValuesInsert = MULTI_VALUES_DATABASES.contains(StringUtils.lowerCase(productName));
+        }
+        return multiValuesInsert;
     }
 
     public void commit() throws SQLException {
+        flush();
         getConn().commit();
         if (logger.isTraceEnabled()) {
             logger.trace("Batch executor commit " + idx.get() + " rows");
@@ -74,6 +253,8 @@ public class BatchExecutor implements Closeable {
     }
 
     public void rollback() throws SQLException {
+        batchSql = null;
+        batchValues.clear();
         getConn().rollback();
         if (logger.isTraceEnabled()) {
             logger.trace("Batch executor rollback " + idx.get() + " rows");
@@ -83,6 +264,13 @@ public class BatchExecutor implements Closeable {
 
     @Override
     public void close() {
+        batchSql = null;
+        batchValues.clear();
+        for (PreparedStatement pstmt : statements.values()) {
+            closeStatement(pstmt);
+        }
+        statements.clear();
+
         if (conn != null) {
             try {
                 conn.close();
@@ -93,4 +281,53 @@ public class BatchExecutor implements Closeable {
             }
         }
     }
+
+    private static void closeStatement(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    public int getCommitSize() {
+        return commitSize;
+    }
+
+    public void setCommitSize(int commitSize) {
+        this.commitSize = Math.max(1, commitSize);
+    }
+
+    public boolean isSkipDupException() {
+        return skipDupException;
+    }
+
+    public void setSkipDupException(boolean skipDupException) {
+        this.skipDupException = skipDupException;
+    }
+
+    public void setMultiValuesInsert(Boolean multiValuesInsert) {
+        this.multiValuesInsert = multiValuesInsert;
+    }
+
+    /**
+     * 按最近使用淘汰的PreparedStatement缓存, 避免多行insert的各种行数导致缓存无限增长
+     */
+    private static class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+
+        private static final long serialVersionUID = -4365870203426154470L;
+
+        public StatementCache(){
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > MAX_CACHED_STATEMENTS) {
+                closeStatement(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
 }
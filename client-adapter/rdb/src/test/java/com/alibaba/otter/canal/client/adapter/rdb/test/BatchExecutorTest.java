@@ -0,0 +1,125 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor;
+
+/**
+ * 基于h2测试BatchExecutor的批量执行、多行insert以及回滚
+ */
+public class BatchExecutorTest {
+
+    private static final String INSERT_SQL = "INSERT INTO user_t (id,name) VALUES (?,?)";
+    private static final String UPDATE_SQL = "UPDATE user_t SET name=? WHERE id=?";
+    private static final String DELETE_SQL = "DELETE FROM user_t WHERE id=?";
+
+    private DruidDataSource     dataSource;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new DruidDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:batch_executor;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setPoolPreparedStatements(true);
+        dataSource.init();
+        execute("CREATE TABLE user_t (id INT PRIMARY KEY, name VARCHAR(32))");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        execute("DROP TABLE user_t");
+        dataSource.close();
+    }
+
+    @Test
+    public void testBatch() throws SQLException {
+        BatchExecutor batchExecutor = new BatchExecutor(dataSource);
+        batchExecutor.setCommitSize(100);
+        for (int i = 1; i <= 250; i++) {
+            batchExecutor.addInsert(INSERT_SQL, values(i, "name_" + i));
+        }
+        // 不同的sql需要保证执行顺序
+        batchExecutor.addBatch(UPDATE_SQL, values("update_1", 1));
+        batchExecutor.addBatch(DELETE_SQL, values(2));
+        batchExecutor.addInsert(INSERT_SQL, values(2, "insert_2"));
+        batchExecutor.addBatch(UPDATE_SQL, values("update_2", 2));
+        batchExecutor.commit();
+        batchExecutor.close();
+
+        Assert.assertEquals(250, count());
+        Assert.assertEquals("update_1", name(1));
+        Assert.assertEquals("update_2", name(2));
+        Assert.assertEquals("name_250", name(250));
+    }
+
+    @Test
+    public void testWithoutMultiValues() throws SQLException {
+        BatchExecutor batchExecutor = new BatchExecutor(dataSource);
+        batchExecutor.setMultiValuesInsert(false);
+        for (int i = 1; i <= 10; i++) {
+            batchExecutor.addInsert(INSERT_SQL, values(i, "name_" + i));
+        }
+        batchExecutor.commit();
+        batchExecutor.close();
+
+        Assert.assertEquals(10, count());
+        Assert.assertEquals("name_10", name(10));
+    }
+
+    @Test
+    public void testRollback() throws SQLException {
+        BatchExecutor batchExecutor = new BatchExecutor(dataSource);
+        batchExecutor.setCommitSize(3);
+        for (int i = 1; i <= 10; i++) {
+            batchExecutor.addInsert(INSERT_SQL, values(i, "name_" + i));
+        }
+        batchExecutor.rollback();
+        batchExecutor.close();
+
+        Assert.assertEquals(0, count());
+    }
+
+    private static List<Map<String, ?>> values(Object... values) {
+        List<Map<String, ?>> result = new ArrayList<>();
+        for (Object value : values) {
+            BatchExecutor.setValue(result, value instanceof Integer ? Types.INTEGER : Types.VARCHAR, value);
+        }
+        return result;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private int count() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM user_t")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private String name(int id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT name FROM user_t WHERE id=" + id)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package com.alibaba.otter.canal.client;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
@@ -7,19 +14,41 @@ import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 
 public class CanalMessageDeserializer {
 
+    private static final int HEADER_TAG = (CanalEntry.Entry.HEADER_FIELD_NUMBER << 3)
+                                          | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
     public static Message deserializer(byte[] data) {
         return deserializer(data, false);
     }
 
     public static Message deserializer(byte[] data, boolean lazyParseEntry) {
+        if (data == null) {
+            return null;
+        }
+        return deserializer(ByteBuffer.wrap(data), lazyParseEntry);
+    }
+
+    /**
+     * 直接基于buffer反序列化，packet body以及每个entry都是引用buffer内容的ByteString，不做拷贝
+     *
+     * <pre>
+     * 1. lazyParseEntry=true时，通过getRawEntries获取entry的原始数据，可以先用parseHeader判断schema/table再决定是否解析
+     * 2. lazyParseEntry=false时，getEntries返回的list在访问到对应的entry时才解析
+     * 注意：返回的message会引用buffer的内容，buffer在message使用完之前不能被修改
+     * </pre>
+     */
+    public static Message deserializer(ByteBuffer buffer, boolean lazyParseEntry) {
         try {
-            if (data == null) {
+            if (buffer == null) {
                 return null;
             } else {
-                CanalPacket.Packet p = CanalPacket.Packet.parseFrom(data);
+                CanalPacket.Packet p = CanalPacket.Packet.parseFrom(newCodedInput(UnsafeByteOperations.unsafeWrap(buffer)));
                 switch (p.getType()) {
                     case MESSAGES: {
                         if (!p.getCompression().equals(Compression.NONE)
@@ -27,16 +56,14 @@ public class CanalMessageDeserializer {
                             throw new CanalClientException("compression is not supported in this connector");
                         }
 
-                        CanalPacket.Messages messages = CanalPacket.Messages.parseFrom(p.getBody());
+                        CanalPacket.Messages messages = CanalPacket.Messages.parseFrom(newCodedInput(p.getBody()));
                         Message result = new Message(messages.getBatchId());
                         if (lazyParseEntry) {
                             // byteString
                             result.setRawEntries(messages.getMessagesList());
                             result.setRaw(true);
                         } else {
-                            for (ByteString byteString : messages.getMessagesList()) {
-                                result.addEntry(CanalEntry.Entry.parseFrom(byteString));
-                            }
+                            result.setEntries(new LazyEntryList(messages.getMessagesList()));
                             result.setRaw(false);
                         }
                         return result;
@@ -54,4 +81,72 @@ public class CanalMessageDeserializer {
             throw new CanalClientException("deserializer failed", e);
         }
     }
+
+    /**
+     * 解析entry，storeValue引用rawEntry的内容，RowChange由使用方按需解析
+     */
+    public static CanalEntry.Entry parseEntry(ByteString rawEntry) {
+        try {
+            return CanalEntry.Entry.parseFrom(newCodedInput(rawEntry));
+        } catch (IOException e) {
+            throw new CanalClientException("deserializer failed", e);
+        }
+    }
+
+    /**
+     * 只解析entry的header，跳过storeValue，用于在客户端按schema/table过滤时避免解析整个entry
+     */
+    public static CanalEntry.Header parseHeader(ByteString rawEntry) {
+        try {
+            CodedInputStream input = newCodedInput(rawEntry);
+            while (true) {
+                int tag = input.readTag();
+                if (tag == 0) {
+                    return CanalEntry.Header.getDefaultInstance();
+                }
+
+                if (tag == HEADER_TAG) {
+                    return CanalEntry.Header.parseFrom(input.readBytes());
+                } else if (!input.skipField(tag)) {
+                    return CanalEntry.Header.getDefaultInstance();
+                }
+            }
+        } catch (IOException e) {
+            throw new CanalClientException("deserializer failed", e);
+        }
+    }
+
+    private static CodedInputStream newCodedInput(ByteString bytes) {
+        CodedInputStream input = bytes.newCodedInput();
+        input.enableAliasing(true);
+        return input;
+    }
+
+    /**
+     * 在访问时才解析对应的entry，解析结果会缓存
+     */
+    private static class LazyEntryList extends AbstractList<CanalEntry.Entry> implements RandomAccess, Serializable {
+
+        private static final long        serialVersionUID = -3203245412935286585L;
+        private final List<ByteString>   rawEntries;
+        private final CanalEntry.Entry[] entries;
+
+        public LazyEntryList(List<ByteString> rawEntries){
+            this.rawEntries = rawEntries;
+            this.entries = new CanalEntry.Entry[rawEntries.size()];
+        }
+
+        public CanalEntry.Entry get(int index) {
+            CanalEntry.Entry entry = entries[index];
+            if (entry == null) {
+                entry = parseEntry(rawEntries.get(index));
+                entries[index] = entry;
+            }
+            return entry;
+        }
+
+        public int size() {
+            return entries.length;
+        }
+    }
 }
@@ -30,6 +30,7 @@ public class ClusterCanalConnector implements CanalConnector {
     private SimpleCanalConnector    currentConnector;
     private String                  destination;
     private String                  filter;                                                  // 记录上一次的filter提交值,便于自动重试时提交
+    private int                     prefetchSize  = 0;                                       // 预取的get请求数，0代表不开启
 
     public ClusterCanalConnector(String username, String password, String destination,
                                  CanalNodeAccessStrategy accessStrategy){
@@ -54,6 +55,7 @@ public class ClusterCanalConnector implements CanalConnector {
                     };
                     currentConnector.setSoTimeout(soTimeout);
                     currentConnector.setIdleTimeout(idleTimeout);
+                    currentConnector.setPrefetchSize(prefetchSize);
                     if (filter != null) {
                         currentConnector.setFilter(filter);
                     }
@@ -332,6 +334,14 @@ public class ClusterCanalConnector implements CanalConnector {
         this.accessStrategy = accessStrategy;
     }
 
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    public void setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
     public SimpleCanalConnector getCurrentConnector() {
         return currentConnector;
     }
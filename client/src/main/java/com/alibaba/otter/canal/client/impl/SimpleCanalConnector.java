@@ -11,7 +11,9 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -73,6 +75,9 @@ public class SimpleCanalConnector implements CanalConnector {
     private boolean              rollbackOnConnect     = true;                                               // 是否在connect链接成功后，自动执行rollback操作
     private boolean              rollbackOnDisConnect  = false;                                              // 是否在connect链接成功后，自动执行rollback操作
     private boolean              lazyParseEntry        = false;                                              // 是否自动化解析Entry对象,如果考虑最大化性能可以延后解析
+    private int                  prefetchSize          = 0;                                                  // 预取模式下同时在途的get请求数，0代表不开启
+    private int                  inflightGets          = 0;                                                  // 已发送但还未读取响应的get请求数
+    private Deque<byte[]>        prefetchedPackets     = new ArrayDeque<byte[]>();                           // 已读取但还未返回给调用方的get响应
     // 读写数据分别使用不同的锁进行控制，减小锁粒度,读也需要排他锁，并发度容易造成数据包混乱，反序列化失败
     private Object               readDataLock          = new Object();
     private Object               writeDataLock         = new Object();
@@ -148,6 +153,7 @@ public class SimpleCanalConnector implements CanalConnector {
                 address = getNextAddress();
             }
             channel.connect(address);
+            resetPrefetch();
             readableChannel = Channels.newChannel(channel.socket().getInputStream());
             writableChannel = Channels.newChannel(channel.socket().getOutputStream());
             Packet p = Packet.parseFrom(readNextPacket());
@@ -200,6 +206,7 @@ public class SimpleCanalConnector implements CanalConnector {
     }
 
     private void doDisconnect() throws CanalClientException {
+        resetPrefetch();
         if (readableChannel != null) {
             quietlyClose(readableChannel);
             readableChannel = null;
@@ -232,6 +239,7 @@ public class SimpleCanalConnector implements CanalConnector {
             return;
         }
         try {
+            drainPrefetch();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.SUBSCRIPTION)
                 .setBody(Sub.newBuilder()
@@ -261,6 +269,7 @@ public class SimpleCanalConnector implements CanalConnector {
             return;
         }
         try {
+            drainPrefetch();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.UNSUBSCRIPTION)
                 .setBody(Unsub.newBuilder()
@@ -307,7 +316,7 @@ public class SimpleCanalConnector implements CanalConnector {
                 unit = TimeUnit.MILLISECONDS;
             }
 
-            writeWithHeader(Packet.newBuilder()
+            byte[] get = Packet.newBuilder()
                 .setType(PacketType.GET)
                 .setBody(Get.newBuilder()
                     .setAutoAck(false)
@@ -319,7 +328,12 @@ public class SimpleCanalConnector implements CanalConnector {
                     .build()
                     .toByteString())
                 .build()
-                .toByteArray());
+                .toByteArray();
+            if (prefetchSize > 0) {
+                return prefetchMessages(get);
+            }
+
+            writeWithHeader(get);
             return receiveMessages();
         } catch (IOException e) {
             throw new CanalClientException(e);
@@ -331,6 +345,43 @@ public class SimpleCanalConnector implements CanalConnector {
         return CanalMessageDeserializer.deserializer(data, lazyParseEntry);
     }
 
+    /**
+     * 预取模式，保持prefetchSize个get请求在途，server组装下一批数据和client处理当前数据可以并行，响应按发送顺序返回，batchId保持有序
+     */
+    private Message prefetchMessages(byte[] get) throws IOException {
+        byte[] data = prefetchedPackets.pollFirst();
+        if (data == null) {
+            fillPrefetch(get);
+            data = readNextPacket();
+            inflightGets--;
+        }
+        // 返回数据前先补充请求
+        fillPrefetch(get);
+        return CanalMessageDeserializer.deserializer(data, lazyParseEntry);
+    }
+
+    private void fillPrefetch(byte[] get) throws IOException {
+        while (inflightGets + prefetchedPackets.size() < prefetchSize) {
+            writeWithHeader(get);
+            inflightGets++;
+        }
+    }
+
+    /**
+     * 读取所有在途get的响应并缓存，之后的请求/响应交互不会读到get的响应
+     */
+    private void drainPrefetch() throws IOException {
+        while (inflightGets > 0) {
+            prefetchedPackets.addLast(readNextPacket());
+            inflightGets--;
+        }
+    }
+
+    private void resetPrefetch() {
+        inflightGets = 0;
+        prefetchedPackets.clear();
+    }
+
     public void ack(long batchId) throws CanalClientException {
         waitClientRunning();
         if (!running) {
@@ -354,12 +405,18 @@ public class SimpleCanalConnector implements CanalConnector {
 
     public void rollback(long batchId) throws CanalClientException {
         waitClientRunning();
-        ClientRollback ca = ClientRollback.newBuilder()
-            .setDestination(clientIdentity.getDestination())
-            .setClientId(String.valueOf(clientIdentity.getClientId()))
-            .setBatchId(batchId)
-            .build();
         try {
+            if (inflightGets > 0 || !prefetchedPackets.isEmpty()) {
+                // 预取的batch会被丢弃，需要一起回滚，否则server端会从预取的batch之后继续获取
+                drainPrefetch();
+                prefetchedPackets.clear();
+                batchId = 0;
+            }
+            ClientRollback ca = ClientRollback.newBuilder()
+                .setDestination(clientIdentity.getDestination())
+                .setClientId(String.valueOf(clientIdentity.getClientId()))
+                .setBatchId(batchId)
+                .build();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.CLIENTROLLBACK)
                 .setBody(ca.toByteString())
@@ -534,6 +591,17 @@ public class SimpleCanalConnector implements CanalConnector {
         this.lazyParseEntry = lazyParseEntry;
     }
 
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    /**
+     * 设置预取的get请求数，需要server端支持按顺序处理同一链接上的多个get
+     */
+    public void setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
     public void stopRunning() {
         if (running) {
             running = false; // 设置为非running状态
@@ -0,0 +1,31 @@
+package com.alibaba.otter.canal.client.kafka;
+
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import com.alibaba.otter.canal.protocol.ColumnarMessage;
+import com.alibaba.otter.canal.protocol.ColumnarMessageCodec;
+
+/**
+ * Kafka列式消息的反序列化，对应服务端canal.mq.serializer = columnar
+ */
+public class ColumnarMessageDeserializer implements Deserializer<ColumnarMessage> {
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public ColumnarMessage deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return ColumnarMessageCodec.decode(data);
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+}
@@ -13,6 +13,7 @@ import org.apache.kafka.common.serialization.StringDeserializer;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.otter.canal.client.CanalMQConnector;
 import com.alibaba.otter.canal.client.impl.SimpleCanalConnector;
+import com.alibaba.otter.canal.protocol.ColumnarMessage;
 import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
@@ -31,16 +32,18 @@ import com.google.common.collect.Lists;
  */
 public class KafkaCanalConnector implements CanalMQConnector {
 
-    protected KafkaConsumer<String, Message> kafkaConsumer;
-    protected KafkaConsumer<String, String>  kafkaConsumer2;                            // 用于扁平message的数据消费
-    protected String                         topic;
-    protected Integer                        partition;
-    protected Properties                     properties;
-    protected volatile boolean               connected      = false;
-    protected volatile boolean               running        = false;
-    protected boolean                        flatMessage;
+    protected KafkaConsumer<String, Message>         kafkaConsumer;
+    protected KafkaConsumer<String, String>          kafkaConsumer2;                    // 用于扁平message的数据消费
+    protected KafkaConsumer<String, ColumnarMessage> kafkaConsumer3;                    // 用于列式message的数据消费
+    protected String                                 topic;
+    protected Integer                                partition;
+    protected Properties                             properties;
+    protected volatile boolean                       connected      = false;
+    protected volatile boolean                       running        = false;
+    protected boolean                                flatMessage;
+    protected boolean                                columnar;
 
-    private Map<Integer, Long>               currentOffsets = new ConcurrentHashMap<>();
+    private Map<Integer, Long>                       currentOffsets = new ConcurrentHashMap<>();
 
     public KafkaCanalConnector(String servers, String topic, Integer partition, String groupId, Integer batchSize,
                                boolean flatMessage){
@@ -79,6 +82,12 @@ public class KafkaCanalConnector implements CanalMQConnector {
         }
 
         connected = true;
+        if (columnar) {
+            if (kafkaConsumer3 == null) {
+                kafkaConsumer3 = new KafkaConsumer<String, ColumnarMessage>(properties);
+            }
+            return;
+        }
         if (kafkaConsumer == null && !flatMessage) {
             kafkaConsumer = new KafkaConsumer<String, Message>(properties);
 
@@ -101,6 +110,10 @@ public class KafkaCanalConnector implements CanalMQConnector {
             kafkaConsumer2.close();
             kafkaConsumer2 = null;
         }
+        if (kafkaConsumer3 != null) {
+            kafkaConsumer3.close();
+            kafkaConsumer3 = null;
+        }
 
         connected = false;
     }
@@ -131,6 +144,9 @@ public class KafkaCanalConnector implements CanalMQConnector {
             if (kafkaConsumer2 != null) {
                 kafkaConsumer2.subscribe(Collections.singletonList(topic));
             }
+            if (kafkaConsumer3 != null) {
+                kafkaConsumer3.subscribe(Collections.singletonList(topic));
+            }
         } else {
             TopicPartition topicPartition = new TopicPartition(topic, partition);
             if (kafkaConsumer != null) {
@@ -139,6 +155,9 @@ public class KafkaCanalConnector implements CanalMQConnector {
             if (kafkaConsumer2 != null) {
                 kafkaConsumer2.assign(Collections.singletonList(topicPartition));
             }
+            if (kafkaConsumer3 != null) {
+                kafkaConsumer3.assign(Collections.singletonList(topicPartition));
+            }
         }
     }
 
@@ -158,6 +177,9 @@ public class KafkaCanalConnector implements CanalMQConnector {
         if (kafkaConsumer2 != null) {
             kafkaConsumer2.unsubscribe();
         }
+        if (kafkaConsumer3 != null) {
+            kafkaConsumer3.unsubscribe();
+        }
     }
 
     @Override
@@ -239,6 +261,45 @@ public class KafkaCanalConnector implements CanalMQConnector {
         return Lists.newArrayList();
     }
 
+    /**
+     * 获取列式消息并ack，需要先调用{@linkplain #setColumnar(boolean)}
+     */
+    public List<ColumnarMessage> getColumnarList(Long timeout, TimeUnit unit) throws CanalClientException {
+        waitClientRunning();
+        if (!running) {
+            return Lists.newArrayList();
+        }
+
+        List<ColumnarMessage> messages = getColumnarListWithoutAck(timeout, unit);
+        if (messages != null && !messages.isEmpty()) {
+            this.ack();
+        }
+        return messages;
+    }
+
+    public List<ColumnarMessage> getColumnarListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        waitClientRunning();
+        if (!running) {
+            return Lists.newArrayList();
+        }
+
+        ConsumerRecords<String, ColumnarMessage> records = kafkaConsumer3.poll(unit.toMillis(timeout));
+
+        currentOffsets.clear();
+        for (TopicPartition topicPartition : records.partitions()) {
+            currentOffsets.put(topicPartition.partition(), kafkaConsumer3.position(topicPartition));
+        }
+
+        if (!records.isEmpty()) {
+            List<ColumnarMessage> messages = new ArrayList<>();
+            for (ConsumerRecord<String, ColumnarMessage> record : records) {
+                messages.add(record.value());
+            }
+            return messages;
+        }
+        return Lists.newArrayList();
+    }
+
     @Override
     public void rollback() {
         waitClientRunning();
@@ -256,6 +317,11 @@ public class KafkaCanalConnector implements CanalMQConnector {
                 kafkaConsumer2.seek(new TopicPartition(topic, entry.getKey()), entry.getValue() - 1);
             }
         }
+        if (kafkaConsumer3 != null) {
+            for (Map.Entry<Integer, Long> entry : currentOffsets.entrySet()) {
+                kafkaConsumer3.seek(new TopicPartition(topic, entry.getKey()), entry.getValue() - 1);
+            }
+        }
     }
 
     /**
@@ -274,6 +340,9 @@ public class KafkaCanalConnector implements CanalMQConnector {
         if (kafkaConsumer2 != null) {
             kafkaConsumer2.commitSync();
         }
+        if (kafkaConsumer3 != null) {
+            kafkaConsumer3.commitSync();
+        }
     }
 
     @Override
@@ -311,6 +380,22 @@ public class KafkaCanalConnector implements CanalMQConnector {
         throw new CanalClientException("mq not support this method");
     }
 
+    /**
+     * 使用列式消息消费，对应服务端canal.mq.serializer = columnar，需要在connect之前设置
+     *
+     * @param columnar
+     */
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+        if (columnar) {
+            properties.put("value.deserializer", ColumnarMessageDeserializer.class.getName());
+        } else if (!flatMessage) {
+            properties.put("value.deserializer", MessageDeserializer.class.getName());
+        } else {
+            properties.put("value.deserializer", StringDeserializer.class.getName());
+        }
+    }
+
     /**
      * 重新设置sessionTime
      *
@@ -0,0 +1,111 @@
+package com.alibaba.otter.canal.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试基于buffer的零拷贝反序列化以及entry的延迟解析
+ */
+public class CanalMessageDeserializerTest {
+
+    @Test
+    public void testEntries() throws Exception {
+        List<Entry> entries = entries();
+        Message message = CanalMessageDeserializer.deserializer(packet(entries), false);
+        Assert.assertEquals(10L, message.getId());
+        Assert.assertFalse(message.isRaw());
+        Assert.assertEquals(entries.size(), message.getEntries().size());
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = message.getEntries().get(i);
+            Assert.assertEquals(entries.get(i), entry);
+            Assert.assertSame(entry, message.getEntries().get(i));
+            Assert.assertEquals(RowChange.parseFrom(entries.get(i).getStoreValue()),
+                RowChange.parseFrom(entry.getStoreValue()));
+        }
+    }
+
+    @Test
+    public void testRawEntriesAndHeader() {
+        List<Entry> entries = entries();
+        byte[] data = packet(entries);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        Message message = CanalMessageDeserializer.deserializer(buffer, true);
+        Assert.assertTrue(message.isRaw());
+        Assert.assertEquals(entries.size(), message.getRawEntries().size());
+        for (int i = 0; i < entries.size(); i++) {
+            ByteString rawEntry = message.getRawEntries().get(i);
+            Assert.assertEquals(entries.get(i).toByteString(), rawEntry);
+            Assert.assertEquals(entries.get(i).getHeader(), CanalMessageDeserializer.parseHeader(rawEntry));
+            Assert.assertEquals(entries.get(i), CanalMessageDeserializer.parseEntry(rawEntry));
+        }
+    }
+
+    @Test
+    public void testZeroCopy() {
+        List<Entry> entries = entries();
+        byte[] data = packet(entries);
+        Message message = CanalMessageDeserializer.deserializer(data, true);
+
+        // entry直接引用原始的数据
+        ByteString rawEntry = message.getRawEntries().get(0);
+        byte first = rawEntry.byteAt(0);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ~data[i];
+        }
+        Assert.assertEquals((byte) ~first, rawEntry.byteAt(0));
+    }
+
+    private static byte[] packet(List<Entry> entries) {
+        Messages.Builder messages = Messages.newBuilder().setBatchId(10L);
+        for (Entry entry : entries) {
+            messages.addMessages(entry.toByteString());
+        }
+        return Packet.newBuilder()
+            .setType(PacketType.MESSAGES)
+            .setBody(messages.build().toByteString())
+            .build()
+            .toByteArray();
+    }
+
+    private static List<Entry> entries() {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int i = 0; i < 10; i++) {
+            RowChange rowChange = RowChange.newBuilder()
+                .setEventType(EventType.INSERT)
+                .addRowDatas(RowData.newBuilder()
+                    .addAfterColumns(Column.newBuilder().setName("id").setValue(String.valueOf(i)).setIndex(0))
+                    .addAfterColumns(Column.newBuilder().setName("name").setValue("name_" + i).setIndex(1)))
+                .build();
+            entries.add(Entry.newBuilder()
+                .setHeader(Header.newBuilder()
+                    .setLogfileName("mysql-bin.000001")
+                    .setLogfileOffset(i)
+                    .setSchemaName("test")
+                    .setTableName("table_" + i)
+                    .setEventType(EventType.INSERT))
+                .setEntryType(EntryType.ROWDATA)
+                .setStoreValue(rowChange.toByteString())
+                .build());
+        }
+        return entries;
+    }
+}
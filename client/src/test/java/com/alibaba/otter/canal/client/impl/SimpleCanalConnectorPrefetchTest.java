@@ -0,0 +1,168 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientRollback;
+import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试预取模式下batchId的顺序、在途get的数量以及rollback/subscribe时对在途响应的处理
+ */
+public class SimpleCanalConnectorPrefetchTest {
+
+    private ServerSocket       serverSocket;
+    private Thread             serverThread;
+    private final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        serverThread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    serve(serverSocket.accept());
+                } catch (IOException e) {
+                    // 链接关闭
+                }
+            }
+        });
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        serverThread.join(5000);
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        SimpleCanalConnector connector = newConnector(3);
+        connector.connect();
+        connector.subscribe();
+        for (int i = 1; i <= 5; i++) {
+            Message message = connector.getWithoutAck(100);
+            Assert.assertEquals(i, message.getId());
+            connector.ack(message.getId());
+        }
+
+        // auth、connect时的rollback、subscribe、5个ack，以及保持3个get在途
+        waitReceived(3 + 5 + 8);
+        Assert.assertEquals(8, count(PacketType.GET));
+
+        // 预取的batch会被丢弃，需要回滚所有的batch
+        connector.rollback(5);
+        waitReceived(3 + 5 + 8 + 1);
+        Assert.assertEquals(Long.valueOf(0L), received.get(received.size() - 1));
+        Assert.assertEquals(Long.valueOf(5L), received.get(received.size() - 2));
+        connector.disconnect();
+    }
+
+    @Test
+    public void testSubscribeWithPrefetch() throws Exception {
+        SimpleCanalConnector connector = newConnector(2);
+        connector.connect();
+        connector.subscribe();
+        Assert.assertEquals(1, connector.getWithoutAck(100).getId());
+
+        // 在途的get响应缓存下来，按顺序返回
+        connector.subscribe(".*\\..*");
+        for (int i = 2; i <= 4; i++) {
+            Assert.assertEquals(i, connector.getWithoutAck(100).getId());
+        }
+        connector.disconnect();
+    }
+
+    private SimpleCanalConnector newConnector(int prefetchSize) {
+        SimpleCanalConnector connector = new SimpleCanalConnector(new InetSocketAddress("127.0.0.1",
+            serverSocket.getLocalPort()), "", "", "example");
+        connector.setPrefetchSize(prefetchSize);
+        connector.setSoTimeout(5000);
+        return connector;
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        write(output, Packet.newBuilder()
+            .setType(PacketType.HANDSHAKE)
+            .setVersion(1)
+            .setBody(Handshake.newBuilder().setSeeds(ByteString.copyFromUtf8("12345678")).build().toByteString())
+            .build());
+
+        long batchId = 0;
+        try {
+            while (true) {
+                byte[] body = new byte[input.readInt()];
+                input.readFully(body);
+                Packet packet = Packet.parseFrom(body);
+                switch (packet.getType()) {
+                    case GET:
+                        received.add(PacketType.GET);
+                        write(output, Packet.newBuilder()
+                            .setType(PacketType.MESSAGES)
+                            .setBody(Messages.newBuilder().setBatchId(++batchId).build().toByteString())
+                            .build());
+                        break;
+                    case CLIENTACK:
+                        received.add(ClientAck.parseFrom(packet.getBody()).getBatchId());
+                        break;
+                    case CLIENTROLLBACK:
+                        received.add(ClientRollback.parseFrom(packet.getBody()).getBatchId());
+                        break;
+                    default:
+                        received.add(packet.getType());
+                        write(output, Packet.newBuilder()
+                            .setType(PacketType.ACK)
+                            .setBody(Ack.newBuilder().build().toByteString())
+                            .build());
+                        break;
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void write(DataOutputStream output, Packet packet) throws IOException {
+        byte[] body = packet.toByteArray();
+        output.writeInt(body.length);
+        output.write(body);
+        output.flush();
+    }
+
+    private int count(Object type) {
+        synchronized (received) {
+            return Collections.frequency(received, type);
+        }
+    }
+
+    private void waitReceived(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(size, received.size());
+    }
+}
@@ -0,0 +1,243 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import static com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer.usecondsToStr;
+
+import java.time.Instant;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.TimeZone;
+
+/**
+ * 时间类型直接格式化到线程复用的char[]中，避免Timestamp/StringBuilder/substring等中间对象
+ *
+ * <pre>
+ * 1. 输出格式和之前的Timestamp.toString/StringBuilder拼接保持一致
+ * 2. timestamp按jvm默认时区计算，时区偏移按时区规则的变化区间缓存，每个线程最多按binlog时间一小时重新检查一次默认时区
+ * </pre>
+ */
+public class DatetimeConversion {
+
+    private static final char[]                    DIGITS           = "0123456789".toCharArray();
+    private static final int[]                     POWERS10         = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+    private static final long                      ZONE_CHECK_RANGE = 3600L;
+    private static final ThreadLocal<FormatBuffer> formatters       = new ThreadLocal<FormatBuffer>();
+
+    private static FormatBuffer formatter() {
+        FormatBuffer formatter = formatters.get();
+        if (formatter == null) {
+            formatter = new FormatBuffer();
+            formatters.set(formatter);
+        }
+        return formatter;
+    }
+
+    /**
+     * 格式化unix时间戳(秒)为默认时区的'yyyy-MM-dd HH:mm:ss[.ffffff]'，0为'0000-00-00 00:00:00'
+     */
+    public static String formatTimestamp(long seconds, int micros, int meta) {
+        return formatter().timestamp(seconds, micros, meta);
+    }
+
+    /**
+     * 格式化'yyyy-MM-dd HH:mm:ss[.ffffff]'
+     */
+    public static String formatDatetime(int year, int month, int day, int hour, int minute, int second, int micros,
+                                        int meta) {
+        char[] chars = formatter().chars;
+        int pos = writeDatetime(chars, 0, year, month, day, hour, minute, second);
+        pos = writeFraction(chars, pos, micros, meta);
+        return new String(chars, 0, pos);
+    }
+
+    /**
+     * 格式化'yyyy-MM-dd'
+     */
+    public static String formatDate(int year, int month, int day) {
+        char[] chars = formatter().chars;
+        int pos = writeNumber4(chars, 0, year);
+        chars[pos++] = '-';
+        pos = writeNumber2(chars, pos, month);
+        chars[pos++] = '-';
+        pos = writeNumber2(chars, pos, day);
+        return new String(chars, 0, pos);
+    }
+
+    /**
+     * 格式化'[-]HH:mm:ss[.ffffff]'，hour超过两位数时完整输出
+     *
+     * @param fullHourFrom hour大于等于该值时完整输出，否则按两位输出
+     */
+    public static String formatTime(boolean negative, int hour, int minute, int second, int micros, int meta,
+                                    int fullHourFrom) {
+        char[] chars = formatter().chars;
+        int pos = 0;
+        if (negative) {
+            chars[pos++] = '-';
+        }
+
+        if (hour >= fullHourFrom) {
+            pos = writeNumber(chars, pos, hour);
+        } else {
+            pos = writeNumber2(chars, pos, hour);
+        }
+        chars[pos++] = ':';
+        pos = writeNumber2(chars, pos, minute);
+        chars[pos++] = ':';
+        pos = writeNumber2(chars, pos, second);
+        pos = writeFraction(chars, pos, micros, meta);
+        return new String(chars, 0, pos);
+    }
+
+    private static int writeDatetime(char[] chars, int pos, int year, int month, int day, int hour, int minute,
+                                     int second) {
+        pos = writeNumber4(chars, pos, year);
+        chars[pos++] = '-';
+        pos = writeNumber2(chars, pos, month);
+        chars[pos++] = '-';
+        pos = writeNumber2(chars, pos, day);
+        chars[pos++] = ' ';
+        pos = writeNumber2(chars, pos, hour);
+        chars[pos++] = ':';
+        pos = writeNumber2(chars, pos, minute);
+        chars[pos++] = ':';
+        return writeNumber2(chars, pos, second);
+    }
+
+    /**
+     * 输出'.'加上6位补零后的前meta位，meta为0时不输出
+     */
+    private static int writeFraction(char[] chars, int pos, int micros, int meta) {
+        if (meta < 1) {
+            return pos;
+        }
+
+        chars[pos++] = '.';
+        if (micros < 0 || micros > 999999 || meta > 6) {
+            // 异常值保持和usecondsToStr一致的输出
+            String fraction = usecondsToStr(micros, meta);
+            fraction.getChars(0, fraction.length(), chars, pos);
+            return pos + fraction.length();
+        }
+
+        for (int i = 0; i < meta; i++) {
+            chars[pos++] = DIGITS[(micros / POWERS10[5 - i]) % 10];
+        }
+        return pos;
+    }
+
+    /**
+     * 和RowsLogBuffer.appendNumber4保持一致
+     */
+    private static int writeNumber4(char[] chars, int pos, int d) {
+        if (d >= 1000) {
+            chars[pos++] = DIGITS[d / 1000];
+            chars[pos++] = DIGITS[(d / 100) % 10];
+            chars[pos++] = DIGITS[(d / 10) % 10];
+            chars[pos++] = DIGITS[d % 10];
+        } else {
+            chars[pos++] = '0';
+            if (d >= 100) {
+                chars[pos++] = DIGITS[d / 100];
+                chars[pos++] = DIGITS[(d / 10) % 10];
+                chars[pos++] = DIGITS[d % 10];
+            } else {
+                chars[pos++] = '0';
+                pos = writeNumber2(chars, pos, d);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * 和RowsLogBuffer.appendNumber2保持一致
+     */
+    private static int writeNumber2(char[] chars, int pos, int d) {
+        if (d >= 10) {
+            chars[pos++] = DIGITS[(d / 10) % 10];
+            chars[pos++] = DIGITS[d % 10];
+        } else {
+            chars[pos++] = '0';
+            chars[pos++] = DIGITS[d];
+        }
+        return pos;
+    }
+
+    private static int writeNumber(char[] chars, int pos, int d) {
+        int size = 1;
+        for (int x = d; x >= 10; x /= 10) {
+            size++;
+        }
+        for (int i = pos + size - 1; i >= pos; i--) {
+            chars[i] = DIGITS[d % 10];
+            d /= 10;
+        }
+        return pos + size;
+    }
+
+    /**
+     * 每个线程的格式化buffer以及时区偏移缓存
+     */
+    private static class FormatBuffer {
+
+        private final char[] chars       = new char[32];
+        private TimeZone     zone;
+        private ZoneRules    rules;
+        // [offsetStart, offsetEnd)区间内的时区偏移都为offset秒
+        private long         offsetStart = Long.MAX_VALUE;
+        private long         offsetEnd   = Long.MIN_VALUE;
+        private int          offset;
+
+        String timestamp(long seconds, int micros, int meta) {
+            int pos;
+            if (seconds == 0) {
+                pos = writeDatetime(chars, 0, 0, 0, 0, 0, 0, 0);
+            } else {
+                long local = seconds + offset(seconds);
+                long days = Math.floorDiv(local, 86400L);
+                int secondOfDay = (int) Math.floorMod(local, 86400L);
+
+                // civil from days, 公历日期计算
+                long z = days + 719468;
+                long era = Math.floorDiv(z, 146097L);
+                long doe = z - era * 146097;
+                long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+                long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+                long mp = (5 * doy + 2) / 153;
+                int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+                int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+                int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+                pos = writeDatetime(chars,
+                    0,
+                    year,
+                    month,
+                    day,
+                    secondOfDay / 3600,
+                    (secondOfDay / 60) % 60,
+                    secondOfDay % 60);
+            }
+            pos = writeFraction(chars, pos, micros, meta);
+            return new String(chars, 0, pos);
+        }
+
+        private int offset(long seconds) {
+            if (seconds < offsetStart || seconds >= offsetEnd) {
+                TimeZone current = TimeZone.getDefault();
+                if (zone == null || !zone.hasSameRules(current) || !zone.getID().equals(current.getID())) {
+                    zone = current;
+                    rules = current.toZoneId().getRules();
+                }
+
+                Instant instant = Instant.ofEpochSecond(seconds);
+                offset = rules.getOffset(instant).getTotalSeconds();
+                ZoneOffsetTransition next = rules.nextTransition(instant);
+                offsetStart = seconds;
+                offsetEnd = seconds + ZONE_CHECK_RANGE;
+                if (next != null && next.toEpochSecond() < offsetEnd) {
+                    offsetEnd = next.toEpochSecond();
+                }
+            }
+            return offset;
+        }
+    }
+}
@@ -46,6 +46,19 @@ public class LogBuffer {
         return new LogBuffer(buf, 0, len);
     }
 
+    /**
+     * Return n bytes in this buffer, sharing the same byte array.
+     * 
+     * <pre>
+     * 不做内存拷贝，调用方需要保证该buffer的数据之后不会再被修改
+     * </pre>
+     */
+    public final LogBuffer slice(final int pos, final int len) {
+        if (pos + len > limit) throw new IllegalArgumentException("limit excceed: " + (pos + len));
+
+        return new LogBuffer(buffer, origin + pos, len);
+    }
+
     /**
      * Return next n bytes in this buffer.
      */
@@ -1221,6 +1234,22 @@ public class LogBuffer {
     public static final int DIG_PER_INT32 = 9;
     public static final int SIZE_OF_INT32 = 4;
 
+    private static final ThreadLocal<char[]> decimalBuffers = new ThreadLocal<char[]>();
+
+    /**
+     * Return the binary size of decimal(precision, scale).
+     * 
+     * @see mysql-5.1.60/strings/decimal.c - decimal_bin_size()
+     */
+    public static int getDecimalBinSize(final int precision, final int scale) {
+        final int intg = precision - scale;
+        final int intg0 = intg / DIG_PER_INT32;
+        final int frac0 = scale / DIG_PER_INT32;
+        final int intg0x = intg - intg0 * DIG_PER_INT32;
+        final int frac0x = scale - frac0 * DIG_PER_INT32;
+        return intg0 * SIZE_OF_INT32 + dig2bytes[intg0x] + frac0 * SIZE_OF_INT32 + dig2bytes[frac0x];
+    }
+
     /**
      * Return big decimal from buffer.
      * 
@@ -1272,6 +1301,42 @@ public class LogBuffer {
         return decimal;
     }
 
+    /**
+     * Return next decimal from buffer as plain string, same as
+     * getDecimal(precision, scale).toPlainString() but without creating the
+     * BigDecimal.
+     */
+    public final String getDecimalString(final int precision, final int scale) {
+        final int intg = precision - scale;
+        final int frac = scale;
+        final int intg0 = intg / DIG_PER_INT32;
+        final int frac0 = frac / DIG_PER_INT32;
+        final int intg0x = intg - intg0 * DIG_PER_INT32;
+        final int frac0x = frac - frac0 * DIG_PER_INT32;
+
+        final int binSize = intg0 * SIZE_OF_INT32 + dig2bytes[intg0x] + frac0 * SIZE_OF_INT32 + dig2bytes[frac0x];
+        if (position + binSize > origin + limit) {
+            throw new IllegalArgumentException("limit excceed: " + (position + binSize - origin));
+        }
+
+        char[] buf = decimalChars(intg, frac);
+        int len = fillDecimal0(position, intg, frac, intg0, frac0, intg0x, frac0x, buf);
+        position += binSize;
+
+        int start = 0;
+        if (buf[0] == '-') {
+            // BigDecimal.toPlainString() drops the sign of negative zero
+            start = 1;
+            for (int i = 1; i < len; i++) {
+                if (buf[i] != '0' && buf[i] != '.') {
+                    start = 0;
+                    break;
+                }
+            }
+        }
+        return new String(buf, start, len - start);
+    }
+
     /**
      * Return big decimal from buffer.
      * 
@@ -1299,13 +1364,32 @@ public class LogBuffer {
      */
     private final BigDecimal getDecimal0(final int begin, final int intg, final int frac, final int intg0,
                                          final int frac0, final int intg0x, final int frac0x) {
+        char[] buf = decimalChars(intg, frac);
+        int len = fillDecimal0(begin, intg, frac, intg0, frac0, intg0x, frac0x, buf);
+        return new BigDecimal(buf, 0, len);
+    }
+
+    /**
+     * Per-thread char buffer for decimal2string(), large enough for sign, dot
+     * and all digits.
+     */
+    private static final char[] decimalChars(final int intg, final int frac) {
+        final int len = 1 + ((intg != 0) ? intg : 1) + 1 + frac;
+        char[] buf = decimalBuffers.get();
+        if (buf == null || buf.length < len) {
+            buf = new char[Math.max(len, 96)];
+            decimalBuffers.set(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Fill decimal string into buf, return the string length.
+     */
+    private final int fillDecimal0(final int begin, final int intg, final int frac, final int intg0,
+                                   final int frac0, final int intg0x, final int frac0x, char[] buf) {
         final int mask = ((buffer[begin] & 0x80) == 0x80) ? 0 : -1;
         int from = begin;
-
-        /* max string length */
-        final int len = ((mask != 0) ? 1 : 0) + ((intg != 0) ? intg : 1) // NL
-                        + ((frac != 0) ? 1 : 0) + frac;
-        char[] buf = new char[len];
         int pos = 0;
 
         if (mask != 0) /* decimal sign */
@@ -1445,8 +1529,7 @@ public class LogBuffer {
         }
 
         d_copy[begin] ^= 0x80; /* restore sign */
-        String decimal = String.valueOf(buf, 0, pos);
-        return new BigDecimal(decimal);
+        return pos;
     }
 
     /**
@@ -1561,6 +1644,23 @@ public class LogBuffer {
         position += len;
     }
 
+    /**
+     * Return true if the n bytes at pos1 and pos2 are identical.
+     */
+    public final boolean equals(final int pos1, final int pos2, final int len) {
+        if (pos1 + len > limit || pos1 < 0) throw new IllegalArgumentException("limit excceed: " + (pos1 + len));
+        if (pos2 + len > limit || pos2 < 0) throw new IllegalArgumentException("limit excceed: " + (pos2 + len));
+
+        final int off1 = origin + pos1;
+        final int off2 = origin + pos2;
+        for (int i = 0; i < len; i++) {
+            if (buffer[off1 + i] != buffer[off2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Return n-byte data from buffer.
      */
@@ -1,12 +1,15 @@
 package com.taobao.tddl.dbsync.binlog;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
+import com.alibaba.otter.canal.parse.driver.mysql.utils.ZstdDecompressor;
 import com.taobao.tddl.dbsync.binlog.event.AppendBlockLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.BeginLoadQueryLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.CreateFileLogEvent;
@@ -32,6 +35,7 @@ import com.taobao.tddl.dbsync.binlog.event.StartLogEventV3;
 import com.taobao.tddl.dbsync.binlog.event.StopLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.TableMapLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.TransactionContextLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.TransactionPayloadLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.UnknownLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.UpdateRowsLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.UserVarLogEvent;
@@ -68,9 +72,19 @@ import com.taobao.tddl.dbsync.binlog.event.mariadb.StartEncryptionLogEvent;
  */
 public final class LogDecoder {
 
-    protected static final Log logger    = LogFactory.getLog(LogDecoder.class);
+    protected static final Log        logger                  = LogFactory.getLog(LogDecoder.class);
 
-    protected final BitSet     handleSet = new BitSet(LogEvent.ENUM_END_EVENT);
+    // 超过该大小的payload buffer解压完成后不再复用，避免大事务长期占用内存
+    protected static final int        MAX_POOLED_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    protected final BitSet            handleSet               = new BitSet(LogEvent.ENUM_END_EVENT);
+
+    // transaction payload解压使用的buffer，同一个decoder内复用
+    private byte[]                    payloadBuffer;
+    // payload中的event不带checksum，按当前的format description缓存一份关闭checksum的副本
+    private FormatDescriptionLogEvent payloadDescription;
+    // ROWS事件只解析table_id并绑定table map，rows数据延迟到RowsLogEvent.decodeRows时解析
+    private boolean                   deferRowsDecode         = false;
 
     public LogDecoder(){
     }
@@ -87,6 +101,10 @@ public final class LogDecoder {
         handleSet.set(flagIndex);
     }
 
+    public void setDeferRowsDecode(boolean deferRowsDecode) {
+        this.deferRowsDecode = deferRowsDecode;
+    }
+
     /**
      * Decoding an event from binary-log buffer.
      *
@@ -94,6 +112,10 @@ public final class LogDecoder {
      * <code>null</code> if buffer is not including a full event.
      */
     public LogEvent decode(LogBuffer buffer, LogContext context) throws IOException {
+        return decode(buffer, context, deferRowsDecode);
+    }
+
+    private LogEvent decode(LogBuffer buffer, LogContext context, boolean deferRows) throws IOException {
         final int limit = buffer.limit();
 
         if (limit >= FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN) {
@@ -108,7 +130,7 @@ public final class LogDecoder {
                     buffer.limit(len);
                     try {
                         /* Decoding binary-log to event */
-                        event = decode(buffer, header, context);
+                        event = decode(buffer, header, context, deferRows);
                     } catch (IOException e) {
                         if (logger.isWarnEnabled()) {
                             logger.warn("Decoding " + LogEvent.getTypeName(header.getType()) + " failed from: "
@@ -140,12 +162,91 @@ public final class LogDecoder {
         return null;
     }
 
+    /**
+     * 展开transaction payload中压缩的event，其他event直接返回
+     *
+     * <pre>
+     * 1. payload中的event没有checksum，也没有有效的logPos，统一使用payload event的logPos和eventLen，
+     *    事务中的任意位点都会回溯到payload event的起始位置
+     * 2. 解压使用decoder内复用的buffer，解析出来的event已经拷贝了各自的数据，不依赖该buffer
+     * </pre>
+     */
+    public List<LogEvent> processIterateDecode(LogEvent event, LogContext context) throws IOException {
+        List<LogEvent> events = new ArrayList<LogEvent>();
+        if (event.getHeader().getType() != LogEvent.TRANSACTION_PAYLOAD_EVENT) {
+            events.add(event);
+            return events;
+        }
+
+        TransactionPayloadLogEvent payloadEvent = (TransactionPayloadLogEvent) event;
+        LogHeader payloadHeader = payloadEvent.getHeader();
+        LogBuffer iterateBuffer = uncompress(payloadEvent);
+        FormatDescriptionLogEvent descriptionEvent = context.getFormatDescription();
+        if (payloadDescription == null || payloadDescription.getPostHeaderLen() != descriptionEvent.getPostHeaderLen()) {
+            payloadDescription = new FormatDescriptionLogEvent(descriptionEvent, LogEvent.BINLOG_CHECKSUM_ALG_OFF);
+        }
+        context.setFormatDescription(payloadDescription);
+        try {
+            while (iterateBuffer.hasRemaining()) {
+                // payload buffer会被复用，不能延迟解码
+                LogEvent deEvent = decode(iterateBuffer, context, false);
+                if (deEvent == null) {
+                    throw new IOException("truncated transaction payload from: " + context.getLogPosition());
+                }
+
+                deEvent.getHeader().setLogFileName(payloadHeader.getLogFileName());
+                deEvent.getHeader().setLogPos(payloadHeader.getLogPos());
+                deEvent.getHeader().setEventLen(payloadHeader.getEventLen());
+                events.add(deEvent);
+            }
+        } finally {
+            context.setFormatDescription(descriptionEvent);
+            context.getLogPosition().position = payloadHeader.getLogPos();
+            if (payloadBuffer != null && payloadBuffer.length > MAX_POOLED_PAYLOAD_SIZE) {
+                payloadBuffer = null;
+            }
+        }
+
+        if (!events.isEmpty()) {
+            // semi ack只需要在整个payload处理完之后回报
+            events.get(events.size() - 1).setSemival(payloadEvent.getSemival());
+        }
+        return events;
+    }
+
+    private LogBuffer uncompress(TransactionPayloadLogEvent event) throws IOException {
+        byte[] payload = event.getPayload();
+        if (event.isCompressByNone()) {
+            return new LogBuffer(payload, 0, payload.length);
+        } else if (event.isCompressByZstd()) {
+            final int size = (int) event.getUncompressedSize();
+            if (payloadBuffer == null || payloadBuffer.length < size) {
+                payloadBuffer = new byte[size];
+            }
+
+            int length = ZstdDecompressor.decompress(payloadBuffer, 0, size, payload, 0, payload.length);
+            return new LogBuffer(payloadBuffer, 0, length);
+        } else {
+            throw new IOException("unknown compression type " + event.getCompressionType()
+                                  + " for transaction payload from: " + event.getHeader().getLogFileName() + ":"
+                                  + event.getHeader().getLogPos());
+        }
+    }
+
     /**
      * Deserialize an event from buffer.
      *
      * @return <code>UknownLogEvent</code> if event type is unknown or skipped.
      */
     public static LogEvent decode(LogBuffer buffer, LogHeader header, LogContext context) throws IOException {
+        return decode(buffer, header, context, false);
+    }
+
+    /**
+     * @param deferRows ROWS事件是否延迟解码，延迟时event直接引用buffer的数据，调用方需要保证buffer之后不会被修改
+     */
+    public static LogEvent decode(LogBuffer buffer, LogHeader header, LogContext context, boolean deferRows)
+                                                                                                            throws IOException {
         FormatDescriptionLogEvent descriptionEvent = context.getFormatDescription();
         LogPosition logPosition = context.getLogPosition();
 
@@ -186,7 +287,7 @@ public final class LogDecoder {
                 return mapEvent;
             }
             case LogEvent.WRITE_ROWS_EVENT_V1: {
-                RowsLogEvent event = new WriteRowsLogEvent(header, buffer, descriptionEvent);
+                RowsLogEvent event = new WriteRowsLogEvent(header, buffer, descriptionEvent, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -194,7 +295,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.UPDATE_ROWS_EVENT_V1: {
-                RowsLogEvent event = new UpdateRowsLogEvent(header, buffer, descriptionEvent);
+                RowsLogEvent event = new UpdateRowsLogEvent(header, buffer, descriptionEvent, false, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -202,7 +303,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.DELETE_ROWS_EVENT_V1: {
-                RowsLogEvent event = new DeleteRowsLogEvent(header, buffer, descriptionEvent);
+                RowsLogEvent event = new DeleteRowsLogEvent(header, buffer, descriptionEvent, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -350,7 +451,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.WRITE_ROWS_EVENT: {
-                RowsLogEvent event = new WriteRowsLogEvent(header, buffer, descriptionEvent);
+                RowsLogEvent event = new WriteRowsLogEvent(header, buffer, descriptionEvent, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -358,7 +459,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.UPDATE_ROWS_EVENT: {
-                RowsLogEvent event = new UpdateRowsLogEvent(header, buffer, descriptionEvent);
+                RowsLogEvent event = new UpdateRowsLogEvent(header, buffer, descriptionEvent, false, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -366,7 +467,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.DELETE_ROWS_EVENT: {
-                RowsLogEvent event = new DeleteRowsLogEvent(header, buffer, descriptionEvent);
+                RowsLogEvent event = new DeleteRowsLogEvent(header, buffer, descriptionEvent, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -374,7 +475,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.PARTIAL_UPDATE_ROWS_EVENT: {
-                RowsLogEvent event = new UpdateRowsLogEvent(header, buffer, descriptionEvent, true);
+                RowsLogEvent event = new UpdateRowsLogEvent(header, buffer, descriptionEvent, true, deferRows);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 event.fillTable(context);
@@ -419,6 +520,12 @@ public final class LogDecoder {
                 logPosition.position = header.getLogPos();
                 return event;
             }
+            case LogEvent.TRANSACTION_PAYLOAD_EVENT: {
+                TransactionPayloadLogEvent event = new TransactionPayloadLogEvent(header, buffer, descriptionEvent);
+                /* updating position in context */
+                logPosition.position = header.getLogPos();
+                return event;
+            }
             case LogEvent.ANNOTATE_ROWS_EVENT: {
                 AnnotateRowsEvent event = new AnnotateRowsEvent(header, buffer, descriptionEvent);
                 /* updating position in context */
@@ -175,6 +175,12 @@ public abstract class LogEvent {
      */
     public static final int    PARTIAL_UPDATE_ROWS_EVENT                = 39;
 
+    /**
+     * mysql 8.0.20 binlog_transaction_compression=ON时，整个事务的event压缩后记录在
+     * 一个payload event中
+     */
+    public static final int    TRANSACTION_PAYLOAD_EVENT                = 40;
+
     // mariaDb 5.5.34
     /* New MySQL/Sun events are to be added right above this comment */
     public static final int    MYSQL_EVENTS_END                         = 49;
@@ -369,6 +375,8 @@ public abstract class LogEvent {
                 return "Previous_gtids";
             case PARTIAL_UPDATE_ROWS_EVENT:
                 return "Update_rows_partial";
+            case TRANSACTION_PAYLOAD_EVENT:
+                return "Transaction_payload";
             default:
                 return "Unknown"; /* impossible */
         }
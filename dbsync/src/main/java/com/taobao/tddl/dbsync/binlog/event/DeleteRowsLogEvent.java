@@ -14,4 +14,9 @@ public final class DeleteRowsLogEvent extends RowsLogEvent {
     public DeleteRowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent){
         super(header, buffer, descriptionEvent);
     }
+
+    public DeleteRowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent,
+                              boolean deferred){
+        super(header, buffer, descriptionEvent, false, deferred);
+    }
 }
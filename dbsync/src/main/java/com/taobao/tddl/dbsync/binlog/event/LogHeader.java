@@ -247,6 +247,10 @@ public final class LogHeader {
         return logPos;
     }
 
+    public void setLogPos(long logPos) {
+        this.logPos = logPos;
+    }
+
     /**
      * The total size of this event, in bytes. In other words, this is the sum
      * of the sizes of Common-Header, Post-Header, and Body.
@@ -255,6 +259,10 @@ public final class LogHeader {
         return eventLen;
     }
 
+    public void setEventLen(int eventLen) {
+        this.eventLen = eventLen;
+    }
+
     /**
      * The time when the query started, in seconds since 1970.
      */
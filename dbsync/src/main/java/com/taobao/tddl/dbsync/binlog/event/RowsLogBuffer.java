@@ -1,13 +1,14 @@
 package com.taobao.tddl.dbsync.binlog.event;
 
 import java.io.Serializable;
-import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Arrays;
 import java.util.BitSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.taobao.tddl.dbsync.binlog.DatetimeConversion;
 import com.taobao.tddl.dbsync.binlog.JsonConversion;
 import com.taobao.tddl.dbsync.binlog.JsonConversion.Json_Value;
 import com.taobao.tddl.dbsync.binlog.JsonDiffConversion;
@@ -29,6 +30,8 @@ public final class RowsLogBuffer {
     public static final long   TIMEF_INT_OFS     = 0x800000L;
     public static final long   TIMEF_OFS         = 0x800000000000L;
     private static char[]      digits            = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' };
+    private static final int   NOT_RECORDED      = -2;
+    private static final int   NULL_VALUE        = -1;
 
     private final LogBuffer    buffer;
     private final int          columnLen;
@@ -42,6 +45,14 @@ public final class RowsLogBuffer {
     private final boolean      partial;
     private final BitSet       partialBits;
 
+    // before image中每一列原始字节的位置和长度(-1为null)，用于after image判断列值是否变化
+    private boolean            after;
+    private int[]              beforeOffsets;
+    private int[]              beforeLengths;
+
+    // NEWDECIMAL直接输出toPlainString格式的字符串，不构造BigDecimal
+    private boolean            decimalAsString;
+
     private boolean            fNull;
     private int                javaType;
     private int                length;
@@ -91,6 +102,10 @@ public final class RowsLogBuffer {
             nullBits.clear();
             buffer.fillBitmap(nullBits, column);
 
+            this.after = after;
+            if (!after && beforeLengths != null) {
+                Arrays.fill(beforeLengths, NOT_RECORDED);
+            }
         }
         return hasOneRow;
     }
@@ -119,10 +134,188 @@ public final class RowsLogBuffer {
             value = null;
             javaType = mysqlToJavaType(type, meta, isBinary);
             length = 0;
+            recordBefore(columnIndex, 0, NULL_VALUE);
             return null;
         } else {
             // Extracting field value from packed buffer.
-            return fetchValue(columName, columnIndex, type, meta, isBinary);
+            final int position = buffer.position();
+            fetchValue(columName, columnIndex, type, meta, isBinary);
+            recordBefore(columnIndex, position, buffer.position() - position);
+            return value;
+        }
+    }
+
+    /**
+     * 跳过下一个字段，只根据类型计算出字节长度并移动位置，不做任何解码
+     */
+    public final void skipValue(final int columnIndex, final int type, final int meta) {
+        fNull = nullBits.get(nullBitIndex++);
+        value = null;
+        javaType = mysqlToJavaType(type, meta, false);
+        length = 0;
+
+        if (fNull) {
+            recordBefore(columnIndex, 0, NULL_VALUE);
+        } else {
+            final int position = buffer.position();
+            final int len = valueLength(type, meta);
+            buffer.forward(len);
+            recordBefore(columnIndex, position, len);
+        }
+    }
+
+    /**
+     * update的after image中，如果下一个字段和before image中同一列的原始字节完全一致，直接跳过该字段并返回true，
+     * 调用方可以复用before image的解析结果；否则不移动位置并返回false
+     */
+    public final boolean skipIfUnchanged(final int columnIndex, final int type, final int meta) {
+        if (!after || beforeLengths == null || columnIndex >= columnLen) {
+            return false;
+        }
+
+        final int beforeLength = beforeLengths[columnIndex];
+        if (beforeLength == NOT_RECORDED || (partialBits.get(1) && type == LogEvent.MYSQL_TYPE_JSON)) {
+            // partial json记录的是diff，不能按字节比较
+            return false;
+        }
+
+        final boolean isNull = nullBits.get(nullBitIndex);
+        if (isNull != (beforeLength == NULL_VALUE)) {
+            return false;
+        }
+
+        int len = 0;
+        if (!isNull) {
+            len = valueLength(type, meta);
+            if (len != beforeLength || !buffer.equals(beforeOffsets[columnIndex], buffer.position(), len)) {
+                return false;
+            }
+            buffer.forward(len);
+        }
+
+        nullBitIndex++;
+        fNull = isNull;
+        value = null;
+        length = 0;
+        return true;
+    }
+
+    private void recordBefore(final int columnIndex, final int position, final int len) {
+        if (after || columnIndex < 0 || columnIndex >= columnLen) {
+            return;
+        }
+
+        if (beforeLengths == null) {
+            beforeOffsets = new int[columnLen];
+            beforeLengths = new int[columnLen];
+            Arrays.fill(beforeLengths, NOT_RECORDED);
+        }
+        beforeOffsets[columnIndex] = position;
+        beforeLengths[columnIndex] = len;
+    }
+
+    /**
+     * 计算当前位置上字段的字节长度(包含长度前缀)，和fetchValue的读取保持一致
+     */
+    final int valueLength(int type, final int meta) {
+        int len = 0;
+        if (type == LogEvent.MYSQL_TYPE_STRING) {
+            if (meta >= 256) {
+                int byte0 = meta >> 8;
+                int byte1 = meta & 0xff;
+                if ((byte0 & 0x30) != 0x30) {
+                    len = byte1 | (((byte0 & 0x30) ^ 0x30) << 4);
+                    type = byte0 | 0x30;
+                } else {
+                    switch (byte0) {
+                        case LogEvent.MYSQL_TYPE_SET:
+                        case LogEvent.MYSQL_TYPE_ENUM:
+                        case LogEvent.MYSQL_TYPE_STRING:
+                            type = byte0;
+                            len = byte1;
+                            break;
+                        default:
+                            throw new IllegalArgumentException(String.format("!! Don't know how to handle column type=%d meta=%d (%04X)",
+                                type,
+                                meta,
+                                meta));
+                    }
+                }
+            } else {
+                len = meta;
+            }
+        }
+
+        final int position = buffer.position();
+        switch (type) {
+            case LogEvent.MYSQL_TYPE_TINY:
+            case LogEvent.MYSQL_TYPE_YEAR:
+                return 1;
+            case LogEvent.MYSQL_TYPE_SHORT:
+                return 2;
+            case LogEvent.MYSQL_TYPE_INT24:
+            case LogEvent.MYSQL_TYPE_TIME:
+            case LogEvent.MYSQL_TYPE_DATE:
+                return 3;
+            case LogEvent.MYSQL_TYPE_LONG:
+            case LogEvent.MYSQL_TYPE_FLOAT:
+            case LogEvent.MYSQL_TYPE_TIMESTAMP:
+                return 4;
+            case LogEvent.MYSQL_TYPE_LONGLONG:
+            case LogEvent.MYSQL_TYPE_DOUBLE:
+            case LogEvent.MYSQL_TYPE_DATETIME:
+                return 8;
+            case LogEvent.MYSQL_TYPE_DECIMAL:
+            case LogEvent.MYSQL_TYPE_NEWDATE:
+                return 0;
+            case LogEvent.MYSQL_TYPE_NEWDECIMAL:
+                return LogBuffer.getDecimalBinSize(meta >> 8, meta & 0xff);
+            case LogEvent.MYSQL_TYPE_BIT: {
+                final int nbits = ((meta >> 8) * 8) + (meta & 0xff);
+                return nbits > 1 ? (nbits + 7) / 8 : 1;
+            }
+            case LogEvent.MYSQL_TYPE_TIMESTAMP2:
+                return 4 + (meta + 1) / 2;
+            case LogEvent.MYSQL_TYPE_DATETIME2:
+                return 5 + (meta + 1) / 2;
+            case LogEvent.MYSQL_TYPE_TIME2:
+                return 3 + (meta + 1) / 2;
+            case LogEvent.MYSQL_TYPE_ENUM:
+                return len;
+            case LogEvent.MYSQL_TYPE_SET: {
+                final int nbits = (meta & 0xFF) * 8;
+                len = (nbits + 7) / 8;
+                return nbits > 1 ? len : 1;
+            }
+            case LogEvent.MYSQL_TYPE_TINY_BLOB:
+            case LogEvent.MYSQL_TYPE_MEDIUM_BLOB:
+            case LogEvent.MYSQL_TYPE_LONG_BLOB:
+            case LogEvent.MYSQL_TYPE_BLOB:
+            case LogEvent.MYSQL_TYPE_JSON:
+            case LogEvent.MYSQL_TYPE_GEOMETRY:
+                switch (meta) {
+                    case 1:
+                        return 1 + buffer.getUint8(position);
+                    case 2:
+                        return 2 + buffer.getUint16(position);
+                    case 3:
+                        return 3 + buffer.getUint24(position);
+                    case 4:
+                        return 4 + (int) buffer.getUint32(position);
+                    default:
+                        throw new IllegalArgumentException("!! Unknown packlen = " + meta + " for type " + type);
+                }
+            case LogEvent.MYSQL_TYPE_VARCHAR:
+            case LogEvent.MYSQL_TYPE_VAR_STRING:
+                len = meta;
+            case LogEvent.MYSQL_TYPE_STRING:
+                if (len < 256) {
+                    return 1 + buffer.getUint8(position);
+                } else {
+                    return 2 + buffer.getUint16(position);
+                }
+            default:
+                return 0;
         }
     }
 
@@ -365,7 +558,11 @@ public final class RowsLogBuffer {
             case LogEvent.MYSQL_TYPE_NEWDECIMAL: {
                 final int precision = meta >> 8;
                 final int decimals = meta & 0xff;
-                value = buffer.getDecimal(precision, decimals);
+                if (decimalAsString) {
+                    value = buffer.getDecimalString(precision, decimals);
+                } else {
+                    value = buffer.getDecimal(precision, decimals);
+                }
                 javaType = Types.DECIMAL;
                 length = precision;
                 break;
@@ -439,8 +636,7 @@ public final class RowsLogBuffer {
                 if (i32 == 0) {
                     value = "0000-00-00 00:00:00";
                 } else {
-                    String v = new Timestamp(i32 * 1000).toString();
-                    value = v.substring(0, v.length() - 2);
+                    value = DatetimeConversion.formatTimestamp(i32, 0, 0);
                 }
                 javaType = Types.TIMESTAMP;
                 length = 4;
@@ -470,22 +666,8 @@ public final class RowsLogBuffer {
                         break;
                 }
 
-                String second = null;
-                if (tv_sec == 0) {
-                    second = "0000-00-00 00:00:00";
-                } else {
-                    Timestamp time = new Timestamp(tv_sec * 1000);
-                    second = time.toString();
-                    second = second.substring(0, second.length() - 2);// 去掉毫秒精度.0
-                }
-
-                if (meta >= 1) {
-                    String microSecond = usecondsToStr(tv_usec, meta);
-                    microSecond = microSecond.substring(0, meta);
-                    value = second + '.' + microSecond;
-                } else {
-                    value = second;
-                }
+                // 直接按默认时区格式化，不再构造Timestamp
+                value = DatetimeConversion.formatTimestamp(tv_sec, tv_usec, meta);
 
                 javaType = Types.TIMESTAMP;
                 length = 4 + (meta + 1) / 2;
@@ -514,19 +696,14 @@ public final class RowsLogBuffer {
                     // (t % 10000) / 100,
                     // t % 100);
 
-                    StringBuilder builder = new StringBuilder();
-                    appendNumber4(builder, d / 10000);
-                    builder.append('-');
-                    appendNumber2(builder, (d % 10000) / 100);
-                    builder.append('-');
-                    appendNumber2(builder, d % 100);
-                    builder.append(' ');
-                    appendNumber2(builder, t / 10000);
-                    builder.append(':');
-                    appendNumber2(builder, (t % 10000) / 100);
-                    builder.append(':');
-                    appendNumber2(builder, t % 100);
-                    value = builder.toString();
+                    value = DatetimeConversion.formatDatetime(d / 10000,
+                        (d % 10000) / 100,
+                        d % 100,
+                        t / 10000,
+                        (t % 10000) / 100,
+                        t % 100,
+                        0,
+                        0);
                 }
                 javaType = Types.TIMESTAMP;
                 length = 8;
@@ -565,9 +742,8 @@ public final class RowsLogBuffer {
                         break;
                 }
 
-                String second = null;
                 if (intpart == 0) {
-                    second = "0000-00-00 00:00:00";
+                    value = DatetimeConversion.formatDatetime(0, 0, 0, 0, 0, 0, frac, meta);
                 } else {
                     // 构造TimeStamp只处理到秒
                     long ymd = intpart >> 17;
@@ -588,27 +764,14 @@ public final class RowsLogBuffer {
                     // (int) ((hms >> 6) % (1 << 6)),
                     // (int) (hms % (1 << 6)));
 
-                    StringBuilder builder = new StringBuilder(26);
-                    appendNumber4(builder, (int) (ym / 13));
-                    builder.append('-');
-                    appendNumber2(builder, (int) (ym % 13));
-                    builder.append('-');
-                    appendNumber2(builder, (int) (ymd % (1 << 5)));
-                    builder.append(' ');
-                    appendNumber2(builder, (int) (hms >> 12));
-                    builder.append(':');
-                    appendNumber2(builder, (int) ((hms >> 6) % (1 << 6)));
-                    builder.append(':');
-                    appendNumber2(builder, (int) (hms % (1 << 6)));
-                    second = builder.toString();
-                }
-
-                if (meta >= 1) {
-                    String microSecond = usecondsToStr(frac, meta);
-                    microSecond = microSecond.substring(0, meta);
-                    value = second + '.' + microSecond;
-                } else {
-                    value = second;
+                    value = DatetimeConversion.formatDatetime((int) (ym / 13),
+                        (int) (ym % 13),
+                        (int) (ymd % (1 << 5)),
+                        (int) (hms >> 12),
+                        (int) ((hms >> 6) % (1 << 6)),
+                        (int) (hms % (1 << 6)),
+                        frac,
+                        meta);
                 }
 
                 javaType = Types.TIMESTAMP;
@@ -635,22 +798,14 @@ public final class RowsLogBuffer {
                     // (u32 % 10000) / 100,
                     // u32 % 100);
 
-                    StringBuilder builder = new StringBuilder(17);
-                    if (i32 < 0) {
-                        builder.append('-');
-                    }
-
-                    int d = u32 / 10000;
-                    if (d > 100) {
-                        builder.append(String.valueOf(d));
-                    } else {
-                        appendNumber2(builder, d);
-                    }
-                    builder.append(':');
-                    appendNumber2(builder, (u32 % 10000) / 100);
-                    builder.append(':');
-                    appendNumber2(builder, u32 % 100);
-                    value = builder.toString();
+                    // 小时超过100时完整输出
+                    value = DatetimeConversion.formatTime(i32 < 0,
+                        u32 / 10000,
+                        (u32 % 10000) / 100,
+                        u32 % 100,
+                        0,
+                        0,
+                        101);
                 }
                 javaType = Types.TIME;
                 length = 3;
@@ -731,9 +886,8 @@ public final class RowsLogBuffer {
                         break;
                 }
 
-                String second = null;
                 if (intpart == 0) {
-                    second = "00:00:00";
+                    value = DatetimeConversion.formatTime(false, 0, 0, 0, Math.abs(frac), meta, 100);
                 } else {
                     // 目前只记录秒，不处理us frac
                     // if (cal == null) cal = Calendar.getInstance();
@@ -750,30 +904,13 @@ public final class RowsLogBuffer {
                     // (int) ((intpart >> 6) % (1 << 6)),
                     // (int) (intpart % (1 << 6)));
 
-                    StringBuilder builder = new StringBuilder(12);
-                    if (ltime < 0) {
-                        builder.append('-');
-                    }
-
-                    int d = (int) ((intpart >> 12) % (1 << 10));
-                    if (d >= 100) {
-                        builder.append(String.valueOf(d));
-                    } else {
-                        appendNumber2(builder, d);
-                    }
-                    builder.append(':');
-                    appendNumber2(builder, (int) ((intpart >> 6) % (1 << 6)));
-                    builder.append(':');
-                    appendNumber2(builder, (int) (intpart % (1 << 6)));
-                    second = builder.toString();
-                }
-
-                if (meta >= 1) {
-                    String microSecond = usecondsToStr(Math.abs(frac), meta);
-                    microSecond = microSecond.substring(0, meta);
-                    value = second + '.' + microSecond;
-                } else {
-                    value = second;
+                    value = DatetimeConversion.formatTime(ltime < 0,
+                        (int) ((intpart >> 12) % (1 << 10)),
+                        (int) ((intpart >> 6) % (1 << 6)),
+                        (int) (intpart % (1 << 6)),
+                        Math.abs(frac),
+                        meta,
+                        100);
                 }
 
                 javaType = Types.TIME;
@@ -808,13 +945,7 @@ public final class RowsLogBuffer {
                     // value = String.format("%04d-%02d-%02d", i32 / (16 * 32),
                     // i32 / 32 % 16, i32 % 32);
 
-                    StringBuilder builder = new StringBuilder(12);
-                    appendNumber4(builder, i32 / (16 * 32));
-                    builder.append('-');
-                    appendNumber2(builder, i32 / 32 % 16);
-                    builder.append('-');
-                    appendNumber2(builder, i32 % 32);
-                    value = builder.toString();
+                    value = DatetimeConversion.formatDate(i32 / (16 * 32), i32 / 32 % 16, i32 % 32);
                 }
                 javaType = Types.DATE;
                 length = 3;
@@ -1162,6 +1293,10 @@ public final class RowsLogBuffer {
         return length;
     }
 
+    public final void setDecimalAsString(boolean decimalAsString) {
+        this.decimalAsString = decimalAsString;
+    }
+
     public static String usecondsToStr(int frac, int meta) {
         String sec = String.valueOf(frac);
         if (meta > 6) {
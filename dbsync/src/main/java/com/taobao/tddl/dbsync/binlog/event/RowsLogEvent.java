@@ -62,9 +62,9 @@ public abstract class RowsLogEvent extends LogEvent {
                                                                   */
 
     /** Bitmap denoting columns available */
-    protected final int      columnLen;
+    protected int            columnLen;
     protected final boolean  partial;
-    protected final BitSet   columns;
+    protected BitSet         columns;
 
     /**
      * Bitmap for columns available in the after image, if present. These fields
@@ -72,12 +72,12 @@ public abstract class RowsLogEvent extends LogEvent {
      * the before image COLS vector and the after image COLS vector is the same:
      * the number of columns of the table on the master.
      */
-    protected final BitSet   changeColumns;
+    protected BitSet         changeColumns;
 
     protected int            jsonColumnCount         = 0;
 
     /** XXX: Don't handle buffer in another thread. */
-    private final LogBuffer  rowsBuf;                           /*
+    private LogBuffer        rowsBuf;                           /*
                                                                   * The rows in
                                                                   * packed
                                                                   * format
@@ -91,6 +91,13 @@ public abstract class RowsLogEvent extends LogEvent {
      */
     private final int        flags;
 
+    /**
+     * 延迟解码时保留的event数据，rows部分在第一次访问时才解析
+     */
+    private LogBuffer        pendingBuf;
+    private int              pendingCommonHeaderLen;
+    private int              pendingPostHeaderLen;
+
     /** Last event of a statement */
     public static final int  STMT_END_F              = 1;
 
@@ -118,11 +125,19 @@ public abstract class RowsLogEvent extends LogEvent {
     }
 
     public RowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent, boolean partial){
+        this(header, buffer, descriptionEvent, partial, false);
+    }
+
+    /**
+     * @param deferred 为true时只解析table_id/flags，列的bitmap以及rows数据在第一次访问时才解析(可以在其他线程中完成)，
+     * 且直接引用buffer的数据不做拷贝，调用方需要保证buffer之后不会被修改
+     */
+    public RowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent,
+                        boolean partial, boolean deferred){
         super(header);
 
         final int commonHeaderLen = descriptionEvent.commonHeaderLen;
         final int postHeaderLen = descriptionEvent.postHeaderLen[header.type - 1];
-        int headerLen = 0;
         buffer.position(commonHeaderLen + RW_MAPID_OFFSET);
         if (postHeaderLen == 6) {
             /*
@@ -134,8 +149,21 @@ public abstract class RowsLogEvent extends LogEvent {
             tableId = buffer.getUlong48(); // RW_FLAGS_OFFSET
         }
         flags = buffer.getUint16();
+        this.partial = partial;
+
+        if (deferred) {
+            pendingBuf = buffer.slice(0, buffer.limit());
+            pendingCommonHeaderLen = commonHeaderLen;
+            pendingPostHeaderLen = postHeaderLen;
+        } else {
+            decodeRows(buffer, commonHeaderLen, postHeaderLen, false);
+        }
+    }
 
+    private void decodeRows(LogBuffer buffer, int commonHeaderLen, int postHeaderLen, boolean shared) {
+        int headerLen = 0;
         if (postHeaderLen == FormatDescriptionLogEvent.ROWS_HEADER_LEN_V2) {
+            buffer.position(commonHeaderLen + RW_VHLEN_OFFSET);
             headerLen = buffer.getUint16();
             headerLen -= 2;
             int start = buffer.position();
@@ -162,7 +190,6 @@ public abstract class RowsLogEvent extends LogEvent {
 
         buffer.position(commonHeaderLen + postHeaderLen + headerLen);
         columnLen = (int) buffer.getPackedLong();
-        this.partial = partial;
         columns = buffer.getBitmap(columnLen);
 
         if (header.type == UPDATE_ROWS_EVENT_V1 || header.type == UPDATE_ROWS_EVENT
@@ -172,9 +199,29 @@ public abstract class RowsLogEvent extends LogEvent {
             changeColumns = columns;
         }
 
-        // XXX: Don't handle buffer in another thread.
         int dataSize = buffer.limit() - buffer.position();
-        rowsBuf = buffer.duplicate(dataSize);
+        if (shared) {
+            // 延迟解码时buffer为当前event独占，直接引用
+            rowsBuf = buffer.slice(buffer.position(), dataSize);
+        } else {
+            // XXX: Don't handle buffer in another thread.
+            rowsBuf = buffer.duplicate(dataSize);
+        }
+    }
+
+    /**
+     * 完成延迟的rows解码，非延迟模式或者已经解码过时直接返回
+     */
+    public final void decodeRows() {
+        LogBuffer buffer = pendingBuf;
+        if (buffer != null) {
+            decodeRows(buffer, pendingCommonHeaderLen, pendingPostHeaderLen, true);
+            pendingBuf = null;
+        }
+    }
+
+    public final boolean isDecoded() {
+        return pendingBuf == null;
     }
 
     public final void fillTable(LogContext context) {
@@ -212,14 +259,17 @@ public abstract class RowsLogEvent extends LogEvent {
     }
 
     public final BitSet getColumns() {
+        decodeRows();
         return columns;
     }
 
     public final BitSet getChangeColumns() {
+        decodeRows();
         return changeColumns;
     }
 
     public final RowsLogBuffer getRowsBuf(String charsetName) {
+        decodeRows();
         return new RowsLogBuffer(rowsBuf, columnLen, charsetName, jsonColumnCount, partial);
     }
 
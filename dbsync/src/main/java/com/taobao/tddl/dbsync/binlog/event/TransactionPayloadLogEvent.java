@@ -0,0 +1,95 @@
+package com.taobao.tddl.dbsync.binlog.event;
+
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+/**
+ * binlog_transaction_compression=ON时，整个事务的event被压缩后放在一个payload event中
+ *
+ * <pre>
+ * body格式为一组TLV字段，type/length/value均为packed integer，以END_MARK结束，之后为压缩后的payload:
+ *   [type][length][value] ... [END_MARK][payload]
+ *
+ * payload解压后为一组完整的binlog event(不带checksum)，由LogDecoder负责继续解析
+ * </pre>
+ *
+ * @see mysql-8.0.20/libbinlogevents/src/control_events.cpp
+ * @since mysql 8.0.20
+ */
+public class TransactionPayloadLogEvent extends LogEvent {
+
+    public static final int  OTW_PAYLOAD_HEADER_END_MARK         = 0;
+    public static final int  OTW_PAYLOAD_SIZE_FIELD              = 1;
+    public static final int  OTW_PAYLOAD_COMPRESSION_TYPE_FIELD  = 2;
+    public static final int  OTW_PAYLOAD_UNCOMPRESSED_SIZE_FIELD = 3;
+
+    public static final int  COMPRESSION_TYPE_ZSTD               = 0;
+    public static final int  COMPRESSION_TYPE_NONE               = 255;
+
+    private long             payloadSize;
+    private int              compressionType                     = COMPRESSION_TYPE_NONE;
+    private long             uncompressedSize;
+    private byte[]           payload;
+
+    public TransactionPayloadLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent){
+        super(header);
+
+        final int commonHeaderLen = descriptionEvent.getCommonHeaderLen();
+        buffer.position(commonHeaderLen + FormatDescriptionLogEvent.TRANSACTION_PAYLOAD_HEADER_LEN);
+
+        while (buffer.hasRemaining()) {
+            int type = (int) buffer.getPackedLong();
+            if (type == OTW_PAYLOAD_HEADER_END_MARK) {
+                break;
+            }
+
+            int length = (int) buffer.getPackedLong();
+            int next = buffer.position() + length;
+            switch (type) {
+                case OTW_PAYLOAD_SIZE_FIELD:
+                    payloadSize = buffer.getPackedLong();
+                    break;
+                case OTW_PAYLOAD_COMPRESSION_TYPE_FIELD:
+                    compressionType = (int) buffer.getPackedLong();
+                    break;
+                case OTW_PAYLOAD_UNCOMPRESSED_SIZE_FIELD:
+                    uncompressedSize = buffer.getPackedLong();
+                    break;
+                default:
+                    // 忽略未知的字段，按length跳过
+                    break;
+            }
+            buffer.position(next);
+        }
+
+        if (uncompressedSize == 0) {
+            uncompressedSize = payloadSize;
+        }
+        // 压缩数据一般只有原始事务的1/3~1/5，这里直接拷贝，解压使用LogDecoder中复用的buffer
+        payload = buffer.getData((int) payloadSize);
+    }
+
+    public boolean isCompressByZstd() {
+        return compressionType == COMPRESSION_TYPE_ZSTD;
+    }
+
+    public boolean isCompressByNone() {
+        return compressionType == COMPRESSION_TYPE_NONE;
+    }
+
+    public long getPayloadSize() {
+        return payloadSize;
+    }
+
+    public int getCompressionType() {
+        return compressionType;
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
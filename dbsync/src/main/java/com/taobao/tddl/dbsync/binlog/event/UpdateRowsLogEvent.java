@@ -21,4 +21,9 @@ public final class UpdateRowsLogEvent extends RowsLogEvent {
                               boolean partial){
         super(header, buffer, descriptionEvent, partial);
     }
+
+    public UpdateRowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent,
+                              boolean partial, boolean deferred){
+        super(header, buffer, descriptionEvent, partial, deferred);
+    }
 }
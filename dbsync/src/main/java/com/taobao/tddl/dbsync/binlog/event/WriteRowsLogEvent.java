@@ -14,4 +14,9 @@ public final class WriteRowsLogEvent extends RowsLogEvent {
     public WriteRowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent){
         super(header, buffer, descriptionEvent);
     }
+
+    public WriteRowsLogEvent(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent,
+                             boolean deferred){
+        super(header, buffer, descriptionEvent, false, deferred);
+    }
 }
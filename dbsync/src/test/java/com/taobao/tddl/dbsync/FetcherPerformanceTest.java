@@ -7,7 +7,11 @@ import java.sql.Statement;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.taobao.tddl.dbsync.binlog.DirectLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
 
 public class FetcherPerformanceTest {
 
@@ -22,18 +26,35 @@ public class FetcherPerformanceTest {
 
             fetcher.open(connection, "mysql-bin.000006", 120L, 2);
 
+            // 开启binlog_transaction_compression后，统计payload解压展开后的event数
+            LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+            LogContext context = new LogContext(new FormatDescriptionLogEvent(4, LogEvent.BINLOG_CHECKSUM_ALG_CRC32));
+            context.setLogPosition(new LogPosition("mysql-bin.000006", 120L));
+
             AtomicLong sum = new AtomicLong(0);
+            AtomicLong payloads = new AtomicLong(0);
             long start = System.currentTimeMillis();
             long last = 0;
             long end = 0;
 
             while (fetcher.fetch()) {
-                sum.incrementAndGet();
+                LogEvent event = decoder.decode(fetcher, context);
+                if (event == null) {
+                    continue;
+                }
+
+                if (event.getHeader().getType() == LogEvent.TRANSACTION_PAYLOAD_EVENT) {
+                    payloads.incrementAndGet();
+                    sum.addAndGet(decoder.processIterateDecode(event, context).size());
+                } else {
+                    sum.incrementAndGet();
+                }
                 long current = sum.get();
                 if (current - last >= 100000) {
                     end = System.currentTimeMillis();
                     long tps = ((current - last) * 1000) / (end - start);
-                    System.out.println(" total : " + sum + " , cost : " + (end - start) + " , tps : " + tps);
+                    System.out.println(" total : " + sum + " , payload : " + payloads + " , cost : " + (end - start)
+                                       + " , tps : " + tps);
                     last = current;
                     start = end;
                 }
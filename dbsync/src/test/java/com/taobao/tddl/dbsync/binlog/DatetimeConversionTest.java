@@ -0,0 +1,65 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer;
+
+public class DatetimeConversionTest {
+
+    @Test
+    public void testFormatTimestamp() {
+        TimeZone origin = TimeZone.getDefault();
+        try {
+            for (String zone : new String[] { "Asia/Shanghai", "America/New_York", "UTC", "Australia/Lord_Howe" }) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zone));
+                Random random = new Random(zone.hashCode());
+                long seconds = 1;
+                // 顺序递增，覆盖夏令时切换
+                while (seconds < 0xFFFFFFFFL) {
+                    assertTimestamp(zone, seconds);
+                    seconds += 1 + random.nextInt(7 * 24 * 3600);
+                }
+                // 乱序
+                for (int i = 0; i < 10000; i++) {
+                    assertTimestamp(zone, 1 + (random.nextLong() & 0x7FFFFFFFL));
+                }
+            }
+        } finally {
+            TimeZone.setDefault(origin);
+        }
+    }
+
+    @Test
+    public void testFraction() {
+        for (int meta = 1; meta <= 6; meta++) {
+            for (int micros : new int[] { 0, 5, 120000, 999999, 123456, 10 }) {
+                String expected = "2020-05-28 10:21:36." + RowsLogBuffer.usecondsToStr(micros, meta);
+                Assert.assertEquals(expected, DatetimeConversion.formatDatetime(2020, 5, 28, 10, 21, 36, micros, meta));
+            }
+        }
+        Assert.assertEquals("0000-00-00 00:00:00", DatetimeConversion.formatDatetime(0, 0, 0, 0, 0, 0, 0, 0));
+        Assert.assertEquals("0099-01-02 03:04:05", DatetimeConversion.formatDatetime(99, 1, 2, 3, 4, 5, 0, 0));
+        Assert.assertEquals("2020-05-28", DatetimeConversion.formatDate(2020, 5, 28));
+    }
+
+    @Test
+    public void testFormatTime() {
+        Assert.assertEquals("-838:59:59", DatetimeConversion.formatTime(true, 838, 59, 59, 0, 0, 101));
+        Assert.assertEquals("00:00:01.5", DatetimeConversion.formatTime(false, 0, 0, 1, 500000, 1, 100));
+        Assert.assertEquals("99:00:00", DatetimeConversion.formatTime(false, 99, 0, 0, 0, 0, 100));
+        Assert.assertEquals("100:00:00", DatetimeConversion.formatTime(false, 100, 0, 0, 0, 0, 100));
+        // TIME类型小时为100时保持之前的两位输出
+        Assert.assertEquals("00:00:00", DatetimeConversion.formatTime(false, 100, 0, 0, 0, 0, 101));
+    }
+
+    private void assertTimestamp(String zone, long seconds) {
+        String expected = new Timestamp(seconds * 1000).toString();
+        expected = expected.substring(0, expected.length() - 2);
+        Assert.assertEquals(zone + " " + seconds, expected, DatetimeConversion.formatTimestamp(seconds, 0, 0));
+    }
+}
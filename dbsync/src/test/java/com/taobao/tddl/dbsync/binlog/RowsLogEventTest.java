@@ -0,0 +1,129 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.TableMapLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.UpdateRowsLogEvent;
+
+/**
+ * 测试ROWS事件的延迟解码，table map按顺序绑定，rows数据在其他线程中解码
+ */
+public class RowsLogEventTest {
+
+    private static final int  HEADER_LEN = 19;
+    private static final long TABLE_ID   = 108L;
+
+    @Test
+    public void testDeferredDecode() throws Exception {
+        List<Object> expected = decodeValues(false);
+        List<Object> actual = decodeValues(true);
+        Assert.assertEquals(Arrays.<Object> asList(1, "a", 1, "b"), expected);
+        Assert.assertEquals(expected, actual);
+    }
+
+    private List<Object> decodeValues(boolean deferred) throws Exception {
+        LogContext context = new LogContext(new FormatDescriptionLogEvent(4, LogEvent.BINLOG_CHECKSUM_ALG_CRC32));
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4L));
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        decoder.setDeferRowsDecode(deferred);
+
+        byte[] tableMap = tableMapEvent(200L);
+        LogEvent mapEvent = decoder.decode(new LogBuffer(tableMap, 0, tableMap.length), context);
+        Assert.assertTrue(mapEvent instanceof TableMapLogEvent);
+
+        byte[] rows = updateRowsEvent(300L);
+        LogEvent event = decoder.decode(new LogBuffer(rows, 0, rows.length), context);
+        Assert.assertTrue(event instanceof UpdateRowsLogEvent);
+        final RowsLogEvent rowsEvent = (RowsLogEvent) event;
+        Assert.assertEquals(!deferred, rowsEvent.isDecoded());
+        // table map以及位点在decode时就已经按顺序处理
+        Assert.assertSame(mapEvent, rowsEvent.getTable());
+        Assert.assertNull(context.getTable(TABLE_ID));
+        Assert.assertEquals(300L, context.getLogPosition().getPosition());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(new Callable<List<Object>>() {
+
+                public List<Object> call() throws IOException {
+                    rowsEvent.decodeRows();
+                    Assert.assertTrue(rowsEvent.isDecoded());
+                    List<Object> values = new ArrayList<Object>();
+                    RowsLogBuffer buffer = rowsEvent.getRowsBuf("UTF-8");
+                    Assert.assertTrue(buffer.nextOneRow(rowsEvent.getColumns(), false));
+                    values.add(buffer.nextValue("id", 0, LogEvent.MYSQL_TYPE_LONG, 0));
+                    values.add(buffer.nextValue("name", 1, LogEvent.MYSQL_TYPE_VARCHAR, 100));
+                    Assert.assertTrue(buffer.nextOneRow(rowsEvent.getChangeColumns(), true));
+                    values.add(buffer.nextValue("id", 0, LogEvent.MYSQL_TYPE_LONG, 0));
+                    values.add(buffer.nextValue("name", 1, LogEvent.MYSQL_TYPE_VARCHAR, 100));
+                    Assert.assertFalse(buffer.nextOneRow(rowsEvent.getColumns()));
+                    return values;
+                }
+            }).get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] tableMapEvent(long logPos) {
+        ByteBuffer body = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        putTableId(body);
+        body.putShort((short) 0);
+        body.put((byte) 4).put("test".getBytes()).put((byte) 0);
+        body.put((byte) 4).put("user".getBytes()).put((byte) 0);
+        body.put((byte) 2);
+        body.put((byte) LogEvent.MYSQL_TYPE_LONG).put((byte) LogEvent.MYSQL_TYPE_VARCHAR);
+        body.put((byte) 2).putShort((short) 100); // varchar metadata
+        body.put((byte) 0x02); // null bits
+        return event(LogEvent.TABLE_MAP_EVENT, body, logPos);
+    }
+
+    /**
+     * v2格式的update，带STMT_END_F标记
+     */
+    private static byte[] updateRowsEvent(long logPos) {
+        ByteBuffer body = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        putTableId(body);
+        body.putShort((short) RowsLogEvent.STMT_END_F);
+        body.putShort((short) 2); // extra header len
+        body.put((byte) 2);
+        body.put((byte) 0x03).put((byte) 0x03);
+        body.put((byte) 0).putInt(1).put((byte) 1).put((byte) 'a');
+        body.put((byte) 0).putInt(1).put((byte) 1).put((byte) 'b');
+        return event(LogEvent.UPDATE_ROWS_EVENT, body, logPos);
+    }
+
+    private static void putTableId(ByteBuffer body) {
+        body.putInt((int) TABLE_ID);
+        body.putShort((short) 0);
+    }
+
+    private static byte[] event(int type, ByteBuffer body, long logPos) {
+        body.flip();
+        int eventLen = HEADER_LEN + body.remaining() + LogEvent.BINLOG_CHECKSUM_LEN;
+        ByteBuffer buffer = ByteBuffer.allocate(eventLen).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt((int) (System.currentTimeMillis() / 1000));
+        buffer.put((byte) type);
+        buffer.putInt(1);
+        buffer.putInt(eventLen);
+        buffer.putInt((int) logPos);
+        buffer.putShort((short) 0);
+        buffer.put(body);
+        buffer.putInt(0);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,133 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.TransactionPayloadLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.XidLogEvent;
+
+/**
+ * 测试transaction payload的解析以及内部event的展开
+ */
+public class TransactionPayloadLogEventTest {
+
+    private static final int HEADER_LEN = 19;
+
+    @Test
+    public void testIterateUncompressedPayload() throws IOException {
+        byte[] payload = concat(xidEvent(100L), xidEvent(101L));
+        byte[] event = payloadEvent(TransactionPayloadLogEvent.COMPRESSION_TYPE_NONE, payload, 1000L);
+
+        FormatDescriptionLogEvent descriptionEvent = new FormatDescriptionLogEvent(4,
+            LogEvent.BINLOG_CHECKSUM_ALG_CRC32);
+        LogContext context = new LogContext(descriptionEvent);
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4L));
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+
+        LogEvent logEvent = decoder.decode(new LogBuffer(event, 0, event.length), context);
+        Assert.assertTrue(logEvent instanceof TransactionPayloadLogEvent);
+        TransactionPayloadLogEvent payloadEvent = (TransactionPayloadLogEvent) logEvent;
+        Assert.assertTrue(payloadEvent.isCompressByNone());
+        Assert.assertEquals(payload.length, payloadEvent.getPayloadSize());
+        Assert.assertEquals(payload.length, payloadEvent.getUncompressedSize());
+
+        List<LogEvent> events = decoder.processIterateDecode(logEvent, context);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(100L, ((XidLogEvent) events.get(0)).getXid());
+        Assert.assertEquals(101L, ((XidLogEvent) events.get(1)).getXid());
+        for (LogEvent deEvent : events) {
+            // 内部event的位点统一为payload event的位点
+            Assert.assertEquals(1000L, deEvent.getLogPos());
+            Assert.assertEquals(event.length, deEvent.getEventLen());
+            Assert.assertEquals("mysql-bin.000001", deEvent.getHeader().getLogFileName());
+        }
+
+        Assert.assertSame(descriptionEvent, context.getFormatDescription());
+        Assert.assertEquals(1000L, context.getLogPosition().getPosition());
+    }
+
+    @Test
+    public void testIterateNormalEvent() throws IOException {
+        byte[] event = xidEvent(100L);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4L));
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+
+        LogEvent logEvent = decoder.decode(new LogBuffer(event, 0, event.length), context);
+        List<LogEvent> events = decoder.processIterateDecode(logEvent, context);
+        Assert.assertEquals(1, events.size());
+        Assert.assertSame(logEvent, events.get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownCompressionType() throws IOException {
+        byte[] event = payloadEvent(1, xidEvent(100L), 1000L);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4L));
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+
+        LogEvent logEvent = decoder.decode(new LogBuffer(event, 0, event.length), context);
+        decoder.processIterateDecode(logEvent, context);
+    }
+
+    private static byte[] xidEvent(long xid) {
+        ByteBuffer buffer = header(LogEvent.XID_EVENT, HEADER_LEN + 8, 0L);
+        buffer.putLong(xid);
+        return buffer.array();
+    }
+
+    /**
+     * payload event带CRC32 checksum，内部event不带checksum
+     */
+    private static byte[] payloadEvent(int compressionType, byte[] payload, long logPos) {
+        ByteBuffer body = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        body.put((byte) TransactionPayloadLogEvent.OTW_PAYLOAD_SIZE_FIELD);
+        body.put((byte) 1);
+        body.put((byte) payload.length);
+        body.put((byte) TransactionPayloadLogEvent.OTW_PAYLOAD_COMPRESSION_TYPE_FIELD);
+        if (compressionType < 251) {
+            body.put((byte) 1);
+            body.put((byte) compressionType);
+        } else {
+            body.put((byte) 3);
+            body.put((byte) 0xfc);
+            body.putShort((short) compressionType);
+        }
+        body.put((byte) TransactionPayloadLogEvent.OTW_PAYLOAD_UNCOMPRESSED_SIZE_FIELD);
+        body.put((byte) 1);
+        body.put((byte) payload.length);
+        body.put((byte) TransactionPayloadLogEvent.OTW_PAYLOAD_HEADER_END_MARK);
+        body.flip();
+
+        int eventLen = HEADER_LEN + body.remaining() + payload.length + LogEvent.BINLOG_CHECKSUM_LEN;
+        ByteBuffer buffer = header(LogEvent.TRANSACTION_PAYLOAD_EVENT, eventLen, logPos);
+        buffer.put(body);
+        buffer.put(payload);
+        buffer.putInt(0);
+        return buffer.array();
+    }
+
+    private static ByteBuffer header(int type, int eventLen, long logPos) {
+        ByteBuffer buffer = ByteBuffer.allocate(eventLen).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt((int) (System.currentTimeMillis() / 1000));
+        buffer.put((byte) type);
+        buffer.putInt(1);
+        buffer.putInt(eventLen);
+        buffer.putInt((int) logPos);
+        buffer.putShort((short) 0);
+        return buffer;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,220 @@
+package com.taobao.tddl.dbsync.binlog.event;
+
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+/**
+ * 统计RowsLogBuffer中每种mysql类型的解码耗时，便于发现解码性能的回退
+ *
+ * <pre>
+ * 每种类型构造ROWS行单列的数据，预热后循环解码DURATION毫秒，输出ns/value，可以配合-verbose:gc观察分配
+ * </pre>
+ */
+@Ignore
+public class RowsLogBufferPerformanceTest {
+
+    private static final int  ROWS     = 1000;
+    private static final long WARMUP   = 2 * 1000L;
+    private static final long DURATION = 5 * 1000L;
+
+    @Test
+    public void testDecode() {
+        Map<String, int[]> types = new LinkedHashMap<String, int[]>();
+        types.put("TINY", new int[] { LogEvent.MYSQL_TYPE_TINY, 0 });
+        types.put("SHORT", new int[] { LogEvent.MYSQL_TYPE_SHORT, 0 });
+        types.put("INT24", new int[] { LogEvent.MYSQL_TYPE_INT24, 0 });
+        types.put("LONG", new int[] { LogEvent.MYSQL_TYPE_LONG, 0 });
+        types.put("LONGLONG", new int[] { LogEvent.MYSQL_TYPE_LONGLONG, 0 });
+        types.put("FLOAT", new int[] { LogEvent.MYSQL_TYPE_FLOAT, 4 });
+        types.put("DOUBLE", new int[] { LogEvent.MYSQL_TYPE_DOUBLE, 8 });
+        types.put("NEWDECIMAL(10,2)", new int[] { LogEvent.MYSQL_TYPE_NEWDECIMAL, (10 << 8) | 2 });
+        types.put("NEWDECIMAL(30,10)", new int[] { LogEvent.MYSQL_TYPE_NEWDECIMAL, (30 << 8) | 10 });
+        types.put("BIT(8)", new int[] { LogEvent.MYSQL_TYPE_BIT, 1 << 8 });
+        types.put("TIMESTAMP", new int[] { LogEvent.MYSQL_TYPE_TIMESTAMP, 0 });
+        types.put("TIMESTAMP2(0)", new int[] { LogEvent.MYSQL_TYPE_TIMESTAMP2, 0 });
+        types.put("TIMESTAMP2(6)", new int[] { LogEvent.MYSQL_TYPE_TIMESTAMP2, 6 });
+        types.put("DATETIME", new int[] { LogEvent.MYSQL_TYPE_DATETIME, 0 });
+        types.put("DATETIME2(0)", new int[] { LogEvent.MYSQL_TYPE_DATETIME2, 0 });
+        types.put("DATETIME2(3)", new int[] { LogEvent.MYSQL_TYPE_DATETIME2, 3 });
+        types.put("TIME", new int[] { LogEvent.MYSQL_TYPE_TIME, 0 });
+        types.put("TIME2(0)", new int[] { LogEvent.MYSQL_TYPE_TIME2, 0 });
+        types.put("TIME2(6)", new int[] { LogEvent.MYSQL_TYPE_TIME2, 6 });
+        types.put("DATE", new int[] { LogEvent.MYSQL_TYPE_DATE, 0 });
+        types.put("YEAR", new int[] { LogEvent.MYSQL_TYPE_YEAR, 0 });
+        types.put("ENUM", new int[] { LogEvent.MYSQL_TYPE_STRING, (LogEvent.MYSQL_TYPE_ENUM << 8) | 1 });
+        types.put("SET", new int[] { LogEvent.MYSQL_TYPE_STRING, (LogEvent.MYSQL_TYPE_SET << 8) | 1 });
+        types.put("VARCHAR(64)", new int[] { LogEvent.MYSQL_TYPE_VARCHAR, 64 * 3 });
+        types.put("STRING(16)", new int[] { LogEvent.MYSQL_TYPE_STRING, (LogEvent.MYSQL_TYPE_STRING << 8) | 48 });
+        types.put("BLOB", new int[] { LogEvent.MYSQL_TYPE_BLOB, 2 });
+        types.put("JSON", new int[] { LogEvent.MYSQL_TYPE_JSON, 4 });
+        types.put("GEOMETRY", new int[] { LogEvent.MYSQL_TYPE_GEOMETRY, 4 });
+
+        for (Map.Entry<String, int[]> entry : types.entrySet()) {
+            int type = entry.getValue()[0];
+            int meta = entry.getValue()[1];
+            byte[] data = buildRows(type, meta);
+            run(data, type, meta, WARMUP);
+            long count = run(data, type, meta, DURATION);
+            System.out.println(String.format("%-20s : %8.1f ns/value", entry.getKey(), DURATION * 1000000.0 / count));
+        }
+    }
+
+    private long run(byte[] data, int type, int meta, long duration) {
+        BitSet columns = new BitSet(1);
+        columns.set(0);
+        long count = 0;
+        long end = System.currentTimeMillis() + duration;
+        while (System.currentTimeMillis() < end) {
+            RowsLogBuffer buffer = new RowsLogBuffer(new LogBuffer(data, 0, data.length), 1, "UTF-8", 0, false);
+            buffer.setDecimalAsString(true);
+            while (buffer.nextOneRow(columns)) {
+                buffer.nextValue("c", 0, type, meta);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private byte[] buildRows(int type, int meta) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < ROWS; i++) {
+            out.write(0); // null bitmap
+            byte[] value = value(type, meta, i);
+            out.write(value, 0, value.length);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] value(int type, int meta, int i) {
+        switch (type) {
+            case LogEvent.MYSQL_TYPE_TINY:
+            case LogEvent.MYSQL_TYPE_YEAR:
+                return new byte[] { (byte) (i % 100) };
+            case LogEvent.MYSQL_TYPE_SHORT:
+                return new byte[] { (byte) i, 0x01 };
+            case LogEvent.MYSQL_TYPE_INT24:
+                return new byte[] { (byte) i, 0x01, 0x00 };
+            case LogEvent.MYSQL_TYPE_LONG:
+            case LogEvent.MYSQL_TYPE_FLOAT:
+                return new byte[] { (byte) i, 0x01, 0x02, 0x03 };
+            case LogEvent.MYSQL_TYPE_LONGLONG:
+            case LogEvent.MYSQL_TYPE_DOUBLE:
+                return new byte[] { (byte) i, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07 };
+            case LogEvent.MYSQL_TYPE_NEWDECIMAL: {
+                byte[] value = new byte[LogBuffer.getDecimalBinSize(meta >> 8, meta & 0xff)];
+                for (int j = 0; j < value.length; j++) {
+                    value[j] = (byte) ((i + j) % 9);
+                }
+                value[0] |= 0x80;
+                return value;
+            }
+            case LogEvent.MYSQL_TYPE_BIT:
+                return new byte[] { (byte) i };
+            case LogEvent.MYSQL_TYPE_TIMESTAMP:
+            case LogEvent.MYSQL_TYPE_TIMESTAMP2: {
+                // 2020-05-28前后
+                long seconds = 1590600000L + i * 37L;
+                byte[] value = new byte[4 + (meta + 1) / 2];
+                if (type == LogEvent.MYSQL_TYPE_TIMESTAMP) {
+                    for (int j = 0; j < 4; j++) {
+                        value[j] = (byte) (seconds >> (8 * j));
+                    }
+                } else {
+                    for (int j = 0; j < 4; j++) {
+                        value[j] = (byte) (seconds >> (8 * (3 - j)));
+                    }
+                    for (int j = 4; j < value.length; j++) {
+                        value[j] = (byte) (i % 100);
+                    }
+                }
+                return value;
+            }
+            case LogEvent.MYSQL_TYPE_DATETIME: {
+                long datetime = 20200528102136L + i % 20;
+                byte[] value = new byte[8];
+                for (int j = 0; j < 8; j++) {
+                    value[j] = (byte) (datetime >> (8 * j));
+                }
+                return value;
+            }
+            case LogEvent.MYSQL_TYPE_DATETIME2: {
+                long ym = 2020 * 13 + 5;
+                long intpart = (((ym << 5) | 28) << 17) | (10 << 12) | (21 << 6) | (i % 60);
+                intpart += 0x8000000000L;
+                byte[] value = new byte[5 + (meta + 1) / 2];
+                for (int j = 0; j < 5; j++) {
+                    value[j] = (byte) (intpart >> (8 * (4 - j)));
+                }
+                for (int j = 5; j < value.length; j++) {
+                    value[j] = (byte) (i % 100);
+                }
+                return value;
+            }
+            case LogEvent.MYSQL_TYPE_TIME:
+                return new byte[] { (byte) (i % 60), 0x10, 0x01 };
+            case LogEvent.MYSQL_TYPE_TIME2: {
+                long intpart = ((10 << 12) | (21 << 6) | (i % 60)) + 0x800000L;
+                byte[] value = new byte[3 + (meta + 1) / 2];
+                for (int j = 0; j < 3; j++) {
+                    value[j] = (byte) (intpart >> (8 * (2 - j)));
+                }
+                if (meta >= 5) {
+                    // 6字节整体存储
+                    long ltime = (intpart - 0x800000L) << 24 | (i % 1000);
+                    ltime += 0x800000000000L;
+                    for (int j = 0; j < 6; j++) {
+                        value[j] = (byte) (ltime >> (8 * (5 - j)));
+                    }
+                }
+                return value;
+            }
+            case LogEvent.MYSQL_TYPE_DATE: {
+                int date = (2020 * 16 + 5) * 32 + 1 + i % 28;
+                return new byte[] { (byte) date, (byte) (date >> 8), (byte) (date >> 16) };
+            }
+            case LogEvent.MYSQL_TYPE_STRING:
+                if ((meta >> 8) == LogEvent.MYSQL_TYPE_ENUM || (meta >> 8) == LogEvent.MYSQL_TYPE_SET) {
+                    return new byte[] { (byte) (1 + i % 8) };
+                }
+                return lengthPrefixed(1, "string_" + i);
+            case LogEvent.MYSQL_TYPE_VARCHAR:
+                return lengthPrefixed(1, "varchar_value_" + i + "_abcdefghijklmnopqrstuvwxyz");
+            case LogEvent.MYSQL_TYPE_BLOB:
+                return lengthPrefixed(2, "blob_value_" + i + "_abcdefghijklmnopqrstuvwxyz0123456789");
+            case LogEvent.MYSQL_TYPE_JSON: {
+                // jsonb string: type 0x0c + 变长长度 + utf8
+                String json = "json_" + i;
+                byte[] bytes = new byte[2 + json.length()];
+                bytes[0] = 0x0c;
+                bytes[1] = (byte) json.length();
+                System.arraycopy(json.getBytes(), 0, bytes, 2, json.length());
+                return lengthPrefixed(4, bytes);
+            }
+            case LogEvent.MYSQL_TYPE_GEOMETRY:
+                return lengthPrefixed(4, new byte[25]);
+            default:
+                throw new IllegalArgumentException("unsupported type " + type);
+        }
+    }
+
+    private byte[] lengthPrefixed(int packlen, String value) {
+        return lengthPrefixed(packlen, value.getBytes());
+    }
+
+    private byte[] lengthPrefixed(int packlen, byte[] bytes) {
+        byte[] value = new byte[packlen + bytes.length];
+        for (int j = 0; j < packlen; j++) {
+            value[j] = (byte) (bytes.length >> (8 * j));
+        }
+        System.arraycopy(bytes, 0, value, packlen, bytes.length);
+        return value;
+    }
+}
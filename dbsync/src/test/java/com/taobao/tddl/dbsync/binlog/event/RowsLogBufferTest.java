@@ -0,0 +1,151 @@
+package com.taobao.tddl.dbsync.binlog.event;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+public class RowsLogBufferTest {
+
+    private static final int[] TYPES = { LogEvent.MYSQL_TYPE_LONG, LogEvent.MYSQL_TYPE_VARCHAR,
+            LogEvent.MYSQL_TYPE_BLOB, LogEvent.MYSQL_TYPE_NEWDECIMAL, LogEvent.MYSQL_TYPE_DATETIME2,
+            LogEvent.MYSQL_TYPE_VARCHAR, LogEvent.MYSQL_TYPE_STRING };
+    private static final int[] METAS = { 0, 100, 2, (10 << 8) | 2, 0, 300, (LogEvent.MYSQL_TYPE_STRING << 8) | 20 };
+
+    @Test
+    public void testSkipValue() throws Exception {
+        byte[] row = row("abc", "hello blob", "xyz");
+        LogBuffer decoded = new LogBuffer(row, 0, row.length);
+        LogBuffer skipped = new LogBuffer(row, 0, row.length);
+        RowsLogBuffer decodedRows = new RowsLogBuffer(decoded, TYPES.length, "UTF-8", 0, false);
+        RowsLogBuffer skippedRows = new RowsLogBuffer(skipped, TYPES.length, "UTF-8", 0, false);
+        BitSet columns = allColumns();
+
+        Assert.assertTrue(decodedRows.nextOneRow(columns));
+        Assert.assertTrue(skippedRows.nextOneRow(columns));
+        for (int i = 0; i < TYPES.length; i++) {
+            decodedRows.nextValue("c" + i, i, TYPES[i], METAS[i]);
+            skippedRows.skipValue(i, TYPES[i], METAS[i]);
+            Assert.assertEquals("column " + i, decoded.position(), skipped.position());
+            Assert.assertEquals(decodedRows.isNull(), skippedRows.isNull());
+        }
+        Assert.assertFalse(skipped.hasRemaining());
+    }
+
+    @Test
+    public void testSkipIfUnchanged() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(row("abc", "hello blob", "xyz"));
+        out.write(row("abd", "hello blob", "xyz"));
+        byte[] data = out.toByteArray();
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        RowsLogBuffer rows = new RowsLogBuffer(buffer, TYPES.length, "UTF-8", 0, false);
+        BitSet columns = allColumns();
+
+        Assert.assertTrue(rows.nextOneRow(columns, false));
+        for (int i = 0; i < TYPES.length; i++) {
+            rows.nextValue("c" + i, i, TYPES[i], METAS[i]);
+            if (i == 3) {
+                Assert.assertEquals(new BigDecimal("12345.67"), rows.getValue());
+            }
+        }
+
+        Assert.assertTrue(rows.nextOneRow(columns, true));
+        Assert.assertTrue(rows.skipIfUnchanged(0, TYPES[0], METAS[0]));
+        // 变化的列不移动位置，继续正常解码
+        Assert.assertFalse(rows.skipIfUnchanged(1, TYPES[1], METAS[1]));
+        Assert.assertEquals("abd", rows.nextValue("c1", 1, TYPES[1], METAS[1]));
+        for (int i = 2; i < TYPES.length; i++) {
+            Assert.assertTrue("column " + i, rows.skipIfUnchanged(i, TYPES[i], METAS[i]));
+        }
+        Assert.assertTrue(rows.isNull());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testDecimalString() {
+        Random random = new Random(0);
+        int[][] types = { { 10, 2 }, { 10, 0 }, { 65, 30 }, { 18, 9 }, { 3, 3 }, { 30, 5 } };
+        for (int[] type : types) {
+            for (int i = 0; i < 2000; i++) {
+                byte[] data = decimal(random, type[0], type[1], i % 10 == 0);
+                String expected = new LogBuffer(data, 0, data.length).getDecimal(type[0], type[1]).toPlainString();
+
+                byte[] row = new byte[data.length + 1];
+                System.arraycopy(data, 0, row, 1, data.length);
+                RowsLogBuffer rows = new RowsLogBuffer(new LogBuffer(row, 0, row.length), 1, "UTF-8", 0, false);
+                rows.setDecimalAsString(true);
+                BitSet columns = new BitSet(1);
+                columns.set(0);
+                Assert.assertTrue(rows.nextOneRow(columns));
+                Assert.assertEquals(expected,
+                    rows.nextValue("c", 0, LogEvent.MYSQL_TYPE_NEWDECIMAL, (type[0] << 8) | type[1]));
+            }
+        }
+    }
+
+    /**
+     * 按mysql decimal2bin的格式随机生成decimal
+     */
+    private static byte[] decimal(Random random, int precision, int scale, boolean zero) {
+        int intg = precision - scale;
+        int[] groups = { intg % 9, intg / 9, scale / 9, scale % 9 };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int g = 0; g < groups.length; g++) {
+            int count = (g == 0 || g == 3) ? (groups[g] > 0 ? 1 : 0) : groups[g];
+            int digits = (g == 0 || g == 3) ? groups[g] : 9;
+            for (int i = 0; i < count; i++) {
+                int max = LogBuffer.powers10[digits];
+                int x = zero ? 0 : random.nextInt(max);
+                int size = LogBuffer.dig2bytes[digits];
+                for (int b = size - 1; b >= 0; b--) {
+                    out.write((x >> (b * 8)) & 0xff);
+                }
+            }
+        }
+
+        byte[] data = out.toByteArray();
+        if (random.nextBoolean()) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) ~data[i];
+            }
+        }
+        data[0] ^= 0x80;
+        return data;
+    }
+
+    private static BitSet allColumns() {
+        BitSet columns = new BitSet(TYPES.length);
+        columns.set(0, TYPES.length);
+        return columns;
+    }
+
+    /**
+     * 构造一行数据，最后一列为null
+     */
+    private static byte[] row(String varchar, String blob, String longVarchar) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(1 << 6); // null bitmap
+        out.write(new byte[] { 1, 0, 0, 0 }); // int 1
+        byte[] bytes = varchar.getBytes("UTF-8");
+        out.write(bytes.length);
+        out.write(bytes);
+        bytes = blob.getBytes("UTF-8");
+        out.write(bytes.length & 0xff);
+        out.write(bytes.length >> 8);
+        out.write(bytes);
+        out.write(new byte[] { (byte) 0x80, 0x00, 0x30, 0x39, 0x43 }); // decimal(10,2) 12345.67
+        out.write(new byte[] { (byte) 0x80, 0x00, 0x00, 0x00, 0x00 }); // datetime(0)
+        bytes = longVarchar.getBytes("UTF-8");
+        out.write(bytes.length & 0xff);
+        out.write(bytes.length >> 8);
+        out.write(bytes);
+        return out.toByteArray();
+    }
+}
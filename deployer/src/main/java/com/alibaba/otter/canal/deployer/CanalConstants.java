@@ -27,6 +27,11 @@ public class CanalConstants {
     public static final String CANAL_ADMIN_AUTO_CLUSTER             = ROOT + "." + "admin.register.cluster";
     public static final String CANAL_ZKSERVERS                      = ROOT + "." + "zkServers";
     public static final String CANAL_WITHOUT_NETTY                  = ROOT + "." + "withoutNetty";
+    public static final String CANAL_NETTY_BOSS_THREADS             = ROOT + "." + "netty.bossThreads";
+    public static final String CANAL_NETTY_WORKER_THREADS           = ROOT + "." + "netty.workerThreads";
+    public static final String CANAL_NETTY_EPOLL                    = ROOT + "." + "netty.epoll";
+    public static final String CANAL_NETTY_WRITE_BUFFER_LOW         = ROOT + "." + "netty.writeBufferLowWaterMark";
+    public static final String CANAL_NETTY_WRITE_BUFFER_HIGH        = ROOT + "." + "netty.writeBufferHighWaterMark";
 
     public static final String CANAL_DESTINATIONS                   = ROOT + "." + "destinations";
     public static final String CANAL_AUTO_SCAN                      = ROOT + "." + "auto.scan";
@@ -76,6 +81,7 @@ public class CanalConstants {
     public static final String CANAL_MQ_ALIYUN_UID                  = ROOT + "." + "mq.aliyunuid";
     public static final String CANAL_MQ_EXCHANGE                    = ROOT + "." + "mq.exchange";
     public static final String CANAL_MQ_DATABASE_HASH               = ROOT + "." + "mq.database.hash";
+    public static final String CANAL_MQ_SERIALIZER                  = ROOT + "." + "mq.serializer";
 
     public static String getInstanceModeKey(String destination) {
         return MessageFormat.format(INSTANCE_MODE_TEMPLATE, destination);
@@ -123,6 +123,19 @@ public class CanalController {
             canalServer = CanalServerWithNetty.instance();
             canalServer.setIp(ip);
             canalServer.setPort(port);
+            canalServer.setBossThreads(Integer.valueOf(getProperty(properties,
+                CanalConstants.CANAL_NETTY_BOSS_THREADS,
+                "1")));
+            canalServer.setWorkerThreads(Integer.valueOf(getProperty(properties,
+                CanalConstants.CANAL_NETTY_WORKER_THREADS,
+                "0")));
+            canalServer.setEpollEnabled(Boolean.valueOf(getProperty(properties, CanalConstants.CANAL_NETTY_EPOLL, "true")));
+            canalServer.setWriteBufferLowWaterMark(Integer.valueOf(getProperty(properties,
+                CanalConstants.CANAL_NETTY_WRITE_BUFFER_LOW,
+                String.valueOf(1024 * 1024))));
+            canalServer.setWriteBufferHighWaterMark(Integer.valueOf(getProperty(properties,
+                CanalConstants.CANAL_NETTY_WRITE_BUFFER_HIGH,
+                String.valueOf(4 * 1024 * 1024))));
         }
 
         // 处理下ip为空，默认使用hostIp暴露到zk中
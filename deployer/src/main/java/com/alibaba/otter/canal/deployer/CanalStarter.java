@@ -125,6 +125,9 @@ public class CanalStarter {
             canalAdminWithNetty.setCanalAdmin(canalAdmin);
             canalAdminWithNetty.setPort(Integer.valueOf(port));
             canalAdminWithNetty.setIp(ip);
+            canalAdminWithNetty.setEpollEnabled(Boolean.valueOf(CanalController.getProperty(properties,
+                CanalConstants.CANAL_NETTY_EPOLL,
+                "true")));
             canalAdminWithNetty.start();
             this.canalAdmin = canalAdminWithNetty;
         }
@@ -302,6 +305,10 @@ public class CanalStarter {
         if (!StringUtils.isEmpty(databaseHash)){
             mqProperties.setDatabaseHash(Boolean.valueOf(databaseHash));
         }
+        String serializer = CanalController.getProperty(properties, CanalConstants.CANAL_MQ_SERIALIZER);
+        if (!StringUtils.isEmpty(serializer)) {
+            mqProperties.setSerializer(StringUtils.trim(serializer));
+        }
 
         for (Object key : properties.keySet()) {
             key = StringUtils.trim(key.toString());
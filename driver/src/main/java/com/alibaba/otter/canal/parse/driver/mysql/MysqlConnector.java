@@ -6,9 +6,11 @@ import java.security.DigestException;
 import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.alibaba.otter.canal.parse.driver.mysql.packets.Capability;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.HeaderPacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.client.AuthSwitchResponsePacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.client.ClientAuthenticationPacket;
@@ -18,11 +20,13 @@ import com.alibaba.otter.canal.parse.driver.mysql.packets.server.AuthSwitchReque
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ErrorPacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.HandshakeInitializationPacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.Reply323Packet;
+import com.alibaba.otter.canal.parse.driver.mysql.socket.CompressedSocketChannel;
 import com.alibaba.otter.canal.parse.driver.mysql.socket.SocketChannel;
 import com.alibaba.otter.canal.parse.driver.mysql.socket.SocketChannelPool;
 import com.alibaba.otter.canal.parse.driver.mysql.utils.MSC;
 import com.alibaba.otter.canal.parse.driver.mysql.utils.MySQLPasswordEncrypter;
 import com.alibaba.otter.canal.parse.driver.mysql.utils.PacketManager;
+import com.alibaba.otter.canal.parse.driver.mysql.utils.ZstdDecompressor;
 
 /**
  * 基于mysql socket协议的链接实现
@@ -43,6 +47,9 @@ public class MysqlConnector {
     private int                 connTimeout       = 5 * 1000;
     private int                 receiveBufferSize = 16 * 1024;
     private int                 sendBufferSize    = 16 * 1024;
+    // 压缩协议，默认不开启，支持zlib/zstd，server不支持zstd时退化为zlib
+    private String              compressAlgorithm;
+    private int                 zstdLevel         = 3;
 
     private SocketChannel       channel;
     private volatile boolean    dumping           = false;
@@ -77,7 +84,12 @@ public class MysqlConnector {
             try {
                 channel = SocketChannelPool.open(address);
                 logger.info("connect MysqlConnection to {}...", address);
-                negotiate(channel);
+                String compress = negotiate(channel);
+                if (compress != null) {
+                    // 认证完成之后的交互都使用压缩协议
+                    channel = new CompressedSocketChannel(channel, compress);
+                    logger.info("use {} compressed protocol for MysqlConnection to {}", compress, address);
+                }
             } catch (Exception e) {
                 disconnect();
                 throw new IOException("connect " + this.address + " failure", e);
@@ -142,6 +154,8 @@ public class MysqlConnector {
         connector.setSendBufferSize(getSendBufferSize());
         connector.setSoTimeout(getSoTimeout());
         connector.setConnTimeout(connTimeout);
+        connector.setCompressAlgorithm(compressAlgorithm);
+        connector.setZstdLevel(zstdLevel);
         return connector;
     }
 
@@ -155,7 +169,10 @@ public class MysqlConnector {
         PacketManager.writePkg(channel, quitHeader.toBytes(), cmdBody);
     }
 
-    private void negotiate(SocketChannel channel) throws IOException {
+    /**
+     * 握手认证，返回协商之后使用的压缩协议，不压缩返回null
+     */
+    private String negotiate(SocketChannel channel) throws IOException {
         // https://dev.mysql.com/doc/internals/en/connection-phase-packets.html#packet-Protocol
         HeaderPacket header = PacketManager.readHeader(channel, 4, timeout);
         byte[] body = PacketManager.readBytes(channel, header.getPacketBodyLength(), timeout);
@@ -175,7 +192,7 @@ public class MysqlConnector {
         if (handshakePacket.protocolVersion != MSC.DEFAULT_PROTOCOL_VERSION) {
             // HandshakeV9
             auth323(channel, (byte) (header.getPacketSequenceNumber() + 1), handshakePacket.seed);
-            return;
+            return null;
         }
 
         connectionId = handshakePacket.threadId; // 记录一下connection
@@ -189,6 +206,12 @@ public class MysqlConnector {
         clientAuth.setDatabaseName(defaultSchema);
         clientAuth.setScrumbleBuff(joinAndCreateScrumbleBuff(handshakePacket));
         clientAuth.setAuthPluginName("mysql_native_password".getBytes());
+        String compress = chooseCompressAlgorithm(handshakePacket.serverCapabilities);
+        if (CompressedSocketChannel.ZSTD.equals(compress)) {
+            clientAuth.enableZstdCompress(zstdLevel);
+        } else if (CompressedSocketChannel.ZLIB.equals(compress)) {
+            clientAuth.enableCompress();
+        }
 
         byte[] clientAuthPkgBody = clientAuth.toBytes();
         HeaderPacket h = new HeaderPacket();
@@ -273,6 +296,31 @@ public class MysqlConnector {
                 throw new IOException("unpexpected packet with field_count=" + body[0]);
             }
         }
+        return compress;
+    }
+
+    private String chooseCompressAlgorithm(int serverCapabilities) {
+        if (StringUtils.isBlank(compressAlgorithm)) {
+            return null;
+        }
+
+        if (CompressedSocketChannel.ZSTD.equalsIgnoreCase(compressAlgorithm)) {
+            if ((serverCapabilities & Capability.CLIENT_ZSTD_COMPRESSION_ALGORITHM) != 0
+                && ZstdDecompressor.isAvailable()) {
+                return CompressedSocketChannel.ZSTD;
+            }
+
+            logger.warn("zstd compressed protocol is not supported by {} or zstd-jni not found, try zlib", address);
+        } else if (!CompressedSocketChannel.ZLIB.equalsIgnoreCase(compressAlgorithm)) {
+            throw new IllegalArgumentException("unsupported compress algorithm : " + compressAlgorithm);
+        }
+
+        if ((serverCapabilities & Capability.CLIENT_COMPRESS) != 0) {
+            return CompressedSocketChannel.ZLIB;
+        }
+
+        logger.warn("compressed protocol is not supported by {}, use uncompressed protocol", address);
+        return null;
     }
 
     private void auth323(SocketChannel channel, byte packetSequenceNumber, byte[] seed) throws IOException {
@@ -412,4 +460,20 @@ public class MysqlConnector {
         return password;
     }
 
+    public String getCompressAlgorithm() {
+        return compressAlgorithm;
+    }
+
+    public void setCompressAlgorithm(String compressAlgorithm) {
+        this.compressAlgorithm = compressAlgorithm;
+    }
+
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    public void setZstdLevel(int zstdLevel) {
+        this.zstdLevel = zstdLevel;
+    }
+
 }
@@ -167,4 +167,13 @@ public interface Capability {
      */
     int CLIENT_DEPRECATE_EOF                  = 0x01000000;
 
+    /**
+     * Compression protocol extended to support zstd compression method. This
+     * capability flag is used to send zstd compression level between client
+     * and server provided both client and server are enabled with this flag.
+     * 
+     * @since mysql 8.0.18
+     */
+    int CLIENT_ZSTD_COMPRESSION_ALGORITHM     = 0x04000000;
+
 }
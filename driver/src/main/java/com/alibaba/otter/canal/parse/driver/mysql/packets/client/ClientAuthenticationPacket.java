@@ -25,6 +25,7 @@ public class ClientAuthenticationPacket extends PacketWithHeaderPacket {
     private int    serverCapabilities;
     private byte[] scrumbleBuff;
     private byte[] authPluginName;
+    private int    zstdCompressionLevel = 3;
 
     public void fromBytes(byte[] data) {
         // bypass since nowhere to use.
@@ -43,6 +44,7 @@ public class ClientAuthenticationPacket extends PacketWithHeaderPacket {
      *  n (Length Coded Binary)      scramble_buff (1 + x bytes)
      *  n (Null-Terminated String)   databasename (optional)
      *  n (Null-Terminated String)   auth plugin name (optional)
+     *  1                            zstd_compression_level (optional)
      * </pre>
      * 
      * @throws IOException
@@ -81,6 +83,10 @@ public class ClientAuthenticationPacket extends PacketWithHeaderPacket {
         if (getAuthPluginName() != null) {
             ByteHelper.writeNullTerminated(getAuthPluginName(), out);
         }
+        // 9 . zstd compression level (optional)
+        if ((clientCapability & Capability.CLIENT_ZSTD_COMPRESSION_ALGORITHM) != 0) {
+            out.write(zstdCompressionLevel);
+        }
         // end write
         return out.toByteArray();
     }
@@ -136,6 +142,25 @@ public class ClientAuthenticationPacket extends PacketWithHeaderPacket {
         return scrumbleBuff;
     }
 
+    /**
+     * 开启zlib压缩协议
+     */
+    public void enableCompress() {
+        this.clientCapability |= Capability.CLIENT_COMPRESS;
+    }
+
+    /**
+     * 开启zstd压缩协议，zlib和zstd只能二选一
+     */
+    public void enableZstdCompress(int zstdCompressionLevel) {
+        this.clientCapability |= Capability.CLIENT_ZSTD_COMPRESSION_ALGORITHM;
+        this.zstdCompressionLevel = zstdCompressionLevel;
+    }
+
+    public int getZstdCompressionLevel() {
+        return zstdCompressionLevel;
+    }
+
     public byte[] getAuthPluginName() {
         return authPluginName;
     }
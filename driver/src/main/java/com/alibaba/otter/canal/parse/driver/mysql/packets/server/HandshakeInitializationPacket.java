@@ -79,6 +79,8 @@ public class HandshakeInitializationPacket extends PacketWithHeaderPacket {
             int capabilityFlags2 = ByteHelper.readUnsignedShortLittleEndian(data, index);
             index += 2;
             int capabilities = (capabilityFlags2 << 16) | this.serverCapabilities;
+            // 保留完整的capability，用于判断server是否支持zstd等扩展能力
+            this.serverCapabilities = capabilities;
             // int authPluginDataLen = -1;
             // if ((capabilities & Capability.CLIENT_PLUGIN_AUTH) != 0) {
             // authPluginDataLen = data[index];
@@ -0,0 +1,215 @@
+package com.alibaba.otter.canal.parse.driver.mysql.socket;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.alibaba.otter.canal.parse.driver.mysql.utils.ZstdDecompressor;
+
+/**
+ * mysql压缩协议(CLIENT_COMPRESS / CLIENT_ZSTD_COMPRESSION_ALGORITHM)的socket实现，对上层透明
+ *
+ * <pre>
+ * 压缩包格式：
+ *   3 bytes  压缩后的payload长度
+ *   1 byte   压缩包的sequence
+ *   3 bytes  压缩前的payload长度，0代表payload没有压缩
+ *   n bytes  payload，解压后为一个或多个普通的mysql packet
+ *
+ * 1. 读取时按调用方需要的长度，直接从压缩包中inflate到调用方的buffer，不做中间拷贝
+ * 2. zstd需要整包解压到复用的buffer中再拷贝给调用方
+ * 3. 写入的数据都是很小的command包，不做压缩，只加上压缩包头
+ * </pre>
+ */
+public class CompressedSocketChannel implements SocketChannel {
+
+    public static final String  ZLIB                   = "zlib";
+    public static final String  ZSTD                   = "zstd";
+
+    public static final int     COMPRESSED_HEADER_SIZE = 7;
+    public static final int     MAX_PACKET_LENGTH      = (256 * 256 * 256 - 1);
+
+    private final SocketChannel delegate;
+    private final boolean       zstd;
+    private final Inflater      inflater               = new Inflater();
+    private final byte[]        header                 = new byte[COMPRESSED_HEADER_SIZE];
+    private byte[]              compressed             = new byte[16 * 1024];
+    private byte[]              uncompressed;                              // zstd解压使用的buffer
+    private int                 uncompressedPosition;
+    private boolean             rawFrame;                                  // 当前压缩包是否未压缩
+    private int                 frameRemaining;                            // 当前压缩包中剩余未读取的数据
+
+    public CompressedSocketChannel(SocketChannel delegate, String algorithm){
+        this.delegate = delegate;
+        this.zstd = ZSTD.equalsIgnoreCase(algorithm);
+    }
+
+    public void write(byte[]... buf) throws IOException {
+        int length = 0;
+        for (byte[] bs : buf) {
+            length += bs.length;
+        }
+
+        // 每个command都是新的交互，压缩包的sequence从0开始
+        int sequence = 0;
+        int bufIndex = 0;
+        int bufOffset = 0;
+        do {
+            int frameLength = Math.min(length, MAX_PACKET_LENGTH);
+            byte[] frame = new byte[COMPRESSED_HEADER_SIZE + frameLength];
+            writeUint24(frame, 0, frameLength);
+            frame[3] = (byte) sequence++;
+            writeUint24(frame, 4, 0);
+
+            int offset = COMPRESSED_HEADER_SIZE;
+            while (offset < frame.length) {
+                int n = Math.min(buf[bufIndex].length - bufOffset, frame.length - offset);
+                System.arraycopy(buf[bufIndex], bufOffset, frame, offset, n);
+                offset += n;
+                bufOffset += n;
+                if (bufOffset == buf[bufIndex].length) {
+                    bufIndex++;
+                    bufOffset = 0;
+                }
+            }
+
+            delegate.write(frame);
+            length -= frameLength;
+        } while (length > 0);
+    }
+
+    public byte[] read(int readSize) throws IOException {
+        byte[] data = new byte[readSize];
+        read(data, 0, readSize, 0);
+        return data;
+    }
+
+    public byte[] read(int readSize, int timeout) throws IOException {
+        byte[] data = new byte[readSize];
+        read(data, 0, readSize, timeout);
+        return data;
+    }
+
+    public void read(byte[] data, int off, int len, int timeout) throws IOException {
+        while (len > 0) {
+            if (frameRemaining == 0) {
+                nextFrame(timeout);
+                continue;
+            }
+
+            int n = Math.min(len, frameRemaining);
+            if (rawFrame) {
+                readFully(data, off, n, timeout);
+            } else if (zstd) {
+                System.arraycopy(uncompressed, uncompressedPosition, data, off, n);
+                uncompressedPosition += n;
+            } else {
+                inflate(data, off, n);
+            }
+
+            off += n;
+            len -= n;
+            frameRemaining -= n;
+        }
+    }
+
+    private void nextFrame(int timeout) throws IOException {
+        readFully(header, 0, COMPRESSED_HEADER_SIZE, timeout);
+        int compressedLength = readUint24(header, 0);
+        int uncompressedLength = readUint24(header, 4);
+        if (uncompressedLength == 0) {
+            // 数据太小时server不压缩，直接读取原始数据
+            rawFrame = true;
+            frameRemaining = compressedLength;
+            return;
+        }
+
+        if (compressed.length < compressedLength) {
+            compressed = new byte[Math.max(compressedLength, compressed.length * 2)];
+        }
+        readFully(compressed, 0, compressedLength, timeout);
+        rawFrame = false;
+        frameRemaining = uncompressedLength;
+        if (zstd) {
+            if (uncompressed == null || uncompressed.length < uncompressedLength) {
+                uncompressed = new byte[uncompressedLength];
+            }
+            int length = ZstdDecompressor.decompress(uncompressed,
+                0,
+                uncompressedLength,
+                compressed,
+                0,
+                compressedLength);
+            if (length != uncompressedLength) {
+                throw new IOException("zstd uncompressed length mismatch, expect " + uncompressedLength + " but "
+                                      + length);
+            }
+            uncompressedPosition = 0;
+        } else {
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedLength);
+        }
+    }
+
+    private void inflate(byte[] data, int off, int len) throws IOException {
+        try {
+            while (len > 0) {
+                int n = inflater.inflate(data, off, len);
+                if (n == 0) {
+                    if (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()) {
+                        throw new IOException("truncated compressed packet, " + len + " bytes missing");
+                    }
+                }
+                off += n;
+                len -= n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("inflate compressed packet failed", e);
+        }
+    }
+
+    private void readFully(byte[] data, int off, int len, int timeout) throws IOException {
+        if (timeout > 0) {
+            delegate.read(data, off, len, timeout);
+        } else {
+            byte[] bytes = delegate.read(len);
+            System.arraycopy(bytes, 0, data, off, len);
+        }
+    }
+
+    private static int readUint24(byte[] data, int off) {
+        return (data[off] & 0xff) | ((data[off + 1] & 0xff) << 8) | ((data[off + 2] & 0xff) << 16);
+    }
+
+    private static void writeUint24(byte[] data, int off, int value) {
+        data[off] = (byte) (value & 0xff);
+        data[off + 1] = (byte) ((value >>> 8) & 0xff);
+        data[off + 2] = (byte) ((value >>> 16) & 0xff);
+    }
+
+    public boolean isConnected() {
+        return delegate.isConnected();
+    }
+
+    public SocketAddress getRemoteSocketAddress() {
+        return delegate.getRemoteSocketAddress();
+    }
+
+    public SocketAddress getLocalSocketAddress() {
+        return delegate.getLocalSocketAddress();
+    }
+
+    public void close() {
+        delegate.close();
+        inflater.end();
+    }
+
+    public SocketChannel getDelegate() {
+        return delegate;
+    }
+
+    public boolean isZstd() {
+        return zstd;
+    }
+}
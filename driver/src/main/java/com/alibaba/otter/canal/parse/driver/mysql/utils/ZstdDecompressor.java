@@ -0,0 +1,76 @@
+package com.alibaba.otter.canal.parse.driver.mysql.utils;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 基于zstd-jni的解压实现，通过MethodHandle绑定com.github.luben.zstd.Zstd，不强依赖zstd-jni
+ *
+ * <pre>
+ * 开启binlog_transaction_compression或者zstd压缩协议时需要在classpath中加入com.github.luben:zstd-jni
+ * </pre>
+ */
+public final class ZstdDecompressor {
+
+    private static final String       ZSTD_CLASS = "com.github.luben.zstd.Zstd";
+    private static final MethodHandle DECOMPRESS;
+    private static final MethodHandle IS_ERROR;
+    private static final MethodHandle ERROR_NAME;
+    private static final Throwable    UNAVAILABLE_CAUSE;
+
+    static {
+        MethodHandle decompress = null;
+        MethodHandle isError = null;
+        MethodHandle errorName = null;
+        Throwable cause = null;
+        try {
+            Class<?> zstd = Class.forName(ZSTD_CLASS);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            decompress = lookup.findStatic(zstd,
+                "decompressByteArray",
+                MethodType.methodType(long.class, byte[].class, int.class, int.class, byte[].class, int.class, int.class));
+            isError = lookup.findStatic(zstd, "isError", MethodType.methodType(boolean.class, long.class));
+            errorName = lookup.findStatic(zstd, "getErrorName", MethodType.methodType(String.class, long.class));
+        } catch (Throwable e) {
+            cause = e;
+        }
+
+        DECOMPRESS = decompress;
+        IS_ERROR = isError;
+        ERROR_NAME = errorName;
+        UNAVAILABLE_CAUSE = cause;
+    }
+
+    private ZstdDecompressor(){
+    }
+
+    public static boolean isAvailable() {
+        return UNAVAILABLE_CAUSE == null;
+    }
+
+    /**
+     * 解压src到dst中，返回解压后的长度
+     */
+    public static int decompress(byte[] dst, int dstOffset, int dstSize, byte[] src, int srcOffset, int srcSize)
+                                                                                                               throws IOException {
+        if (!isAvailable()) {
+            throw new IOException("zstd-jni not found in classpath, can't decompress zstd data",
+                UNAVAILABLE_CAUSE);
+        }
+
+        long result;
+        try {
+            result = (long) DECOMPRESS.invokeExact(dst, dstOffset, dstSize, src, srcOffset, srcSize);
+            if ((boolean) IS_ERROR.invokeExact(result)) {
+                throw new IOException("zstd decompress failed : " + (String) ERROR_NAME.invokeExact(result));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("zstd decompress failed", e);
+        }
+        return (int) result;
+    }
+}
@@ -0,0 +1,176 @@
+package com.alibaba.otter.canal.parse.driver.mysql.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 测试压缩协议的拆包/解压
+ */
+public class CompressedSocketChannelTest {
+
+    @Test
+    public void testReadCompressedAndRawFrame() throws IOException {
+        byte[] first = randomBytes(64 * 1024);
+        byte[] second = randomBytes(30);
+        byte[] third = randomBytes(1024);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(compressedFrame(first, 0));
+        stream.write(rawFrame(second, 1));
+        stream.write(compressedFrame(third, 2));
+        MockSocketChannel mock = new MockSocketChannel(stream.toByteArray());
+        CompressedSocketChannel channel = new CompressedSocketChannel(mock, CompressedSocketChannel.ZLIB);
+
+        // 读取的边界和压缩包的边界不一致
+        byte[] data = new byte[first.length + second.length + third.length];
+        int offset = 0;
+        int step = 1000;
+        while (offset < data.length) {
+            int len = Math.min(step, data.length - offset);
+            channel.read(data, offset, len, 1000);
+            offset += len;
+        }
+
+        ByteArrayOutputStream expect = new ByteArrayOutputStream();
+        expect.write(first);
+        expect.write(second);
+        expect.write(third);
+        Assert.assertArrayEquals(expect.toByteArray(), data);
+        Assert.assertEquals(mock.data.length, mock.position);
+    }
+
+    @Test
+    public void testReadWithoutTimeout() throws IOException {
+        byte[] packet = randomBytes(100);
+        MockSocketChannel mock = new MockSocketChannel(compressedFrame(packet, 0));
+        CompressedSocketChannel channel = new CompressedSocketChannel(mock, CompressedSocketChannel.ZLIB);
+
+        byte[] header = channel.read(4);
+        byte[] body = channel.read(96);
+        Assert.assertArrayEquals(packet, concat(header, body));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        MockSocketChannel mock = new MockSocketChannel(new byte[0]);
+        CompressedSocketChannel channel = new CompressedSocketChannel(mock, CompressedSocketChannel.ZLIB);
+
+        byte[] header = new byte[] { 3, 0, 0, 0 };
+        byte[] body = new byte[] { 1, 2, 3 };
+        channel.write(header, body);
+
+        byte[] written = mock.written.toByteArray();
+        Assert.assertEquals(CompressedSocketChannel.COMPRESSED_HEADER_SIZE + 7, written.length);
+        Assert.assertEquals(7, written[0]);
+        Assert.assertEquals(0, written[3]);
+        // 未压缩的数据，压缩前长度为0
+        Assert.assertEquals(0, written[4] | written[5] | written[6]);
+        Assert.assertArrayEquals(concat(header, body),
+            Arrays.copyOfRange(written, CompressedSocketChannel.COMPRESSED_HEADER_SIZE, written.length));
+    }
+
+    private static byte[] compressedFrame(byte[] data, int sequence) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            out.write(buf, 0, n);
+        }
+        deflater.end();
+        return frame(out.toByteArray(), sequence, data.length);
+    }
+
+    private static byte[] rawFrame(byte[] data, int sequence) {
+        return frame(data, sequence, 0);
+    }
+
+    private static byte[] frame(byte[] payload, int sequence, int uncompressedLength) {
+        byte[] frame = new byte[CompressedSocketChannel.COMPRESSED_HEADER_SIZE + payload.length];
+        frame[0] = (byte) payload.length;
+        frame[1] = (byte) (payload.length >>> 8);
+        frame[2] = (byte) (payload.length >>> 16);
+        frame[3] = (byte) sequence;
+        frame[4] = (byte) uncompressedLength;
+        frame[5] = (byte) (uncompressedLength >>> 8);
+        frame[6] = (byte) (uncompressedLength >>> 16);
+        System.arraycopy(payload, 0, frame, CompressedSocketChannel.COMPRESSED_HEADER_SIZE, payload.length);
+        return frame;
+    }
+
+    private static byte[] randomBytes(int size) {
+        // 有一定重复度的数据，保证可以被压缩
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    static class MockSocketChannel implements SocketChannel {
+
+        private final byte[]                data;
+        private int                         position;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        MockSocketChannel(byte[] data){
+            this.data = data;
+        }
+
+        public void write(byte[]... buf) throws IOException {
+            for (byte[] bs : buf) {
+                written.write(bs);
+            }
+        }
+
+        public byte[] read(int readSize) throws IOException {
+            byte[] result = new byte[readSize];
+            read(result, 0, readSize, 0);
+            return result;
+        }
+
+        public byte[] read(int readSize, int timeout) throws IOException {
+            return read(readSize);
+        }
+
+        public void read(byte[] dest, int off, int len, int timeout) throws IOException {
+            if (position + len > data.length) {
+                throw new IOException("EOF encountered.");
+            }
+            System.arraycopy(data, position, dest, off, len);
+            position += len;
+        }
+
+        public boolean isConnected() {
+            return true;
+        }
+
+        public SocketAddress getRemoteSocketAddress() {
+            return null;
+        }
+
+        public SocketAddress getLocalSocketAddress() {
+            return null;
+        }
+
+        public void close() {
+        }
+    }
+}
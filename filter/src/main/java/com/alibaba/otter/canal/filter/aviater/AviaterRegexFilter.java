@@ -5,37 +5,57 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang.StringUtils;
 
 import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.filter.exception.CanalFilterException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.googlecode.aviator.AviatorEvaluator;
-import com.googlecode.aviator.Expression;
 
 /**
- * 基于aviater进行tableName正则匹配的过滤算法
+ * 基于正则进行tableName匹配的过滤算法
+ *
+ * <pre>
+ * 构造时将pattern预编译为三类规则, 按顺序匹配:
+ * 1. 精确匹配: 如 schema\.table 或 schema.table, 放入hash表(未转义的.按单个任意字符处理, 按位置分组)
+ * 2. 前缀匹配: 如 schema\..*, 放入前缀树
+ * 3. 其余的正则使用java.util.regex匹配
+ * 匹配结果按表名缓存, 缓存大小有上限
+ * </pre>
  * 
  * @author jianghang 2012-7-20 下午06:01:34
  */
 public class AviaterRegexFilter implements CanalEventFilter<String> {
 
-    private static final String             SPLIT             = ",";
-    private static final String             PATTERN_SPLIT     = "|";
-    private static final String             FILTER_EXPRESSION = "regex(pattern,target)";
-    private static final RegexFunction      regexFunction     = new RegexFunction();
-    private final Expression                exp               = AviatorEvaluator.compile(FILTER_EXPRESSION, true);
+    private static final String             SPLIT         = ",";
+    private static final String             PATTERN_SPLIT = "|";
+    private static final int                CACHE_SIZE    = 10000;
+    private static final RegexFunction      regexFunction = new RegexFunction();
     static {
+        // 保留regex函数的注册, el表达式中可能会使用
         AviatorEvaluator.addFunction(regexFunction);
     }
 
-    private static final Comparator<String> COMPARATOR        = new StringComparator();
+    private static final Comparator<String> COMPARATOR    = new StringComparator();
 
     final private String                    pattern;
     final private boolean                   defaultEmptyValue;
 
+    // 预编译的匹配规则
+    private final List<LiteralGroup>        literals      = new ArrayList<LiteralGroup>();
+    private final PrefixNode                prefixes      = new PrefixNode();
+    private final Pattern                   regex;
+    private final Cache<String, Boolean>    cache         = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
     public AviaterRegexFilter(String pattern){
         this(pattern, true);
     }
@@ -54,6 +74,7 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
         // 因为 foo|foot 匹配 foot 会出错，原因是 foot 匹配了 foo 之后，会返回 foo，但是 foo 的长度和 foot
         // 的长度不一样
         Collections.sort(list, COMPARATOR);
+        this.regex = compile(list);
         // 对pattern进行头尾完全匹配
         list = completionPattern(list);
         this.pattern = StringUtils.join(list, PATTERN_SPLIT);
@@ -68,10 +89,130 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
             return defaultEmptyValue;
         }
 
-        Map<String, Object> env = new HashMap<String, Object>();
-        env.put("pattern", pattern);
-        env.put("target", filtered.toLowerCase());
-        return (Boolean) exp.execute(env);
+        Boolean result = cache.getIfPresent(filtered);
+        if (result == null) {
+            result = matches(filtered.toLowerCase());
+            cache.put(filtered, result);
+        }
+        return result;
+    }
+
+    private boolean matches(String target) {
+        for (LiteralGroup group : literals) {
+            if (group.matches(target)) {
+                return true;
+            }
+        }
+
+        if (prefixes.matches(target)) {
+            return true;
+        }
+
+        return regex != null && regex.matcher(target).matches();
+    }
+
+    /**
+     * 将精确匹配和前缀匹配的规则提取出来, 返回其余规则组成的正则
+     */
+    private Pattern compile(List<String> patterns) {
+        Map<String, LiteralGroup> groups = new LinkedHashMap<String, LiteralGroup>();
+        List<String> regexes = new ArrayList<String>();
+        for (String pattern : patterns) {
+            if (!isSimple(pattern)) {
+                regexes.add(pattern);
+                continue;
+            }
+
+            for (String branch : StringUtils.splitPreserveAllTokens(pattern, PATTERN_SPLIT)) {
+                if (!compileLiteral(branch, groups)) {
+                    regexes.add(branch);
+                }
+            }
+        }
+        literals.addAll(groups.values());
+
+        if (regexes.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (String regex : regexes) {
+            if (builder.length() > 0) {
+                builder.append(PATTERN_SPLIT);
+            }
+            builder.append("(?:").append(regex).append(')');
+        }
+        try {
+            return Pattern.compile(builder.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+        } catch (PatternSyntaxException e) {
+            throw new CanalFilterException("invalid filter pattern : " + StringUtils.join(patterns, SPLIT), e);
+        }
+    }
+
+    /**
+     * 只包含普通字符、.、\.、*以及|的pattern才可能提取为精确匹配或者前缀匹配
+     */
+    private boolean isSimple(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= pattern.length() || pattern.charAt(i + 1) != '.') {
+                    return false;
+                }
+                i++;
+            } else if ("()[]{}^$+?".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean compileLiteral(String branch, Map<String, LiteralGroup> groups) {
+        if (branch.isEmpty()) {
+            return false;
+        }
+
+        // 转义后的字符, 未转义的.和*分别记为ANY和STAR
+        StringBuilder literal = new StringBuilder(branch.length());
+        List<Integer> anys = new ArrayList<Integer>();
+        boolean prefix = false;
+        for (int i = 0; i < branch.length(); i++) {
+            char c = branch.charAt(i);
+            if (c == '\\') {
+                literal.append(branch.charAt(++i));
+            } else if (c == '*') {
+                // 只支持结尾的.*
+                if (i != branch.length() - 1 || anys.isEmpty() || anys.get(anys.size() - 1) != literal.length() - 1) {
+                    return false;
+                }
+                prefix = true;
+            } else {
+                if (c == '.') {
+                    anys.add(literal.length());
+                }
+                literal.append(Character.toLowerCase(c));
+            }
+        }
+
+        if (prefix) {
+            if (anys.size() > 1) {
+                return false;
+            }
+            prefixes.add(literal.substring(0, literal.length() - 1));
+        } else {
+            int[] positions = new int[anys.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = anys.get(i);
+            }
+            String key = Arrays.toString(positions);
+            LiteralGroup group = groups.get(key);
+            if (group == null) {
+                group = new LiteralGroup(positions);
+                groups.put(key, group);
+            }
+            group.names.add(literal.toString());
+        }
+        return true;
     }
 
     /**
@@ -100,6 +241,71 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
         }
     }
 
+    /**
+     * 未转义的.位置相同的一组精确匹配规则, 匹配时将目标字符串对应位置替换为.后查找
+     */
+    private static class LiteralGroup {
+
+        private final int[]       positions;
+        private final Set<String> names = new HashSet<String>();
+
+        LiteralGroup(int[] positions){
+            this.positions = positions;
+        }
+
+        boolean matches(String target) {
+            if (positions.length == 0) {
+                return names.contains(target);
+            }
+
+            if (positions[positions.length - 1] >= target.length()) {
+                return false;
+            }
+            char[] chars = target.toCharArray();
+            for (int position : positions) {
+                chars[position] = '.';
+            }
+            return names.contains(new String(chars));
+        }
+    }
+
+    /**
+     * 前缀树, 用于 prefix.* 形式的规则
+     */
+    private static class PrefixNode {
+
+        private final Map<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+        private boolean                          terminal;
+
+        void add(String prefix) {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                Character c = prefix.charAt(i);
+                PrefixNode child = node.children.get(c);
+                if (child == null) {
+                    child = new PrefixNode();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        boolean matches(String target) {
+            PrefixNode node = this;
+            for (int i = 0; node != null; i++) {
+                if (node.terminal) {
+                    return true;
+                }
+                if (i >= target.length()) {
+                    return false;
+                }
+                node = node.children.get(target.charAt(i));
+            }
+            return false;
+        }
+    }
+
     /**
      * 修复正则表达式匹配的问题，即使按照长度递减排序，还是会出现以下问题：
      * 
@@ -98,6 +98,42 @@ public class AviaterFilterTest {
 
     }
 
+    @Test
+    public void test_compiled() {
+        // 精确匹配, 未转义的.仍然匹配任意字符
+        AviaterRegexFilter filter = new AviaterRegexFilter("s1\\.t1,s2.t2,S3.T3|s4\\.t4");
+        Assert.assertEquals(true, filter.filter("s1.t1"));
+        Assert.assertEquals(false, filter.filter("s1xt1"));
+        Assert.assertEquals(true, filter.filter("s2xt2"));
+        Assert.assertEquals(true, filter.filter("s3.t3"));
+        Assert.assertEquals(true, filter.filter("S4.T4"));
+        Assert.assertEquals(false, filter.filter("s1.t11"));
+        Assert.assertEquals(false, filter.filter("s1.t"));
+
+        // 前缀匹配
+        filter = new AviaterRegexFilter("s1\\..*,s1\\.t.*,.*\\.t1");
+        Assert.assertEquals(true, filter.filter("s1."));
+        Assert.assertEquals(true, filter.filter("s1.t2"));
+        Assert.assertEquals(false, filter.filter("s1"));
+        Assert.assertEquals(true, filter.filter("s2.t1"));
+        Assert.assertEquals(false, filter.filter("s2.t2"));
+
+        // 精确匹配、前缀匹配与正则混合
+        filter = new AviaterRegexFilter("s1\\.t1,s2\\..*,s3\\.t[0-9]+,s4\\.t\\d{2}");
+        Assert.assertEquals(true, filter.filter("s1.t1"));
+        Assert.assertEquals(true, filter.filter("s2.abc"));
+        Assert.assertEquals(true, filter.filter("s3.t123"));
+        Assert.assertEquals(false, filter.filter("s3.tx"));
+        Assert.assertEquals(true, filter.filter("s4.t12"));
+        Assert.assertEquals(false, filter.filter("s4.t1"));
+        // 命中缓存
+        Assert.assertEquals(true, filter.filter("s3.t123"));
+        Assert.assertEquals(false, filter.filter("s3.tx"));
+
+        AviaterRegexFilter blackFilter = new AviaterRegexFilter("", false);
+        Assert.assertEquals(false, blackFilter.filter("s1.t1"));
+    }
+
     @Test
     public void test_el() {
         AviaterELFilter filter = new AviaterELFilter("str(entry.entryType) == 'ROWDATA'");
@@ -0,0 +1,128 @@
+package com.alibaba.otter.canal.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.filter.aviater.RegexFunction;
+import com.googlecode.aviator.AviatorEvaluator;
+import com.googlecode.aviator.Expression;
+
+/**
+ * 对比aviator表达式匹配和预编译匹配的吞吐
+ *
+ * <pre>
+ * filter包含1000个schema.table精确匹配、100个schema\..*前缀匹配以及10个正则, 表名一半命中一半不命中
+ * </pre>
+ */
+@Ignore
+public class AviaterRegexFilterPerformanceTest {
+
+    private static final int  TABLES   = 1000;
+    private static final int  SCHEMAS  = 100;
+    private static final int  REGEXES  = 10;
+    private static final int  NAMES    = 2000;
+    private static final int  WARMUP   = 3;
+    private static final long DURATION = 10 * 1000L;
+
+    @Test
+    public void testFilter() {
+        List<String> patterns = new ArrayList<String>();
+        for (int i = 0; i < TABLES; i++) {
+            patterns.add("db_" + (i % 16) + "\\.table_" + i);
+        }
+        for (int i = 0; i < SCHEMAS; i++) {
+            patterns.add("schema_" + i + "\\..*");
+        }
+        for (int i = 0; i < REGEXES; i++) {
+            patterns.add("regex_" + i + "\\.t_[0-9]+");
+        }
+        String pattern = StringUtils.join(patterns, ",");
+
+        String[] names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            switch (i % 4) {
+                case 0:
+                    names[i] = "db_" + (i % 16) + ".table_" + (i % TABLES);
+                    break;
+                case 1:
+                    names[i] = "schema_" + (i % SCHEMAS) + ".t" + i;
+                    break;
+                case 2:
+                    names[i] = "regex_" + (i % REGEXES) + ".t_x" + i;
+                    break;
+                default:
+                    names[i] = "other_" + i + ".t" + i;
+            }
+        }
+
+        AviatorFilter aviatorFilter = new AviatorFilter(pattern);
+        AviaterRegexFilter compiledFilter = new AviaterRegexFilter(pattern);
+        for (String name : names) {
+            if (aviatorFilter.filter(name) != compiledFilter.filter(name)) {
+                throw new IllegalStateException("result not match for " + name);
+            }
+        }
+
+        for (int i = 0; i < WARMUP; i++) {
+            runAviator(aviatorFilter, names, DURATION / 5);
+            runCompiled(compiledFilter, names, DURATION / 5);
+        }
+        long aviator = runAviator(aviatorFilter, names, DURATION);
+        long compiled = runCompiled(compiledFilter, names, DURATION);
+        System.out.println("aviator  : " + (aviator * 1000 / DURATION) + " ops/s");
+        System.out.println("compiled : " + (compiled * 1000 / DURATION) + " ops/s");
+    }
+
+    private long runAviator(AviatorFilter filter, String[] names, long duration) {
+        long count = 0;
+        long end = System.currentTimeMillis() + duration;
+        while (System.currentTimeMillis() < end) {
+            for (String name : names) {
+                filter.filter(name);
+            }
+            count += names.length;
+        }
+        return count;
+    }
+
+    private long runCompiled(AviaterRegexFilter filter, String[] names, long duration) {
+        long count = 0;
+        long end = System.currentTimeMillis() + duration;
+        while (System.currentTimeMillis() < end) {
+            for (String name : names) {
+                filter.filter(name);
+            }
+            count += names.length;
+        }
+        return count;
+    }
+
+    /**
+     * 原有基于aviator + oro的匹配方式
+     */
+    private static class AviatorFilter {
+
+        private final String     pattern;
+        private final Expression exp;
+
+        AviatorFilter(String pattern){
+            AviatorEvaluator.addFunction(new RegexFunction());
+            this.pattern = new AviaterRegexFilter(pattern).toString();
+            this.exp = AviatorEvaluator.compile("regex(pattern,target)", true);
+        }
+
+        boolean filter(String filtered) {
+            Map<String, Object> env = new HashMap<String, Object>();
+            env.put("pattern", pattern);
+            env.put("target", filtered.toLowerCase());
+            return (Boolean) exp.execute(env);
+        }
+    }
+}
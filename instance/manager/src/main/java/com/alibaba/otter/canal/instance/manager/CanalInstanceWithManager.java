@@ -59,6 +59,7 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
 import com.alibaba.otter.canal.sink.entry.EntryEventSink;
 import com.alibaba.otter.canal.sink.entry.group.GroupEventSink;
 import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.file.FileMixedEventStore;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.model.BatchMode;
 
@@ -193,8 +194,14 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             // 后续版本支持
             throw new CanalException("unsupport MetaMode for " + mode);
         } else if (mode.isMixed()) {
-            // 后续版本支持
-            throw new CanalException("unsupport MetaMode for " + mode);
+            FileMixedEventStore fileMixedEventStore = new FileMixedEventStore();
+            fileMixedEventStore.setDataDir(parameters.getDataDir());
+            fileMixedEventStore.setBufferSize(parameters.getMemoryStorageBufferSize());
+            fileMixedEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
+            fileMixedEventStore.setBatchMode(BatchMode.valueOf(parameters.getStorageBatchMode().name()));
+            fileMixedEventStore.setDdlIsolation(parameters.getDdlIsolation());
+            fileMixedEventStore.setRaw(parameters.getMemoryStorageRawEntry());
+            eventStore = fileMixedEventStore;
         } else {
             throw new CanalException("unsupport MetaMode for " + mode);
         }
@@ -1,16 +1,23 @@
 package com.alibaba.otter.canal.meta;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
@@ -20,6 +27,7 @@ import org.slf4j.MDC;
 import org.springframework.util.Assert;
 
 import com.alibaba.otter.canal.common.utils.JsonUtils;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
@@ -35,6 +43,8 @@ import com.google.common.collect.MigrateMap;
  * 策略：
  * 1. 先写内存，然后定时刷新数据到File
  * 2. 数据采取overwrite模式(只保留最后一次)，通过logger实施append模式(记录历史版本)
+ * 3. 只有cursor或订阅关系发生变化时才刷新, 内容与上次写入的一致时不写文件
+ * 4. 所有instance共用一个刷新线程, 先写临时文件再rename, 可选fsync
  * </pre>
  * 
  * @author jianghang 2013-4-15 下午05:55:57
@@ -42,17 +52,21 @@ import com.google.common.collect.MigrateMap;
  */
 public class FileMixedMetaManager extends MemoryMetaManager implements CanalMetaManager {
 
-    private static final Logger      logger       = LoggerFactory.getLogger(FileMixedMetaManager.class);
-    private static final Charset     charset      = Charset.forName("UTF-8");
-    private File                     dataDir;
-    private String                   dataFileName = "meta.dat";
-    private Map<String, File>        dataFileCaches;
-    private ScheduledExecutorService executor;
+    private static final Logger                   logger       = LoggerFactory.getLogger(FileMixedMetaManager.class);
+    private static final Charset                  charset      = Charset.forName("UTF-8");
+    // 所有instance共用的刷新线程
+    private static final ScheduledExecutorService executor     = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("file-meta-flush"));
+    private File                                  dataDir;
+    private String                                dataFileName = "meta.dat";
+    private Map<String, File>                     dataFileCaches;
+    private ScheduledFuture<?>                    flushFuture;
     @SuppressWarnings("serial")
-    private final Position           nullCursor   = new Position() {
-                                                  };
-    private long                     period       = 1000;                                               // 单位ms
-    private Set<ClientIdentity>      updateCursorTasks;
+    private final Position                        nullCursor   = new Position() {
+                                                               };
+    private long                                  period       = 1000;                                               // 单位ms
+    private boolean                               fsync        = false;                                              // 写文件后是否fsync
+    private Set<ClientIdentity>                   updateCursorTasks;
+    private Map<String, String>                   flushedDatas;                                                      // 每个destination最后一次写入的内容
 
     public void start() {
         super.start();
@@ -76,7 +90,7 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
             }
         });
 
-        executor = Executors.newScheduledThreadPool(1);
+        flushedDatas = new ConcurrentHashMap<String, String>();
         destinations = MigrateMap.makeComputingMap(new Function<String, List<ClientIdentity>>() {
 
             public List<ClientIdentity> apply(String destination) {
@@ -99,10 +113,13 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
         updateCursorTasks = Collections.synchronizedSet(new HashSet<ClientIdentity>());
 
         // 启动定时工作任务
-        executor.scheduleAtFixedRate(new Runnable() {
+        flushFuture = executor.scheduleAtFixedRate(new Runnable() {
 
             public void run() {
                 List<ClientIdentity> tasks = new ArrayList<ClientIdentity>(updateCursorTasks);
+                // 先移除再刷新, 刷新期间的变更留到下一次
+                updateCursorTasks.removeAll(tasks);
+                Set<String> flushed = new LinkedHashSet<String>();
                 for (ClientIdentity clientIdentity : tasks) {
                     MDC.put("destination", String.valueOf(clientIdentity.getDestination()));
                     try {
@@ -115,10 +132,14 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
                                     cursor.getPostion().getServerId(), cursor.getPostion().getGtid(),
                                     cursor.getIdentity().getSourceAddress().toString() });
                         }
-                        flushDataToFile(clientIdentity.getDestination());
-                        updateCursorTasks.remove(clientIdentity);
+                        // 同一个destination的多个client只写一次文件
+                        if (flushed.add(clientIdentity.getDestination())) {
+                            flushDataToFile(clientIdentity.getDestination());
+                        }
                     } catch (Throwable e) {
-                        // ignore
+                        // 下一次重试
+                        updateCursorTasks.add(clientIdentity);
+                        flushed.remove(clientIdentity.getDestination());
                         logger.error("period update" + clientIdentity.toString() + " curosr failed!", e);
                     }
                 }
@@ -130,10 +151,12 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
     }
 
     public void stop() {
-        super.stop();
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+        }
+        flushDataToFile();// 刷新数据, 需要在清理内存数据之前
 
-        flushDataToFile();// 刷新数据
-        executor.shutdownNow();
+        super.stop();
         destinations.clear();
         batches.clear();
     }
@@ -163,8 +186,12 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
     }
 
     public void updateCursor(ClientIdentity clientIdentity, Position position) throws CanalMetaManagerException {
-        updateCursorTasks.add(clientIdentity);// 添加到任务队列中进行触发
+        if (position != null && position.equals(cursors.get(clientIdentity))) {
+            // cursor没有变化, 不需要刷新
+            return;
+        }
         super.updateCursor(clientIdentity, position);
+        updateCursorTasks.add(clientIdentity);// 添加到任务队列中进行触发
     }
 
     public Position getCursor(ClientIdentity clientIdentity) throws CanalMetaManagerException {
@@ -217,7 +244,7 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
     private void flushDataToFile(String destination, File dataFile) {
         FileMetaInstanceData data = new FileMetaInstanceData();
         if (destinations.containsKey(destination)) {
-            synchronized (destination.intern()) { // 基于destination控制一下并发更新
+            synchronized (destination.intern()) { // 基于destination控制一下并发更新, 同时保证写文件的顺序
                 data.setDestination(destination);
 
                 List<FileMetaClientIdentityData> clientDatas = Lists.newArrayList();
@@ -234,15 +261,41 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
                 }
 
                 data.setClientDatas(clientDatas);
+
+                String json = JsonUtils.marshalToString(data);
+                if (json.equals(flushedDatas.get(destination))) {
+                    return;
+                }
+                try {
+                    writeDataToFile(dataFile, json);
+                } catch (IOException e) {
+                    throw new CanalMetaManagerException(e);
+                }
+                flushedDatas.put(destination, json);
             }
+        }
+    }
 
-            String json = JsonUtils.marshalToString(data);
-            try {
-                FileUtils.writeStringToFile(dataFile, json);
-            } catch (IOException e) {
-                throw new CanalMetaManagerException(e);
+    /**
+     * 先写临时文件再rename, 避免进程退出或者宕机时留下不完整的文件
+     */
+    private void writeDataToFile(File dataFile, String json) throws IOException {
+        File tmpFile = new File(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(json.getBytes(charset));
+            if (fsync) {
+                out.getFD().sync();
             }
         }
+
+        try {
+            Files.move(tmpFile.toPath(),
+                dataFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     private List<ClientIdentity> loadClientIdentity(String destination) {
@@ -376,4 +429,8 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
         this.period = period;
     }
 
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
 }
@@ -0,0 +1,100 @@
+package com.alibaba.otter.canal.meta;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+
+/**
+ * 测试cursor的刷新: stop时刷新、cursor未变化不刷新、临时文件rename，不依赖zk
+ */
+public class FileMixedMetaManager_FlushTest extends AbstractZkTest {
+
+    private static final String tmp            = System.getProperty("java.io.tmpdir", "/tmp");
+    private File                dataDir;
+    private ClientIdentity      clientIdentity = new ClientIdentity(destination, (short) 1);
+
+    @Before
+    public void setUp() {
+        dataDir = new File(tmp, "canal_meta_" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    @Test
+    public void testFlushOnStop() {
+        FileMixedMetaManager metaManager = buildMetaManager(60 * 1000L);
+        metaManager.subscribe(clientIdentity);
+        LogPosition position = buildPosition(1);
+        metaManager.updateCursor(clientIdentity, position);
+        // 远小于period, 只能依赖stop时的刷新
+        metaManager.stop();
+
+        File metaFile = new File(new File(dataDir, destination), "meta.dat");
+        Assert.assertTrue(metaFile.exists());
+        Assert.assertFalse(new File(metaFile.getPath() + ".tmp").exists());
+
+        // 重新构建一次，能获得上一次文件中的记录
+        FileMixedMetaManager metaManager2 = buildMetaManager(60 * 1000L);
+        Assert.assertEquals(position, metaManager2.getCursor(clientIdentity));
+        Assert.assertEquals(1, metaManager2.listAllSubscribeInfo(destination).size());
+        metaManager2.stop();
+    }
+
+    @Test
+    public void testUnchangedCursorNotFlushed() {
+        FileMixedMetaManager metaManager = buildMetaManager(60 * 1000L);
+        metaManager.subscribe(clientIdentity);
+        metaManager.updateCursor(clientIdentity, buildPosition(1));
+        metaManager.stop();
+
+        FileMixedMetaManager metaManager2 = buildMetaManager(100L);
+        Assert.assertEquals(1, metaManager2.listAllSubscribeInfo(destination).size());
+        Assert.assertEquals(buildPosition(1), metaManager2.getCursor(clientIdentity));
+        File metaFile = new File(new File(dataDir, destination), "meta.dat");
+        Assert.assertTrue(metaFile.delete());
+
+        // cursor没有变化, 定时任务不会重新写文件
+        metaManager2.updateCursor(clientIdentity, buildPosition(1));
+        sleep(500L);
+        Assert.assertFalse(metaFile.exists());
+
+        // cursor变化之后由定时任务写入
+        metaManager2.updateCursor(clientIdentity, buildPosition(2));
+        sleep(500L);
+        Assert.assertTrue(metaFile.exists());
+        Assert.assertFalse(new File(metaFile.getPath() + ".tmp").exists());
+        metaManager2.stop();
+
+        FileMixedMetaManager metaManager3 = buildMetaManager(60 * 1000L);
+        Assert.assertEquals(buildPosition(2), metaManager3.getCursor(clientIdentity));
+        metaManager3.stop();
+    }
+
+    private FileMixedMetaManager buildMetaManager(long period) {
+        FileMixedMetaManager metaManager = new FileMixedMetaManager();
+        metaManager.setDataDirByFile(dataDir);
+        metaManager.setPeriod(period);
+        metaManager.start();
+        return metaManager;
+    }
+
+    private LogPosition buildPosition(int number) {
+        LogPosition position = new LogPosition();
+        position.setIdentity(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L));
+        position.setPostion(new EntryPosition("mysql-bin.000000" + number, 106L, 1000L * number));
+        return position;
+    }
+}
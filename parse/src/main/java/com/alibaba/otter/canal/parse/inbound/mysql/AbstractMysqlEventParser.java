@@ -19,27 +19,33 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
 
 public abstract class AbstractMysqlEventParser extends AbstractEventParser {
 
-    protected static final long    BINLOG_START_OFFEST       = 4L;
-
-    protected TableMetaTSDBFactory tableMetaTSDBFactory      = new DefaultTableMetaTSDBFactory();
-    protected boolean              enableTsdb                = false;
-    protected int                  tsdbSnapshotInterval      = 24;
-    protected int                  tsdbSnapshotExpire        = 360;
+    protected static final long    BINLOG_START_OFFEST         = 4L;
+
+    protected TableMetaTSDBFactory tableMetaTSDBFactory        = new DefaultTableMetaTSDBFactory();
+    protected boolean              enableTsdb                  = false;
+    protected int                  tsdbSnapshotInterval        = 24;
+    protected int                  tsdbSnapshotExpire          = 360;
+    protected int                  tsdbSnapshotCompareParallel = 4;
+    protected boolean              tsdbSnapshotBinary          = false;
     protected String               tsdbSpringXml;
     protected TableMetaTSDB        tableMetaTSDB;
 
     // 编码信息
-    protected byte                 connectionCharsetNumber   = (byte) 33;
-    protected Charset              connectionCharset         = Charset.forName("UTF-8");
-    protected boolean              filterQueryDcl            = false;
-    protected boolean              filterQueryDml            = false;
-    protected boolean              filterQueryDdl            = false;
-    protected boolean              filterRows                = false;
-    protected boolean              filterTableError          = false;
-    protected boolean              useDruidDdlFilter         = true;
+    protected byte                 connectionCharsetNumber     = (byte) 33;
+    protected Charset              connectionCharset           = Charset.forName("UTF-8");
+    protected boolean              filterQueryDcl              = false;
+    protected boolean              filterQueryDml              = false;
+    protected boolean              filterQueryDdl              = false;
+    protected boolean              filterRows                  = false;
+    protected boolean              filterTableError            = false;
+    protected boolean              useDruidDdlFilter           = true;
     // instance received binlog bytes
-    protected final AtomicLong     receivedBinlogBytes       = new AtomicLong(0L);
-    private final AtomicLong       eventsPublishBlockingTime = new AtomicLong(0L);
+    protected final AtomicLong     receivedBinlogBytes         = new AtomicLong(0L);
+    private final AtomicLong       eventsPublishBlockingTime   = new AtomicLong(0L);
+    // 并行解析各个stage的累计处理耗时
+    private final AtomicLong       simpleParserBusyTime        = new AtomicLong(0L);
+    private final AtomicLong       dmlParserBusyTime           = new AtomicLong(0L);
+    private final AtomicLong       sinkStoreBusyTime           = new AtomicLong(0L);
 
     protected BinlogParser buildParser() {
         LogEventConvert convert = new LogEventConvert();
@@ -175,6 +181,9 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
             transactionBuffer,
             destination);
         mysqlMultiStageCoprocessor.setEventsPublishBlockingTime(eventsPublishBlockingTime);
+        mysqlMultiStageCoprocessor.setSimpleParserBusyTime(simpleParserBusyTime);
+        mysqlMultiStageCoprocessor.setDmlParserBusyTime(dmlParserBusyTime);
+        mysqlMultiStageCoprocessor.setSinkStoreBusyTime(sinkStoreBusyTime);
         return mysqlMultiStageCoprocessor;
     }
 
@@ -248,6 +257,29 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         return this.eventsPublishBlockingTime;
     }
 
+    public AtomicLong getSimpleParserBusyTime() {
+        return this.simpleParserBusyTime;
+    }
+
+    public AtomicLong getDmlParserBusyTime() {
+        return this.dmlParserBusyTime;
+    }
+
+    public AtomicLong getSinkStoreBusyTime() {
+        return this.sinkStoreBusyTime;
+    }
+
+    /**
+     * 当前正在运行的并行解析coprocessor，未开启并行或者未启动时返回null
+     */
+    public MysqlMultiStageCoprocessor getMysqlMultiStageCoprocessor() {
+        MultiStageCoprocessor coprocessor = this.multiStageCoprocessor;
+        if (coprocessor instanceof MysqlMultiStageCoprocessor && coprocessor.isStart()) {
+            return (MysqlMultiStageCoprocessor) coprocessor;
+        }
+        return null;
+    }
+
     public AtomicLong getReceivedBinlogBytes() {
         return this.receivedBinlogBytes;
     }
@@ -268,4 +300,20 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         this.tsdbSnapshotExpire = tsdbSnapshotExpire;
     }
 
+    public int getTsdbSnapshotCompareParallel() {
+        return tsdbSnapshotCompareParallel;
+    }
+
+    public void setTsdbSnapshotCompareParallel(int tsdbSnapshotCompareParallel) {
+        this.tsdbSnapshotCompareParallel = tsdbSnapshotCompareParallel;
+    }
+
+    public boolean isTsdbSnapshotBinary() {
+        return tsdbSnapshotBinary;
+    }
+
+    public void setTsdbSnapshotBinary(boolean tsdbSnapshotBinary) {
+        this.tsdbSnapshotBinary = tsdbSnapshotBinary;
+    }
+
 }
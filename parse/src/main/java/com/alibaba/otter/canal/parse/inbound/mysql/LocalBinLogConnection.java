@@ -15,6 +15,7 @@ import com.alibaba.otter.canal.parse.exception.ServerIdNotMatchException;
 import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventSinkUtils;
 import com.alibaba.otter.canal.parse.inbound.mysql.local.BinLogFileQueue;
 import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
 import com.taobao.tddl.dbsync.binlog.LogContext;
@@ -99,7 +100,7 @@ public class LocalBinLogConnection implements ErosaConnection {
                         throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
                     }
 
-                    if (!func.sink(event)) {
+                    if (!LogEventSinkUtils.sink(decoder, context, event, func)) {
                         needContinue = false;
                         break;
                     }
@@ -149,6 +150,7 @@ public class LocalBinLogConnection implements ErosaConnection {
         decoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
         decoder.handle(LogEvent.QUERY_EVENT);
         decoder.handle(LogEvent.XID_EVENT);
+        decoder.handle(LogEvent.TRANSACTION_PAYLOAD_EVENT);
         LogContext context = new LogContext();
         try {
             fetcher.open(current);
@@ -183,6 +185,10 @@ public class LocalBinLogConnection implements ErosaConnection {
                         } else if (LogEvent.XID_EVENT == event.getHeader().getType()) {
                             lastXidLogFilename = current.getName();
                             lastXidLogFileOffset = event.getLogPos();
+                        } else if (LogEvent.TRANSACTION_PAYLOAD_EVENT == event.getHeader().getType()) {
+                            // 压缩的事务整体在一个payload event中，等同于事务结束
+                            lastXidLogFilename = current.getName();
+                            lastXidLogFileOffset = event.getLogPos();
                         } else if (LogEvent.FORMAT_DESCRIPTION_EVENT == event.getHeader().getType()) {
                             lastXidLogFilename = current.getName();
                             lastXidLogFileOffset = event.getLogPos();
@@ -300,6 +306,7 @@ public class LocalBinLogConnection implements ErosaConnection {
         decoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
         decoder.handle(LogEvent.QUERY_EVENT);
         decoder.handle(LogEvent.XID_EVENT);
+        decoder.handle(LogEvent.TRANSACTION_PAYLOAD_EVENT);
         LogContext context = new LogContext();
         try {
             fetcher.open(current);
@@ -334,6 +341,10 @@ public class LocalBinLogConnection implements ErosaConnection {
                         } else if (LogEvent.XID_EVENT == event.getHeader().getType()) {
                             lastXidLogFilename = current.getName();
                             lastXidLogFileOffset = event.getLogPos();
+                        } else if (LogEvent.TRANSACTION_PAYLOAD_EVENT == event.getHeader().getType()) {
+                            // 压缩的事务整体在一个payload event中，等同于事务结束
+                            lastXidLogFilename = current.getName();
+                            lastXidLogFileOffset = event.getLogPos();
                         } else if (LogEvent.FORMAT_DESCRIPTION_EVENT == event.getHeader().getType()) {
                             lastXidLogFilename = current.getName();
                             lastXidLogFileOffset = event.getLogPos();
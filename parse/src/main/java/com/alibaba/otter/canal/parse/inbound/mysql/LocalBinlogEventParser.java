@@ -57,6 +57,8 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
             ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
             ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
             ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
+            ((DatabaseTableMeta) tableMetaTSDB).setCompareParallel(tsdbSnapshotCompareParallel);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotBinary(tsdbSnapshotBinary);
             ((DatabaseTableMeta) tableMetaTSDB).init(destination);
         }
 
@@ -33,6 +33,7 @@ import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.DirectLogFetcher;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventSinkUtils;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogContext;
@@ -130,6 +131,7 @@ public class MysqlConnection implements ErosaConnection {
         decoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
         decoder.handle(LogEvent.QUERY_EVENT);
         decoder.handle(LogEvent.XID_EVENT);
+        decoder.handle(LogEvent.TRANSACTION_PAYLOAD_EVENT);
         LogContext context = new LogContext();
         // 若entry position存在gtid，则使用传入的gtid作为gtidSet
         // 拼接的标准,否则同时开启gtid和tsdb时，会导致丢失gtid
@@ -150,7 +152,7 @@ public class MysqlConnection implements ErosaConnection {
                 throw new CanalParseException("parse failed");
             }
 
-            if (!func.sink(event)) {
+            if (!LogEventSinkUtils.sink(decoder, context, event, func)) {
                 break;
             }
         }
@@ -175,7 +177,7 @@ public class MysqlConnection implements ErosaConnection {
                 throw new CanalParseException("parse failed");
             }
 
-            if (!func.sink(event)) {
+            if (!LogEventSinkUtils.sink(decoder, context, event, func)) {
                 break;
             }
 
@@ -208,7 +210,7 @@ public class MysqlConnection implements ErosaConnection {
                     throw new CanalParseException("parse failed");
                 }
 
-                if (!func.sink(event)) {
+                if (!LogEventSinkUtils.sink(decoder, context, event, func)) {
                     break;
                 }
             }
@@ -51,6 +51,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
     private int                  defaultConnectionTimeoutInSeconds = 30;       // sotimeout
     private int                  receiveBufferSize                 = 64 * 1024;
     private int                  sendBufferSize                    = 64 * 1024;
+    private String               compressAlgorithm;                            // 压缩协议，zlib/zstd
     // 数据库信息
     protected AuthenticationInfo masterInfo;                                   // 主库
     protected AuthenticationInfo standbyInfo;                                  // 备库
@@ -124,6 +125,8 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
                 ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
                 ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
                 ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
+                ((DatabaseTableMeta) tableMetaTSDB).setCompareParallel(tsdbSnapshotCompareParallel);
+                ((DatabaseTableMeta) tableMetaTSDB).setSnapshotBinary(tsdbSnapshotBinary);
                 ((DatabaseTableMeta) tableMetaTSDB).init(destination);
             }
 
@@ -318,6 +321,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
             runningInfo.getDefaultDatabaseName());
         connection.getConnector().setReceiveBufferSize(receiveBufferSize);
         connection.getConnector().setSendBufferSize(sendBufferSize);
+        connection.getConnector().setCompressAlgorithm(compressAlgorithm);
         connection.getConnector().setSoTimeout(defaultConnectionTimeoutInSeconds * 1000);
         connection.setCharset(connectionCharset);
         connection.setReceivedBinlogBytes(receivedBinlogBytes);
@@ -878,6 +882,10 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         this.sendBufferSize = sendBufferSize;
     }
 
+    public void setCompressAlgorithm(String compressAlgorithm) {
+        this.compressAlgorithm = compressAlgorithm;
+    }
+
     public void setMasterInfo(AuthenticationInfo masterInfo) {
         this.masterInfo = masterInfo;
     }
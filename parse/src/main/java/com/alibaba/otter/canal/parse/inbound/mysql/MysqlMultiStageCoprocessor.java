@@ -1,5 +1,7 @@
 package com.alibaba.otter.canal.parse.inbound.mysql;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +28,7 @@ import com.lmax.disruptor.LifecycleAware;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
 import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.util.Util;
 import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.WorkerPool;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
@@ -46,6 +49,9 @@ import com.taobao.tddl.dbsync.binlog.event.WriteRowsLogEvent;
  * 2. 事件基本解析 (单线程，事件类型、DDL解析构造TableMeta、维护位点信息)
  * 3. 事件深度解析 (多线程, DML事件数据的完整解析)
  * 4. 投递到store (单线程)
+ * 
+ * ROWS事件在stage 2中只解析header/table_id，按顺序绑定TABLE_MAP以及查询TableMeta，列bitmap以及rows数据的解码延迟到stage 3并行完成
+ * 每个stage的排队event数以及处理耗时可以通过getXXXQueueDepth/XXXBusyTime观察，用于判断瓶颈所在的stage
  * </pre>
  * 
  * @author agapple 2018年7月3日 下午4:54:17
@@ -53,7 +59,7 @@ import com.taobao.tddl.dbsync.binlog.event.WriteRowsLogEvent;
  */
 public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implements MultiStageCoprocessor {
 
-    private static final int                  maxFullTimes = 10;
+    private static final int                  maxFullTimes         = 10;
     private LogEventConvert                   logEventConvert;
     private EventTransactionBuffer            transactionBuffer;
     private ErosaConnection                   connection;
@@ -66,6 +72,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private String                            destination;
     private volatile CanalParseException      exception;
     private AtomicLong                        eventsPublishBlockingTime;
+    // 各个stage的累计处理耗时(纳秒)，stage 3为所有线程耗时之和
+    private AtomicLong                        simpleParserBusyTime = new AtomicLong(0L);
+    private AtomicLong                        dmlParserBusyTime    = new AtomicLong(0L);
+    private AtomicLong                        sinkStoreBusyTime    = new AtomicLong(0L);
     private GTIDSet                           gtidSet;
     private WorkerPool<MessageEvent>          workerPool;
     private BatchEventProcessor<MessageEvent> simpleParserStage;
@@ -171,6 +181,38 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         super.stop();
     }
 
+    /**
+     * 等待stage 2基本解析的event数
+     */
+    public long getSimpleParserQueueDepth() {
+        if (!isStart() || sinkStoreStage == null) {
+            return 0L;
+        }
+        return Math.max(0L, disruptorMsgBuffer.getCursor() - simpleParserStage.getSequence().get());
+    }
+
+    /**
+     * 等待stage 3深度解析的event数
+     */
+    public long getDmlParserQueueDepth() {
+        if (!isStart() || sinkStoreStage == null) {
+            return 0L;
+        }
+        long workerSequence = Util.getMinimumSequence(workerPool.getWorkerSequences());
+        return Math.max(0L, simpleParserStage.getSequence().get() - workerSequence);
+    }
+
+    /**
+     * 等待stage 4投递到store的event数
+     */
+    public long getSinkStoreQueueDepth() {
+        if (!isStart() || sinkStoreStage == null) {
+            return 0L;
+        }
+        long workerSequence = Util.getMinimumSequence(workerPool.getWorkerSequences());
+        return Math.max(0L, workerSequence - sinkStoreStage.getSequence().get());
+    }
+
     public boolean publish(LogBuffer buffer) {
         return this.publish(buffer, null);
     }
@@ -250,6 +292,8 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
         public SimpleParserStage(LogContext context){
             decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+            // 投递的buffer为每个event独立的拷贝，rows数据的解码可以安全的交给DmlParserStage并行处理
+            decoder.setDeferRowsDecode(true);
             this.context = context;
             if (gtidSet != null) {
                 context.setGtidSet(gtidSet);
@@ -257,6 +301,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         }
 
         public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+            long start = System.nanoTime();
             try {
                 LogEvent logEvent = event.getEvent();
                 if (logEvent == null) {
@@ -288,6 +333,17 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                     case LogEvent.ROWS_QUERY_LOG_EVENT:
                         needDmlParse = true;
                         break;
+                    case LogEvent.TRANSACTION_PAYLOAD_EVENT:
+                        // 压缩的事务在当前stage直接展开并完成解析，保证事务内event的顺序
+                        List<CanalEntry.Entry> entrys = new ArrayList<CanalEntry.Entry>();
+                        for (LogEvent deEvent : decoder.processIterateDecode(logEvent, context)) {
+                            CanalEntry.Entry entry = logEventConvert.parse(deEvent, false);
+                            if (entry != null) {
+                                entrys.add(entry);
+                            }
+                        }
+                        event.setEntrys(entrys);
+                        break;
                     default:
                         CanalEntry.Entry entry = logEventConvert.parse(event.getEvent(), false);
                         event.setEntry(entry);
@@ -299,6 +355,8 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
+            } finally {
+                simpleParserBusyTime.addAndGet(System.nanoTime() - start);
             }
         }
 
@@ -317,6 +375,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
         @Override
         public void onEvent(MessageEvent event) throws Exception {
+            long start = System.nanoTime();
             try {
                 if (event.isNeedDmlParse()) {
                     int eventType = event.getEvent().getHeader().getType();
@@ -326,7 +385,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                             entry = logEventConvert.parse(event.getEvent(), false);
                             break;
                         default:
-                            // 单独解析dml事件
+                            // 单独解析dml事件，rows数据在这里才完成解码
                             entry = logEventConvert.parseRowsEvent((RowsLogEvent) event.getEvent(), event.getTable());
                     }
 
@@ -335,6 +394,8 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
+            } finally {
+                dmlParserBusyTime.addAndGet(System.nanoTime() - start);
             }
         }
 
@@ -352,9 +413,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private class SinkStoreStage implements EventHandler<MessageEvent>, LifecycleAware {
 
         public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+            long start = System.nanoTime();
             try {
                 if (event.getEntry() != null) {
                     transactionBuffer.add(event.getEntry());
+                } else if (event.getEntrys() != null) {
+                    for (CanalEntry.Entry entry : event.getEntrys()) {
+                        transactionBuffer.add(entry);
+                    }
                 }
 
                 LogEvent logEvent = event.getEvent();
@@ -369,10 +435,13 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 event.setEvent(null);
                 event.setTable(null);
                 event.setEntry(null);
+                event.setEntrys(null);
                 event.setNeedDmlParse(false);
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
+            } finally {
+                sinkStoreBusyTime.addAndGet(System.nanoTime() - start);
             }
         }
 
@@ -389,11 +458,12 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     class MessageEvent {
 
-        private LogBuffer        buffer;
-        private CanalEntry.Entry entry;
-        private boolean          needDmlParse = false;
-        private TableMeta        table;
-        private LogEvent         event;
+        private LogBuffer              buffer;
+        private CanalEntry.Entry       entry;
+        private List<CanalEntry.Entry> entrys;
+        private boolean                needDmlParse = false;
+        private TableMeta              table;
+        private LogEvent               event;
 
         public LogBuffer getBuffer() {
             return buffer;
@@ -419,6 +489,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             this.entry = entry;
         }
 
+        public List<CanalEntry.Entry> getEntrys() {
+            return entrys;
+        }
+
+        public void setEntrys(List<CanalEntry.Entry> entrys) {
+            this.entrys = entrys;
+        }
+
         public boolean isNeedDmlParse() {
             return needDmlParse;
         }
@@ -481,4 +559,16 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.gtidSet = gtidSet;
     }
 
+    public void setSimpleParserBusyTime(AtomicLong simpleParserBusyTime) {
+        this.simpleParserBusyTime = simpleParserBusyTime;
+    }
+
+    public void setDmlParserBusyTime(AtomicLong dmlParserBusyTime) {
+        this.dmlParserBusyTime = dmlParserBusyTime;
+    }
+
+    public void setSinkStoreBusyTime(AtomicLong sinkStoreBusyTime) {
+        this.sinkStoreBusyTime = sinkStoreBusyTime;
+    }
+
 }
@@ -171,6 +171,7 @@ public class DirectLogFetcher extends LogFetcher {
         // byte[] read = channel.read(len, READ_TIMEOUT_MILLISECONDS);
         // System.arraycopy(read, 0, this.buffer, off, len);
 
+        // 开启压缩协议时，channel会直接解压到当前buffer中
         channel.read(buffer, off, len, READ_TIMEOUT_MILLISECONDS);
         if (limit < off + len) {
             limit = off + len;
@@ -524,6 +524,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
             rowChangeBuider.setEventType(eventType);
             RowsLogBuffer buffer = event.getRowsBuf(charset.name());
+            buffer.setDecimalAsString(true);
             BitSet columns = event.getColumns();
             BitSet changeColumns = event.getChangeColumns();
 
@@ -641,6 +642,9 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             }
         }
 
+        // after image按index顺序查找before image中的同一列
+        List<Column> beforeColumns = isAfter ? rowDataBuilder.getBeforeColumnsList() : null;
+        int beforeIndex = 0;
         for (int i = 0; i < columnCnt; i++) {
             ColumnInfo info = columnInfo[i];
             // mysql 5.6开始支持nolob/mininal类型,并不一定记录所有的列,需要进行判断
@@ -651,6 +655,11 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             if (existRDSNoPrimaryKey && i == columnCnt - 1 && info.type == LogEvent.MYSQL_TYPE_LONGLONG) {
                 // 不解析最后一列
                 String rdsRowIdColumnName = "#alibaba_rds_row_id#";
+                if (!needField(fieldList, blackFieldList, rdsRowIdColumnName)) {
+                    buffer.skipValue(i, info.type, info.meta);
+                    continue;
+                }
+
                 buffer.nextValue(rdsRowIdColumnName, i, info.type, info.meta, false);
                 Column.Builder columnBuilder = Column.newBuilder();
                 columnBuilder.setName(rdsRowIdColumnName);
@@ -663,12 +672,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 columnBuilder.setSqlType(Types.BIGINT);
                 columnBuilder.setUpdated(false);
 
-                if (needField(fieldList, blackFieldList, columnBuilder.getName())) {
-                	if (isAfter) {
-                        rowDataBuilder.addAfterColumns(columnBuilder.build());
-                    } else {
-                        rowDataBuilder.addBeforeColumns(columnBuilder.build());
-                    }
+                if (isAfter) {
+                    rowDataBuilder.addAfterColumns(columnBuilder.build());
+                } else {
+                    rowDataBuilder.addBeforeColumns(columnBuilder.build());
                 }
                 continue;
             }
@@ -706,6 +713,24 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 // mysql8.0里没有mysql type类型
                 // columnBuilder.setMysqlType(fieldMeta.getColumnType());
             }
+            if (!needField(fieldList, blackFieldList, columnBuilder.getName())) {
+                // 被过滤的字段直接按字节长度跳过，不做解码
+                buffer.skipValue(i, info.type, info.meta);
+                continue;
+            }
+
+            if (beforeColumns != null) {
+                while (beforeIndex < beforeColumns.size() && beforeColumns.get(beforeIndex).getIndex() < i) {
+                    beforeIndex++;
+                }
+                if (beforeIndex < beforeColumns.size() && beforeColumns.get(beforeIndex).getIndex() == i
+                    && buffer.skipIfUnchanged(i, info.type, info.meta)) {
+                    // update中没有变化的列，原始字节和before image一致，直接复用before的解析结果
+                    rowDataBuilder.addAfterColumns(beforeColumns.get(beforeIndex));
+                    continue;
+                }
+            }
+
             columnBuilder.setIndex(i);
             columnBuilder.setIsNull(false);
 
@@ -789,7 +814,11 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         columnBuilder.setValue(String.valueOf(value));
                         break;
                     case Types.DECIMAL:
-                        columnBuilder.setValue(((BigDecimal) value).toPlainString());
+                        if (value instanceof BigDecimal) {
+                            columnBuilder.setValue(((BigDecimal) value).toPlainString());
+                        } else {
+                            columnBuilder.setValue(value.toString());
+                        }
                         break;
                     case Types.TIMESTAMP:
                         // 修复时间边界值
@@ -835,12 +864,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                                      && isUpdate(rowDataBuilder.getBeforeColumnsList(),
                                          columnBuilder.getIsNull() ? null : columnBuilder.getValue(),
                                          i));
-            if (needField(fieldList, blackFieldList, columnBuilder.getName())) {
-            	if (isAfter) {
-                    rowDataBuilder.addAfterColumns(columnBuilder.build());
-                } else {
-                    rowDataBuilder.addBeforeColumns(columnBuilder.build());
-                }
+            if (isAfter) {
+                rowDataBuilder.addAfterColumns(columnBuilder.build());
+            } else {
+                rowDataBuilder.addBeforeColumns(columnBuilder.build());
             }
         }
 
@@ -0,0 +1,31 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
+
+import java.io.IOException;
+
+import com.alibaba.otter.canal.parse.inbound.SinkFunction;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+/**
+ * MysqlConnection/LocalBinLogConnection共用的sink逻辑
+ */
+public class LogEventSinkUtils {
+
+    /**
+     * transaction payload需要展开为事务中的event后再交给sink处理
+     */
+    public static boolean sink(LogDecoder decoder, LogContext context, LogEvent event, SinkFunction func)
+                                                                                                       throws IOException {
+        if (event.getHeader().getType() != LogEvent.TRANSACTION_PAYLOAD_EVENT) {
+            return func.sink(event);
+        }
+
+        for (LogEvent deEvent : decoder.processIterateDecode(event, context)) {
+            if (!func.sink(deEvent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -159,32 +159,13 @@ public class TableMetaCache {
         return getTableMeta(schema, table, true, position);
     }
 
-    public synchronized TableMeta getTableMeta(String schema, String table, boolean useCache, EntryPosition position) {
+    public TableMeta getTableMeta(String schema, String table, boolean useCache, EntryPosition position) {
         TableMeta tableMeta = null;
         if (tableMetaTSDB != null) {
+            // 每个ROWS事件都会查询, 命中缓存时不加锁
             tableMeta = tableMetaTSDB.find(schema, table);
             if (tableMeta == null) {
-                // 因为条件变化，可能第一次的tableMeta没取到，需要从db获取一次，并记录到snapshot中
-                String fullName = getFullName(schema, table);
-                ResultSetPacket packet = null;
-                String createDDL = null;
-                try {
-                    try {
-                        packet = connection.query("show create table " + fullName);
-                    } catch (Exception e) {
-                        // 尝试做一次retry操作
-                        connection.reconnect();
-                        packet = connection.query("show create table " + fullName);
-                    }
-                    if (packet.getFieldValues().size() > 0) {
-                        createDDL = packet.getFieldValues().get(1);
-                    }
-                    // 强制覆盖掉内存值
-                    tableMetaTSDB.apply(position, schema, createDDL, "first");
-                    tableMeta = tableMetaTSDB.find(schema, table);
-                } catch (IOException e) {
-                    throw new CanalParseException("fetch failed by table meta:" + fullName, e);
-                }
+                tableMeta = loadTableMeta(schema, table, position);
             }
             return tableMeta;
         } else {
@@ -196,6 +177,35 @@ public class TableMetaCache {
         }
     }
 
+    private synchronized TableMeta loadTableMeta(String schema, String table, EntryPosition position) {
+        // double check, 其他线程可能已经加载过
+        TableMeta tableMeta = tableMetaTSDB.find(schema, table);
+        if (tableMeta == null) {
+            // 因为条件变化，可能第一次的tableMeta没取到，需要从db获取一次，并记录到snapshot中
+            String fullName = getFullName(schema, table);
+            ResultSetPacket packet = null;
+            String createDDL = null;
+            try {
+                try {
+                    packet = connection.query("show create table " + fullName);
+                } catch (Exception e) {
+                    // 尝试做一次retry操作
+                    connection.reconnect();
+                    packet = connection.query("show create table " + fullName);
+                }
+                if (packet.getFieldValues().size() > 0) {
+                    createDDL = packet.getFieldValues().get(1);
+                }
+                // 强制覆盖掉内存值
+                tableMetaTSDB.apply(position, schema, createDDL, "first");
+                tableMeta = tableMetaTSDB.find(schema, table);
+            } catch (IOException e) {
+                throw new CanalParseException("fetch failed by table meta:" + fullName, e);
+            }
+        }
+        return tableMeta;
+    }
+
     public void clearTableMeta(String schema, String table) {
         if (tableMetaTSDB != null) {
             // tsdb不需要做,会基于ddl sql自动清理
@@ -3,9 +3,14 @@ package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
@@ -65,7 +70,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private ReadWriteLock                   lock                = new ReentrantReadWriteLock();
     private AtomicBoolean                   initialized         = new AtomicBoolean(false);
     private String                          destination;
-    private MemoryTableMeta                 memoryTableMeta;
+    private volatile MemoryTableMeta        memoryTableMeta;
     private volatile MysqlConnection        connection;                                                                    // 查询meta信息的链接
     private CanalEventFilter                filter;
     private CanalEventFilter                blackFilter;
@@ -77,6 +82,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private MetaSnapshotDAO                 metaSnapshotDAO;
     private int                             snapshotInterval    = 24;
     private int                             snapshotExpire      = 360;
+    private int                             compareParallel     = 4;                                                       // 批量对比表结构的并发链接数, 小于等于0时逐表对比
+    private boolean                         snapshotBinary      = false;                                                   // snapshot是否保存为二进制格式, 默认json以兼容旧版本回滚
     private ScheduledFuture<?>              scheduleSnapshotFuture;
 
     public DatabaseTableMeta(){
@@ -140,12 +147,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
 
     @Override
     public TableMeta find(String schema, String table) {
-        lock.readLock().lock();
-        try {
-            return memoryTableMeta.find(schema, table);
-        } finally {
-            lock.readLock().unlock();
-        }
+        // memoryTableMeta内部保证ddl与缓存失效的一致性, 读取不需要等待apply中的远程写入
+        return memoryTableMeta.find(schema, table);
     }
 
     @Override
@@ -309,7 +312,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         }
 
         // 基于临时内存对象进行对比
-        boolean compareAll = true;
+        Map<String, List<String>> schemaTables = new LinkedHashMap<String, List<String>>();
         for (Schema schema : tmpMemoryTableMeta.getRepository().getSchemas()) {
             for (String table : schema.showTables()) {
                 String fullName = schema + "." + table;
@@ -317,9 +320,25 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                     if (filter == null || filter.filter(fullName)) {
                         // issue : https://github.com/alibaba/canal/issues/1168
                         // 在生成snapshot时重新过滤一遍
-                        if (!compareTableMetaDbAndMemory(connection, tmpMemoryTableMeta, schema.getName(), table)) {
-                            compareAll = false;
+                        List<String> tables = schemaTables.get(schema.getName());
+                        if (tables == null) {
+                            tables = new ArrayList<String>();
+                            schemaTables.put(schema.getName(), tables);
                         }
+                        tables.add(table);
+                    }
+                }
+            }
+        }
+
+        boolean compareAll = true;
+        if (compareParallel > 0) {
+            compareAll = compareTableMetaDbAndMemory(tmpMemoryTableMeta, schemaTables);
+        } else {
+            for (Map.Entry<String, List<String>> entry : schemaTables.entrySet()) {
+                for (String table : entry.getValue()) {
+                    if (!compareTableMetaDbAndMemory(connection, tmpMemoryTableMeta, entry.getKey(), table)) {
+                        compareAll = false;
                     }
                 }
             }
@@ -332,7 +351,12 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             content.put("binlogOffest", String.valueOf(position.getPosition()));
             content.put("binlogMasterId", String.valueOf(position.getServerId()));
             content.put("binlogTimestamp", String.valueOf(position.getTimestamp()));
-            content.put("data", JSON.toJSONString(schemaDdls));
+            if (snapshotBinary) {
+                // 保存解析好的表结构, 恢复时按需解析建表DDL
+                content.put("data", TableMetaSnapshot.encode(tmpMemoryTableMeta.snapshotTables()));
+            } else {
+                content.put("data", JSON.toJSONString(schemaDdls));
+            }
             if (content.isEmpty()) {
                 throw new RuntimeException("apply failed caused by content is empty in applySnapshotToDB");
             }
@@ -356,6 +380,184 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         return false;
     }
 
+    /**
+     * 按库批量查询information_schema进行对比, 使用单独fork的链接并发执行, 不占用解析线程使用的meta链接
+     */
+    private boolean compareTableMetaDbAndMemory(final MemoryTableMeta memoryTableMeta,
+                                                final Map<String, List<String>> schemaTables) {
+        if (schemaTables.isEmpty()) {
+            return true;
+        }
+
+        int parallel = Math.min(compareParallel, schemaTables.size());
+        List<List<String>> buckets = new ArrayList<List<String>>(parallel);
+        for (int i = 0; i < parallel; i++) {
+            buckets.add(new ArrayList<String>());
+        }
+        int index = 0;
+        for (String schema : schemaTables.keySet()) {
+            buckets.get(index++ % parallel).add(schema);
+        }
+
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(parallel, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "[table-meta-snapshot-compare]");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(parallel);
+            for (final List<String> schemas : buckets) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        MDC.put("destination", destination);
+                        MysqlConnection compareConnection = connection.fork();
+                        compareConnection.connect();
+                        try {
+                            boolean result = true;
+                            for (String schema : schemas) {
+                                if (!compareSchemaDbAndMemory(compareConnection,
+                                    memoryTableMeta,
+                                    schema,
+                                    schemaTables.get(schema))) {
+                                    result = false;
+                                }
+                            }
+                            return result;
+                        } finally {
+                            compareConnection.disconnect();
+                        }
+                    }
+                }));
+            }
+
+            boolean result = true;
+            for (Future<Boolean> future : futures) {
+                if (!future.get()) {
+                    result = false;
+                }
+            }
+            logger.info("compare table meta for {} schemas with {} connections elapsed time: {}ms",
+                schemaTables.size(),
+                parallel,
+                System.currentTimeMillis() - start);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CanalParseException(e);
+        } catch (ExecutionException e) {
+            throw new CanalParseException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    boolean compareSchemaDbAndMemory(MysqlConnection connection, MemoryTableMeta memoryTableMeta, String schema,
+                                     List<String> tables) throws IOException {
+        Map<String, TableMeta> tableMetasFromDB = queryTableMetas(connection, schema);
+        boolean result = true;
+        for (String table : tables) {
+            TableMeta tableMetaFromMem = memoryTableMeta.find(schema, table);
+            TableMeta tableMetaFromDB = findTableMeta(tableMetasFromDB, table);
+            if (tableMetaFromDB == null) {
+                logger.error("table not exist in db , pls check :" + getFullName(schema, table) + " , mem : "
+                             + tableMetaFromMem);
+                result = false;
+                continue;
+            }
+
+            if (!compareTableMeta(tableMetaFromMem, tableMetaFromDB)) {
+                logger.error("pls submit github issue, compare failed . \n db : " + tableMetaFromDB + " \n mem : "
+                             + tableMetaFromMem);
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按表名查找, 大小写不同的表名不能合并; 找不到时再忽略大小写匹配,
+     * 兼容lower_case_table_names开启时information_schema返回小写表名
+     */
+    private TableMeta findTableMeta(Map<String, TableMeta> tableMetas, String table) {
+        TableMeta tableMeta = tableMetas.get(table);
+        if (tableMeta == null) {
+            for (Map.Entry<String, TableMeta> entry : tableMetas.entrySet()) {
+                if (StringUtils.equalsIgnoreCase(entry.getKey(), table)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return tableMeta;
+    }
+
+    /**
+     * 查询information_schema中一个库所有表的字段信息, 表名 -> 表结构
+     */
+    Map<String, TableMeta> queryTableMetas(MysqlConnection connection, String schema) throws IOException {
+        String schemaName = StringUtils.replace(StringUtils.replace(schema, "\\", "\\\\"), "'", "''");
+        ResultSetPacket packet = query(connection,
+            "select TABLE_NAME,COLUMN_NAME,COLUMN_TYPE,IS_NULLABLE,COLUMN_KEY,COLUMN_DEFAULT,EXTRA"
+                    + " from information_schema.COLUMNS where TABLE_SCHEMA = '" + schemaName
+                    + "' order by TABLE_NAME,ORDINAL_POSITION");
+        Map<String, TableMeta> tableMetas = new HashMap<String, TableMeta>();
+        List<String> values = packet.getFieldValues();
+        int size = packet.getFieldDescriptors().size();
+        for (int i = 0; i + size <= values.size(); i += size) {
+            String table = values.get(i);
+            TableMeta tableMeta = tableMetas.get(table);
+            if (tableMeta == null) {
+                tableMeta = new TableMeta(schema, table, new ArrayList<FieldMeta>());
+                tableMetas.put(table, tableMeta);
+            }
+
+            FieldMeta fieldMeta = new FieldMeta();
+            fieldMeta.setColumnName(values.get(i + 1));
+            fieldMeta.setColumnType(values.get(i + 2));
+            fieldMeta.setNullable(StringUtils.equalsIgnoreCase(values.get(i + 3), "YES"));
+            fieldMeta.setKey(StringUtils.equalsIgnoreCase(values.get(i + 4), "PRI"));
+            fieldMeta.setUnique(StringUtils.equalsIgnoreCase(values.get(i + 4), "UNI"));
+            fieldMeta.setDefaultValue(DruidDdlParser.unescapeQuotaName(values.get(i + 5)));
+            fieldMeta.setExtra(values.get(i + 6));
+            tableMeta.addFieldMeta(fieldMeta);
+        }
+
+        // COLUMN_KEY只标记了单列的唯一索引, 联合唯一索引的字段需要从STATISTICS中补充
+        packet = query(connection, "select TABLE_NAME,COLUMN_NAME from information_schema.STATISTICS"
+                                   + " where TABLE_SCHEMA = '" + schemaName
+                                   + "' and NON_UNIQUE = 0 and INDEX_NAME <> 'PRIMARY'");
+        values = packet.getFieldValues();
+        size = packet.getFieldDescriptors().size();
+        for (int i = 0; i + size <= values.size(); i += size) {
+            TableMeta tableMeta = tableMetas.get(values.get(i));
+            if (tableMeta != null) {
+                for (FieldMeta fieldMeta : tableMeta.getFields()) {
+                    if (StringUtils.equalsIgnoreCase(fieldMeta.getColumnName(), values.get(i + 1))) {
+                        fieldMeta.setUnique(true);
+                    }
+                }
+            }
+        }
+        return tableMetas;
+    }
+
+    private ResultSetPacket query(MysqlConnection connection, String sql) throws IOException {
+        try {
+            return connection.query(sql);
+        } catch (IOException e) {
+            // retry for broke pipe, see:
+            // https://github.com/alibaba/canal/issues/724
+            connection.reconnect();
+            return connection.query(sql);
+        }
+    }
+
     private boolean compareTableMetaDbAndMemory(MysqlConnection connection, MemoryTableMeta memoryTableMeta,
                                                 final String schema, final String table) {
         TableMeta tableMetaFromMem = memoryTableMeta.find(schema, table);
@@ -413,8 +615,18 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 binlogOffest == null ? 0l : binlogOffest,
                 binlogTimestamp == null ? 0l : binlogTimestamp,
                 Long.valueOf(binlogMasterId == null ? "-2" : binlogMasterId));
-            // data存储为Map<String,String>，每个分库一套建表
             String sqlData = snapshotDO.getData();
+            if (TableMetaSnapshot.isBinary(sqlData)) {
+                // 二进制快照直接使用解析好的表结构, 建表DDL在被后续DDL引用时才解析
+                long start = System.currentTimeMillis();
+                memoryTableMeta.apply(TableMetaSnapshot.decode(sqlData));
+                logger.info("load table meta snapshot at {} elapsed time: {}ms",
+                    snapshotPosition,
+                    System.currentTimeMillis() - start);
+                return snapshotPosition;
+            }
+
+            // 旧版本data存储为Map<String,String>，每个分库一套建表
             JSONObject jsonObj = JSON.parseObject(sqlData);
             for (Map.Entry entry : jsonObj.entrySet()) {
                 // 记录到内存
@@ -673,6 +885,22 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         this.snapshotInterval = snapshotInterval;
     }
 
+    public int getCompareParallel() {
+        return compareParallel;
+    }
+
+    public void setCompareParallel(int compareParallel) {
+        this.compareParallel = compareParallel;
+    }
+
+    public boolean isSnapshotBinary() {
+        return snapshotBinary;
+    }
+
+    public void setSnapshotBinary(boolean snapshotBinary) {
+        this.snapshotBinary = snapshotBinary;
+    }
+
     public int getSnapshotExpire() {
         return snapshotExpire;
     }
@@ -1,7 +1,10 @@
 package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,7 +40,9 @@ import com.alibaba.fastsql.sql.repository.SchemaRepository;
 import com.alibaba.fastsql.util.JdbcConstants;
 import com.alibaba.otter.canal.parse.inbound.TableMeta;
 import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DdlResult;
 import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DruidDdlParser;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
 
 /**
@@ -48,9 +53,11 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
  */
 public class MemoryTableMeta implements TableMetaTSDB {
 
-    private Logger                       logger     = LoggerFactory.getLogger(MemoryTableMeta.class);
-    private Map<List<String>, TableMeta> tableMetas = new ConcurrentHashMap<List<String>, TableMeta>();
-    private SchemaRepository             repository = new SchemaRepository(JdbcConstants.MYSQL);
+    private Logger                              logger         = LoggerFactory.getLogger(MemoryTableMeta.class);
+    private Map<List<String>, TableMeta>        tableMetas     = new ConcurrentHashMap<List<String>, TableMeta>();
+    private SchemaRepository                    repository     = new SchemaRepository(JdbcConstants.MYSQL);
+    // 从快照加载但还未解析到repository的表, 库名 -> 表名(小写), 由this同步
+    private Map<String, Map<String, TableMeta>> snapshotTables = new HashMap<String, Map<String, TableMeta>>();
 
     public MemoryTableMeta(){
     }
@@ -65,13 +72,32 @@ public class MemoryTableMeta implements TableMetaTSDB {
         tableMetas.clear();
     }
 
-    public boolean apply(EntryPosition position, String schema, String ddl, String extra) {
-        tableMetas.clear();
+    /**
+     * 加载解析好的表结构快照, 建表DDL在表第一次被后续DDL引用时才解析到repository中
+     *
+     * @param schemaTables 库名 -> 表结构(包含建表DDL), 见{@linkplain TableMetaSnapshot}
+     */
+    public boolean apply(Map<String, List<TableMeta>> schemaTables) {
         synchronized (this) {
-            if (StringUtils.isNotEmpty(schema)) {
-                repository.setDefaultSchema(schema);
+            for (Map.Entry<String, List<TableMeta>> entry : schemaTables.entrySet()) {
+                // 保留没有表的库
+                repository.setDefaultSchema(entry.getKey());
+                Map<String, TableMeta> tables = snapshotTables.get(StringUtils.lowerCase(entry.getKey()));
+                if (tables == null) {
+                    tables = new HashMap<String, TableMeta>();
+                    snapshotTables.put(StringUtils.lowerCase(entry.getKey()), tables);
+                }
+                for (TableMeta tableMeta : entry.getValue()) {
+                    tables.put(StringUtils.lowerCase(tableMeta.getTable()), tableMeta);
+                }
             }
+            tableMetas.clear();
+        }
+        return true;
+    }
 
+    public boolean apply(EntryPosition position, String schema, String ddl, String extra) {
+        synchronized (this) {
             try {
                 // druid暂时flush privileges语法解析有问题
                 if (!StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "flush")
@@ -81,7 +107,20 @@ public class MemoryTableMeta implements TableMetaTSDB {
                     && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "alter user")
                     && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "drop user")
                     && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "create database")) {
+                    List<DdlResult> results = null;
+                    if (!tableMetas.isEmpty() || !snapshotTables.isEmpty()) {
+                        results = parseDdl(schema, ddl);
+                    }
+                    // 先把ddl涉及到的快照表解析到repository中
+                    loadSnapshotTables(ddl, results);
+                    if (StringUtils.isNotEmpty(schema)) {
+                        repository.setDefaultSchema(schema);
+                    }
                     repository.console(ddl);
+                    // 在锁内失效缓存, 保证find不会把变更前的表结构重新放入缓存
+                    invalidate(results);
+                } else if (StringUtils.isNotEmpty(schema)) {
+                    repository.setDefaultSchema(schema);
                 }
             } catch (Throwable e) {
                 logger.warn("parse faield : " + ddl, e);
@@ -97,6 +136,134 @@ public class MemoryTableMeta implements TableMetaTSDB {
         return true;
     }
 
+    private List<DdlResult> parseDdl(String schema, String ddl) {
+        try {
+            return DruidDdlParser.parse(ddl, schema);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只解析ddl涉及到的快照表, 无法识别涉及的表时全部解析
+     */
+    private void loadSnapshotTables(String ddl, List<DdlResult> results) {
+        if (snapshotTables.isEmpty()) {
+            return;
+        }
+
+        if (results == null || results.isEmpty()) {
+            loadSnapshotTable(null, null);
+            return;
+        }
+
+        for (DdlResult result : results) {
+            for (DdlResult item = result; item != null; item = item.getRenameTableResult()) {
+                // create table like/select会引用其他的表
+                boolean reference = item.getType() == EventType.CREATE
+                                    && (StringUtils.containsIgnoreCase(ddl, "like") || StringUtils.containsIgnoreCase(ddl,
+                                        "select"));
+                if (StringUtils.isEmpty(item.getSchemaName()) || reference) {
+                    loadSnapshotTable(null, null);
+                    return;
+                }
+                if (StringUtils.isEmpty(item.getTableName()) || item.getType() == EventType.QUERY) {
+                    loadSnapshotTable(item.getSchemaName(), null);
+                } else {
+                    loadSnapshotTable(item.getSchemaName(), item.getTableName());
+                }
+                if (item.getOriTableName() != null) {
+                    loadSnapshotTable(item.getOriSchemaName(), item.getOriTableName());
+                }
+            }
+        }
+    }
+
+    /**
+     * 将快照表的建表DDL解析到repository中, schema为null时解析所有的库, table为null时解析整个库
+     */
+    private void loadSnapshotTable(String schema, String table) {
+        List<TableMeta> tables = new ArrayList<TableMeta>();
+        if (schema == null) {
+            for (Map<String, TableMeta> schemaTables : snapshotTables.values()) {
+                tables.addAll(schemaTables.values());
+            }
+            snapshotTables.clear();
+        } else {
+            Map<String, TableMeta> schemaTables = snapshotTables.get(StringUtils.lowerCase(schema));
+            if (schemaTables == null) {
+                return;
+            }
+            if (table == null) {
+                tables.addAll(schemaTables.values());
+                schemaTables.clear();
+            } else {
+                TableMeta tableMeta = schemaTables.remove(StringUtils.lowerCase(table));
+                if (tableMeta != null) {
+                    tables.add(tableMeta);
+                }
+            }
+            if (schemaTables.isEmpty()) {
+                snapshotTables.remove(StringUtils.lowerCase(schema));
+            }
+        }
+
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        Schema defaultSchema = repository.getDefaultSchema();
+        for (TableMeta tableMeta : tables) {
+            try {
+                repository.setDefaultSchema(tableMeta.getSchema());
+                repository.console(tableMeta.getDdl());
+            } catch (Throwable e) {
+                logger.warn("parse faield : " + tableMeta.getDdl(), e);
+            }
+        }
+        repository.setDefaultSchema(defaultSchema);
+    }
+
+    /**
+     * 只失效ddl涉及到的表, 无法识别涉及的表时全部失效
+     */
+    private void invalidate(List<DdlResult> results) {
+        if (tableMetas.isEmpty()) {
+            return;
+        }
+
+        if (results == null || results.isEmpty()) {
+            tableMetas.clear();
+            return;
+        }
+
+        for (DdlResult result : results) {
+            for (DdlResult item = result; item != null; item = item.getRenameTableResult()) {
+                if (StringUtils.isEmpty(item.getSchemaName())) {
+                    tableMetas.clear();
+                    return;
+                }
+                invalidate(item.getSchemaName(), item.getTableName(), item.getType());
+                if (item.getOriTableName() != null) {
+                    invalidate(item.getOriSchemaName(), item.getOriTableName(), item.getType());
+                }
+            }
+        }
+    }
+
+    private void invalidate(String schema, String table, EventType type) {
+        // create/drop database等库级别的ddl没有表名, 失效整个库
+        boolean wholeSchema = StringUtils.isEmpty(table) || type == EventType.QUERY;
+        Iterator<List<String>> it = tableMetas.keySet().iterator();
+        while (it.hasNext()) {
+            List<String> keys = it.next();
+            if (StringUtils.equalsIgnoreCase(keys.get(0), schema)
+                && (wholeSchema || StringUtils.equalsIgnoreCase(keys.get(1), table))) {
+                it.remove();
+            }
+        }
+    }
+
     @Override
     public TableMeta find(String schema, String table) {
         List<String> keys = Arrays.asList(schema, table);
@@ -105,6 +272,17 @@ public class MemoryTableMeta implements TableMetaTSDB {
             synchronized (this) {
                 tableMeta = tableMetas.get(keys);
                 if (tableMeta == null) {
+                    TableMeta snapshot = findSnapshotTable(schema, table);
+                    if (snapshot != null) {
+                        // 快照中解析好的表结构, 不需要解析DDL
+                        if (snapshot.getFields().isEmpty()) {
+                            return null;
+                        }
+                        tableMeta = new TableMeta(schema, table, snapshot.getFields());
+                        tableMetas.put(keys, tableMeta);
+                        return tableMeta;
+                    }
+
                     Schema schemaRep = repository.findSchema(schema);
                     if (schemaRep == null) {
                         return null;
@@ -142,21 +320,66 @@ public class MemoryTableMeta implements TableMetaTSDB {
         throw new RuntimeException("not support for memory");
     }
 
+    private TableMeta findSnapshotTable(String schema, String table) {
+        if (snapshotTables.isEmpty()) {
+            return null;
+        }
+
+        Map<String, TableMeta> tables = snapshotTables.get(StringUtils.lowerCase(schema));
+        return tables == null ? null : tables.get(StringUtils.lowerCase(table));
+    }
+
     public Map<String, String> snapshot() {
         Map<String, String> schemaDdls = new HashMap<String, String>();
-        for (Schema schema : repository.getSchemas()) {
-            StringBuffer data = new StringBuffer(4 * 1024);
-            for (String table : schema.showTables()) {
-                SchemaObject schemaObject = schema.findTable(table);
-                schemaObject.getStatement().output(data);
-                data.append("; \n");
+        synchronized (this) {
+            for (Schema schema : repository.getSchemas()) {
+                StringBuffer data = new StringBuffer(4 * 1024);
+                for (String table : schema.showTables()) {
+                    SchemaObject schemaObject = schema.findTable(table);
+                    schemaObject.getStatement().output(data);
+                    data.append("; \n");
+                }
+                Map<String, TableMeta> tables = snapshotTables.get(StringUtils.lowerCase(schema.getName()));
+                if (tables != null) {
+                    for (TableMeta tableMeta : tables.values()) {
+                        data.append(tableMeta.getDdl()).append("; \n");
+                    }
+                }
+                schemaDdls.put(schema.getName(), data.toString());
             }
-            schemaDdls.put(schema.getName(), data.toString());
         }
 
         return schemaDdls;
     }
 
+    /**
+     * 每张表的建表DDL以及解析好的表结构, 用于生成{@linkplain TableMetaSnapshot}
+     */
+    public Map<String, List<TableMeta>> snapshotTables() {
+        Map<String, List<TableMeta>> schemaTables = new LinkedHashMap<String, List<TableMeta>>();
+        synchronized (this) {
+            for (Schema schema : repository.getSchemas()) {
+                List<TableMeta> tables = new ArrayList<TableMeta>();
+                for (String table : schema.showTables()) {
+                    StringBuffer data = new StringBuffer(1024);
+                    schema.findTable(table).getStatement().output(data);
+                    TableMeta tableMeta = find(schema.getName(), table);
+                    List<FieldMeta> fields = tableMeta == null ? new ArrayList<FieldMeta>() : tableMeta.getFields();
+                    tableMeta = new TableMeta(schema.getName(), table, fields);
+                    tableMeta.setDdl(data.toString());
+                    tables.add(tableMeta);
+                }
+                Map<String, TableMeta> snapshot = snapshotTables.get(StringUtils.lowerCase(schema.getName()));
+                if (snapshot != null) {
+                    tables.addAll(snapshot.values());
+                }
+                schemaTables.put(schema.getName(), tables);
+            }
+        }
+
+        return schemaTables;
+    }
+
     private TableMeta parse(SQLCreateTableStatement statement) {
         int size = statement.getTableElementList().size();
         if (size > 0) {
@@ -0,0 +1,156 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
+
+/**
+ * 表结构快照的二进制格式, 保存每张表的建表DDL以及解析好的字段信息, 恢复时不需要重新解析DDL
+ * 只有开启canal.instance.tsdb.snapshot.binary时才写入该格式, 读取时两种格式都支持
+ *
+ * <pre>
+ * 格式: MAGIC + base64(gzip(内容)), 兼容旧的json格式(每个库一份建表DDL)
+ * 内容:
+ *   int 库数量
+ *   每个库: string 库名, int 表数量
+ *     每张表: string 表名, string 建表DDL, int 字段数量
+ *       每个字段: string 字段名, string 类型, byte 标记(nullable/key/unique), string 默认值, string extra
+ * string为int长度 + utf8字节, 长度-1表示null
+ * </pre>
+ */
+public class TableMetaSnapshot {
+
+    public static final String MAGIC         = "TMS1:";
+
+    private static final int   FLAG_NULLABLE = 1;
+    private static final int   FLAG_KEY      = 1 << 1;
+    private static final int   FLAG_UNIQUE   = 1 << 2;
+
+    public static boolean isBinary(String data) {
+        return StringUtils.startsWith(data, MAGIC);
+    }
+
+    /**
+     * @param schemaTables 库名 -> 表结构(需要包含建表DDL)
+     */
+    public static String encode(Map<String, List<TableMeta>> schemaTables) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(schemaTables.size());
+            for (Map.Entry<String, List<TableMeta>> entry : schemaTables.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (TableMeta tableMeta : entry.getValue()) {
+                    writeString(out, tableMeta.getTable());
+                    writeString(out, tableMeta.getDdl());
+                    out.writeInt(tableMeta.getFields().size());
+                    for (FieldMeta fieldMeta : tableMeta.getFields()) {
+                        writeString(out, fieldMeta.getColumnName());
+                        writeString(out, fieldMeta.getColumnType());
+                        int flags = 0;
+                        if (fieldMeta.isNullable()) {
+                            flags |= FLAG_NULLABLE;
+                        }
+                        if (fieldMeta.isKey()) {
+                            flags |= FLAG_KEY;
+                        }
+                        if (fieldMeta.isUnique()) {
+                            flags |= FLAG_UNIQUE;
+                        }
+                        out.writeByte(flags);
+                        writeString(out, fieldMeta.getDefaultValue());
+                        writeString(out, fieldMeta.getExtra());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new CanalParseException("encode table meta snapshot failed", e);
+        }
+
+        return MAGIC + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @return 库名 -> 表结构, 按写入的顺序
+     */
+    public static Map<String, List<TableMeta>> decode(String data) {
+        if (!isBinary(data)) {
+            throw new CanalParseException("not a binary table meta snapshot");
+        }
+
+        byte[] bytes = Base64.getDecoder().decode(data.substring(MAGIC.length()));
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes), 64 * 1024))) {
+            int schemaSize = in.readInt();
+            Map<String, List<TableMeta>> schemaTables = new LinkedHashMap<String, List<TableMeta>>(schemaSize * 2);
+            for (int i = 0; i < schemaSize; i++) {
+                String schema = readString(in);
+                int tableSize = in.readInt();
+                List<TableMeta> tables = new ArrayList<TableMeta>(tableSize);
+                for (int j = 0; j < tableSize; j++) {
+                    String table = readString(in);
+                    String ddl = readString(in);
+                    int fieldSize = in.readInt();
+                    List<FieldMeta> fields = new ArrayList<FieldMeta>(fieldSize);
+                    for (int k = 0; k < fieldSize; k++) {
+                        FieldMeta fieldMeta = new FieldMeta();
+                        fieldMeta.setColumnName(readString(in));
+                        fieldMeta.setColumnType(readString(in));
+                        int flags = in.readByte();
+                        fieldMeta.setNullable((flags & FLAG_NULLABLE) != 0);
+                        fieldMeta.setKey((flags & FLAG_KEY) != 0);
+                        fieldMeta.setUnique((flags & FLAG_UNIQUE) != 0);
+                        fieldMeta.setDefaultValue(readString(in));
+                        fieldMeta.setExtra(readString(in));
+                        fields.add(fieldMeta);
+                    }
+
+                    TableMeta tableMeta = new TableMeta(schema, table, fields);
+                    tableMeta.setDdl(ddl);
+                    tables.add(tableMeta);
+                }
+                schemaTables.put(schema, tables);
+            }
+            return schemaTables;
+        } catch (IOException e) {
+            throw new CanalParseException("decode table meta snapshot failed", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
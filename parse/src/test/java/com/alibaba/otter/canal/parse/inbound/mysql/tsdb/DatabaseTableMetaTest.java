@@ -0,0 +1,150 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.driver.mysql.packets.server.FieldPacket;
+import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.MysqlConnection;
+
+/**
+ * 基于information_schema批量对比表结构的测试, 查询结果由ResultSetPacket构造, 不依赖mysql
+ */
+public class DatabaseTableMetaTest {
+
+    private static final String[] COLUMNS    = { "TABLE_NAME", "COLUMN_NAME", "COLUMN_TYPE", "IS_NULLABLE",
+            "COLUMN_KEY", "COLUMN_DEFAULT", "EXTRA" };
+    private static final String[] STATISTICS = { "TABLE_NAME", "COLUMN_NAME" };
+
+    @Test
+    public void testCompositeUniqueKey() throws IOException {
+        // 联合唯一索引在COLUMNS中只有第一列标记为MUL, 需要从STATISTICS中补充
+        FixtureConnection connection = new FixtureConnection(packet(COLUMNS,
+            "t_uk", "id", "bigint(20)", "NO", "PRI", null, "auto_increment",
+            "t_uk", "a", "int(11)", "NO", "MUL", null, "",
+            "t_uk", "b", "int(11)", "NO", "", null, "",
+            "t_uk", "c", "varchar(32)", "YES", "", null, ""),
+            packet(STATISTICS, "t_uk", "a", "t_uk", "b"));
+
+        Map<String, TableMeta> tableMetas = new DatabaseTableMeta().queryTableMetas(connection, "test");
+        TableMeta tableMeta = tableMetas.get("t_uk");
+        Assert.assertTrue(tableMeta.getFieldMetaByName("id").isKey());
+        Assert.assertFalse(tableMeta.getFieldMetaByName("id").isUnique());
+        Assert.assertTrue(tableMeta.getFieldMetaByName("a").isUnique());
+        Assert.assertTrue(tableMeta.getFieldMetaByName("b").isUnique());
+        Assert.assertFalse(tableMeta.getFieldMetaByName("c").isUnique());
+
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null,
+            "test",
+            "create table t_uk (id bigint(20) not null auto_increment, a int(11) not null, b int(11) not null,"
+                    + " c varchar(32), primary key (id), unique key uk_a_b (a, b))",
+            null);
+        Assert.assertTrue(compare(connection, memoryTableMeta, "t_uk"));
+
+        // 没有STATISTICS的补充时联合唯一索引的字段对比不一致
+        connection.statistics = packet(STATISTICS);
+        Assert.assertFalse(compare(connection, memoryTableMeta, "t_uk"));
+    }
+
+    @Test
+    public void testUniqueKeyAsPrimary() throws IOException {
+        // 没有主键时mysql会把非空的唯一索引当做主键, COLUMN_KEY为PRI
+        FixtureConnection connection = new FixtureConnection(packet(COLUMNS,
+            "t_pk", "code", "varchar(32)", "NO", "PRI", null, "",
+            "t_pk", "name", "varchar(32)", "YES", "", null, ""),
+            packet(STATISTICS, "t_pk", "code"));
+
+        TableMeta tableMeta = new DatabaseTableMeta().queryTableMetas(connection, "test").get("t_pk");
+        Assert.assertTrue(tableMeta.getFieldMetaByName("code").isKey());
+        Assert.assertTrue(tableMeta.getFieldMetaByName("code").isUnique());
+        Assert.assertFalse(tableMeta.getFieldMetaByName("name").isKey());
+
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null,
+            "test",
+            "create table t_pk (code varchar(32) not null, name varchar(32), unique key uk_code (code))",
+            null);
+        Assert.assertTrue(compare(connection, memoryTableMeta, "t_pk"));
+    }
+
+    @Test
+    public void testTableNameCase() throws IOException {
+        // 大小写敏感时表名只有大小写不同的两张表不能互相覆盖
+        FixtureConnection connection = new FixtureConnection(packet(COLUMNS,
+            "T_CASE", "id", "int(11)", "NO", "PRI", null, "",
+            "t_case", "id", "int(11)", "NO", "PRI", null, "",
+            "t_case", "name", "varchar(32)", "YES", "", null, ""),
+            packet(STATISTICS));
+
+        Map<String, TableMeta> tableMetas = new DatabaseTableMeta().queryTableMetas(connection, "test");
+        Assert.assertEquals(1, tableMetas.get("T_CASE").getFields().size());
+        Assert.assertEquals(2, tableMetas.get("t_case").getFields().size());
+
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null,
+            "test",
+            "create table t_case (id int(11) not null, name varchar(32), primary key (id))",
+            null);
+        Assert.assertTrue(compare(connection, memoryTableMeta, "t_case"));
+
+        // lower_case_table_names开启时information_schema返回小写表名
+        memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null,
+            "test",
+            "create table T_Lower (id int(11) not null, primary key (id))",
+            null);
+        connection.columns = packet(COLUMNS, "t_lower", "id", "int(11)", "NO", "PRI", null, "");
+        Assert.assertTrue(compare(connection, memoryTableMeta, "T_Lower"));
+    }
+
+    private boolean compare(MysqlConnection connection, MemoryTableMeta memoryTableMeta, String table)
+                                                                                                    throws IOException {
+        return new DatabaseTableMeta().compareSchemaDbAndMemory(connection,
+            memoryTableMeta,
+            "test",
+            Arrays.asList(table));
+    }
+
+    private static ResultSetPacket packet(String[] names, String... values) {
+        List<FieldPacket> fields = new ArrayList<FieldPacket>();
+        for (String name : names) {
+            FieldPacket field = new FieldPacket();
+            field.setName(name);
+            fields.add(field);
+        }
+        ResultSetPacket packet = new ResultSetPacket();
+        packet.setFieldDescriptors(fields);
+        packet.setFieldValues(new ArrayList<String>(Arrays.asList(values)));
+        return packet;
+    }
+
+    private static class FixtureConnection extends MysqlConnection {
+
+        private ResultSetPacket columns;
+        private ResultSetPacket statistics;
+
+        public FixtureConnection(ResultSetPacket columns, ResultSetPacket statistics){
+            this.columns = columns;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public ResultSetPacket query(String cmd) throws IOException {
+            if (StringUtils.containsIgnoreCase(cmd, "information_schema.COLUMNS")) {
+                return columns;
+            } else if (StringUtils.containsIgnoreCase(cmd, "information_schema.STATISTICS")) {
+                return statistics;
+            }
+            throw new IOException("unexpected query : " + cmd);
+        }
+    }
+}
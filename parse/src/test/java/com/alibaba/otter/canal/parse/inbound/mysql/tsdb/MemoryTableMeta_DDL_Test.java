@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -89,4 +90,73 @@ public class MemoryTableMeta_DDL_Test {
             System.out.println(sourceMeta.toString());
         }
     }
+
+    @Test
+    public void test_invalidate() throws Throwable {
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null, "test", "create table t1 (id int primary key, name varchar(32))", null);
+        memoryTableMeta.apply(null, "test", "create table t2 (id int primary key, name varchar(32))", null);
+        TableMeta t1 = memoryTableMeta.find("test", "t1");
+        TableMeta t2 = memoryTableMeta.find("test", "t2");
+
+        // ddl只失效涉及到的表
+        memoryTableMeta.apply(null, "test", "alter table t1 add column age int", null);
+        Assert.assertSame(t2, memoryTableMeta.find("test", "t2"));
+        Assert.assertNotSame(t1, memoryTableMeta.find("test", "t1"));
+        Assert.assertNotNull(memoryTableMeta.find("test", "t1").getFieldMetaByName("age"));
+
+        memoryTableMeta.apply(null, "test", "rename table t2 to t3", null);
+        Assert.assertNull(memoryTableMeta.find("test", "t2"));
+        Assert.assertNotNull(memoryTableMeta.find("test", "t3"));
+
+        memoryTableMeta.apply(null, "test", "drop table t1", null);
+        Assert.assertNull(memoryTableMeta.find("test", "t1"));
+        Assert.assertNotNull(memoryTableMeta.find("test", "t3"));
+    }
+
+    @Test
+    public void test_snapshot() throws Throwable {
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null, "test", "create table t1 (id int primary key, name varchar(32) not null)", null);
+        memoryTableMeta.apply(null, "test", "create table t2 (id int primary key, name varchar(32))", null);
+        memoryTableMeta.apply(null, "test2", "create table t3 (id bigint unsigned, age int default 10)", null);
+        memoryTableMeta.apply(null, "test3", "create database test3", null);
+        String data = TableMetaSnapshot.encode(memoryTableMeta.snapshotTables());
+        Assert.assertTrue(TableMetaSnapshot.isBinary(data));
+
+        MemoryTableMeta snapshotTableMeta = new MemoryTableMeta();
+        snapshotTableMeta.apply(TableMetaSnapshot.decode(data));
+        // 快照中的表不需要解析DDL
+        Assert.assertNull(snapshotTableMeta.getRepository().findTable("test.t1"));
+        TableMeta t1 = snapshotTableMeta.find("test", "t1");
+        Assert.assertTrue(t1.getFieldMetaByName("id").isKey());
+        Assert.assertFalse(t1.getFieldMetaByName("name").isNullable());
+        Assert.assertEquals("10", snapshotTableMeta.find("test2", "t3").getFieldMetaByName("age").getDefaultValue());
+        Assert.assertTrue(DatabaseTableMeta.compareTableMeta(memoryTableMeta.find("test2", "t3"),
+            snapshotTableMeta.find("test2", "t3")));
+        Assert.assertNull(snapshotTableMeta.find("test", "t4"));
+
+        // 只解析ddl涉及到的表
+        snapshotTableMeta.apply(null, "test", "alter table t1 add column age int", null);
+        Assert.assertNotNull(snapshotTableMeta.getRepository().findTable("test.t1"));
+        Assert.assertNull(snapshotTableMeta.getRepository().findTable("test.t2"));
+        Assert.assertNotNull(snapshotTableMeta.find("test", "t1").getFieldMetaByName("age"));
+        Assert.assertEquals(2, snapshotTableMeta.find("test", "t2").getFields().size());
+
+        snapshotTableMeta.apply(null, "test", "create table t4 like t2", null);
+        Assert.assertNotNull(snapshotTableMeta.getRepository().findTable("test.t2"));
+        Assert.assertEquals(2, snapshotTableMeta.find("test", "t4").getFields().size());
+        snapshotTableMeta.apply(null, "test3", "create table t5 (id int)", null);
+        Assert.assertNotNull(snapshotTableMeta.find("test3", "t5"));
+
+        // 没有解析的表也需要包含在快照中
+        MemoryTableMeta lazyTableMeta = new MemoryTableMeta();
+        lazyTableMeta.apply(TableMetaSnapshot.decode(data));
+        Map<String, String> schemaDdls = lazyTableMeta.snapshot();
+        Assert.assertTrue(schemaDdls.get("test").contains("t2"));
+        Assert.assertTrue(schemaDdls.containsKey("test3"));
+        Map<String, List<TableMeta>> schemaTables = lazyTableMeta.snapshotTables();
+        Assert.assertEquals(2, schemaTables.get("test").size());
+        Assert.assertEquals(1, schemaTables.get("test2").size());
+    }
 }
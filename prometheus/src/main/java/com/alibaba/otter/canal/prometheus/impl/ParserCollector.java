@@ -4,6 +4,7 @@ import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
 
 import com.alibaba.otter.canal.parse.inbound.group.GroupEventParser;
 import com.alibaba.otter.canal.parse.inbound.mysql.AbstractMysqlEventParser;
+import com.alibaba.otter.canal.parse.inbound.mysql.MysqlMultiStageCoprocessor;
 import io.prometheus.client.Collector;
 import io.prometheus.client.CounterMetricFamily;
 import io.prometheus.client.GaugeMetricFamily;
@@ -35,11 +36,22 @@ public class ParserCollector extends Collector implements InstanceRegistry {
     private static final String                              PARSER_MODE           = "canal_instance_parser_mode";
     private static final String                              MODE_LABEL            = "parallel";
     private static final String                              PARSER_LABEL          = "parser";
+    private static final String                              STAGE_BUSY            = "canal_instance_parser_stage_busy_time";
+    private static final String                              STAGE_QUEUE_DEPTH     = "canal_instance_parser_stage_queue_depth";
+    private static final String                              STAGE_LABEL           = "stage";
+    private static final String                              STAGE_SIMPLE          = "simple";
+    private static final String                              STAGE_DML             = "dml";
+    private static final String                              STAGE_SINK            = "sink";
     private static final String                              PUBLISH_BLOCKING_HELP = "Publish blocking time of dump thread in milliseconds";
     private static final String                              RECEIVED_BINLOG_HELP  = "Received binlog bytes";
     private static final String                              MODE_HELP             = "Parser mode(parallel/serial) of instance";
+    private static final String                              STAGE_BUSY_HELP       = "Busy time of each parallel parser stage in milliseconds";
+    private static final String                              STAGE_QUEUE_HELP      = "Events waiting for each parallel parser stage";
     private final List<String>                               modeLabels            = Arrays.asList(DEST, MODE_LABEL);
     private final List<String>                               parserLabels          = Arrays.asList(DEST, PARSER_LABEL);
+    private final List<String>                               stageLabels           = Arrays.asList(DEST,
+                                                                                       PARSER_LABEL,
+                                                                                       STAGE_LABEL);
     private final ConcurrentMap<String, ParserMetricsHolder> instances             = new ConcurrentHashMap<>();
 
     private ParserCollector() {}
@@ -61,15 +73,21 @@ public class ParserCollector extends Collector implements InstanceRegistry {
                 MODE_HELP, modeLabels);
         CounterMetricFamily blockingCounter = new CounterMetricFamily(PUBLISH_BLOCKING,
                 PUBLISH_BLOCKING_HELP, parserLabels);
+        CounterMetricFamily stageBusyCounter = new CounterMetricFamily(STAGE_BUSY,
+                STAGE_BUSY_HELP, stageLabels);
+        GaugeMetricFamily stageQueueGauge = new GaugeMetricFamily(STAGE_QUEUE_DEPTH,
+                STAGE_QUEUE_HELP, stageLabels);
         for (ParserMetricsHolder emh : instances.values()) {
             if (emh instanceof GroupParserMetricsHolder) {
                 GroupParserMetricsHolder group = (GroupParserMetricsHolder) emh;
                 for (ParserMetricsHolder semh :  group.holders) {
                     singleCollect(bytesCounter, blockingCounter, modeGauge, semh);
+                    stageCollect(stageBusyCounter, stageQueueGauge, semh);
                 }
             }
             else {
                 singleCollect(bytesCounter, blockingCounter, modeGauge, emh);
+                stageCollect(stageBusyCounter, stageQueueGauge, emh);
             }
         }
         mfs.add(bytesCounter);
@@ -77,6 +95,10 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         if (!blockingCounter.samples.isEmpty()) {
             mfs.add(blockingCounter);
         }
+        if (!stageBusyCounter.samples.isEmpty()) {
+            mfs.add(stageBusyCounter);
+            mfs.add(stageQueueGauge);
+        }
         return mfs;
     }
 
@@ -88,6 +110,24 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         bytesCounter.addMetric(holder.parserLabelValues, holder.receivedBinlogBytes.doubleValue());
     }
 
+    private void stageCollect(CounterMetricFamily busyCounter, GaugeMetricFamily queueGauge, ParserMetricsHolder holder) {
+        if (!holder.isParallel) {
+            return;
+        }
+        busyCounter.addMetric(stageLabelValues(holder, STAGE_SIMPLE), holder.parser.getSimpleParserBusyTime().doubleValue() / NANO_PER_MILLI);
+        busyCounter.addMetric(stageLabelValues(holder, STAGE_DML), holder.parser.getDmlParserBusyTime().doubleValue() / NANO_PER_MILLI);
+        busyCounter.addMetric(stageLabelValues(holder, STAGE_SINK), holder.parser.getSinkStoreBusyTime().doubleValue() / NANO_PER_MILLI);
+
+        MysqlMultiStageCoprocessor coprocessor = holder.parser.getMysqlMultiStageCoprocessor();
+        queueGauge.addMetric(stageLabelValues(holder, STAGE_SIMPLE), coprocessor == null ? 0 : coprocessor.getSimpleParserQueueDepth());
+        queueGauge.addMetric(stageLabelValues(holder, STAGE_DML), coprocessor == null ? 0 : coprocessor.getDmlParserQueueDepth());
+        queueGauge.addMetric(stageLabelValues(holder, STAGE_SINK), coprocessor == null ? 0 : coprocessor.getSinkStoreQueueDepth());
+    }
+
+    private static List<String> stageLabelValues(ParserMetricsHolder holder, String stage) {
+        return Arrays.asList(holder.parserLabelValues.get(0), holder.parserLabelValues.get(1), stage);
+    }
+
     @Override
     public void register(CanalInstance instance) {
         final String destination = instance.getDestination();
@@ -114,6 +154,7 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         holder.eventsPublishBlockingTime = parser.getEventsPublishBlockingTime();
         holder.receivedBinlogBytes = parser.getReceivedBinlogBytes();
         holder.isParallel = parser.isParallel();
+        holder.parser = parser;
         Preconditions.checkNotNull(holder.eventsPublishBlockingTime);
         Preconditions.checkNotNull(holder.receivedBinlogBytes);
         return holder;
@@ -149,6 +190,8 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         private AtomicLong   eventsPublishBlockingTime;
         // parser mode
         private boolean      isParallel;
+        // 并行解析的stage指标
+        private AbstractMysqlEventParser parser;
     }
 
     private class GroupParserMetricsHolder extends ParserMetricsHolder {
@@ -3,7 +3,9 @@ package com.alibaba.otter.canal.prometheus.impl;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.prometheus.InstanceRegistry;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.file.FileMixedEventStore;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithDisruptor;
 import com.alibaba.otter.canal.store.model.BatchMode;
 import com.google.common.base.Preconditions;
 import io.prometheus.client.Collector;
@@ -19,6 +21,7 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
 import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST_LABELS_LIST;
@@ -92,8 +95,8 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         boolean hasMem = false;
         for (StoreMetricsHolder smh : instances.values()) {
             final boolean isMem = smh.batchMode.isMemSize();
-            put.addMetric(smh.destLabelValues, smh.putSeq.doubleValue());
-            ack.addMetric(smh.destLabelValues, smh.ackSeq.doubleValue());
+            put.addMetric(smh.destLabelValues, smh.putSeq.getAsLong());
+            ack.addMetric(smh.destLabelValues, smh.ackSeq.getAsLong());
             long pet = smh.putExecTime.get();
             // 防止出现启动时，未消费造成的get, ack延时小于前阶段的情况
             long get = Math.min(smh.getExecTime.get(), pet);
@@ -135,30 +138,59 @@ public class StoreCollector extends Collector implements InstanceRegistry {
     @Override
     public void register(CanalInstance instance) {
         final String destination = instance.getDestination();
-        StoreMetricsHolder holder = new StoreMetricsHolder();
+        StoreMetricsHolder holder;
         CanalEventStore store = instance.getEventStore();
-        if (!(store instanceof MemoryEventStoreWithBuffer)) {
-            throw new IllegalArgumentException("EventStore must be MemoryEventStoreWithBuffer");
+        if (store instanceof MemoryEventStoreWithBuffer) {
+            MemoryEventStoreWithBuffer memStore = (MemoryEventStoreWithBuffer) store;
+            holder = newHolder(memStore.getBatchMode(),
+                memStore.getBufferSize(),
+                memStore.getPutSequence()::get,
+                memStore.getAckSequence()::get,
+                memStore.getPutMemSize(),
+                memStore.getAckMemSize(),
+                memStore.getPutExecTime(),
+                memStore.getGetExecTime(),
+                memStore.getAckExecTime(),
+                memStore.getPutTableRows(),
+                memStore.getGetTableRows(),
+                memStore.getAckTableRows());
+        } else if (store instanceof MemoryEventStoreWithDisruptor) {
+            MemoryEventStoreWithDisruptor memStore = (MemoryEventStoreWithDisruptor) store;
+            holder = newHolder(memStore.getBatchMode(),
+                memStore.getBufferSize(),
+                memStore.getPutSequence()::get,
+                memStore.getAckSequence()::get,
+                memStore.getPutMemSize(),
+                memStore.getAckMemSize(),
+                memStore.getPutExecTime(),
+                memStore.getGetExecTime(),
+                memStore.getAckExecTime(),
+                memStore.getPutTableRows(),
+                memStore.getGetTableRows(),
+                memStore.getAckTableRows());
+        } else if (store instanceof FileMixedEventStore) {
+            FileMixedEventStore fileStore = (FileMixedEventStore) store;
+            holder = newHolder(fileStore.getBatchMode(),
+                fileStore.getBufferSize(),
+                fileStore.getPutSequence()::get,
+                fileStore.getAckSequence()::get,
+                fileStore.getPutMemSize(),
+                fileStore.getAckMemSize(),
+                fileStore.getPutExecTime(),
+                fileStore.getGetExecTime(),
+                fileStore.getAckExecTime(),
+                fileStore.getPutTableRows(),
+                fileStore.getGetTableRows(),
+                fileStore.getAckTableRows());
+        } else {
+            throw new IllegalArgumentException("EventStore must be MemoryEventStoreWithBuffer, MemoryEventStoreWithDisruptor or FileMixedEventStore");
         }
-        MemoryEventStoreWithBuffer memStore = (MemoryEventStoreWithBuffer) store;
-        holder.batchMode = memStore.getBatchMode();
-        holder.putSeq = memStore.getPutSequence();
-        holder.ackSeq = memStore.getAckSequence();
         holder.destLabelValues = Collections.singletonList(destination);
-        holder.size = memStore.getBufferSize();
         holder.storeLabelValues = Arrays.asList(destination, holder.batchMode.name(), Integer.toString(holder.size));
-        holder.putExecTime = memStore.getPutExecTime();
-        holder.getExecTime = memStore.getGetExecTime();
-        holder.ackExecTime = memStore.getAckExecTime();
-        holder.putTableRows = memStore.getPutTableRows();
-        holder.getTableRows = memStore.getGetTableRows();
-        holder.ackTableRows = memStore.getAckTableRows();
         Preconditions.checkNotNull(holder.batchMode);
         Preconditions.checkNotNull(holder.putSeq);
         Preconditions.checkNotNull(holder.ackSeq);
         if (holder.batchMode.isMemSize()) {
-            holder.putMemSize = memStore.getPutMemSize();
-            holder.ackMemSize = memStore.getAckMemSize();
             Preconditions.checkNotNull(holder.putMemSize);
             Preconditions.checkNotNull(holder.ackMemSize);
         }
@@ -168,15 +200,36 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         }
     }
 
+    private static StoreMetricsHolder newHolder(BatchMode batchMode, int size, LongSupplier putSeq,
+                                                LongSupplier ackSeq, AtomicLong putMemSize, AtomicLong ackMemSize,
+                                                AtomicLong putExecTime, AtomicLong getExecTime,
+                                                AtomicLong ackExecTime, AtomicLong putTableRows,
+                                                AtomicLong getTableRows, AtomicLong ackTableRows) {
+        StoreMetricsHolder holder = new StoreMetricsHolder();
+        holder.batchMode = batchMode;
+        holder.size = size;
+        holder.putSeq = putSeq;
+        holder.ackSeq = ackSeq;
+        holder.putMemSize = putMemSize;
+        holder.ackMemSize = ackMemSize;
+        holder.putExecTime = putExecTime;
+        holder.getExecTime = getExecTime;
+        holder.ackExecTime = ackExecTime;
+        holder.putTableRows = putTableRows;
+        holder.getTableRows = getTableRows;
+        holder.ackTableRows = ackTableRows;
+        return holder;
+    }
+
     @Override
     public void unregister(CanalInstance instance) {
         final String destination = instance.getDestination();
         instances.remove(destination);
     }
 
-    private class StoreMetricsHolder {
-        private AtomicLong   putSeq;
-        private AtomicLong   ackSeq;
+    private static class StoreMetricsHolder {
+        private LongSupplier putSeq;
+        private LongSupplier ackSeq;
         private BatchMode    batchMode;
         private AtomicLong   putMemSize;
         private AtomicLong   ackMemSize;
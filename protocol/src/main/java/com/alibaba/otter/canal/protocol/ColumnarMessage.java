@@ -0,0 +1,309 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+
+/**
+ * 列式的mq消息，同一个表、相同列结构的连续多行数据按列保存
+ *
+ * <pre>
+ * 1. dml按行记录eventType/executeTime，每一列分别保存data(insert/update为变更后的值，delete为变更前的值)和old(update变更前的值)
+ * 2. ddl/query等非dml事件rowCount为0，使用消息级别的type/es/sql
+ * 3. 序列化格式见{@linkplain ColumnarMessageCodec}
+ * </pre>
+ */
+public class ColumnarMessage implements Serializable {
+
+    private static final long serialVersionUID = -4358371826419183717L;
+    private long              id;
+    private String            database;
+    private String            table;
+    private boolean           isDdl;
+    private EventType         type;
+    // binlog executeTime
+    private long              es;
+    private String            sql;
+    private List<ColumnMeta>  columns;
+    private int               rowCount;
+    private EventType[]       eventTypes;
+    private long[]            executeTimes;
+    private ColumnVector[]    data;
+    private ColumnVector[]    old;
+
+    public ColumnarMessage(){
+    }
+
+    public ColumnarMessage(long id){
+        this.id = id;
+    }
+
+    public EventType getEventType(int row) {
+        return eventTypes[row];
+    }
+
+    public long getExecuteTime(int row) {
+        return executeTimes[row];
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public boolean getIsDdl() {
+        return isDdl;
+    }
+
+    public void setIsDdl(boolean isDdl) {
+        this.isDdl = isDdl;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public void setType(EventType type) {
+        this.type = type;
+    }
+
+    public long getEs() {
+        return es;
+    }
+
+    public void setEs(long es) {
+        this.es = es;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    public List<ColumnMeta> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<ColumnMeta> columns) {
+        this.columns = columns;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public EventType[] getEventTypes() {
+        return eventTypes;
+    }
+
+    public void setEventTypes(EventType[] eventTypes) {
+        this.eventTypes = eventTypes;
+    }
+
+    public long[] getExecuteTimes() {
+        return executeTimes;
+    }
+
+    public void setExecuteTimes(long[] executeTimes) {
+        this.executeTimes = executeTimes;
+    }
+
+    public ColumnVector[] getData() {
+        return data;
+    }
+
+    public void setData(ColumnVector[] data) {
+        this.data = data;
+    }
+
+    public ColumnVector[] getOld() {
+        return old;
+    }
+
+    public void setOld(ColumnVector[] old) {
+        this.old = old;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarMessage [id=" + id + ", database=" + database + ", table=" + table + ", isDdl=" + isDdl
+               + ", type=" + type + ", es=" + es + ", sql=" + sql + ", columns=" + columns + ", rowCount=" + rowCount
+               + "]";
+    }
+
+    /**
+     * 列的结构信息
+     */
+    public static class ColumnMeta implements Serializable {
+
+        private static final long serialVersionUID = 2916283621035488614L;
+        private String            name;
+        private boolean           isKey;
+        private int               sqlType;
+        private String            mysqlType;
+
+        public ColumnMeta(){
+        }
+
+        public ColumnMeta(String name, boolean isKey, int sqlType, String mysqlType){
+            this.name = name;
+            this.isKey = isKey;
+            this.sqlType = sqlType;
+            this.mysqlType = mysqlType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean getIsKey() {
+            return isKey;
+        }
+
+        public void setIsKey(boolean isKey) {
+            this.isKey = isKey;
+        }
+
+        public int getSqlType() {
+            return sqlType;
+        }
+
+        public void setSqlType(int sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        public String getMysqlType() {
+            return mysqlType;
+        }
+
+        public void setMysqlType(String mysqlType) {
+            this.mysqlType = mysqlType;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + mysqlType + (isKey ? ",key" : "") + ")";
+        }
+    }
+
+    /**
+     * 一列的多行数据，整数类型的列在序列化时可以使用long编码，反序列化后通过getLong读取避免字符串解析
+     */
+    public static class ColumnVector implements Serializable {
+
+        private static final long serialVersionUID = -6728457211457232616L;
+        private final int         rowCount;
+        private final BitSet      presents;
+        private final BitSet      nulls;
+        private String[]          strings;
+        private long[]            longs;
+
+        public ColumnVector(int rowCount){
+            this.rowCount = rowCount;
+            this.presents = new BitSet(rowCount);
+            this.nulls = new BitSet(rowCount);
+        }
+
+        ColumnVector(int rowCount, BitSet presents, BitSet nulls){
+            this.rowCount = rowCount;
+            this.presents = presents;
+            this.nulls = nulls;
+        }
+
+        public void setString(int row, String value) {
+            presents.set(row);
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                if (strings == null) {
+                    strings = new String[rowCount];
+                }
+                strings[row] = value;
+            }
+        }
+
+        public void setLong(int row, long value) {
+            presents.set(row);
+            if (longs == null) {
+                longs = new long[rowCount];
+            }
+            longs[row] = value;
+        }
+
+        /**
+         * old向量中只有update变更的列才有值，data向量所有行都有值
+         */
+        public boolean isPresent(int row) {
+            return presents.get(row);
+        }
+
+        public boolean isNull(int row) {
+            return !presents.get(row) || nulls.get(row);
+        }
+
+        public boolean isLongEncoded() {
+            return longs != null;
+        }
+
+        public long getLong(int row) {
+            if (longs != null) {
+                return longs[row];
+            }
+            return Long.parseLong(strings[row]);
+        }
+
+        public String getString(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            if (longs != null) {
+                return Long.toString(longs[row]);
+            }
+            return strings[row];
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        BitSet getPresents() {
+            return presents;
+        }
+
+        BitSet getNulls() {
+            return nulls;
+        }
+    }
+}
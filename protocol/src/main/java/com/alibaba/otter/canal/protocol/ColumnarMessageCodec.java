@@ -0,0 +1,209 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.ColumnarMessage.ColumnMeta;
+import com.alibaba.otter.canal.protocol.ColumnarMessage.ColumnVector;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * ColumnarMessage的二进制序列化，基于protobuf的varint/zigzag编码，不依赖额外的schema文件
+ *
+ * <pre>
+ * fixed32   magic
+ * int64     id
+ * string    database / table
+ * bool      isDdl
+ * int32     type
+ * int64     es
+ * string    sql
+ * int32     columnCount, 每列: string name, bool isKey, sint32 sqlType, string mysqlType
+ * int32     rowCount, 每行: int32 eventType, sint64 executeTime(和上一行的差值)
+ * 每列依次为data和old两个向量:
+ *   int32   encoding(0为字符串，1为sint64)
+ *   bytes   presents位图
+ *   bytes   nulls位图
+ *   values  present且非null的值
+ * </pre>
+ */
+public class ColumnarMessageCodec {
+
+    public static final int  MAGIC           = 0x434D4301;
+    private static final int ENCODING_STRING = 0;
+    private static final int ENCODING_LONG   = 1;
+
+    public static byte[] encode(ColumnarMessage message) {
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream(256);
+            CodedOutputStream output = CodedOutputStream.newInstance(stream);
+            output.writeFixed32NoTag(MAGIC);
+            output.writeInt64NoTag(message.getId());
+            output.writeStringNoTag(nullToEmpty(message.getDatabase()));
+            output.writeStringNoTag(nullToEmpty(message.getTable()));
+            output.writeBoolNoTag(message.getIsDdl());
+            output.writeInt32NoTag(message.getType() != null ? message.getType().getNumber() : 0);
+            output.writeInt64NoTag(message.getEs());
+            output.writeStringNoTag(nullToEmpty(message.getSql()));
+
+            List<ColumnMeta> columns = message.getColumns();
+            int columnCount = columns != null ? columns.size() : 0;
+            output.writeInt32NoTag(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                ColumnMeta column = columns.get(i);
+                output.writeStringNoTag(column.getName());
+                output.writeBoolNoTag(column.getIsKey());
+                output.writeSInt32NoTag(column.getSqlType());
+                output.writeStringNoTag(nullToEmpty(column.getMysqlType()));
+            }
+
+            int rowCount = message.getRowCount();
+            output.writeInt32NoTag(rowCount);
+            long last = 0;
+            for (int row = 0; row < rowCount; row++) {
+                output.writeInt32NoTag(message.getEventType(row).getNumber());
+                output.writeSInt64NoTag(message.getExecuteTime(row) - last);
+                last = message.getExecuteTime(row);
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                boolean integer = isInteger(columns.get(i).getSqlType());
+                writeVector(output, message.getData()[i], rowCount, integer);
+                writeVector(output, message.getOld()[i], rowCount, integer);
+            }
+            output.flush();
+            return stream.toByteArray();
+        } catch (IOException e) {
+            throw new CanalClientException("encode columnar message failed", e);
+        }
+    }
+
+    public static ColumnarMessage decode(byte[] data) {
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(data);
+            int magic = input.readFixed32();
+            if (magic != MAGIC) {
+                throw new CanalClientException("unexpected columnar message magic: " + Integer.toHexString(magic));
+            }
+
+            ColumnarMessage message = new ColumnarMessage(input.readInt64());
+            message.setDatabase(input.readString());
+            message.setTable(input.readString());
+            message.setIsDdl(input.readBool());
+            message.setType(EventType.valueOf(input.readInt32()));
+            message.setEs(input.readInt64());
+            message.setSql(input.readString());
+
+            int columnCount = input.readInt32();
+            List<ColumnMeta> columns = new ArrayList<ColumnMeta>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(new ColumnMeta(input.readString(), input.readBool(), input.readSInt32(), input.readString()));
+            }
+            message.setColumns(columns);
+
+            int rowCount = input.readInt32();
+            EventType[] eventTypes = new EventType[rowCount];
+            long[] executeTimes = new long[rowCount];
+            long last = 0;
+            for (int row = 0; row < rowCount; row++) {
+                eventTypes[row] = EventType.valueOf(input.readInt32());
+                last += input.readSInt64();
+                executeTimes[row] = last;
+            }
+            message.setRowCount(rowCount);
+            message.setEventTypes(eventTypes);
+            message.setExecuteTimes(executeTimes);
+
+            ColumnVector[] dataVectors = new ColumnVector[columnCount];
+            ColumnVector[] oldVectors = new ColumnVector[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                dataVectors[i] = readVector(input, rowCount);
+                oldVectors[i] = readVector(input, rowCount);
+            }
+            message.setData(dataVectors);
+            message.setOld(oldVectors);
+            return message;
+        } catch (IOException e) {
+            throw new CanalClientException("decode columnar message failed", e);
+        }
+    }
+
+    private static void writeVector(CodedOutputStream output, ColumnVector vector, int rowCount,
+                                    boolean integer) throws IOException {
+        boolean longEncoded = integer && canLongEncode(vector, rowCount);
+        output.writeInt32NoTag(longEncoded ? ENCODING_LONG : ENCODING_STRING);
+        output.writeByteArrayNoTag(vector.getPresents().toByteArray());
+        output.writeByteArrayNoTag(vector.getNulls().toByteArray());
+        for (int row = 0; row < rowCount; row++) {
+            if (vector.isNull(row)) {
+                continue;
+            }
+
+            if (longEncoded) {
+                output.writeSInt64NoTag(vector.getLong(row));
+            } else {
+                output.writeStringNoTag(vector.getString(row));
+            }
+        }
+    }
+
+    private static ColumnVector readVector(CodedInputStream input, int rowCount) throws IOException {
+        int encoding = input.readInt32();
+        BitSet presents = BitSet.valueOf(input.readByteArray());
+        BitSet nulls = BitSet.valueOf(input.readByteArray());
+        ColumnVector vector = new ColumnVector(rowCount, presents, nulls);
+        for (int row = 0; row < rowCount; row++) {
+            if (vector.isNull(row)) {
+                continue;
+            }
+
+            if (encoding == ENCODING_LONG) {
+                vector.setLong(row, input.readSInt64());
+            } else {
+                vector.setString(row, input.readString());
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * 只有所有的值都能和long无损互转时才使用long编码，比如bigint unsigned超过long范围时仍使用字符串
+     */
+    private static boolean canLongEncode(ColumnVector vector, int rowCount) {
+        if (vector.isLongEncoded()) {
+            return true;
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            if (vector.isNull(row)) {
+                continue;
+            }
+
+            String value = vector.getString(row);
+            try {
+                if (!Long.toString(Long.parseLong(value)).equals(value)) {
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInteger(int sqlType) {
+        return sqlType == Types.TINYINT || sqlType == Types.SMALLINT || sqlType == Types.INTEGER
+               || sqlType == Types.BIGINT;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
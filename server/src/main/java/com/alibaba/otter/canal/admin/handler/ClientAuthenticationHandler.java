@@ -1,16 +1,16 @@
 package com.alibaba.otter.canal.admin.handler;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+
 import java.util.concurrent.TimeUnit;
 
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelHandler;
-import org.jboss.netty.handler.timeout.IdleStateAwareChannelHandler;
-import org.jboss.netty.handler.timeout.IdleStateEvent;
-import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
@@ -19,7 +19,6 @@ import com.alibaba.otter.canal.admin.CanalAdmin;
 import com.alibaba.otter.canal.admin.netty.AdminNettyUtils;
 import com.alibaba.otter.canal.protocol.AdminPacket.ClientAuth;
 import com.alibaba.otter.canal.protocol.AdminPacket.Packet;
-import com.alibaba.otter.canal.server.netty.NettyUtils;
 
 /**
  * 客户端身份认证处理
@@ -27,7 +26,7 @@ import com.alibaba.otter.canal.server.netty.NettyUtils;
  * @author agapple 2019年8月24日 下午10:58:53
  * @since 1.1.4
  */
-public class ClientAuthenticationHandler extends SimpleChannelHandler {
+public class ClientAuthenticationHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     private static final Logger logger                                  = LoggerFactory.getLogger(ClientAuthenticationHandler.class);
     private final int           SUPPORTED_VERSION                       = 3;
@@ -43,9 +42,8 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
         this.canalAdmin = canalAdmin;
     }
 
-    public void messageReceived(final ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
-        final Packet packet = Packet.parseFrom(buffer.readBytes(buffer.readableBytes()).array());
+    protected void channelRead0(final ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
+        final Packet packet = Packet.parseFrom(buffer.nioBuffer());
         switch (packet.getVersion()) {
             case SUPPORTED_VERSION:
             default:
@@ -53,22 +51,22 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                 if (seed == null) {
                     byte[] errorBytes = AdminNettyUtils.errorPacket(300,
                         MessageFormatter.format("auth failed for seed is null", clientAuth.getUsername()).getMessage());
-                    AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+                    AdminNettyUtils.write(ctx.channel(), errorBytes);
                 }
 
                 if (!canalAdmin.auth(clientAuth.getUsername(), clientAuth.getPassword().toStringUtf8(), seed)) {
                     byte[] errorBytes = AdminNettyUtils.errorPacket(300,
                         MessageFormatter.format("auth failed for user:{}", clientAuth.getUsername()).getMessage());
-                    AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+                    AdminNettyUtils.write(ctx.channel(), errorBytes);
                 }
 
                 byte[] ackBytes = AdminNettyUtils.ackPacket();
-                AdminNettyUtils.write(ctx.getChannel(), ackBytes, new ChannelFutureListener() {
+                AdminNettyUtils.write(ctx.channel(), ackBytes, new ChannelFutureListener() {
 
                     public void operationComplete(ChannelFuture future) throws Exception {
                         logger.info("remove unused channel handlers after authentication is done successfully.");
-                        ctx.getPipeline().remove(HandshakeInitializationHandler.class.getName());
-                        ctx.getPipeline().remove(ClientAuthenticationHandler.class.getName());
+                        ctx.pipeline().remove(HandshakeInitializationHandler.class.getName());
+                        ctx.pipeline().remove(ClientAuthenticationHandler.class.getName());
 
                         int readTimeout = defaultSubscriptorDisconnectIdleTimeout;
                         int writeTimeout = defaultSubscriptorDisconnectIdleTimeout;
@@ -80,27 +78,30 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                         }
                         // fix bug: soTimeout parameter's unit from connector is
                         // millseconds.
-                        IdleStateHandler idleStateHandler = new IdleStateHandler(NettyUtils.hashedWheelTimer,
-                            readTimeout,
+                        IdleStateHandler idleStateHandler = new IdleStateHandler(readTimeout,
                             writeTimeout,
                             0,
                             TimeUnit.MILLISECONDS);
-                        ctx.getPipeline().addBefore(SessionHandler.class.getName(),
+                        ctx.pipeline().addBefore(SessionHandler.class.getName(),
                             IdleStateHandler.class.getName(),
                             idleStateHandler);
 
-                        IdleStateAwareChannelHandler idleStateAwareChannelHandler = new IdleStateAwareChannelHandler() {
+                        ChannelInboundHandlerAdapter idleStateEventHandler = new ChannelInboundHandlerAdapter() {
 
-                            public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
-                                logger.warn("channel:{} idle timeout exceeds, close channel to save server resources...",
-                                    ctx.getChannel());
-                                ctx.getChannel().close();
+                            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                                if (evt instanceof IdleStateEvent) {
+                                    logger.warn("channel:{} idle timeout exceeds, close channel to save server resources...",
+                                        ctx.channel());
+                                    ctx.channel().close();
+                                } else {
+                                    super.userEventTriggered(ctx, evt);
+                                }
                             }
 
                         };
-                        ctx.getPipeline().addBefore(SessionHandler.class.getName(),
-                            IdleStateAwareChannelHandler.class.getName(),
-                            idleStateAwareChannelHandler);
+                        ctx.pipeline().addBefore(SessionHandler.class.getName(),
+                            IdleStateEvent.class.getName(),
+                            idleStateEventHandler);
                     }
 
                 });
@@ -1,12 +1,10 @@
 package com.alibaba.otter.canal.admin.handler;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.ExceptionEvent;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
@@ -18,7 +16,7 @@ import com.alibaba.otter.canal.protocol.AdminPacket.LogAdmin;
 import com.alibaba.otter.canal.protocol.AdminPacket.Packet;
 import com.alibaba.otter.canal.protocol.AdminPacket.ServerAdmin;
 
-public class SessionHandler extends SimpleChannelHandler {
+public class SessionHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     private static final Logger logger = LoggerFactory.getLogger(SessionHandler.class);
     private CanalAdmin          canalAdmin;
@@ -30,10 +28,9 @@ public class SessionHandler extends SimpleChannelHandler {
         this.canalAdmin = canalAdmin;
     }
 
-    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
         logger.info("message receives in session handler...");
-        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
-        Packet packet = Packet.parseFrom(buffer.readBytes(buffer.readableBytes()).array());
+        Packet packet = Packet.parseFrom(buffer.nioBuffer());
         try {
             String action = null;
             String message = null;
@@ -61,10 +58,10 @@ public class SessionHandler extends SimpleChannelHandler {
                         default:
                             byte[] errorBytes = AdminNettyUtils.errorPacket(301,
                                 MessageFormatter.format("ServerAdmin action={} is unknown", action).getMessage());
-                            AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+                            AdminNettyUtils.write(ctx.channel(), errorBytes);
                             break;
                     }
-                    AdminNettyUtils.write(ctx.getChannel(), AdminNettyUtils.ackPacket(message));
+                    AdminNettyUtils.write(ctx.channel(), AdminNettyUtils.ackPacket(message));
                     break;
                 case INSTANCE:
                     InstanceAdmin instanceAdmin = InstanceAdmin.parseFrom(packet.getBody());
@@ -89,10 +86,10 @@ public class SessionHandler extends SimpleChannelHandler {
                         default:
                             byte[] errorBytes = AdminNettyUtils.errorPacket(301,
                                 MessageFormatter.format("InstanceAdmin action={} is unknown", action).getMessage());
-                            AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+                            AdminNettyUtils.write(ctx.channel(), errorBytes);
                             break;
                     }
-                    AdminNettyUtils.write(ctx.getChannel(), AdminNettyUtils.ackPacket(message));
+                    AdminNettyUtils.write(ctx.channel(), AdminNettyUtils.ackPacket(message));
                     break;
                 case LOG:
                     LogAdmin logAdmin = LogAdmin.parseFrom(packet.getBody());
@@ -119,35 +116,32 @@ public class SessionHandler extends SimpleChannelHandler {
                         default:
                             byte[] errorBytes = AdminNettyUtils.errorPacket(301,
                                 MessageFormatter.format("LogAdmin type={} is unknown", type).getMessage());
-                            AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+                            AdminNettyUtils.write(ctx.channel(), errorBytes);
                             break;
                     }
-                    AdminNettyUtils.write(ctx.getChannel(), AdminNettyUtils.ackPacket(message));
+                    AdminNettyUtils.write(ctx.channel(), AdminNettyUtils.ackPacket(message));
                     break;
                 default:
                     byte[] errorBytes = AdminNettyUtils.errorPacket(300,
                         MessageFormatter.format("packet type={} is NOT supported!", packet.getType()).getMessage());
-                    AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+                    AdminNettyUtils.write(ctx.channel(), errorBytes);
                     break;
             }
         } catch (Throwable exception) {
             byte[] errorBytes = AdminNettyUtils.errorPacket(400,
                 MessageFormatter.format("something goes wrong with channel:{}, exception={}",
-                    ctx.getChannel(),
+                    ctx.channel(),
                     ExceptionUtils.getStackTrace(exception)).getMessage());
-            AdminNettyUtils.write(ctx.getChannel(), errorBytes);
+            AdminNettyUtils.write(ctx.channel(), errorBytes);
         }
     }
 
-    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.error("something goes wrong with channel:{}, exception={}",
-            ctx.getChannel(),
-            ExceptionUtils.getStackTrace(e.getCause()));
-
-        ctx.getChannel().close();
-    }
+            ctx.channel(),
+            ExceptionUtils.getStackTrace(cause));
 
-    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        ctx.channel().close();
     }
 
     public void setCanalAdmin(CanalAdmin canalAdmin) {
@@ -1,16 +1,12 @@
 package com.alibaba.otter.canal.admin.netty;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.buffer.CompositeChannelBuffer;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.Channels;
+import java.nio.ByteBuffer;
 
 import com.alibaba.otter.canal.protocol.AdminPacket;
 import com.alibaba.otter.canal.protocol.AdminPacket.Ack;
@@ -22,21 +18,21 @@ public class AdminNettyUtils {
     public static int VERSION       = 1;
 
     public static void write(Channel channel, ByteBuffer body) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.limit()).array();
-        List<ChannelBuffer> components = new ArrayList<ChannelBuffer>(2);
-        components.add(ChannelBuffers.wrappedBuffer(ByteOrder.BIG_ENDIAN, header));
-        components.add(ChannelBuffers.wrappedBuffer(body));
-        Channels.write(channel, new CompositeChannelBuffer(ByteOrder.BIG_ENDIAN, components));
+        ByteBuf header = channel.alloc().buffer(HEADER_LENGTH).writeInt(body.limit());
+        channel.writeAndFlush(Unpooled.wrappedBuffer(header, Unpooled.wrappedBuffer(body)));
     }
 
     public static void write(Channel channel, byte[] body) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.length).array();
-        Channels.write(channel, ChannelBuffers.wrappedBuffer(header, body));
+        write(channel, body, null);
     }
 
     public static void write(Channel channel, byte[] body, ChannelFutureListener channelFutureListner) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.length).array();
-        Channels.write(channel, ChannelBuffers.wrappedBuffer(header, body)).addListener(channelFutureListner);
+        ByteBuf buffer = channel.alloc().buffer(HEADER_LENGTH + body.length);
+        buffer.writeInt(body.length).writeBytes(body);
+        ChannelFuture future = channel.writeAndFlush(buffer);
+        if (channelFutureListner != null) {
+            future.addListener(channelFutureListner);
+        }
     }
 
     public static byte[] ackPacket() {
@@ -1,23 +1,26 @@
 package com.alibaba.otter.canal.admin.netty;
 
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
 import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
 
 import org.apache.commons.lang.StringUtils;
-import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelPipeline;
-import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.DefaultChannelGroup;
-import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 
 import com.alibaba.otter.canal.admin.CanalAdmin;
 import com.alibaba.otter.canal.admin.handler.ClientAuthenticationHandler;
 import com.alibaba.otter.canal.admin.handler.HandshakeInitializationHandler;
 import com.alibaba.otter.canal.admin.handler.SessionHandler;
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.alibaba.otter.canal.server.netty.handler.FixedHeaderFrameDecoder;
 
 /**
@@ -28,15 +31,19 @@ import com.alibaba.otter.canal.server.netty.handler.FixedHeaderFrameDecoder;
  */
 public class CanalAdminWithNetty extends AbstractCanalLifeCycle {
 
-    private String          ip;
-    private int             port;
-    private Channel         serverChannel = null;
-    private ServerBootstrap bootstrap     = null;
-    private ChannelGroup    childGroups   = null; // socket channel
-                                                  // container, used to
-                                                  // close sockets
-                                                  // explicitly.
-    private CanalAdmin      canalAdmin;
+    private String         ip;
+    private int            port;
+    private int            bossThreads   = 1;
+    private int            workerThreads = 0;    // 0代表使用netty默认的线程数
+    private boolean        epollEnabled  = true; // linux下优先使用native epoll
+    private Channel        serverChannel = null;
+    private EventLoopGroup bossGroup     = null;
+    private EventLoopGroup workerGroup   = null;
+    private ChannelGroup   childGroups   = null; // socket channel
+                                                 // container, used to
+                                                 // close sockets
+                                                 // explicitly.
+    private CanalAdmin     canalAdmin;
 
     private static class SingletonHolder {
 
@@ -44,7 +51,7 @@ public class CanalAdminWithNetty extends AbstractCanalLifeCycle {
     }
 
     private CanalAdminWithNetty(){
-        this.childGroups = new DefaultChannelGroup();
+        this.childGroups = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     }
 
     public static CanalAdminWithNetty instance() {
@@ -54,25 +61,30 @@ public class CanalAdminWithNetty extends AbstractCanalLifeCycle {
     public void start() {
         super.start();
 
-        this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
-            Executors.newCachedThreadPool()));
+        boolean epoll = NettyUtils.useEpoll(epollEnabled);
+        this.bossGroup = NettyUtils.newEventLoopGroup(bossThreads, "canal-admin-boss", epoll);
+        this.workerGroup = NettyUtils.newEventLoopGroup(workerThreads, "canal-admin-worker", epoll);
+        ServerBootstrap bootstrap = new ServerBootstrap().group(bossGroup, workerGroup)
+            .channel(NettyUtils.serverChannelClass(epoll))
+            .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
         /*
          * enable keep-alive mechanism, handle abnormal network connection
          * scenarios on OS level. the threshold parameters are depended on OS.
          * e.g. On Linux: net.ipv4.tcp_keepalive_time = 300
          * net.ipv4.tcp_keepalive_probes = 2 net.ipv4.tcp_keepalive_intvl = 30
          */
-        bootstrap.setOption("child.keepAlive", true);
+        bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
         /*
          * optional parameter.
          */
-        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
 
         // 构造对应的pipeline
-        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+        bootstrap.childHandler(new ChannelInitializer<Channel>() {
 
-            public ChannelPipeline getPipeline() throws Exception {
-                ChannelPipeline pipelines = Channels.pipeline();
+            protected void initChannel(Channel ch) throws Exception {
+                ChannelPipeline pipelines = ch.pipeline();
                 pipelines.addLast(FixedHeaderFrameDecoder.class.getName(), new FixedHeaderFrameDecoder());
                 // support to maintain child socket channel.
                 pipelines.addLast(HandshakeInitializationHandler.class.getName(),
@@ -82,15 +94,16 @@ public class CanalAdminWithNetty extends AbstractCanalLifeCycle {
 
                 SessionHandler sessionHandler = new SessionHandler(canalAdmin);
                 pipelines.addLast(SessionHandler.class.getName(), sessionHandler);
-                return pipelines;
             }
         });
 
         // 启动
         if (StringUtils.isNotEmpty(ip)) {
-            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.ip, this.port));
+            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.ip, this.port))
+                .syncUninterruptibly()
+                .channel();
         } else {
-            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.port));
+            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.port)).syncUninterruptibly().channel();
         }
     }
 
@@ -107,8 +120,12 @@ public class CanalAdminWithNetty extends AbstractCanalLifeCycle {
             this.childGroups.close().awaitUninterruptibly(5000);
         }
 
-        if (this.bootstrap != null) {
-            this.bootstrap.releaseExternalResources();
+        if (this.bossGroup != null) {
+            this.bossGroup.shutdownGracefully();
+        }
+
+        if (this.workerGroup != null) {
+            this.workerGroup.shutdownGracefully();
         }
     }
 
@@ -124,4 +141,16 @@ public class CanalAdminWithNetty extends AbstractCanalLifeCycle {
         this.canalAdmin = canalAdmin;
     }
 
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public void setEpollEnabled(boolean epollEnabled) {
+        this.epollEnabled = epollEnabled;
+    }
+
 }
@@ -4,6 +4,8 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
+
 import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.spi.CanalMQProducer;
 
@@ -13,10 +15,12 @@ import com.alibaba.otter.canal.spi.CanalMQProducer;
  */
 public abstract class AbstractMQProducer implements CanalMQProducer {
 
-    protected ThreadPoolExecutor executor;
+    protected ThreadPoolExecutor  executor;
+    protected MQMessageSerializer messageSerializer;
 
     @Override
     public void init(MQProperties mqProperties) {
+        messageSerializer = buildMessageSerializer(mqProperties.getSerializer());
         int parallelThreadSize = mqProperties.getParallelThreadSize();
         executor = new ThreadPoolExecutor(parallelThreadSize,
             parallelThreadSize,
@@ -28,6 +32,21 @@ public abstract class AbstractMQProducer implements CanalMQProducer {
 
     }
 
+    protected MQMessageSerializer buildMessageSerializer(String serializer) {
+        if (StringUtils.isEmpty(serializer) || "protobuf".equalsIgnoreCase(serializer)) {
+            return new ProtobufMessageSerializer();
+        } else if ("columnar".equalsIgnoreCase(serializer)) {
+            return new ColumnarMessageSerializer();
+        }
+
+        try {
+            Class<?> clazz = Class.forName(serializer, true, Thread.currentThread().getContextClassLoader());
+            return (MQMessageSerializer) clazz.newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("unknown mq serializer: " + serializer, e);
+        }
+    }
+
     @Override
     public void stop() {
         executor.shutdownNow();
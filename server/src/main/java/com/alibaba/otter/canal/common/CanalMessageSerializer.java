@@ -1,5 +1,7 @@
 package com.alibaba.otter.canal.common;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.kafka.common.errors.SerializationException;
@@ -22,8 +24,11 @@ public class CanalMessageSerializer {
             if (data != null) {
                 if (data.getId() != -1) {
                     if (data.isRaw() && !CollectionUtils.isEmpty(data.getRawEntries())) {
-                        // for performance
+                        // for performance, raw entry直接写入payload，不做反序列化和重新序列化
                         List<ByteString> rowEntries = data.getRawEntries();
+                        if (filterTransactionEntry) {
+                            rowEntries = filterTransactionEntry(rowEntries);
+                        }
                         // message size
                         int messageSize = 0;
                         messageSize += CodedOutputStream.computeInt64Size(1, data.getId());
@@ -78,4 +83,14 @@ public class CanalMessageSerializer {
         }
         return null;
     }
+
+    private static List<ByteString> filterTransactionEntry(List<ByteString> rawEntries) throws IOException {
+        List<ByteString> result = new ArrayList<ByteString>(rawEntries.size());
+        for (ByteString rawEntry : rawEntries) {
+            if (!MQMessageUtils.isTransactionEntry(rawEntry)) {
+                result.add(rawEntry);
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,220 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.ColumnarMessage;
+import com.alibaba.otter.canal.protocol.ColumnarMessage.ColumnMeta;
+import com.alibaba.otter.canal.protocol.ColumnarMessage.ColumnVector;
+import com.alibaba.otter.canal.protocol.ColumnarMessageCodec;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * 列式序列化，同一个表、相同列结构的连续dml合并为一个{@linkplain ColumnarMessage}
+ *
+ * <pre>
+ * 1. 列结构取自entry中的Column(name/isKey/sqlType/mysqlType)，即parser基于TableMeta解析出的结构
+ * 2. 表或者列结构发生变化(比如ddl之后、minimal row image)时切分为新的消息，保证顺序不变
+ * 3. ddl/query等非dml事件单独作为一条消息
+ * 4. 事务头/尾总是被忽略
+ * </pre>
+ */
+public class ColumnarMessageSerializer implements MQMessageSerializer {
+
+    /**
+     * 列式消息中没有事务头/尾，filterTransactionEntry不起作用
+     */
+    @Override
+    public List<byte[]> serialize(Message message, boolean filterTransactionEntry) {
+        List<byte[]> result = new ArrayList<byte[]>();
+        Block block = null;
+        for (CanalEntry.Entry entry : entries(message)) {
+            if (entry.getEntryType() != CanalEntry.EntryType.ROWDATA) {
+                continue;
+            }
+
+            RowChange rowChange;
+            try {
+                rowChange = RowChange.parseFrom(entry.getStoreValue());
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+
+            EventType eventType = rowChange.getEventType();
+            if (rowChange.getIsDdl()
+                || (eventType != EventType.INSERT && eventType != EventType.UPDATE && eventType != EventType.DELETE)) {
+                if (block != null) {
+                    result.add(block.encode());
+                    block = null;
+                }
+
+                ColumnarMessage columnarMessage = new ColumnarMessage(message.getId());
+                columnarMessage.setDatabase(entry.getHeader().getSchemaName());
+                columnarMessage.setTable(entry.getHeader().getTableName());
+                columnarMessage.setIsDdl(rowChange.getIsDdl());
+                columnarMessage.setType(eventType);
+                columnarMessage.setEs(entry.getHeader().getExecuteTime());
+                columnarMessage.setSql(rowChange.getSql());
+                result.add(ColumnarMessageCodec.encode(columnarMessage));
+                continue;
+            }
+
+            for (RowData rowData : rowChange.getRowDatasList()) {
+                List<Column> columns;
+                if (eventType == EventType.DELETE) {
+                    columns = rowData.getBeforeColumnsList();
+                } else {
+                    columns = rowData.getAfterColumnsList();
+                }
+                if (columns.isEmpty()) {
+                    continue;
+                }
+
+                if (block != null && !block.accept(entry, columns)) {
+                    result.add(block.encode());
+                    block = null;
+                }
+                if (block == null) {
+                    block = new Block(message.getId(), entry, columns);
+                }
+                block.add(entry, eventType, rowData, columns);
+            }
+        }
+
+        if (block != null) {
+            result.add(block.encode());
+        }
+        return result;
+    }
+
+    private static List<CanalEntry.Entry> entries(Message message) {
+        if (!message.isRaw()) {
+            return message.getEntries();
+        }
+
+        List<CanalEntry.Entry> entries = new ArrayList<CanalEntry.Entry>(message.getRawEntries().size());
+        for (ByteString rawEntry : message.getRawEntries()) {
+            try {
+                entries.add(CanalEntry.Entry.parseFrom(rawEntry));
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 同一个表、相同列结构的连续多行
+     */
+    private static class Block {
+
+        private final long                 id;
+        private final String               database;
+        private final String               table;
+        private final List<ColumnMeta>     columns;
+        private final Map<String, Integer> indexes      = new HashMap<String, Integer>();
+        private final List<EventType>      eventTypes   = new ArrayList<EventType>();
+        private final List<Long>           executeTimes = new ArrayList<Long>();
+        private final List<List<Column>>   data         = new ArrayList<List<Column>>();
+        private final List<Column[]>       old          = new ArrayList<Column[]>();
+
+        Block(long id, CanalEntry.Entry entry, List<Column> columns){
+            this.id = id;
+            this.database = entry.getHeader().getSchemaName();
+            this.table = entry.getHeader().getTableName();
+            this.columns = new ArrayList<ColumnMeta>(columns.size());
+            for (Column column : columns) {
+                indexes.put(column.getName(), this.columns.size());
+                this.columns.add(new ColumnMeta(column.getName(),
+                    column.getIsKey(),
+                    column.getSqlType(),
+                    column.getMysqlType()));
+            }
+        }
+
+        boolean accept(CanalEntry.Entry entry, List<Column> columns) {
+            if (!database.equals(entry.getHeader().getSchemaName()) || !table.equals(entry.getHeader().getTableName())
+                || this.columns.size() != columns.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnMeta meta = this.columns.get(i);
+                Column column = columns.get(i);
+                if (!meta.getName().equals(column.getName()) || meta.getSqlType() != column.getSqlType()
+                    || !meta.getMysqlType().equals(column.getMysqlType())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(CanalEntry.Entry entry, EventType eventType, RowData rowData, List<Column> columns) {
+            eventTypes.add(eventType);
+            executeTimes.add(entry.getHeader().getExecuteTime());
+            data.add(columns);
+
+            Column[] oldColumns = null;
+            if (eventType == EventType.UPDATE) {
+                // 按列名找到变更前的值，只记录update为true的列
+                for (Column column : rowData.getBeforeColumnsList()) {
+                    Integer index = indexes.get(column.getName());
+                    if (index != null && columns.get(index).getUpdated()) {
+                        if (oldColumns == null) {
+                            oldColumns = new Column[columns.size()];
+                        }
+                        oldColumns[index] = column;
+                    }
+                }
+            }
+            old.add(oldColumns);
+        }
+
+        byte[] encode() {
+            int rowCount = data.size();
+            ColumnarMessage message = new ColumnarMessage(id);
+            message.setDatabase(database);
+            message.setTable(table);
+            message.setIsDdl(false);
+            message.setEs(executeTimes.get(0));
+            message.setColumns(columns);
+            message.setRowCount(rowCount);
+            message.setEventTypes(eventTypes.toArray(new EventType[rowCount]));
+            long[] times = new long[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                times[row] = executeTimes.get(row);
+            }
+            message.setExecuteTimes(times);
+
+            ColumnVector[] dataVectors = new ColumnVector[columns.size()];
+            ColumnVector[] oldVectors = new ColumnVector[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                dataVectors[i] = new ColumnVector(rowCount);
+                oldVectors[i] = new ColumnVector(rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    dataVectors[i].setString(row, value(data.get(row).get(i)));
+                    Column[] oldColumns = old.get(row);
+                    if (oldColumns != null && oldColumns[i] != null) {
+                        oldVectors[i].setString(row, value(oldColumns[i]));
+                    }
+                }
+            }
+            message.setData(dataVectors);
+            message.setOld(oldVectors);
+            return ColumnarMessageCodec.encode(message);
+        }
+
+        private static String value(Column column) {
+            return column.getIsNull() ? null : column.getValue();
+        }
+    }
+}
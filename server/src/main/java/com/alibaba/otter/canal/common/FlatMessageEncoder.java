@@ -0,0 +1,372 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+
+/**
+ * 直接从RowChange流式输出FlatMessage的json，不构造FlatMessage以及其中的Map/List对象
+ *
+ * <pre>
+ * 输出和MQMessageUtils.messageConverter + JSON.toJSONBytes(flatMessage, SerializerFeature.WriteMapNullValue)保持字节级一致:
+ * 1. 字段按fastjson的默认顺序(字母序)输出，null字段输出为null
+ * 2. 字符串转义规则和fastjson一致
+ * 3. data/old/pkNames/sqlType/mysqlType的构造规则和messageConverter一致
+ *
+ * 非线程安全，内部的buffer和临时状态在多次encode之间复用
+ * </pre>
+ */
+public class FlatMessageEncoder {
+
+    private static final byte[]        DIGITS        = "0123456789ABCDEF".getBytes();
+    private static final byte[]        NULL          = { 'n', 'u', 'l', 'l' };
+    private static final byte[]        TRUE          = { 't', 'r', 'u', 'e' };
+    private static final byte[]        FALSE         = { 'f', 'a', 'l', 's', 'e' };
+    private static final int           MAX_KEEP_SIZE = 1024 * 1024;
+
+    private byte[]                     buf           = new byte[4096];
+    private int                        count;
+    // 单个message内复用的临时状态，sqlType/mysqlType的列按首次出现的顺序保存
+    private final List<Column>         typeColumns   = new ArrayList<Column>();
+    private final Map<String, Integer> typeIndexes   = new HashMap<String, Integer>();
+    private final Set<String>          updateSet     = new HashSet<String>();
+
+    /**
+     * 输出一个entry对应的FlatMessage json
+     *
+     * @param id message id
+     * @param entry 非事务头/尾的entry
+     * @param rowChange entry对应的rowChange
+     * @param ts 构造时间
+     * @return json的utf-8字节
+     */
+    public byte[] encode(long id, CanalEntry.Entry entry, RowChange rowChange, long ts) {
+        count = 0;
+        try {
+            EventType eventType = rowChange.getEventType();
+            boolean isDdl = rowChange.getIsDdl();
+            boolean isDml = !isDdl
+                            && (eventType == EventType.INSERT || eventType == EventType.UPDATE
+                                || eventType == EventType.DELETE);
+
+            writeFieldName('{', "data");
+            if (isDml) {
+                writeData(rowChange, eventType);
+            } else {
+                writeNull();
+            }
+            writeFieldName(',', "database");
+            writeString(entry.getHeader().getSchemaName());
+            writeFieldName(',', "es");
+            writeLong(entry.getHeader().getExecuteTime());
+            writeFieldName(',', "id");
+            writeLong(id);
+            writeFieldName(',', "isDdl");
+            write(isDdl ? TRUE : FALSE);
+            writeFieldName(',', "mysqlType");
+            if (typeColumns.isEmpty()) {
+                writeNull();
+            } else {
+                writeMysqlType();
+            }
+            writeFieldName(',', "old");
+            if (isDml && eventType == EventType.UPDATE) {
+                writeOld(rowChange);
+            } else {
+                writeNull();
+            }
+            writeFieldName(',', "pkNames");
+            if (isDml && rowChange.getRowDatasCount() > 0) {
+                writePkNames(rowChange.getRowDatas(0), eventType);
+            } else {
+                writeNull();
+            }
+            writeFieldName(',', "sql");
+            writeString(rowChange.getSql());
+            writeFieldName(',', "sqlType");
+            if (typeColumns.isEmpty()) {
+                writeNull();
+            } else {
+                writeSqlType();
+            }
+            writeFieldName(',', "table");
+            writeString(entry.getHeader().getTableName());
+            writeFieldName(',', "ts");
+            writeLong(ts);
+            writeFieldName(',', "type");
+            writeString(eventType.toString());
+            writeByte('}');
+            return Arrays.copyOf(buf, count);
+        } finally {
+            typeColumns.clear();
+            typeIndexes.clear();
+            updateSet.clear();
+            if (buf.length > MAX_KEEP_SIZE) {
+                // 避免大事务之后一直持有大buffer
+                buf = new byte[4096];
+            }
+        }
+    }
+
+    private void writeData(RowChange rowChange, EventType eventType) {
+        int start = count;
+        boolean first = true;
+        writeByte('[');
+        for (RowData rowData : rowChange.getRowDatasList()) {
+            List<Column> columns = columns(rowData, eventType);
+            for (Column column : columns) {
+                // 和LinkedHashMap.put一致，保留首次出现的位置，取最后一次的值
+                Integer index = typeIndexes.get(column.getName());
+                if (index == null) {
+                    typeIndexes.put(column.getName(), typeColumns.size());
+                    typeColumns.add(column);
+                } else {
+                    typeColumns.set(index, column);
+                }
+            }
+
+            if (!columns.isEmpty()) {
+                if (!first) {
+                    writeByte(',');
+                }
+                first = false;
+                writeColumns(columns, null);
+            }
+        }
+
+        if (first) {
+            count = start;
+            writeNull();
+        } else {
+            writeByte(']');
+        }
+    }
+
+    private void writeOld(RowChange rowChange) {
+        int start = count;
+        boolean first = true;
+        writeByte('[');
+        for (RowData rowData : rowChange.getRowDatasList()) {
+            // update字段的集合在多行之间累加，和messageConverter保持一致
+            for (Column column : rowData.getAfterColumnsList()) {
+                if (column.getUpdated()) {
+                    updateSet.add(column.getName());
+                }
+            }
+
+            int rowStart = count;
+            if (!first) {
+                writeByte(',');
+            }
+            if (writeColumns(rowData.getBeforeColumnsList(), updateSet)) {
+                first = false;
+            } else {
+                count = rowStart;
+            }
+        }
+
+        if (first) {
+            count = start;
+            writeNull();
+        } else {
+            writeByte(']');
+        }
+    }
+
+    private boolean writeColumns(List<Column> columns, Set<String> filter) {
+        boolean first = true;
+        for (Column column : columns) {
+            if (filter != null && !filter.contains(column.getName())) {
+                continue;
+            }
+
+            writeFieldName(first ? '{' : ',', column.getName());
+            first = false;
+            if (column.getIsNull()) {
+                writeNull();
+            } else {
+                writeString(column.getValue());
+            }
+        }
+
+        if (!first) {
+            writeByte('}');
+        }
+        return !first;
+    }
+
+    private void writePkNames(RowData rowData, EventType eventType) {
+        List<Column> columns = columns(rowData, eventType);
+        boolean first = true;
+        for (Column column : columns) {
+            if (column.getIsKey()) {
+                writeByte(first ? '[' : ',');
+                first = false;
+                writeString(column.getName());
+            }
+        }
+
+        if (first) {
+            writeNull();
+        } else {
+            writeByte(']');
+        }
+    }
+
+    private static List<Column> columns(RowData rowData, EventType eventType) {
+        if (eventType == EventType.DELETE) {
+            return rowData.getBeforeColumnsList();
+        } else {
+            return rowData.getAfterColumnsList();
+        }
+    }
+
+    private void writeMysqlType() {
+        for (int i = 0; i < typeColumns.size(); i++) {
+            Column column = typeColumns.get(i);
+            writeFieldName(i == 0 ? '{' : ',', column.getName());
+            writeString(column.getMysqlType());
+        }
+        writeByte('}');
+    }
+
+    private void writeSqlType() {
+        for (int i = 0; i < typeColumns.size(); i++) {
+            Column column = typeColumns.get(i);
+            writeFieldName(i == 0 ? '{' : ',', column.getName());
+            writeLong(column.getSqlType());
+        }
+        writeByte('}');
+    }
+
+    private void writeFieldName(char separator, String name) {
+        writeByte(separator);
+        writeString(name);
+        writeByte(':');
+    }
+
+    private void writeNull() {
+        write(NULL);
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(count + bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) c;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value).getBytes());
+            return;
+        }
+
+        ensureCapacity(count + 20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        int size = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            size++;
+        }
+        int pos = count + size;
+        do {
+            buf[--pos] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        } while (value > 0);
+        count += size;
+    }
+
+    /**
+     * 和fastjson的转义规则一致: 控制字符、0x7F~0x9F、0x2028/0x2029使用unicode转义，孤立的surrogate输出为'?'
+     */
+    private void writeString(String value) {
+        int length = value.length();
+        // 最坏情况每个字符转义为6个字节
+        ensureCapacity(count + length * 6 + 2);
+        byte[] bytes = buf;
+        int pos = count;
+        bytes[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\' && c != 0x7F) {
+                    bytes[pos++] = (byte) c;
+                } else if (c == '"' || c == '\\') {
+                    bytes[pos++] = '\\';
+                    bytes[pos++] = (byte) c;
+                } else if (c == '\b') {
+                    bytes[pos++] = '\\';
+                    bytes[pos++] = 'b';
+                } else if (c == '\t') {
+                    bytes[pos++] = '\\';
+                    bytes[pos++] = 't';
+                } else if (c == '\n') {
+                    bytes[pos++] = '\\';
+                    bytes[pos++] = 'n';
+                } else if (c == '\f') {
+                    bytes[pos++] = '\\';
+                    bytes[pos++] = 'f';
+                } else if (c == '\r') {
+                    bytes[pos++] = '\\';
+                    bytes[pos++] = 'r';
+                } else {
+                    pos = writeUnicode(bytes, pos, c);
+                }
+            } else if (c <= 0x9F || c == 0x2028 || c == 0x2029) {
+                pos = writeUnicode(bytes, pos, c);
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[pos++] = '?';
+                }
+            } else {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        bytes[pos++] = '"';
+        count = pos;
+    }
+
+    private static int writeUnicode(byte[] bytes, int pos, char c) {
+        bytes[pos++] = '\\';
+        bytes[pos++] = 'u';
+        bytes[pos++] = DIGITS[(c >> 12) & 0xF];
+        bytes[pos++] = DIGITS[(c >> 8) & 0xF];
+        bytes[pos++] = DIGITS[(c >> 4) & 0xF];
+        bytes[pos++] = DIGITS[c & 0xF];
+        return pos;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * 非flatMessage模式下mq消息的序列化扩展点，通过canal.mq.serializer指定(别名或者实现类的全名)
+ *
+ * <pre>
+ * 1. protobuf : 默认实现，和CanalMessageSerializer一致，一批数据为一条mq消息
+ * 2. columnar : 列式实现，同一个表的连续多行合并为一条mq消息，客户端使用ColumnarMessageCodec解析
+ * </pre>
+ */
+public interface MQMessageSerializer {
+
+    /**
+     * 将一批数据序列化为一条或多条mq消息，多条消息需要按顺序发送到同一个分区
+     *
+     * @param message 一批数据，可能为raw模式
+     * @param filterTransactionEntry 是否过滤事务头/尾
+     * @return mq消息的payload列表
+     */
+    List<byte[]> serialize(Message message, boolean filterTransactionEntry);
+}
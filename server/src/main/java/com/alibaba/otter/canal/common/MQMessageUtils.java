@@ -1,5 +1,6 @@
 package com.alibaba.otter.canal.common;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,7 +25,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.MigrateMap;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 
 /**
  * process MQ Message utils
@@ -109,6 +113,8 @@ public class MQMessageUtils {
                                                                                  }
                                                                              });
 
+    private static ThreadLocal<FlatMessageEncoder>     flatMessageEncoders = ThreadLocal.withInitial(FlatMessageEncoder::new);
+
     /**
      * 按 schema 或者 schema+table 将 message 分配到对应topic
      *
@@ -118,54 +124,121 @@ public class MQMessageUtils {
      * @return 分隔后的message map
      */
     public static Map<String, Message> messageTopics(Message message, String defaultTopic, String dynamicTopicConfigs) {
-        List<CanalEntry.Entry> entries;
+        Map<String, Message> messages = new HashMap<>();
         if (message.isRaw()) {
-            List<ByteString> rawEntries = message.getRawEntries();
-            entries = new ArrayList<>(rawEntries.size());
-            for (ByteString byteString : rawEntries) {
+            // raw模式只解析header做路由，分发后的message继续保持raw entry，避免storeValue的反序列化和重新序列化
+            for (ByteString rawEntry : message.getRawEntries()) {
                 CanalEntry.Entry entry;
                 try {
-                    entry = CanalEntry.Entry.parseFrom(byteString);
+                    entry = parseEntryHeader(rawEntry);
                 } catch (InvalidProtocolBufferException e) {
                     throw new RuntimeException(e);
                 }
-                entries.add(entry);
+
+                for (String topic : routeTopics(entry, defaultTopic, dynamicTopicConfigs)) {
+                    put2MapRawMessage(messages, message.getId(), topic, rawEntry);
+                }
             }
         } else {
-            entries = message.getEntries();
+            for (CanalEntry.Entry entry : message.getEntries()) {
+                for (String topic : routeTopics(entry, defaultTopic, dynamicTopicConfigs)) {
+                    put2MapMessage(messages, message.getId(), topic, entry);
+                }
+            }
         }
-        Map<String, Message> messages = new HashMap<>();
-        for (CanalEntry.Entry entry : entries) {
-            // 如果有topic路由,则忽略begin/end事件
-            if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONBEGIN
-                || entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
-                continue;
+        return messages;
+    }
+
+    private static Set<String> routeTopics(CanalEntry.Entry entry, String defaultTopic, String dynamicTopicConfigs) {
+        // 如果有topic路由,则忽略begin/end事件
+        if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONBEGIN
+            || entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
+            return Collections.emptySet();
+        }
+
+        String schemaName = entry.getHeader().getSchemaName();
+        String tableName = entry.getHeader().getTableName();
+
+        if (StringUtils.isEmpty(schemaName) || StringUtils.isEmpty(tableName)) {
+            return Collections.singleton(defaultTopic);
+        } else {
+            Set<String> topics = matchTopics(schemaName + "." + tableName, dynamicTopicConfigs);
+            if (topics != null) {
+                return topics;
             }
 
-            String schemaName = entry.getHeader().getSchemaName();
-            String tableName = entry.getHeader().getTableName();
+            topics = matchTopics(schemaName, dynamicTopicConfigs);
+            if (topics != null) {
+                return topics;
+            }
+            return Collections.singleton(defaultTopic);
+        }
+    }
 
-            if (StringUtils.isEmpty(schemaName) || StringUtils.isEmpty(tableName)) {
-                put2MapMessage(messages, message.getId(), defaultTopic, entry);
-            } else {
-                Set<String> topics = matchTopics(schemaName + "." + tableName, dynamicTopicConfigs);
-                if (topics != null) {
-                    for (String topic : topics) {
-                        put2MapMessage(messages, message.getId(), topic, entry);
-                    }
-                } else {
-                    topics = matchTopics(schemaName, dynamicTopicConfigs);
-                    if (topics != null) {
-                        for (String topic : topics) {
-                            put2MapMessage(messages, message.getId(), topic, entry);
+    /**
+     * 只解析raw entry的header和entryType，跳过storeValue，用于topic路由这类只依赖header的场景
+     *
+     * @param rawEntry 序列化后的entry
+     * @return 不包含storeValue的entry
+     */
+    public static CanalEntry.Entry parseEntryHeader(ByteString rawEntry) throws InvalidProtocolBufferException {
+        try {
+            CodedInputStream input = rawEntry.newCodedInput();
+            CanalEntry.Entry.Builder builder = CanalEntry.Entry.newBuilder();
+            while (true) {
+                int tag = input.readTag();
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case 0:
+                        return builder.build();
+                    case 1:
+                        CanalEntry.Header.Builder headerBuilder = CanalEntry.Header.newBuilder();
+                        input.readMessage(headerBuilder, ExtensionRegistryLite.getEmptyRegistry());
+                        builder.setHeader(headerBuilder);
+                        break;
+                    case 2:
+                        CanalEntry.EntryType entryType = CanalEntry.EntryType.valueOf(input.readEnum());
+                        if (entryType != null) {
+                            builder.setEntryType(entryType);
                         }
-                    } else {
-                        put2MapMessage(messages, message.getId(), defaultTopic, entry);
-                    }
+                        break;
+                    default:
+                        input.skipField(tag);
+                        break;
                 }
             }
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
+    /**
+     * 判断raw entry是否为事务头/尾，读取到entryType即返回，不解析header和storeValue
+     *
+     * @param rawEntry 序列化后的entry
+     */
+    public static boolean isTransactionEntry(ByteString rawEntry) throws InvalidProtocolBufferException {
+        try {
+            CodedInputStream input = rawEntry.newCodedInput();
+            while (true) {
+                int tag = input.readTag();
+                int field = WireFormat.getTagFieldNumber(tag);
+                if (field == 0) {
+                    return false;
+                } else if (field == 2) {
+                    int entryType = input.readEnum();
+                    return entryType == CanalEntry.EntryType.TRANSACTIONBEGIN_VALUE
+                           || entryType == CanalEntry.EntryType.TRANSACTIONEND_VALUE;
+                } else {
+                    input.skipField(tag);
+                }
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
         }
-        return messages;
     }
 
     /**
@@ -443,6 +516,29 @@ public class MQMessageUtils {
         return flatMessages;
     }
 
+    /**
+     * 将Message直接输出为FlatMessage的json，不构造中间的FlatMessage对象，输出和messageConverter + fastjson保持一致
+     *
+     * @param datas entry及对应的rowChange
+     * @param id message id
+     * @return FlatMessage的json列表
+     */
+    public static List<byte[]> messageConverterToBytes(EntryRowData[] datas, long id) {
+        FlatMessageEncoder encoder = flatMessageEncoders.get();
+        List<byte[]> flatMessages = new ArrayList<>();
+        for (EntryRowData entryRowData : datas) {
+            CanalEntry.Entry entry = entryRowData.entry;
+            // 如果有分区路由,则忽略begin/end事件
+            if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONBEGIN
+                || entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
+                continue;
+            }
+
+            flatMessages.add(encoder.encode(id, entry, entryRowData.rowChange, System.currentTimeMillis()));
+        }
+        return flatMessages;
+    }
+
     /**
      * 将FlatMessage按指定的字段值hash拆分
      *
@@ -641,6 +737,16 @@ public class MQMessageUtils {
         message.getEntries().add(entry);
     }
 
+    private static void put2MapRawMessage(Map<String, Message> messageMap, Long messageId, String topicName,
+                                          ByteString rawEntry) {
+        Message message = messageMap.get(topicName);
+        if (message == null) {
+            message = new Message(messageId, true, new ArrayList<ByteString>());
+            messageMap.put(topicName, message);
+        }
+        message.getRawEntries().add(rawEntry);
+    }
+
     public static class PartitionData {
 
         public String             simpleName;
@@ -50,6 +50,8 @@ public class MQProperties {
     private int        parallelThreadSize     = 8;
     // 是否取消根据database进行hash
     private boolean    databaseHash           = true;
+    // 非flatMessage模式下的序列化方式，protobuf/columnar或者MQMessageSerializer实现类的全名
+    private String     serializer             = "protobuf";
 
     public static class CanalDestination {
 
@@ -349,6 +351,14 @@ public class MQProperties {
         this.databaseHash = databaseHash;
     }
 
+    public String getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(String serializer) {
+        this.serializer = serializer;
+    }
+
     @Override
     public String toString() {
         return "MQProperties [servers=" + servers + ", retries=" + retries + ", batchSize=" + batchSize + ", lingerMs="
@@ -362,7 +372,7 @@ public class MQProperties {
                + kerberosEnable + ", kerberosKrb5FilePath=" + kerberosKrb5FilePath + ", kerberosJaasFilePath="
                + kerberosJaasFilePath + ", username=" + username + ", password=" + password + ", vhost=" + vhost
                + ", aliyunUID=" + aliyunUID + ", exchange=" + exchange + ", parallelThreadSize=" + parallelThreadSize
-               + ",databaseHash=" + databaseHash + "]";
+               + ",databaseHash=" + databaseHash + ", serializer=" + serializer + "]";
     }
 
 }
@@ -0,0 +1,18 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * 默认的protobuf序列化，一批数据对应一条mq消息
+ */
+public class ProtobufMessageSerializer implements MQMessageSerializer {
+
+    @Override
+    public List<byte[]> serialize(Message message, boolean filterTransactionEntry) {
+        // 和原有实现保持一致，没有数据时也发送一条payload为null的消息
+        return Collections.singletonList(CanalMessageSerializer.serializer(message, filterTransactionEntry));
+    }
+}
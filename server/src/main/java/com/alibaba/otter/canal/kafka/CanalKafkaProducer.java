@@ -20,7 +20,6 @@ import org.slf4j.LoggerFactory;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.common.AbstractMQProducer;
-import com.alibaba.otter.canal.common.CanalMessageSerializer;
 import com.alibaba.otter.canal.common.MQMessageUtils;
 import com.alibaba.otter.canal.common.MQMessageUtils.EntryRowData;
 import com.alibaba.otter.canal.common.MQProperties;
@@ -178,28 +177,27 @@ public class CanalKafkaProducer extends AbstractMQProducer implements CanalMQPro
                 for (int i = 0; i < length; i++) {
                     Message messagePartition = messages[i];
                     if (messagePartition != null) {
-                        records.add(new ProducerRecord<String, byte[]>(topicName,
-                            i,
-                            null,
-                            CanalMessageSerializer.serializer(messagePartition,
-                                kafkaProperties.isFilterTransactionEntry())));
+                        for (byte[] data : messageSerializer.serialize(messagePartition,
+                            kafkaProperties.isFilterTransactionEntry())) {
+                            records.add(new ProducerRecord<String, byte[]>(topicName, i, null, data));
+                        }
                     }
                 }
             } else {
+                // 不分区时raw entry直接透传到payload，不需要解析entry/rowChange
                 final int partition = canalDestination.getPartition() != null ? canalDestination.getPartition() : 0;
-                records.add(new ProducerRecord<String, byte[]>(topicName,
-                    partition,
-                    null,
-                    CanalMessageSerializer.serializer(message, kafkaProperties.isFilterTransactionEntry())));
+                for (byte[] data : messageSerializer.serialize(message, kafkaProperties.isFilterTransactionEntry())) {
+                    records.add(new ProducerRecord<String, byte[]>(topicName, partition, null, data));
+                }
             }
         } else {
             // 发送扁平数据json
             // 并发构造
             EntryRowData[] datas = MQMessageUtils.buildMessageData(message, executor);
-            // 串行分区
-            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, message.getId());
-            for (FlatMessage flatMessage : flatMessages) {
-                if (canalDestination.getPartitionHash() != null && !canalDestination.getPartitionHash().isEmpty()) {
+            if (canalDestination.getPartitionHash() != null && !canalDestination.getPartitionHash().isEmpty()) {
+                // 串行分区
+                List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, message.getId());
+                for (FlatMessage flatMessage : flatMessages) {
                     FlatMessage[] partitionFlatMessage = MQMessageUtils.messagePartition(flatMessage,
                         canalDestination.getPartitionsNum(),
                         canalDestination.getPartitionHash(),
@@ -214,12 +212,12 @@ public class CanalKafkaProducer extends AbstractMQProducer implements CanalMQPro
                                 JSON.toJSONBytes(flatMessagePart, SerializerFeature.WriteMapNullValue)));
                         }
                     }
-                } else {
-                    final int partition = canalDestination.getPartition() != null ? canalDestination.getPartition() : 0;
-                    records.add(new ProducerRecord<String, byte[]>(topicName,
-                        partition,
-                        null,
-                        JSON.toJSONBytes(flatMessage, SerializerFeature.WriteMapNullValue)));
+                }
+            } else {
+                // 不分区时直接输出json，不构造FlatMessage对象
+                final int partition = canalDestination.getPartition() != null ? canalDestination.getPartition() : 0;
+                for (byte[] flatMessage : MQMessageUtils.messageConverterToBytes(datas, message.getId())) {
+                    records.add(new ProducerRecord<String, byte[]>(topicName, partition, null, flatMessage));
                 }
             }
         }
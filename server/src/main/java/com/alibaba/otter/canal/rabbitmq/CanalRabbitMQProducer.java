@@ -9,15 +9,11 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.common.AbstractMQProducer;
-import com.alibaba.otter.canal.common.CanalMessageSerializer;
 import com.alibaba.otter.canal.common.MQMessageUtils;
 import com.alibaba.otter.canal.common.MQMessageUtils.EntryRowData;
 import com.alibaba.otter.canal.common.MQProperties;
 import com.alibaba.otter.canal.common.utils.ExecutorTemplate;
-import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.exception.CanalServerException;
 import com.alibaba.otter.canal.spi.CanalMQProducer;
@@ -96,19 +92,19 @@ public class CanalRabbitMQProducer extends AbstractMQProducer implements CanalMQ
 
     private void send(MQProperties.CanalDestination canalDestination, String topicName, Message messageSub) {
         if (!mqProperties.getFlatMessage()) {
-            byte[] message = CanalMessageSerializer.serializer(messageSub, mqProperties.isFilterTransactionEntry());
-            if (logger.isDebugEnabled()) {
-                logger.debug("send message:{} to destination:{}", message, canalDestination.getCanalDestination());
+            for (byte[] message : messageSerializer.serialize(messageSub, mqProperties.isFilterTransactionEntry())) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("send message:{} to destination:{}", message, canalDestination.getCanalDestination());
+                }
+                sendMessage(topicName, message);
             }
-            sendMessage(topicName, message);
         } else {
             // 并发构造
             EntryRowData[] datas = MQMessageUtils.buildMessageData(messageSub, executor);
-            // 串行分区
-            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, messageSub.getId());
+            // 直接输出json，不构造FlatMessage对象
+            List<byte[]> flatMessages = MQMessageUtils.messageConverterToBytes(datas, messageSub.getId());
             if (flatMessages != null) {
-                for (FlatMessage flatMessage : flatMessages) {
-                    byte[] message = JSON.toJSONBytes(flatMessage, SerializerFeature.WriteMapNullValue);
+                for (byte[] message : flatMessages) {
                     if (logger.isDebugEnabled()) {
                         logger.debug("send message:{} to destination:{}",
                             message,
@@ -24,7 +24,6 @@ import org.slf4j.LoggerFactory;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.common.AbstractMQProducer;
-import com.alibaba.otter.canal.common.CanalMessageSerializer;
 import com.alibaba.otter.canal.common.MQMessageUtils;
 import com.alibaba.otter.canal.common.MQMessageUtils.EntryRowData;
 import com.alibaba.otter.canal.common.MQProperties;
@@ -138,9 +137,12 @@ public class CanalRocketMQProducer extends AbstractMQProducer implements CanalMQ
 
                             @Override
                             public void run() {
-                                Message data = new Message(topicName, CanalMessageSerializer.serializer(dataPartition,
-                                    mqProperties.isFilterTransactionEntry()));
-                                sendMessage(data, index);
+                                List<Message> datas = messageSerializer
+                                    .serialize(dataPartition, mqProperties.isFilterTransactionEntry())
+                                    .stream()
+                                    .map(data -> new Message(topicName, data))
+                                    .collect(Collectors.toList());
+                                sendMessage(datas, index);
                             }
                         });
                     }
@@ -148,66 +150,68 @@ public class CanalRocketMQProducer extends AbstractMQProducer implements CanalMQ
                 // 等所有分片发送完毕
                 template.waitForResult();
             } else {
+                // 不分区时raw entry直接透传到payload，不需要解析entry/rowChange
                 final int partition = destination.getPartition() != null ? destination.getPartition() : 0;
-                Message data = new Message(topicName, CanalMessageSerializer.serializer(message,
-                    mqProperties.isFilterTransactionEntry()));
-                sendMessage(data, partition);
+                List<Message> datas = messageSerializer.serialize(message, mqProperties.isFilterTransactionEntry())
+                    .stream()
+                    .map(data -> new Message(topicName, data))
+                    .collect(Collectors.toList());
+                sendMessage(datas, partition);
             }
         } else {
             // 并发构造
             EntryRowData[] datas = MQMessageUtils.buildMessageData(message, executor);
-            // 串行分区
-            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, message.getId());
-            if (flatMessages != null) {
-                // 初始化分区合并队列
-                if (destination.getPartitionHash() != null && !destination.getPartitionHash().isEmpty()) {
-                    List<List<FlatMessage>> partitionFlatMessages = new ArrayList<List<FlatMessage>>();
-                    for (int i = 0; i < destination.getPartitionsNum(); i++) {
-                        partitionFlatMessages.add(new ArrayList<FlatMessage>());
-                    }
+            // 初始化分区合并队列
+            if (destination.getPartitionHash() != null && !destination.getPartitionHash().isEmpty()) {
+                // 串行分区
+                List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, message.getId());
+                List<List<FlatMessage>> partitionFlatMessages = new ArrayList<List<FlatMessage>>();
+                for (int i = 0; i < destination.getPartitionsNum(); i++) {
+                    partitionFlatMessages.add(new ArrayList<FlatMessage>());
+                }
 
-                    for (FlatMessage flatMessage : flatMessages) {
-                        FlatMessage[] partitionFlatMessage = MQMessageUtils.messagePartition(flatMessage,
-                            destination.getPartitionsNum(),
-                            destination.getPartitionHash(),
-                            mqProperties.getDatabaseHash());
-                        int length = partitionFlatMessage.length;
-                        for (int i = 0; i < length; i++) {
-                            partitionFlatMessages.get(i).add(partitionFlatMessage[i]);
-                        }
+                for (FlatMessage flatMessage : flatMessages) {
+                    FlatMessage[] partitionFlatMessage = MQMessageUtils.messagePartition(flatMessage,
+                        destination.getPartitionsNum(),
+                        destination.getPartitionHash(),
+                        mqProperties.getDatabaseHash());
+                    int length = partitionFlatMessage.length;
+                    for (int i = 0; i < length; i++) {
+                        partitionFlatMessages.get(i).add(partitionFlatMessage[i]);
                     }
+                }
 
-                    ExecutorTemplate template = new ExecutorTemplate(executor);
-                    for (int i = 0; i < partitionFlatMessages.size(); i++) {
-                        final List<FlatMessage> flatMessagePart = partitionFlatMessages.get(i);
-                        if (flatMessagePart != null) {
-                            final int index = i;
-                            template.submit(new Runnable() {
+                ExecutorTemplate template = new ExecutorTemplate(executor);
+                for (int i = 0; i < partitionFlatMessages.size(); i++) {
+                    final List<FlatMessage> flatMessagePart = partitionFlatMessages.get(i);
+                    if (flatMessagePart != null) {
+                        final int index = i;
+                        template.submit(new Runnable() {
 
-                                @Override
-                                public void run() {
-                                    List<Message> messages = flatMessagePart.stream()
-                                        .map(flatMessage -> new Message(topicName, JSON.toJSONBytes(flatMessage,
-                                            SerializerFeature.WriteMapNullValue)))
-                                        .collect(Collectors.toList());
-                                    // 批量发送
-                                    sendMessage(messages, index);
-                                }
-                            });
-                        }
+                            @Override
+                            public void run() {
+                                List<Message> messages = flatMessagePart.stream()
+                                    .map(flatMessage -> new Message(topicName, JSON.toJSONBytes(flatMessage,
+                                        SerializerFeature.WriteMapNullValue)))
+                                    .collect(Collectors.toList());
+                                // 批量发送
+                                sendMessage(messages, index);
+                            }
+                        });
                     }
-
-                    // 批量等所有分区的结果
-                    template.waitForResult();
-                } else {
-                    final int partition = destination.getPartition() != null ? destination.getPartition() : 0;
-                    List<Message> messages = flatMessages.stream()
-                        .map(flatMessage -> new Message(topicName, JSON.toJSONBytes(flatMessage,
-                            SerializerFeature.WriteMapNullValue)))
-                        .collect(Collectors.toList());
-                    // 批量发送
-                    sendMessage(messages, partition);
                 }
+
+                // 批量等所有分区的结果
+                template.waitForResult();
+            } else {
+                // 不分区时直接输出json，不构造FlatMessage对象
+                final int partition = destination.getPartition() != null ? destination.getPartition() : 0;
+                List<Message> messages = MQMessageUtils.messageConverterToBytes(datas, message.getId())
+                    .stream()
+                    .map(flatMessage -> new Message(topicName, flatMessage))
+                    .collect(Collectors.toList());
+                // 批量发送
+                sendMessage(messages, partition);
             }
         }
     }
@@ -238,6 +242,10 @@ public class CanalRocketMQProducer extends AbstractMQProducer implements CanalMQ
     private void sendMessage(List<Message> messages, int partition) {
         if (messages.isEmpty()) {
             return;
+        } else if (messages.size() == 1) {
+            // 单条消息不走batch
+            sendMessage(messages.get(0), partition);
+            return;
         }
 
         // 获取一下messageQueue
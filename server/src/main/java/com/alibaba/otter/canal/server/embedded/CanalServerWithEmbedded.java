@@ -7,7 +7,17 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -16,6 +26,7 @@ import org.slf4j.MDC;
 import org.springframework.util.CollectionUtils;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
 import com.alibaba.otter.canal.protocol.CanalEntry;
@@ -32,7 +43,11 @@ import com.alibaba.otter.canal.spi.CanalMetricsProvider;
 import com.alibaba.otter.canal.spi.CanalMetricsService;
 import com.alibaba.otter.canal.spi.NopCanalMetricsService;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
+import com.alibaba.otter.canal.store.CanalListenableEventStore;
+import com.alibaba.otter.canal.store.file.FileMixedEventStore;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithDisruptor;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
 import com.google.common.base.Function;
@@ -50,14 +65,22 @@ import com.google.protobuf.ByteString;
  */
 public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements CanalServer, CanalService {
 
-    private static final Logger        logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
-    private Map<String, CanalInstance> canalInstances;
+    private static final Logger                    logger                   = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
+    // 异步get获取destination锁失败时，重新检查的间隔(ms)
+    private static final long                      ASYNC_GET_RETRY_INTERVAL = 10;
+    private Map<String, CanalInstance>             canalInstances;
     // private Map<ClientIdentity, Position> lastRollbackPostions;
-    private CanalInstanceGenerator     canalInstanceGenerator;
-    private int                        metricsPort;
-    private CanalMetricsService        metrics = NopCanalMetricsService.NOP;
-    private String                     user;
-    private String                     passwd;
+    private CanalInstanceGenerator                 canalInstanceGenerator;
+    private int                                    metricsPort;
+    private CanalMetricsService                    metrics                  = NopCanalMetricsService.NOP;
+    private String                                 user;
+    private String                                 passwd;
+    // 异步get的等待者唤醒以及超时处理线程数
+    private int                                    asyncGetThreads          = Runtime.getRuntime().availableProcessors();
+    private ScheduledExecutorService               asyncGetExecutor;
+    private ConcurrentMap<String, AsyncGetWaiters> asyncGetWaiters          = new ConcurrentHashMap<String, AsyncGetWaiters>();
+    // 每个destination下get/rollback的互斥锁，保证meta获取和数据获取的顺序性
+    private ConcurrentMap<String, ReentrantLock>   instanceLocks            = new ConcurrentHashMap<String, ReentrantLock>();
 
     private static class SingletonHolder {
 
@@ -86,12 +109,21 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 }
             });
 
+            asyncGetExecutor = Executors.newScheduledThreadPool(asyncGetThreads,
+                new NamedThreadFactory("canal-server-async-get"));
             // lastRollbackPostions = new MapMaker().makeMap();
         }
     }
 
     public void stop() {
         super.stop();
+        if (asyncGetExecutor != null) {
+            asyncGetExecutor.shutdownNow();
+            asyncGetExecutor = null;
+        }
+        for (String destination : asyncGetWaiters.keySet()) {
+            stopAsyncGetWaiters(destination);
+        }
         for (Map.Entry<String, CanalInstance> entry : canalInstances.entrySet()) {
             try {
                 CanalInstance instance = entry.getValue();
@@ -150,6 +182,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     }
 
     public void stop(String destination) {
+        stopAsyncGetWaiters(destination);
         CanalInstance canalInstance = canalInstances.remove(destination);
         if (canalInstance != null) {
             if (canalInstance.isStart()) {
@@ -250,7 +283,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkStart(clientIdentity.getDestination());
         checkSubscribe(clientIdentity);
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        ReentrantLock lock = getInstanceLock(clientIdentity.getDestination());
+        lock.lock();
+        try {
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
@@ -301,6 +336,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 ack(clientIdentity, batchId);
                 return new Message(batchId, raw, entrys);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -338,60 +375,147 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkSubscribe(clientIdentity);
 
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
-            // 获取到流式数据中的最后一批获取的位置
-            PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
+        ReentrantLock lock = getInstanceLock(clientIdentity.getDestination());
+        lock.lock();
+        try {
+            Position start = getWithoutAckStart(canalInstance, clientIdentity);
+            Events<Event> events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+            return buildWithoutAckMessage(canalInstance, clientIdentity, batchSize, events);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            Events<Event> events = null;
-            if (positionRanges != null) { // 存在流数据
-                events = getEvents(canalInstance.getEventStore(), positionRanges.getStart(), batchSize, timeout, unit);
-            } else {// ack后第一次获取
-                Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
-                if (start == null) { // 第一次，还没有过ack记录，则获取当前store中的第一条
-                    start = canalInstance.getEventStore().getFirstPosition();
-                }
+    /**
+     * 异步的getWithoutAck(long polling)，数据的等待不会阻塞调用线程
+     *
+     * <pre>
+     * 几种case:
+     * a. 如果timeout为null，和getWithoutAck一致采用tryGet方式，即时返回
+     * b. 如果已经有足够batchSize的数据，即时返回
+     * c. 否则登记为等待者，store中有新数据可读时重新检查，timeout大于0时超时后有多少返回多少，timeout小于等于0时一直等待到有足够的batchSize数据
+     * d. store不支持数据可读通知时，退化为在调用线程中执行getWithoutAck
+     * 
+     * 返回的future被cancel之后，不会再获取数据，也不会产生新的batch
+     * </pre>
+     */
+    public CompletableFuture<Message> getWithoutAckAsync(ClientIdentity clientIdentity, int batchSize, Long timeout,
+                                                         TimeUnit unit) throws CanalServerException {
+        checkStart(clientIdentity.getDestination());
+        checkSubscribe(clientIdentity);
 
-                events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
-            }
+        CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        ScheduledExecutorService executor = this.asyncGetExecutor;
+        if (timeout == null || executor == null || !(eventStore instanceof CanalListenableEventStore)) {
+            CompletableFuture<Message> future = new CompletableFuture<Message>();
+            future.complete(getWithoutAck(clientIdentity, batchSize, timeout, unit));
+            return future;
+        }
 
-            if (CollectionUtils.isEmpty(events.getEvents())) {
-                // logger.debug("getWithoutAck successfully, clientId:{}
-                // batchSize:{} but result
-                // is null",
-                // clientIdentity.getClientId(),
-                // batchSize);
-                return new Message(-1, true, new ArrayList()); // 返回空包，避免生成batchId，浪费性能
-            } else {
-                // 记录到流式信息
-                Long batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
-                boolean raw = isRaw(canalInstance.getEventStore());
-                List entrys = null;
-                if (raw) {
-                    entrys = Lists.transform(events.getEvents(), new Function<Event, ByteString>() {
+        AsyncGetWaiters waiters = getAsyncGetWaiters(clientIdentity.getDestination(),
+            (CanalListenableEventStore) eventStore);
+        final AsyncGetWaiter waiter = new AsyncGetWaiter(waiters, clientIdentity, batchSize);
+        if (waiter.tryComplete()) {
+            return waiter;
+        }
 
-                        public ByteString apply(Event input) {
-                            return input.getRawEntry();
-                        }
-                    });
-                } else {
-                    entrys = Lists.transform(events.getEvents(), new Function<Event, CanalEntry.Entry>() {
+        waiters.add(waiter);
+        // 登记之后再检查一次，避免丢失登记之前的数据可读通知
+        if (waiter.tryComplete()) {
+            return waiter;
+        }
 
-                        public CanalEntry.Entry apply(Event input) {
-                            return input.getEntry();
-                        }
-                    });
-                }
-                if (logger.isInfoEnabled()) {
-                    logger.info("getWithoutAck successfully, clientId:{} batchSize:{}  real size is {} and result is [batchId:{} , position:{}]",
-                        clientIdentity.getClientId(),
-                        batchSize,
-                        entrys.size(),
-                        batchId,
-                        events.getPositionRange());
+        if (timeout > 0) {
+            waiter.timeoutFuture = executor.schedule(new Runnable() {
+
+                public void run() {
+                    waiter.expired = true;
+                    waiter.tryComplete();
                 }
-                return new Message(batchId, raw, entrys);
+            }, timeout, unit);
+            if (waiter.isDone()) {
+                waiter.cleanup();
             }
+        }
+        return waiter;
+    }
 
+    /**
+     * 尝试getWithoutAck，requireEnough为true时没有足够batchSize的数据返回null，需要在持有destination锁时调用
+     */
+    private Message tryGetWithoutAck(ClientIdentity clientIdentity, int batchSize, boolean requireEnough) {
+        checkStart(clientIdentity.getDestination());
+        checkSubscribe(clientIdentity);
+
+        CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
+        Position start = getWithoutAckStart(canalInstance, clientIdentity);
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (requireEnough && !((CanalListenableEventStore) eventStore).hasEnough(start, batchSize)) {
+            return null;
+        }
+
+        Events<Event> events = eventStore.tryGet(start, batchSize);
+        return buildWithoutAckMessage(canalInstance, clientIdentity, batchSize, events);
+    }
+
+    /**
+     * getWithoutAck的起始位置，需要在持有destination锁时调用
+     */
+    private Position getWithoutAckStart(CanalInstance canalInstance, ClientIdentity clientIdentity) {
+        // 获取到流式数据中的最后一批获取的位置
+        PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
+        if (positionRanges != null) { // 存在流数据
+            return positionRanges.getStart();
+        }
+
+        // ack后第一次获取
+        Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
+        if (start == null) { // 第一次，还没有过ack记录，则获取当前store中的第一条
+            start = canalInstance.getEventStore().getFirstPosition();
+        }
+        return start;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private Message buildWithoutAckMessage(CanalInstance canalInstance, ClientIdentity clientIdentity, int batchSize,
+                                           Events<Event> events) {
+        if (CollectionUtils.isEmpty(events.getEvents())) {
+            // logger.debug("getWithoutAck successfully, clientId:{}
+            // batchSize:{} but result
+            // is null",
+            // clientIdentity.getClientId(),
+            // batchSize);
+            return new Message(-1, true, new ArrayList()); // 返回空包，避免生成batchId，浪费性能
+        } else {
+            // 记录到流式信息
+            Long batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
+            boolean raw = isRaw(canalInstance.getEventStore());
+            List entrys = null;
+            if (raw) {
+                entrys = Lists.transform(events.getEvents(), new Function<Event, ByteString>() {
+
+                    public ByteString apply(Event input) {
+                        return input.getRawEntry();
+                    }
+                });
+            } else {
+                entrys = Lists.transform(events.getEvents(), new Function<Event, CanalEntry.Entry>() {
+
+                    public CanalEntry.Entry apply(Event input) {
+                        return input.getEntry();
+                    }
+                });
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("getWithoutAck successfully, clientId:{} batchSize:{}  real size is {} and result is [batchId:{} , position:{}]",
+                    clientIdentity.getClientId(),
+                    batchSize,
+                    entrys.size(),
+                    batchId,
+                    events.getPositionRange());
+            }
+            return new Message(batchId, raw, entrys);
         }
     }
 
@@ -475,12 +599,16 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             return;
         }
 
-        synchronized (canalInstance) {
+        ReentrantLock lock = getInstanceLock(clientIdentity.getDestination());
+        lock.lock();
+        try {
             // 清除batch信息
             canalInstance.getMetaManager().clearAllBatchs(clientIdentity);
             // rollback eventStore中的状态信息
             canalInstance.getEventStore().rollback();
             logger.info("rollback successfully, clientId:{}", new Object[] { clientIdentity.getClientId() });
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -497,7 +625,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         if (!hasSubscribe) {
             return;
         }
-        synchronized (canalInstance) {
+        ReentrantLock lock = getInstanceLock(clientIdentity.getDestination());
+        lock.lock();
+        try {
             // 清除batch信息
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().removeBatch(clientIdentity,
                 batchId);
@@ -516,6 +646,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 clientIdentity.getClientId(),
                 batchId,
                 positionRanges);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -581,9 +713,51 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    private ReentrantLock getInstanceLock(String destination) {
+        ReentrantLock lock = instanceLocks.get(destination);
+        if (lock == null) {
+            lock = new ReentrantLock();
+            ReentrantLock exist = instanceLocks.putIfAbsent(destination, lock);
+            if (exist != null) {
+                lock = exist;
+            }
+        }
+        return lock;
+    }
+
+    private AsyncGetWaiters getAsyncGetWaiters(String destination, CanalListenableEventStore eventStore) {
+        AsyncGetWaiters waiters = asyncGetWaiters.get(destination);
+        if (waiters == null) {
+            waiters = new AsyncGetWaiters(eventStore);
+            AsyncGetWaiters exist = asyncGetWaiters.putIfAbsent(destination, waiters);
+            if (exist != null) {
+                waiters = exist;
+            } else {
+                eventStore.addListener(waiters);
+            }
+        }
+        return waiters;
+    }
+
+    private void stopAsyncGetWaiters(String destination) {
+        AsyncGetWaiters waiters = asyncGetWaiters.remove(destination);
+        if (waiters != null) {
+            waiters.eventStore.removeListener(waiters);
+            for (AsyncGetWaiter waiter : waiters.waiters) {
+                waiter.completeExceptionally(new CanalServerException(String.format("destination:%s is stopped",
+                    destination)));
+                waiter.cleanup();
+            }
+        }
+    }
+
     private boolean isRaw(CanalEventStore eventStore) {
         if (eventStore instanceof MemoryEventStoreWithBuffer) {
             return ((MemoryEventStoreWithBuffer) eventStore).isRaw();
+        } else if (eventStore instanceof MemoryEventStoreWithDisruptor) {
+            return ((MemoryEventStoreWithDisruptor) eventStore).isRaw();
+        } else if (eventStore instanceof FileMixedEventStore) {
+            return ((FileMixedEventStore) eventStore).isRaw();
         }
 
         return true;
@@ -607,4 +781,146 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         this.passwd = passwd;
     }
 
+    public void setAsyncGetThreads(int asyncGetThreads) {
+        this.asyncGetThreads = asyncGetThreads;
+    }
+
+    /**
+     * 一个destination下所有等待数据的异步get，store中有数据可读时统一在异步线程中检查
+     *
+     * <pre>
+     * 检查时只tryLock destination锁，不会在异步线程中等待阻塞的get/getWithoutAck释放锁，获取锁失败时延迟ASYNC_GET_RETRY_INTERVAL后重新检查
+     * </pre>
+     */
+    private class AsyncGetWaiters implements CanalEventStoreListener {
+
+        private final CanalListenableEventStore eventStore;
+        private final Set<AsyncGetWaiter>       waiters  = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean             draining = new AtomicBoolean(false);
+
+        AsyncGetWaiters(CanalListenableEventStore eventStore){
+            this.eventStore = eventStore;
+        }
+
+        void add(AsyncGetWaiter waiter) {
+            waiters.add(waiter);
+        }
+
+        void remove(AsyncGetWaiter waiter) {
+            waiters.remove(waiter);
+        }
+
+        /**
+         * 在put线程中被调用，只提交一次检查任务，不做任何阻塞操作
+         */
+        public void onAvailable() {
+            if (waiters.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+
+            submitDrain(0);
+        }
+
+        /**
+         * destination锁被占用时调用，延迟之后重新检查所有的等待者
+         */
+        void retryLater() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+
+            submitDrain(ASYNC_GET_RETRY_INTERVAL);
+        }
+
+        private void submitDrain(long delay) {
+            ScheduledExecutorService executor = asyncGetExecutor;
+            if (executor == null) {
+                draining.set(false);
+                return;
+            }
+
+            try {
+                executor.schedule(new Runnable() {
+
+                    public void run() {
+                        // 先重置标记，检查过程中新的put会再提交一次检查
+                        draining.set(false);
+                        for (AsyncGetWaiter waiter : waiters) {
+                            waiter.tryComplete();
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // server已经关闭
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * 一次异步的getWithoutAck请求
+     */
+    private class AsyncGetWaiter extends CompletableFuture<Message> {
+
+        private final AsyncGetWaiters       waiters;
+        private final ClientIdentity        clientIdentity;
+        private final int                   batchSize;
+        private volatile ScheduledFuture<?> timeoutFuture;
+        // 已经超时，有多少返回多少
+        private volatile boolean            expired;
+
+        AsyncGetWaiter(AsyncGetWaiters waiters, ClientIdentity clientIdentity, int batchSize){
+            this.waiters = waiters;
+            this.clientIdentity = clientIdentity;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * 尝试获取数据并完成，超时之后有多少返回多少。destination锁被占用时不等待，交给等待者集合稍后重新检查
+         *
+         * @return 是否已经完成
+         */
+        synchronized boolean tryComplete() {
+            if (isDone()) {
+                return true;
+            }
+
+            ReentrantLock lock = getInstanceLock(clientIdentity.getDestination());
+            if (!lock.tryLock()) {
+                waiters.retryLater();
+                return false;
+            }
+
+            try {
+                Message message = tryGetWithoutAck(clientIdentity, batchSize, !expired);
+                if (message == null) {
+                    return false;
+                }
+                complete(message);
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                lock.unlock();
+            }
+            cleanup();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            // 和tryComplete互斥，避免cancel之后还生成了batch
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            cleanup();
+            return cancelled;
+        }
+
+        void cleanup() {
+            waiters.remove(this);
+            ScheduledFuture<?> future = timeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
 }
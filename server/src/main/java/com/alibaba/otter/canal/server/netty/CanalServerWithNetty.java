@@ -1,17 +1,22 @@
 package com.alibaba.otter.canal.server.netty;
 
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
 import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
 
 import org.apache.commons.lang.StringUtils;
-import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelPipeline;
-import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.DefaultChannelGroup;
-import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.server.CanalServer;
@@ -29,15 +34,23 @@ import com.alibaba.otter.canal.server.netty.handler.SessionHandler;
  */
 public class CanalServerWithNetty extends AbstractCanalLifeCycle implements CanalServer {
 
-    private CanalServerWithEmbedded embeddedServer;      // 嵌入式server
+    private static final Logger     logger                   = LoggerFactory.getLogger(CanalServerWithNetty.class);
+    private CanalServerWithEmbedded embeddedServer;                                                // 嵌入式server
     private String                  ip;
     private int                     port;
-    private Channel                 serverChannel = null;
-    private ServerBootstrap         bootstrap     = null;
-    private ChannelGroup            childGroups   = null; // socket channel
-                                                          // container, used to
-                                                          // close sockets
-                                                          // explicitly.
+    private int                     bossThreads              = 1;
+    private int                     workerThreads            = 0;                                  // 0代表使用netty默认的线程数
+    private boolean                 epollEnabled             = true;                               // linux下优先使用native
+                                                                                                   // epoll
+    private int                     writeBufferLowWaterMark  = 1024 * 1024;
+    private int                     writeBufferHighWaterMark = 4 * 1024 * 1024;
+    private Channel                 serverChannel            = null;
+    private EventLoopGroup          bossGroup                = null;
+    private EventLoopGroup          workerGroup              = null;
+    private ChannelGroup            childGroups              = null;                               // socket channel
+                                                                                                   // container, used to
+                                                                                                   // close sockets
+                                                                                                   // explicitly.
 
     private static class SingletonHolder {
 
@@ -46,7 +59,7 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
 
     private CanalServerWithNetty(){
         this.embeddedServer = CanalServerWithEmbedded.instance();
-        this.childGroups = new DefaultChannelGroup();
+        this.childGroups = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     }
 
     public static CanalServerWithNetty instance() {
@@ -60,25 +73,33 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             embeddedServer.start();
         }
 
-        this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
-            Executors.newCachedThreadPool()));
+        boolean epoll = NettyUtils.useEpoll(epollEnabled);
+        this.bossGroup = NettyUtils.newEventLoopGroup(bossThreads, "canal-server-boss", epoll);
+        this.workerGroup = NettyUtils.newEventLoopGroup(workerThreads, "canal-server-worker", epoll);
+        ServerBootstrap bootstrap = new ServerBootstrap().group(bossGroup, workerGroup)
+            .channel(NettyUtils.serverChannelClass(epoll))
+            .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
         /*
          * enable keep-alive mechanism, handle abnormal network connection
          * scenarios on OS level. the threshold parameters are depended on OS.
          * e.g. On Linux: net.ipv4.tcp_keepalive_time = 300
          * net.ipv4.tcp_keepalive_probes = 2 net.ipv4.tcp_keepalive_intvl = 30
          */
-        bootstrap.setOption("child.keepAlive", true);
+        bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
         /*
          * optional parameter.
          */
-        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+        // 超过高水位后channel不可写，SessionHandler暂停读取新的请求，避免慢客户端堆积大量待发送的数据
+        bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+            new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
 
         // 构造对应的pipeline
-        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+        bootstrap.childHandler(new ChannelInitializer<Channel>() {
 
-            public ChannelPipeline getPipeline() throws Exception {
-                ChannelPipeline pipelines = Channels.pipeline();
+            protected void initChannel(Channel ch) throws Exception {
+                ChannelPipeline pipelines = ch.pipeline();
                 pipelines.addLast(FixedHeaderFrameDecoder.class.getName(), new FixedHeaderFrameDecoder());
                 // support to maintain child socket channel.
                 pipelines.addLast(HandshakeInitializationHandler.class.getName(),
@@ -88,16 +109,18 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
 
                 SessionHandler sessionHandler = new SessionHandler(embeddedServer);
                 pipelines.addLast(SessionHandler.class.getName(), sessionHandler);
-                return pipelines;
             }
         });
 
         // 启动
         if (StringUtils.isNotEmpty(ip)) {
-            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.ip, this.port));
+            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.ip, this.port))
+                .syncUninterruptibly()
+                .channel();
         } else {
-            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.port));
+            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.port)).syncUninterruptibly().channel();
         }
+        logger.info("canal server bind on {} with {} transport", serverChannel.localAddress(), epoll ? "epoll" : "nio");
     }
 
     public void stop() {
@@ -113,8 +136,12 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             this.childGroups.close().awaitUninterruptibly(5000);
         }
 
-        if (this.bootstrap != null) {
-            this.bootstrap.releaseExternalResources();
+        if (this.bossGroup != null) {
+            this.bossGroup.shutdownGracefully();
+        }
+
+        if (this.workerGroup != null) {
+            this.workerGroup.shutdownGracefully();
         }
 
         if (embeddedServer.isStart()) {
@@ -134,4 +161,24 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
         this.embeddedServer = embeddedServer;
     }
 
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public void setEpollEnabled(boolean epollEnabled) {
+        this.epollEnabled = epollEnabled;
+    }
+
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
 }
@@ -0,0 +1,202 @@
+package com.alibaba.otter.canal.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * MESSAGES数据包的零拷贝组装，输出格式和Packet(type=MESSAGES, body=Messages)的protobuf序列化一致
+ *
+ * <pre>
+ * 1. header长度、protobuf tag以及较小的entry写入allocator分配的chunk中，避免每次get分配和整个数据包一样大的byte[]
+ * 2. 较大的entry直接引用ByteString的内容，不做拷贝
+ * 3. 所有分段组成一个不会合并的CompositeByteBuf，由netty做gathering write，写出完成后自动release
+ * </pre>
+ */
+public class MessagesPacket {
+
+    private static final int       CHUNK_SIZE          = 64 * 1024;
+    // 小于该长度的entry直接拷贝到chunk中，避免gathering write的buffer个数过多
+    private static final int       ZERO_COPY_THRESHOLD = 4 * 1024;
+
+    private final ByteBufAllocator allocator;
+    private final CompositeByteBuf buffer;
+    private ByteBuf                chunk;
+    private int                    chunkStart;
+
+    private MessagesPacket(ByteBufAllocator allocator){
+        this.allocator = allocator;
+        this.buffer = allocator.compositeBuffer(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 基于raw格式的entry构造，返回包含header的完整数据包
+     */
+    public static ByteBuf ofRawEntries(ByteBufAllocator allocator, long batchId, List<ByteString> entries) {
+        int messageSize = CodedOutputStream.computeInt64Size(1, batchId);
+        for (ByteString entry : entries) {
+            messageSize += CodedOutputStream.computeBytesSize(2, entry);
+        }
+
+        MessagesPacket packet = new MessagesPacket(allocator);
+        try {
+            packet.writeHeader(batchId, messageSize);
+            for (ByteString entry : entries) {
+                packet.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                packet.writeVarint(entry.size());
+                if (entry.size() < ZERO_COPY_THRESHOLD) {
+                    packet.writeBytes(entry);
+                } else {
+                    packet.writeZeroCopy(entry);
+                }
+            }
+            return packet.finish();
+        } catch (RuntimeException e) {
+            packet.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 基于entry对象构造，entry直接序列化到chunk中，超过chunk大小的entry才会单独序列化
+     */
+    public static ByteBuf ofEntries(ByteBufAllocator allocator, long batchId, List<Entry> entries)
+                                                                                                  throws IOException {
+        int messageSize = CodedOutputStream.computeInt64Size(1, batchId);
+        for (Entry entry : entries) {
+            messageSize += CodedOutputStream.computeMessageSize(2, entry);
+        }
+
+        MessagesPacket packet = new MessagesPacket(allocator);
+        try {
+            packet.writeHeader(batchId, messageSize);
+            for (Entry entry : entries) {
+                int size = entry.getSerializedSize();
+                packet.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                packet.writeVarint(size);
+                if (size <= CHUNK_SIZE) {
+                    packet.ensure(size);
+                    ByteBuf chunk = packet.chunk;
+                    CodedOutputStream output = CodedOutputStream.newInstance(chunk.nioBuffer(chunk.writerIndex(), size));
+                    entry.writeTo(output);
+                    output.flush();
+                    output.checkNoSpaceLeft();
+                    chunk.writerIndex(chunk.writerIndex() + size);
+                } else {
+                    packet.writeZeroCopy(entry.toByteString());
+                }
+            }
+            return packet.finish();
+        } catch (IOException e) {
+            packet.release();
+            throw e;
+        } catch (RuntimeException e) {
+            packet.release();
+            throw e;
+        }
+    }
+
+    private void writeHeader(long batchId, int messageSize) {
+        int bodyLength = CodedOutputStream.computeEnumSize(3, PacketType.MESSAGES.getNumber())
+                         + CodedOutputStream.computeTagSize(5) + CodedOutputStream.computeUInt32SizeNoTag(messageSize)
+                         + messageSize;
+        ensure(NettyUtils.HEADER_LENGTH);
+        chunk.writeInt(bodyLength);
+        // packet
+        writeTag(3, WireFormat.WIRETYPE_VARINT);
+        writeVarint(PacketType.MESSAGES.getNumber());
+        writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        writeVarint(messageSize);
+        // messages
+        writeTag(1, WireFormat.WIRETYPE_VARINT);
+        writeVarint(batchId);
+    }
+
+    private void writeTag(int fieldNumber, int wireType) {
+        writeVarint((fieldNumber << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            chunk.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        chunk.writeByte((int) value);
+    }
+
+    private void writeBytes(ByteString bytes) {
+        for (ByteBuffer source : bytes.asReadOnlyByteBufferList()) {
+            int limit = source.limit();
+            while (source.hasRemaining()) {
+                ensure(1);
+                source.limit(source.position() + Math.min(source.remaining(), chunk.writableBytes()));
+                chunk.writeBytes(source);
+                source.limit(limit);
+            }
+        }
+    }
+
+    /**
+     * 直接引用ByteString的内容
+     */
+    private void writeZeroCopy(ByteString bytes) {
+        flushChunk();
+        for (ByteBuffer source : bytes.asReadOnlyByteBufferList()) {
+            buffer.addComponent(true, Unpooled.wrappedBuffer(source));
+        }
+    }
+
+    /**
+     * 保证当前chunk至少有size的剩余空间，size不能超过CHUNK_SIZE
+     */
+    private void ensure(int size) {
+        if (chunk == null || chunk.writableBytes() < size) {
+            releaseChunk();
+            chunk = allocator.buffer(CHUNK_SIZE, CHUNK_SIZE);
+            chunkStart = 0;
+        }
+    }
+
+    /**
+     * 将当前chunk中还未输出的数据加入到buffer中
+     */
+    private void flushChunk() {
+        if (chunk != null && chunk.writerIndex() > chunkStart) {
+            buffer.addComponent(true, chunk.retainedSlice(chunkStart, chunk.writerIndex() - chunkStart));
+            chunkStart = chunk.writerIndex();
+        }
+    }
+
+    private void releaseChunk() {
+        flushChunk();
+        if (chunk != null) {
+            chunk.release();
+            chunk = null;
+        }
+    }
+
+    private ByteBuf finish() {
+        releaseChunk();
+        return buffer;
+    }
+
+    private void release() {
+        if (chunk != null) {
+            chunk.release();
+            chunk = null;
+        }
+        buffer.release();
+    }
+}
@@ -1,18 +1,21 @@
 package com.alibaba.otter.canal.server.netty;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
-
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.buffer.CompositeChannelBuffer;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.util.HashedWheelTimer;
-import org.jboss.netty.util.Timer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,31 +25,24 @@ import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
 
 public class NettyUtils {
 
-    private static final Logger logger           = LoggerFactory.getLogger(NettyUtils.class);
-    public static int           HEADER_LENGTH    = 4;
-    public static Timer         hashedWheelTimer = new HashedWheelTimer();
-    public static int           VERSION          = 1;
+    private static final Logger logger        = LoggerFactory.getLogger(NettyUtils.class);
+    public static int           HEADER_LENGTH = 4;
+    public static int           VERSION       = 1;
 
     public static void write(Channel channel, ByteBuffer body, ChannelFutureListener channelFutureListner) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.limit()).array();
-        List<ChannelBuffer> components = new ArrayList<ChannelBuffer>(2);
-        components.add(ChannelBuffers.wrappedBuffer(ByteOrder.BIG_ENDIAN, header));
-        components.add(ChannelBuffers.wrappedBuffer(body));
-
-        if (channelFutureListner == null) {
-            Channels.write(channel, new CompositeChannelBuffer(ByteOrder.BIG_ENDIAN, components));
-        } else {
-            Channels.write(channel, new CompositeChannelBuffer(ByteOrder.BIG_ENDIAN, components))
-                .addListener(channelFutureListner);
+        ByteBuf header = channel.alloc().buffer(HEADER_LENGTH).writeInt(body.limit());
+        ChannelFuture future = channel.writeAndFlush(Unpooled.wrappedBuffer(header, Unpooled.wrappedBuffer(body)));
+        if (channelFutureListner != null) {
+            future.addListener(channelFutureListner);
         }
     }
 
     public static void write(Channel channel, byte[] body, ChannelFutureListener channelFutureListner) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.length).array();
-        if (channelFutureListner == null) {
-            Channels.write(channel, ChannelBuffers.wrappedBuffer(header, body));
-        } else {
-            Channels.write(channel, ChannelBuffers.wrappedBuffer(header, body)).addListener(channelFutureListner);
+        ByteBuf buffer = channel.alloc().buffer(HEADER_LENGTH + body.length);
+        buffer.writeInt(body.length).writeBytes(body);
+        ChannelFuture future = channel.writeAndFlush(buffer);
+        if (channelFutureListner != null) {
+            future.addListener(channelFutureListner);
         }
     }
 
@@ -95,4 +91,27 @@ public class NettyUtils {
             .build()
             .toByteArray();
     }
+
+    /**
+     * 是否使用epoll，需要linux并且native库可用
+     */
+    public static boolean useEpoll(boolean epollEnabled) {
+        return epollEnabled && Epoll.isAvailable();
+    }
+
+    /**
+     * 创建io线程组，threads为0时使用netty默认的线程数(cpu*2)
+     */
+    public static EventLoopGroup newEventLoopGroup(int threads, String name, boolean epoll) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        if (epoll) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        } else {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+    }
+
+    public static Class<? extends ServerChannel> serverChannelClass(boolean epoll) {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
 }
@@ -1,17 +1,17 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelHandler;
-import org.jboss.netty.handler.timeout.IdleStateAwareChannelHandler;
-import org.jboss.netty.handler.timeout.IdleStateEvent;
-import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -27,11 +27,11 @@ import com.alibaba.otter.canal.server.netty.NettyUtils;
 
 /**
  * 客户端身份认证处理
- * 
+ *
  * @author jianghang 2012-10-24 上午11:12:45
  * @version 1.0.0
  */
-public class ClientAuthenticationHandler extends SimpleChannelHandler {
+public class ClientAuthenticationHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     private static final Logger     logger                                  = LoggerFactory.getLogger(ClientAuthenticationHandler.class);
     private final int               SUPPORTED_VERSION                       = 3;
@@ -47,9 +47,8 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
-    public void messageReceived(final ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
-        final Packet packet = Packet.parseFrom(buffer.readBytes(buffer.readableBytes()).array());
+    protected void channelRead0(final ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
+        final Packet packet = Packet.parseFrom(buffer.nioBuffer());
         switch (packet.getVersion()) {
             case SUPPORTED_VERSION:
             default:
@@ -57,13 +56,13 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                 if (seed == null) {
                     byte[] errorBytes = NettyUtils.errorPacket(400,
                         MessageFormatter.format("auth failed for seed is null", clientAuth.getUsername()).getMessage());
-                    NettyUtils.write(ctx.getChannel(), errorBytes, null);
+                    NettyUtils.write(ctx.channel(), errorBytes, null);
                 }
 
                 if (!embeddedServer.auth(clientAuth.getUsername(), clientAuth.getPassword().toStringUtf8(), seed)) {
                     byte[] errorBytes = NettyUtils.errorPacket(400,
                         MessageFormatter.format("auth failed for user:{}", clientAuth.getUsername()).getMessage());
-                    NettyUtils.write(ctx.getChannel(), errorBytes, null);
+                    NettyUtils.write(ctx.channel(), errorBytes, null);
                 }
 
                 // 如果存在订阅信息
@@ -87,12 +86,12 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                     }
                 }
                 // 鉴权一次性，暂不统计
-                NettyUtils.ack(ctx.getChannel(), new ChannelFutureListener() {
+                NettyUtils.ack(ctx.channel(), new ChannelFutureListener() {
 
                     public void operationComplete(ChannelFuture future) throws Exception {
                         logger.info("remove unused channel handlers after authentication is done successfully.");
-                        ctx.getPipeline().remove(HandshakeInitializationHandler.class.getName());
-                        ctx.getPipeline().remove(ClientAuthenticationHandler.class.getName());
+                        ctx.pipeline().remove(HandshakeInitializationHandler.class.getName());
+                        ctx.pipeline().remove(ClientAuthenticationHandler.class.getName());
 
                         int readTimeout = defaultSubscriptorDisconnectIdleTimeout;
                         int writeTimeout = defaultSubscriptorDisconnectIdleTimeout;
@@ -104,27 +103,30 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                         }
                         // fix bug: soTimeout parameter's unit from connector is
                         // millseconds.
-                        IdleStateHandler idleStateHandler = new IdleStateHandler(NettyUtils.hashedWheelTimer,
-                            readTimeout,
+                        IdleStateHandler idleStateHandler = new IdleStateHandler(readTimeout,
                             writeTimeout,
                             0,
                             TimeUnit.MILLISECONDS);
-                        ctx.getPipeline().addBefore(SessionHandler.class.getName(),
+                        ctx.pipeline().addBefore(SessionHandler.class.getName(),
                             IdleStateHandler.class.getName(),
                             idleStateHandler);
 
-                        IdleStateAwareChannelHandler idleStateAwareChannelHandler = new IdleStateAwareChannelHandler() {
+                        ChannelInboundHandlerAdapter idleStateEventHandler = new ChannelInboundHandlerAdapter() {
 
-                            public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
-                                logger.warn("channel:{} idle timeout exceeds, close channel to save server resources...",
-                                    ctx.getChannel());
-                                ctx.getChannel().close();
+                            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                                if (evt instanceof IdleStateEvent) {
+                                    logger.warn("channel:{} idle timeout exceeds, close channel to save server resources...",
+                                        ctx.channel());
+                                    ctx.channel().close();
+                                } else {
+                                    super.userEventTriggered(ctx, evt);
+                                }
                             }
 
                         };
-                        ctx.getPipeline().addBefore(SessionHandler.class.getName(),
-                            IdleStateAwareChannelHandler.class.getName(),
-                            idleStateAwareChannelHandler);
+                        ctx.pipeline().addBefore(SessionHandler.class.getName(),
+                            IdleStateEvent.class.getName(),
+                            idleStateEventHandler);
                     }
 
                 });
@@ -1,21 +1,33 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.replay.ReplayingDecoder;
-import org.jboss.netty.handler.codec.replay.VoidEnum;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.util.List;
+
+import com.alibaba.otter.canal.server.netty.NettyUtils;
 
 /**
  * 解析对应的header信息
- * 
+ *
  * @author jianghang 2012-10-24 上午11:31:39
  * @version 1.0.0
  */
-public class FixedHeaderFrameDecoder extends ReplayingDecoder<VoidEnum> {
+public class FixedHeaderFrameDecoder extends ByteToMessageDecoder {
+
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
+        if (buffer.readableBytes() < NettyUtils.HEADER_LENGTH) {
+            return;
+        }
+
+        int length = buffer.getInt(buffer.readerIndex());
+        if (buffer.readableBytes() < NettyUtils.HEADER_LENGTH + length) {
+            return; // 等待完整的数据包
+        }
 
-    protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer, VoidEnum state)
-                                                                                                             throws Exception {
-        return buffer.readBytes(buffer.readInt());
+        buffer.skipBytes(NettyUtils.HEADER_LENGTH);
+        // 共享累积buffer的内存，由后续handler负责release
+        out.add(buffer.readRetainedSlice(length));
     }
 }
@@ -1,11 +1,9 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.SimpleChannelHandler;
-import org.jboss.netty.channel.group.ChannelGroup;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.group.ChannelGroup;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,11 +15,11 @@ import com.google.protobuf.ByteString;
 
 /**
  * handshake交互
- * 
+ *
  * @author jianghang 2012-10-24 上午11:39:54
  * @version 1.0.0
  */
-public class HandshakeInitializationHandler extends SimpleChannelHandler {
+public class HandshakeInitializationHandler extends ChannelInboundHandlerAdapter {
 
     // support to maintain socket channel.
     private ChannelGroup childGroups;
@@ -32,10 +30,10 @@ public class HandshakeInitializationHandler extends SimpleChannelHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(HandshakeInitializationHandler.class);
 
-    public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
         // add new socket channel in channel container, used to manage sockets.
         if (childGroups != null) {
-            childGroups.add(ctx.getChannel());
+            childGroups.add(ctx.channel());
         }
 
         final byte[] seed = org.apache.commons.lang3.RandomUtils.nextBytes(8);
@@ -46,16 +44,12 @@ public class HandshakeInitializationHandler extends SimpleChannelHandler {
             .build()
             .toByteArray();
 
-        NettyUtils.write(ctx.getChannel(), body, new ChannelFutureListener() {
-
-            public void operationComplete(ChannelFuture future) throws Exception {
-                ctx.getPipeline().get(HandshakeInitializationHandler.class.getName());
-                ClientAuthenticationHandler handler = (ClientAuthenticationHandler) ctx.getPipeline()
-                    .get(ClientAuthenticationHandler.class.getName());
-                handler.setSeed(seed);
-            }
-
-        });
-        logger.info("send handshake initialization packet to : {}", ctx.getChannel());
+        // 先设置seed再发送handshake，避免客户端的认证请求先于seed到达
+        ClientAuthenticationHandler handler = (ClientAuthenticationHandler) ctx.pipeline()
+            .get(ClientAuthenticationHandler.class.getName());
+        handler.setSeed(seed);
+        NettyUtils.write(ctx.channel(), body, null);
+        logger.info("send handshake initialization packet to : {}", ctx.channel());
+        ctx.fireChannelActive();
     }
 }
@@ -1,30 +1,32 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.ExceptionEvent;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.slf4j.helpers.MessageFormatter;
-import org.springframework.util.CollectionUtils;
 
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitor;
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitors;
-import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientRollback;
 import com.alibaba.otter.canal.protocol.CanalPacket.Get;
-import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
 import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
 import com.alibaba.otter.canal.protocol.CanalPacket.Sub;
@@ -32,16 +34,19 @@ import com.alibaba.otter.canal.protocol.CanalPacket.Unsub;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.netty.MessagesPacket;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.alibaba.otter.canal.server.netty.listener.ChannelFutureAggregator;
 import com.google.protobuf.ByteString;
-import com.google.protobuf.CodedOutputStream;
-import com.google.protobuf.WireFormat;
 
-public class SessionHandler extends SimpleChannelHandler {
+public class SessionHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
-    private static final Logger     logger = LoggerFactory.getLogger(SessionHandler.class);
-    private CanalServerWithEmbedded embeddedServer;
+    private static final Logger                 logger = LoggerFactory.getLogger(SessionHandler.class);
+    private CanalServerWithEmbedded             embeddedServer;
+    // 当前链接正在等待数据的get请求
+    private volatile CompletableFuture<Message> pendingGet;
+    // 客户端预取时会连续发送多个get，需要按顺序逐个处理，保证返回的batchId有序，只在io线程中访问
+    private final Queue<Runnable>               queuedGets = new ArrayDeque<Runnable>();
 
     public SessionHandler(){
     }
@@ -50,12 +55,10 @@ public class SessionHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
-    @SuppressWarnings({ "deprecation" })
-    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
         logger.info("message receives in session handler...");
         long start = System.nanoTime();
-        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
-        Packet packet = Packet.parseFrom(buffer.readBytes(buffer.readableBytes()).array());
+        Packet packet = Packet.parseFrom(buffer.nioBuffer());
         ClientIdentity clientIdentity = null;
         try {
             switch (packet.getType()) {
@@ -78,7 +81,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         embeddedServer.subscribe(clientIdentity);
                         // ctx.setAttachment(clientIdentity);// 设置状态数据
                         byte[] ackBytes = NettyUtils.ackPacket();
-                        NettyUtils.write(ctx.getChannel(), ackBytes, new ChannelFutureAggregator(sub.getDestination(),
+                        NettyUtils.write(ctx.channel(), ackBytes, new ChannelFutureAggregator(sub.getDestination(),
                             sub,
                             packet.getType(),
                             ackBytes.length,
@@ -86,7 +89,7 @@ public class SessionHandler extends SimpleChannelHandler {
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", sub.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(),
+                        NettyUtils.write(ctx.channel(),
                             errorBytes,
                             new ChannelFutureAggregator(sub.getDestination(),
                                 sub,
@@ -106,7 +109,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         embeddedServer.unsubscribe(clientIdentity);
                         stopCanalInstanceIfNecessary(clientIdentity);// 尝试关闭
                         byte[] ackBytes = NettyUtils.ackPacket();
-                        NettyUtils.write(ctx.getChannel(),
+                        NettyUtils.write(ctx.channel(),
                             ackBytes,
                             new ChannelFutureAggregator(unsub.getDestination(),
                                 unsub,
@@ -116,7 +119,7 @@ public class SessionHandler extends SimpleChannelHandler {
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", unsub.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(),
+                        NettyUtils.write(ctx.channel(),
                             errorBytes,
                             new ChannelFutureAggregator(unsub.getDestination(),
                                 unsub,
@@ -131,113 +134,35 @@ public class SessionHandler extends SimpleChannelHandler {
                     if (StringUtils.isNotEmpty(get.getDestination()) && StringUtils.isNotEmpty(get.getClientId())) {
                         clientIdentity = new ClientIdentity(get.getDestination(), Short.valueOf(get.getClientId()));
                         MDC.put("destination", clientIdentity.getDestination());
-                        Message message = null;
-
-                        // if (get.getAutoAck()) {
-                        // if (get.getTimeout() == -1) {//是否是初始值
-                        // message = embeddedServer.get(clientIdentity,
-                        // get.getFetchSize());
-                        // } else {
-                        // TimeUnit unit = convertTimeUnit(get.getUnit());
-                        // message = embeddedServer.get(clientIdentity,
-                        // get.getFetchSize(), get.getTimeout(), unit);
-                        // }
-                        // } else {
-                        if (get.getTimeout() == -1) {// 是否是初始值
-                            message = embeddedServer.getWithoutAck(clientIdentity, get.getFetchSize());
-                        } else {
-                            TimeUnit unit = convertTimeUnit(get.getUnit());
-                            message = embeddedServer.getWithoutAck(clientIdentity,
-                                get.getFetchSize(),
-                                get.getTimeout(),
-                                unit);
+                        Long timeout = null;
+                        TimeUnit unit = null;
+                        if (get.getTimeout() != -1) {// 是否是初始值
+                            timeout = get.getTimeout();
+                            unit = convertTimeUnit(get.getUnit());
                         }
-                        // }
 
-                        if (message.getId() != -1 && message.isRaw()) {
-                            List<ByteString> rowEntries = message.getRawEntries();
-                            // message size
-                            int messageSize = 0;
-                            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
-
-                            int dataSize = 0;
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                dataSize += com.google.protobuf.CodedOutputStream.computeBytesSizeNoTag(rowEntries.get(i));
-                            }
-                            messageSize += dataSize;
-                            messageSize += 1 * rowEntries.size();
-                            // packet size
-                            int size = 0;
-                            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
-                                PacketType.MESSAGES.getNumber());
-                            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
-                                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
-                                    + messageSize;
-                            // recyle bytes
-                            // ByteBuffer byteBuffer = (ByteBuffer)
-                            // ctx.getAttachment();
-                            // if (byteBuffer != null && size <=
-                            // byteBuffer.capacity()) {
-                            // byteBuffer.clear();
-                            // } else {
-                            // byteBuffer =
-                            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
-                            // ctx.setAttachment(byteBuffer);
-                            // }
-                            // CodedOutputStream output =
-                            // CodedOutputStream.newInstance(byteBuffer);
-                            byte[] body = new byte[size];
-                            CodedOutputStream output = CodedOutputStream.newInstance(body);
-                            output.writeEnum(3, PacketType.MESSAGES.getNumber());
+                        // 数据的等待放到异步回调中，避免阻塞netty的io线程
+                        final ChannelHandlerContext context = ctx;
+                        final ClientIdentity identity = clientIdentity;
+                        final Get request = get;
+                        final Long requestTimeout = timeout;
+                        final TimeUnit requestUnit = unit;
+                        final long requestStart = start;
+                        Runnable task = new Runnable() {
 
-                            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
-                            output.writeRawVarint32(messageSize);
-                            // message
-                            output.writeInt64(1, message.getId());
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                output.writeBytes(2, rowEntries.get(i));
+                            public void run() {
+                                doGet(context, identity, request, requestTimeout, requestUnit, requestStart);
                             }
-                            output.checkNoSpaceLeft();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));
-
-                            // output.flush();
-                            // byteBuffer.flip();
-                            // NettyUtils.write(ctx.getChannel(), byteBuffer,
-                            // null);
+                        };
+                        if (pendingGet != null || !queuedGets.isEmpty()) {
+                            queuedGets.add(task); // 等待上一个get完成
                         } else {
-                            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
-                            packetBuilder.setType(PacketType.MESSAGES).setVersion(NettyUtils.VERSION);
-
-                            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
-                            messageBuilder.setBatchId(message.getId());
-                            if (message.getId() != -1) {
-                                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
-                                    messageBuilder.addAllMessages(message.getRawEntries());
-                                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
-                                    for (Entry entry : message.getEntries()) {
-                                        messageBuilder.addMessages(entry.toByteString());
-                                    }
-                                }
-                            }
-                            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString())
-                                .build()
-                                .toByteArray();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));// 输出数据
+                            task.run();
                         }
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", get.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(),
+                        NettyUtils.write(ctx.channel(),
                             errorBytes,
                             new ChannelFutureAggregator(get.getDestination(),
                                 get,
@@ -254,7 +179,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         if (ack.getBatchId() == 0L) {
                             byte[] errorBytes = NettyUtils.errorPacket(402,
                                 MessageFormatter.format("batchId should assign value", ack.toString()).getMessage());
-                            NettyUtils.write(ctx.getChannel(),
+                            NettyUtils.write(ctx.channel(),
                                 errorBytes,
                                 new ChannelFutureAggregator(ack.getDestination(),
                                     ack,
@@ -276,7 +201,7 @@ public class SessionHandler extends SimpleChannelHandler {
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", ack.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(),
+                        NettyUtils.write(ctx.channel(),
                             errorBytes,
                             new ChannelFutureAggregator(ack.getDestination(),
                                 ack,
@@ -307,7 +232,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", rollback.toString())
                                 .getMessage());
-                        NettyUtils.write(ctx.getChannel(),
+                        NettyUtils.write(ctx.channel(),
                             errorBytes,
                             new ChannelFutureAggregator(rollback.getDestination(),
                                 rollback,
@@ -320,39 +245,132 @@ public class SessionHandler extends SimpleChannelHandler {
                 default:
                     byte[] errorBytes = NettyUtils.errorPacket(400,
                         MessageFormatter.format("packet type={} is NOT supported!", packet.getType()).getMessage());
-                    NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(ctx.getChannel()
-                        .getRemoteAddress()
+                    NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(ctx.channel()
+                        .remoteAddress()
                         .toString(), null, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 400));
                     break;
             }
         } catch (Throwable exception) {
-            byte[] errorBytes = NettyUtils.errorPacket(400,
-                MessageFormatter.format("something goes wrong with channel:{}, exception={}",
-                    ctx.getChannel(),
-                    ExceptionUtils.getStackTrace(exception)).getMessage());
-            NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(ctx.getChannel()
-                .getRemoteAddress()
-                .toString(), null, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 400));
+            writeError(ctx, packet.getType(), exception, start);
         } finally {
             MDC.remove("destination");
         }
     }
 
-    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.error("something goes wrong with channel:{}, exception={}",
-            ctx.getChannel(),
-            ExceptionUtils.getStackTrace(e.getCause()));
+            ctx.channel(),
+            ExceptionUtils.getStackTrace(cause));
+
+        ctx.channel().close();
+    }
 
-        ctx.getChannel().close();
+    /**
+     * 写缓冲超过高水位时暂停读取新的请求，等待慢客户端消费，低于低水位后恢复
+     */
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().config().setAutoRead(ctx.channel().isWritable());
+        super.channelWritabilityChanged(ctx);
     }
 
-    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 取消还在等待数据的get，避免链接关闭后还生成batch
+        CompletableFuture<Message> future = pendingGet;
+        if (future != null) {
+            future.cancel(false);
+        }
+        queuedGets.clear();
         // logger.info("remove binding subscription value object if any...");
         // ClientIdentity clientIdentity = (ClientIdentity) ctx.getAttachment();
         // // 如果唯一的订阅者都取消了订阅，直接关闭服务，针对内部版本模式下可以减少资源浪费
         // if (clientIdentity != null) {
         // stopCanalInstanceIfNecessary(clientIdentity);
         // }
+        ctx.fireChannelInactive();
+    }
+
+    private void doGet(final ChannelHandlerContext ctx, ClientIdentity clientIdentity, final Get get, Long timeout,
+                       TimeUnit unit, final long start) {
+        final CompletableFuture<Message> future;
+        try {
+            MDC.put("destination", clientIdentity.getDestination());
+            future = embeddedServer.getWithoutAckAsync(clientIdentity, get.getFetchSize(), timeout, unit);
+        } catch (Throwable e) {
+            writeError(ctx, PacketType.GET, e, start);
+            runNextGet();
+            return;
+        } finally {
+            MDC.remove("destination");
+        }
+
+        pendingGet = future;
+        future.whenComplete(new BiConsumer<Message, Throwable>() {
+
+            public void accept(Message message, Throwable exception) {
+                if (exception instanceof CancellationException) {
+                    return; // 链接已经关闭
+                }
+
+                try {
+                    MDC.put("destination", get.getDestination());
+                    if (exception != null) {
+                        throw exception;
+                    }
+                    writeMessages(ctx, get, message, start);
+                } catch (Throwable e) {
+                    writeError(ctx, PacketType.GET, e, start);
+                } finally {
+                    MDC.remove("destination");
+                }
+
+                // 回到io线程处理下一个get，在当前数据包写出之后
+                ctx.executor().execute(new Runnable() {
+
+                    public void run() {
+                        if (pendingGet == future) {
+                            pendingGet = null;
+                            runNextGet();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void runNextGet() {
+        Runnable next = queuedGets.poll();
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    private void writeMessages(ChannelHandlerContext ctx, Get get, Message message, long start) throws IOException {
+        // header/tag写入池化的buffer，entry数据不做整体拷贝
+        ByteBuf packet;
+        if (message.getId() == -1) {
+            packet = MessagesPacket.ofRawEntries(ctx.alloc(), message.getId(), Collections.<ByteString> emptyList());
+        } else if (message.isRaw()) {
+            packet = MessagesPacket.ofRawEntries(ctx.alloc(), message.getId(), message.getRawEntries());
+        } else {
+            packet = MessagesPacket.ofEntries(ctx.alloc(), message.getId(), message.getEntries());
+        }
+        int bodyLength = packet.readableBytes() - NettyUtils.HEADER_LENGTH;
+        ctx.channel().writeAndFlush(packet).addListener(new ChannelFutureAggregator(get.getDestination(),
+            get,
+            PacketType.GET,
+            bodyLength,
+            System.nanoTime() - start,
+            message.getId() == -1));// 输出数据
+    }
+
+    private void writeError(ChannelHandlerContext ctx, PacketType type, Throwable exception, long start) {
+        byte[] errorBytes = NettyUtils.errorPacket(400,
+            MessageFormatter.format("something goes wrong with channel:{}, exception={}",
+                ctx.channel(),
+                ExceptionUtils.getStackTrace(exception)).getMessage());
+        NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(ctx.channel()
+            .remoteAddress()
+            .toString(), null, type, errorBytes.length, System.nanoTime() - start, (short) 400));
     }
 
     private void stopCanalInstanceIfNecessary(ClientIdentity clientIdentity) {
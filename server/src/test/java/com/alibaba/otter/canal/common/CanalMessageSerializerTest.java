@@ -0,0 +1,115 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试raw entry在mq模式下的透传
+ */
+public class CanalMessageSerializerTest {
+
+    @Test
+    public void testRawSerializer() throws Exception {
+        List<ByteString> rawEntries = buildRawEntries();
+        Message message = new Message(10L, true, rawEntries);
+
+        Messages messages = parse(CanalMessageSerializer.serializer(message, false));
+        Assert.assertEquals(10L, messages.getBatchId());
+        Assert.assertEquals(rawEntries, messages.getMessagesList());
+
+        // 过滤事务头/尾
+        messages = parse(CanalMessageSerializer.serializer(message, true));
+        Assert.assertEquals(2, messages.getMessagesCount());
+        Assert.assertEquals(rawEntries.get(1), messages.getMessages(0));
+        Assert.assertEquals(rawEntries.get(2), messages.getMessages(1));
+    }
+
+    @Test
+    public void testRawSerializerCompatible() throws Exception {
+        List<ByteString> rawEntries = buildRawEntries();
+        List<Entry> entries = new ArrayList<Entry>();
+        for (ByteString rawEntry : rawEntries) {
+            entries.add(Entry.parseFrom(rawEntry));
+        }
+
+        Messages raw = parse(CanalMessageSerializer.serializer(new Message(10L, true, rawEntries), true));
+        Messages normal = parse(CanalMessageSerializer.serializer(new Message(10L, entries), true));
+        Assert.assertEquals(normal.getMessagesList(), raw.getMessagesList());
+    }
+
+    @Test
+    public void testRawMessageTopics() throws Exception {
+        List<ByteString> rawEntries = buildRawEntries();
+        Message message = new Message(10L, true, rawEntries);
+
+        Map<String, Message> messageMap = MQMessageUtils.messageTopics(message, "example", "test\\.order");
+        Assert.assertEquals(2, messageMap.size());
+
+        Message order = messageMap.get("test.order");
+        Assert.assertTrue(order.isRaw());
+        Assert.assertEquals(1, order.getRawEntries().size());
+        Assert.assertSame(rawEntries.get(1), order.getRawEntries().get(0));
+
+        Message other = messageMap.get("example");
+        Assert.assertTrue(other.isRaw());
+        Assert.assertEquals(1, other.getRawEntries().size());
+        Assert.assertSame(rawEntries.get(2), other.getRawEntries().get(0));
+    }
+
+    @Test
+    public void testParseEntryHeader() throws Exception {
+        ByteString rawEntry = buildRawEntries().get(1);
+        Entry entry = MQMessageUtils.parseEntryHeader(rawEntry);
+        Assert.assertEquals(EntryType.ROWDATA, entry.getEntryType());
+        Assert.assertEquals("test", entry.getHeader().getSchemaName());
+        Assert.assertEquals("order", entry.getHeader().getTableName());
+        Assert.assertTrue(entry.getStoreValue().isEmpty());
+        Assert.assertFalse(MQMessageUtils.isTransactionEntry(rawEntry));
+    }
+
+    private static Messages parse(byte[] body) throws Exception {
+        Packet packet = Packet.parseFrom(body);
+        Assert.assertEquals(PacketType.MESSAGES, packet.getType());
+        return Messages.parseFrom(packet.getBody());
+    }
+
+    private static List<ByteString> buildRawEntries() {
+        List<ByteString> rawEntries = new ArrayList<ByteString>();
+        rawEntries.add(buildEntry(EntryType.TRANSACTIONBEGIN, "", "").toByteString());
+        rawEntries.add(buildEntry(EntryType.ROWDATA, "test", "order").toByteString());
+        rawEntries.add(buildEntry(EntryType.ROWDATA, "test", "user").toByteString());
+        rawEntries.add(buildEntry(EntryType.TRANSACTIONEND, "", "").toByteString());
+        return rawEntries;
+    }
+
+    private static Entry buildEntry(EntryType entryType, String schemaName, String tableName) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setLogfileName("mysql-bin.000001");
+        headerBuilder.setLogfileOffset(1024);
+        headerBuilder.setExecuteTime(1024);
+        headerBuilder.setSchemaName(schemaName);
+        headerBuilder.setTableName(tableName);
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setHeader(headerBuilder.build());
+        entryBuilder.setEntryType(entryType);
+        RowChange.Builder rowChangeBuilder = RowChange.newBuilder();
+        rowChangeBuilder.setEventType(EventType.INSERT);
+        entryBuilder.setStoreValue(rowChangeBuilder.build().toByteString());
+        return entryBuilder.build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.alibaba.otter.canal.common;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.ColumnarMessage;
+import com.alibaba.otter.canal.protocol.ColumnarMessage.ColumnVector;
+import com.alibaba.otter.canal.protocol.ColumnarMessageCodec;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试列式序列化的分块以及编解码
+ */
+public class ColumnarMessageSerializerTest {
+
+    @Test
+    public void testSerializeBlocks() {
+        List<Entry> entries = new ArrayList<Entry>();
+        entries.add(Entry.newBuilder()
+            .setHeader(header("test", "user", 1000L))
+            .setEntryType(EntryType.TRANSACTIONBEGIN)
+            .build());
+        RowChange.Builder insert = RowChange.newBuilder().setEventType(EventType.INSERT);
+        insert.addRowDatas(RowData.newBuilder()
+            .addAfterColumns(column("id", Types.BIGINT, "1", true, false))
+            .addAfterColumns(column("name", Types.VARCHAR, "a", false, false)));
+        insert.addRowDatas(RowData.newBuilder()
+            .addAfterColumns(column("id", Types.BIGINT, "2", true, false))
+            .addAfterColumns(column("name", Types.VARCHAR, null, false, false)));
+        entries.add(entry("test", "user", 1000L, insert.build()));
+
+        RowChange.Builder update = RowChange.newBuilder().setEventType(EventType.UPDATE);
+        update.addRowDatas(RowData.newBuilder()
+            .addBeforeColumns(column("id", Types.BIGINT, "2", true, false))
+            .addBeforeColumns(column("name", Types.VARCHAR, null, false, false))
+            .addAfterColumns(column("id", Types.BIGINT, "2", true, false))
+            .addAfterColumns(column("name", Types.VARCHAR, "b", false, true)));
+        entries.add(entry("test", "user", 1001L, update.build()));
+
+        entries.add(entry("test", "user", 1002L, RowChange.newBuilder()
+            .setEventType(EventType.ALTER)
+            .setIsDdl(true)
+            .setSql("alter table user add column memo varchar(32)")
+            .build()));
+
+        RowChange.Builder delete = RowChange.newBuilder().setEventType(EventType.DELETE);
+        delete.addRowDatas(RowData.newBuilder()
+            .addBeforeColumns(column("id", Types.BIGINT, "18446744073709551615", true, false))
+            .addBeforeColumns(column("name", Types.VARCHAR, "c", false, false))
+            .addBeforeColumns(column("memo", Types.VARCHAR, "", false, false)));
+        entries.add(entry("test", "user", 1003L, delete.build()));
+
+        List<ByteString> rawEntries = new ArrayList<ByteString>();
+        for (Entry entry : entries) {
+            rawEntries.add(entry.toByteString());
+        }
+
+        List<byte[]> datas = new ColumnarMessageSerializer().serialize(new Message(10L, true, rawEntries), true);
+        // insert+update合并，ddl单独一条，ddl之后列结构变化
+        Assert.assertEquals(3, datas.size());
+
+        ColumnarMessage dml = ColumnarMessageCodec.decode(datas.get(0));
+        Assert.assertEquals(10L, dml.getId());
+        Assert.assertEquals("test", dml.getDatabase());
+        Assert.assertEquals("user", dml.getTable());
+        Assert.assertFalse(dml.getIsDdl());
+        Assert.assertEquals(2, dml.getColumns().size());
+        Assert.assertTrue(dml.getColumns().get(0).getIsKey());
+        Assert.assertEquals(3, dml.getRowCount());
+        Assert.assertEquals(EventType.INSERT, dml.getEventType(0));
+        Assert.assertEquals(EventType.UPDATE, dml.getEventType(2));
+        Assert.assertEquals(1000L, dml.getExecuteTime(1));
+        Assert.assertEquals(1001L, dml.getExecuteTime(2));
+
+        ColumnVector id = dml.getData()[0];
+        Assert.assertTrue(id.isLongEncoded());
+        Assert.assertEquals(1L, id.getLong(0));
+        Assert.assertEquals("2", id.getString(2));
+        ColumnVector name = dml.getData()[1];
+        Assert.assertFalse(name.isLongEncoded());
+        Assert.assertEquals("a", name.getString(0));
+        Assert.assertTrue(name.isNull(1));
+        Assert.assertEquals("b", name.getString(2));
+
+        // 只有update变更的列有old值
+        Assert.assertFalse(dml.getOld()[0].isPresent(2));
+        Assert.assertTrue(dml.getOld()[1].isPresent(2));
+        Assert.assertTrue(dml.getOld()[1].isNull(2));
+        Assert.assertFalse(dml.getOld()[1].isPresent(0));
+
+        ColumnarMessage ddl = ColumnarMessageCodec.decode(datas.get(1));
+        Assert.assertTrue(ddl.getIsDdl());
+        Assert.assertEquals(EventType.ALTER, ddl.getType());
+        Assert.assertEquals(1002L, ddl.getEs());
+        Assert.assertEquals("alter table user add column memo varchar(32)", ddl.getSql());
+        Assert.assertEquals(0, ddl.getRowCount());
+
+        ColumnarMessage deleted = ColumnarMessageCodec.decode(datas.get(2));
+        Assert.assertEquals(3, deleted.getColumns().size());
+        Assert.assertEquals(EventType.DELETE, deleted.getEventType(0));
+        // 超出long范围的unsigned bigint使用字符串
+        Assert.assertFalse(deleted.getData()[0].isLongEncoded());
+        Assert.assertEquals("18446744073709551615", deleted.getData()[0].getString(0));
+        Assert.assertEquals("", deleted.getData()[2].getString(0));
+        Assert.assertFalse(deleted.getData()[2].isNull(0));
+    }
+
+    @Test
+    public void testSplitByTable() {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (String table : new String[] { "a", "a", "b", "a" }) {
+            RowChange.Builder insert = RowChange.newBuilder().setEventType(EventType.INSERT);
+            insert.addRowDatas(RowData.newBuilder().addAfterColumns(column("id", Types.INTEGER, "1", true, false)));
+            entries.add(entry("test", table, 1000L, insert.build()));
+        }
+
+        List<byte[]> datas = new ColumnarMessageSerializer().serialize(new Message(1L, entries), false);
+        Assert.assertEquals(3, datas.size());
+        Assert.assertEquals(2, ColumnarMessageCodec.decode(datas.get(0)).getRowCount());
+        Assert.assertEquals("b", ColumnarMessageCodec.decode(datas.get(1)).getTable());
+        Assert.assertEquals("a", ColumnarMessageCodec.decode(datas.get(2)).getTable());
+    }
+
+    private static Entry entry(String schemaName, String tableName, long executeTime, RowChange rowChange) {
+        return Entry.newBuilder()
+            .setHeader(header(schemaName, tableName, executeTime))
+            .setEntryType(EntryType.ROWDATA)
+            .setStoreValue(rowChange.toByteString())
+            .build();
+    }
+
+    private static Header header(String schemaName, String tableName, long executeTime) {
+        return Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(1024)
+            .setExecuteTime(executeTime)
+            .setSchemaName(schemaName)
+            .setTableName(tableName)
+            .build();
+    }
+
+    private static Column column(String name, int sqlType, String value, boolean isKey, boolean updated) {
+        Column.Builder builder = Column.newBuilder()
+            .setName(name)
+            .setIsKey(isKey)
+            .setUpdated(updated)
+            .setSqlType(sqlType)
+            .setMysqlType(sqlType == Types.VARCHAR ? "varchar(32)" : "bigint(20) unsigned");
+        if (value == null) {
+            builder.setIsNull(true);
+        } else {
+            builder.setValue(value);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,116 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.otter.canal.common.MQMessageUtils.EntryRowData;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+
+/**
+ * 对比messageConverter + fastjson和FlatMessageEncoder输出FlatMessage json的吞吐
+ *
+ * <pre>
+ * 每个entry为一个10行x20列的update，分别统计每秒处理的行数，可以配合-verbose:gc观察两者的gc次数
+ * </pre>
+ */
+@Ignore
+public class FlatMessageEncoderPerformanceTest {
+
+    private static final int  ENTRIES  = 100;
+    private static final int  ROWS     = 10;
+    private static final int  COLUMNS  = 20;
+    private static final int  WARMUP   = 3;
+    private static final long DURATION = 10 * 1000L;
+
+    @Test
+    public void testEncode() {
+        EntryRowData[] datas = buildDatas();
+        for (int i = 0; i < WARMUP; i++) {
+            runFastjson(datas, DURATION / 5);
+            runEncoder(datas, DURATION / 5);
+        }
+
+        long fastjson = runFastjson(datas, DURATION);
+        long encoder = runEncoder(datas, DURATION);
+        System.out.println("messageConverter + fastjson : " + (fastjson * ROWS * 1000 / DURATION) + " rows/s");
+        System.out.println("FlatMessageEncoder          : " + (encoder * ROWS * 1000 / DURATION) + " rows/s");
+    }
+
+    private long runFastjson(EntryRowData[] datas, long duration) {
+        long count = 0;
+        long bytes = 0;
+        long end = System.currentTimeMillis() + duration;
+        while (System.currentTimeMillis() < end) {
+            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, 1L);
+            for (FlatMessage flatMessage : flatMessages) {
+                bytes += JSON.toJSONBytes(flatMessage, SerializerFeature.WriteMapNullValue).length;
+            }
+            count += flatMessages.size();
+        }
+        return bytes > 0 ? count : 0;
+    }
+
+    private long runEncoder(EntryRowData[] datas, long duration) {
+        long count = 0;
+        long bytes = 0;
+        long end = System.currentTimeMillis() + duration;
+        while (System.currentTimeMillis() < end) {
+            List<byte[]> flatMessages = MQMessageUtils.messageConverterToBytes(datas, 1L);
+            for (byte[] flatMessage : flatMessages) {
+                bytes += flatMessage.length;
+            }
+            count += flatMessages.size();
+        }
+        return bytes > 0 ? count : 0;
+    }
+
+    private EntryRowData[] buildDatas() {
+        EntryRowData[] datas = new EntryRowData[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            Header header = Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(1024L * i)
+                .setExecuteTime(System.currentTimeMillis())
+                .setSchemaName("test")
+                .setTableName("user")
+                .build();
+            RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.UPDATE);
+            for (int j = 0; j < ROWS; j++) {
+                RowData.Builder rowData = RowData.newBuilder();
+                for (int k = 0; k < COLUMNS; k++) {
+                    rowData.addBeforeColumns(column(k, "before_" + i + "_" + j + "_" + k, false));
+                    rowData.addAfterColumns(column(k, "after_" + i + "_" + j + "_" + k, k % 5 == 1));
+                }
+                rowChange.addRowDatas(rowData);
+            }
+
+            datas[i] = new EntryRowData();
+            datas[i].entry = Entry.newBuilder().setHeader(header).setEntryType(EntryType.ROWDATA).build();
+            datas[i].rowChange = rowChange.build();
+        }
+        return datas;
+    }
+
+    private Column column(int index, String value, boolean updated) {
+        return Column.newBuilder()
+            .setIndex(index)
+            .setName("column_" + index)
+            .setIsKey(index == 0)
+            .setUpdated(updated)
+            .setSqlType(12)
+            .setMysqlType("varchar(64)")
+            .setValue(value)
+            .build();
+    }
+}
@@ -0,0 +1,191 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.otter.canal.common.MQMessageUtils.EntryRowData;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+
+/**
+ * 校验FlatMessageEncoder的输出和messageConverter + fastjson字节级一致
+ */
+public class FlatMessageEncoderTest {
+
+    private static final long TS = 1590393600000L;
+
+    @Test
+    public void testInsert() {
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.INSERT);
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addAfterColumns(column("id", "1", true, false))
+            .addAfterColumns(column("name", "canal", false, false))
+            .addAfterColumns(column("memo", null, false, false)));
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addAfterColumns(column("id", "2", true, false))
+            .addAfterColumns(column("name", "otter", false, false))
+            .addAfterColumns(column("memo", "", false, false)));
+        assertEncode(entry("test", "user"), rowChange.build());
+    }
+
+    @Test
+    public void testUpdate() {
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.UPDATE);
+        // 第一行只更新name，第二行只更新memo，old中的字段在多行之间累加
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addBeforeColumns(column("id", "1", true, false))
+            .addBeforeColumns(column("name", "a", false, false))
+            .addBeforeColumns(column("memo", null, false, false))
+            .addAfterColumns(column("id", "1", true, false))
+            .addAfterColumns(column("name", "b", false, true))
+            .addAfterColumns(column("memo", null, false, false)));
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addBeforeColumns(column("id", "2", true, false))
+            .addBeforeColumns(column("name", "c", false, false))
+            .addBeforeColumns(column("memo", "x", false, false))
+            .addAfterColumns(column("id", "2", true, false))
+            .addAfterColumns(column("name", "c", false, false))
+            .addAfterColumns(column("memo", null, false, true)));
+        // 没有任何字段更新
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addBeforeColumns(column("id", "3", true, false))
+            .addAfterColumns(column("id", "3", true, false)));
+        assertEncode(entry("test", "user"), rowChange.build());
+    }
+
+    @Test
+    public void testDelete() {
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.DELETE);
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addBeforeColumns(column("id", "1", true, false))
+            .addBeforeColumns(column("uid", "9", true, false))
+            .addBeforeColumns(column("name", "a", false, false)));
+        assertEncode(entry("test", "user"), rowChange.build());
+    }
+
+    @Test
+    public void testDifferentColumns() {
+        // 多行的列不一致时，sqlType/mysqlType保持首次出现的顺序
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.INSERT);
+        rowChange.addRowDatas(RowData.newBuilder().addAfterColumns(column("a", "1", false, false)));
+        rowChange.addRowDatas(RowData.newBuilder());
+        rowChange.addRowDatas(RowData.newBuilder()
+            .addAfterColumns(column("b", "2", true, false))
+            .addAfterColumns(column("a", "3", false, false)));
+        assertEncode(entry("test", "user"), rowChange.build());
+    }
+
+    @Test
+    public void testEmptyRows() {
+        assertEncode(entry("test", "user"), RowChange.newBuilder().setEventType(EventType.INSERT).build());
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.INSERT);
+        rowChange.addRowDatas(RowData.newBuilder());
+        assertEncode(entry("test", "user"), rowChange.build());
+    }
+
+    @Test
+    public void testDdlAndQuery() {
+        assertEncode(entry("test", "user"), RowChange.newBuilder()
+            .setEventType(EventType.ALTER)
+            .setIsDdl(true)
+            .setSql("alter table user add column `memo` varchar(32) comment '备注\t\"x\"'")
+            .build());
+        assertEncode(entry("test", ""), RowChange.newBuilder()
+            .setEventType(EventType.QUERY)
+            .setSql("insert into user values(1)")
+            .build());
+    }
+
+    @Test
+    public void testEscape() {
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < 0x100; c++) {
+            all.append(c);
+        }
+        all.append("\u2028\u2029中文\ud83d\ude00\ud800x\udc00\uffff");
+        assertString(all.toString());
+
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            char[] chars = new char[random.nextInt(32)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x100) : random.nextInt(0x10000));
+            }
+            assertString(new String(chars));
+        }
+    }
+
+    @Test
+    public void testNumber() {
+        long[] values = { 0L, 9L, 10L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, Integer.MIN_VALUE };
+        for (long value : values) {
+            Entry entry = entry("test", "user").toBuilder()
+                .setHeader(entry("test", "user").getHeader().toBuilder().setExecuteTime(value))
+                .build();
+            assertEncode(entry, RowChange.newBuilder().setEventType(EventType.INSERT).build(), value);
+        }
+    }
+
+    private static void assertString(String value) {
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.INSERT);
+        rowChange.addRowDatas(RowData.newBuilder().addAfterColumns(column(value, value, true, false)));
+        assertEncode(entry(value, value), rowChange.setSql(value).build());
+    }
+
+    private static void assertEncode(Entry entry, RowChange rowChange) {
+        assertEncode(entry, rowChange, 1L);
+    }
+
+    private static void assertEncode(Entry entry, RowChange rowChange, long id) {
+        EntryRowData data = new EntryRowData();
+        data.entry = entry;
+        data.rowChange = rowChange;
+        List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(new EntryRowData[] { data }, id);
+        Assert.assertEquals(1, flatMessages.size());
+        FlatMessage flatMessage = flatMessages.get(0);
+        flatMessage.setTs(TS);
+        byte[] expect = JSON.toJSONBytes(flatMessage, SerializerFeature.WriteMapNullValue);
+
+        FlatMessageEncoder encoder = new FlatMessageEncoder();
+        Assert.assertArrayEquals(expect, encoder.encode(id, entry, rowChange, TS));
+        // 复用encoder
+        Assert.assertArrayEquals(expect, encoder.encode(id, entry, rowChange, TS));
+    }
+
+    private static Entry entry(String schemaName, String tableName) {
+        Header header = Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(1024)
+            .setExecuteTime(1024)
+            .setSchemaName(schemaName)
+            .setTableName(tableName)
+            .build();
+        return Entry.newBuilder().setHeader(header).setEntryType(EntryType.ROWDATA).build();
+    }
+
+    private static Column column(String name, String value, boolean isKey, boolean updated) {
+        Column.Builder builder = Column.newBuilder()
+            .setName(name)
+            .setIsKey(isKey)
+            .setUpdated(updated)
+            .setSqlType(isKey ? -5 : 12)
+            .setMysqlType(isKey ? "bigint(20)" : "varchar(32)");
+        if (value == null) {
+            builder.setIsNull(true);
+        } else {
+            builder.setValue(value);
+        }
+        return builder.build();
+    }
+}
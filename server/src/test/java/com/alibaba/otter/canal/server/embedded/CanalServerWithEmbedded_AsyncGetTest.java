@@ -0,0 +1,266 @@
+package com.alibaba.otter.canal.server.embedded;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.alarm.CanalAlarmHandler;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.instance.core.CanalMQConfig;
+import com.alibaba.otter.canal.meta.CanalMetaManager;
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.parse.CanalEventParser;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.server.exception.CanalServerException;
+import com.alibaba.otter.canal.sink.CanalEventSink;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * 异步getWithoutAck的完成、超时、取消以及和阻塞get并存的测试，不依赖mysql
+ */
+public class CanalServerWithEmbedded_AsyncGetTest {
+
+    private static final String      DESTINATION  = "async";
+    private static final LogIdentity LOG_IDENTITY = new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L);
+
+    private CanalServerWithEmbedded  server;
+    private long                     offset       = 4;
+
+    @Before
+    public void setUp() {
+        server = new CanalServerWithEmbedded();
+        server.setAsyncGetThreads(1);
+        server.setCanalInstanceGenerator(new CanalInstanceGenerator() {
+
+            public CanalInstance generate(String destination) {
+                return new MemoryCanalInstance(destination);
+            }
+        });
+        server.start();
+        server.start(DESTINATION);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testCompleteWhenEnough() throws Exception {
+        ClientIdentity clientIdentity = subscribe(DESTINATION);
+        CompletableFuture<Message> future = server.getWithoutAckAsync(clientIdentity, 5, 0L, TimeUnit.MILLISECONDS);
+        put(DESTINATION, 3);
+        Thread.sleep(100);
+        Assert.assertFalse(future.isDone());
+
+        put(DESTINATION, 2);
+        Message message = future.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(5, size(message));
+        Assert.assertEquals(1, server.listBatchIds(clientIdentity).size());
+        server.ack(clientIdentity, message.getId());
+    }
+
+    @Test
+    public void testCompleteImmediately() throws Exception {
+        ClientIdentity clientIdentity = subscribe(DESTINATION);
+        put(DESTINATION, 5);
+        CompletableFuture<Message> future = server.getWithoutAckAsync(clientIdentity, 5, 0L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(5, size(future.get()));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ClientIdentity clientIdentity = subscribe(DESTINATION);
+        put(DESTINATION, 2);
+        long start = System.currentTimeMillis();
+        CompletableFuture<Message> future = server.getWithoutAckAsync(clientIdentity, 5, 200L, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(future.isDone());
+
+        Message message = future.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+        Assert.assertEquals(2, size(message));
+    }
+
+    @Test
+    public void testTimeoutWithoutData() throws Exception {
+        ClientIdentity clientIdentity = subscribe(DESTINATION);
+        CompletableFuture<Message> future = server.getWithoutAckAsync(clientIdentity, 5, 100L, TimeUnit.MILLISECONDS);
+        Message message = future.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(-1, message.getId());
+        Assert.assertEquals(0, size(message));
+        Assert.assertTrue(server.listBatchIds(clientIdentity).isEmpty());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ClientIdentity clientIdentity = subscribe(DESTINATION);
+        CompletableFuture<Message> future = server.getWithoutAckAsync(clientIdentity, 5, 0L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(future.cancel(false));
+
+        put(DESTINATION, 5);
+        Thread.sleep(100);
+        Assert.assertTrue(future.isCancelled());
+        // cancel之后不能产生batch，数据由下一次get获取
+        Assert.assertTrue(server.listBatchIds(clientIdentity).isEmpty());
+        Message message = server.getWithoutAck(clientIdentity, 5);
+        Assert.assertEquals(5, size(message));
+    }
+
+    @Test
+    public void testStopDestination() throws Exception {
+        ClientIdentity clientIdentity = subscribe(DESTINATION);
+        CompletableFuture<Message> future = server.getWithoutAckAsync(clientIdentity, 5, 0L, TimeUnit.MILLISECONDS);
+        server.stop(DESTINATION);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof CanalServerException);
+        }
+    }
+
+    @Test
+    public void testNotBlockedByBlockingGet() throws Exception {
+        final ClientIdentity blockingClient = subscribe(DESTINATION);
+        String other = DESTINATION + "_other";
+        server.start(other);
+        ClientIdentity otherClient = subscribe(other);
+
+        // 阻塞的getWithoutAck一直持有destination锁，直到有足够的数据
+        final CountDownLatch blocked = new CountDownLatch(1);
+        Thread blocking = new Thread(new Runnable() {
+
+            public void run() {
+                blocked.countDown();
+                server.getWithoutAck(blockingClient, 10, 0L, TimeUnit.MILLISECONDS);
+            }
+        });
+        blocking.start();
+        blocked.await();
+        Thread.sleep(100);
+
+        CompletableFuture<Message> waiting = server.getWithoutAckAsync(blockingClient,
+            5,
+            0L,
+            TimeUnit.MILLISECONDS);
+        put(DESTINATION, 5);
+        Thread.sleep(100);
+        Assert.assertFalse(waiting.isDone());
+
+        // 唯一的异步线程不能被阻塞的destination占住，其他destination的异步get可以正常完成
+        CompletableFuture<Message> future = server.getWithoutAckAsync(otherClient, 5, 0L, TimeUnit.MILLISECONDS);
+        put(other, 5);
+        Assert.assertEquals(5, size(future.get(5, TimeUnit.SECONDS)));
+
+        // 阻塞的get拿走数据释放锁，rollback之后等待中的异步get重新拿到数据
+        put(DESTINATION, 5);
+        blocking.join(5000);
+        Assert.assertFalse(blocking.isAlive());
+        Assert.assertFalse(waiting.isDone());
+        server.rollback(blockingClient);
+        Assert.assertEquals(5, size(waiting.get(5, TimeUnit.SECONDS)));
+    }
+
+    private int size(Message message) {
+        return message.isRaw() ? message.getRawEntries().size() : message.getEntries().size();
+    }
+
+    private ClientIdentity subscribe(String destination) {
+        ClientIdentity clientIdentity = new ClientIdentity(destination, (short) 1001);
+        server.subscribe(clientIdentity);
+        return clientIdentity;
+    }
+
+    private void put(String destination, int count) throws InterruptedException {
+        CanalEventStore<Event> eventStore = server.getCanalInstances().get(destination).getEventStore();
+        for (int i = 0; i < count; i++) {
+            Entry entry = Entry.newBuilder()
+                .setHeader(Header.newBuilder()
+                    .setLogfileName("mysql-bin.000001")
+                    .setLogfileOffset(offset)
+                    .setExecuteTime(System.currentTimeMillis()))
+                .setEntryType(EntryType.ROWDATA)
+                .build();
+            eventStore.put(new Event(LOG_IDENTITY, entry));
+            offset += 100;
+        }
+    }
+
+    /**
+     * 基于内存store和meta的instance，数据由测试直接写入store
+     */
+    private static class MemoryCanalInstance extends AbstractCanalLifeCycle implements CanalInstance {
+
+        private final String                     destination;
+        private final MemoryEventStoreWithBuffer eventStore;
+        private final MemoryMetaManager          metaManager;
+
+        public MemoryCanalInstance(String destination){
+            this.destination = destination;
+            this.eventStore = new MemoryEventStoreWithBuffer();
+            this.eventStore.setBufferSize(1024);
+            this.metaManager = new MemoryMetaManager();
+        }
+
+        public void start() {
+            super.start();
+            metaManager.start();
+            eventStore.start();
+        }
+
+        public void stop() {
+            super.stop();
+            eventStore.stop();
+            metaManager.stop();
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public CanalEventParser getEventParser() {
+            return null;
+        }
+
+        public CanalEventSink getEventSink() {
+            return null;
+        }
+
+        public CanalEventStore getEventStore() {
+            return eventStore;
+        }
+
+        public CanalMetaManager getMetaManager() {
+            return metaManager;
+        }
+
+        public CanalAlarmHandler getAlarmHandler() {
+            return null;
+        }
+
+        public boolean subscribeChange(ClientIdentity identity) {
+            return true;
+        }
+
+        public CanalMQConfig getMqConfig() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.alibaba.otter.canal.server.netty;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.alarm.CanalAlarmHandler;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.instance.core.CanalMQConfig;
+import com.alibaba.otter.canal.meta.CanalMetaManager;
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.parse.CanalEventParser;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth;
+import com.alibaba.otter.canal.protocol.CanalPacket.Get;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.CanalPacket.Sub;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.sink.CanalEventSink;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+
+/**
+ * canal server的网络层压测，不依赖mysql，每个destination由一个线程不断往store中写入固定大小的entry
+ *
+ * <pre>
+ * 多个客户端通过原生socket并发get/ack，输出吞吐(entry/s、MB/s)以及get的p50/p99延迟，用于对比不同的transport和线程配置
+ * 参数(system property)：
+ * canal.perf.clients    客户端数，每个客户端独占一个destination，默认8
+ * canal.perf.batchSize  每次get的条数，默认1000
+ * canal.perf.entrySize  每条entry的大小，默认1024
+ * canal.perf.duration   压测时间(ms)，默认30000
+ * canal.perf.epoll      是否使用epoll，默认true
+ * canal.perf.workers    worker线程数，默认0(netty默认值)
+ * canal.perf.prefetch   每个客户端同时在途的get数，默认0(请求-响应模式)
+ * </pre>
+ */
+@Ignore
+public class CanalServerWithNettyPerformanceTest {
+
+    private static final int     PORT        = 11189;
+    private static final int     CLIENTS     = Integer.getInteger("canal.perf.clients", 8);
+    private static final int     BATCH_SIZE  = Integer.getInteger("canal.perf.batchSize", 1000);
+    private static final int     ENTRY_SIZE  = Integer.getInteger("canal.perf.entrySize", 1024);
+    private static final long    DURATION    = Long.getLong("canal.perf.duration", 30 * 1000L);
+    private static final boolean EPOLL       = Boolean.valueOf(System.getProperty("canal.perf.epoll", "true"));
+    private static final int     WORKERS     = Integer.getInteger("canal.perf.workers", 0);
+    private static final int     PREFETCH    = Integer.getInteger("canal.perf.prefetch", 0);
+    private static final String  DESTINATION = "perf_";
+
+    @Test
+    public void testGetAndAck() throws Exception {
+        CanalServerWithEmbedded embeddedServer = new CanalServerWithEmbedded();
+        embeddedServer.setCanalInstanceGenerator(new CanalInstanceGenerator() {
+
+            public CanalInstance generate(String destination) {
+                return new PerformanceCanalInstance(destination);
+            }
+        });
+
+        CanalServerWithNetty nettyServer = CanalServerWithNetty.instance();
+        nettyServer.setEmbeddedServer(embeddedServer);
+        nettyServer.setPort(PORT);
+        nettyServer.setEpollEnabled(EPOLL);
+        nettyServer.setWorkerThreads(WORKERS);
+        nettyServer.start();
+        for (int i = 0; i < CLIENTS; i++) {
+            embeddedServer.start(DESTINATION + i);
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong entries = new AtomicLong(0);
+        final AtomicLong bytes = new AtomicLong(0);
+        final List<long[]> latencies = new ArrayList<long[]>();
+        final CountDownLatch latch = new CountDownLatch(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            final String destination = DESTINATION + i;
+            final long[] latency = new long[1024 * 1024];
+            latencies.add(latency);
+            new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        consume(destination, running, entries, bytes, latency);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "perf-client-" + i).start();
+        }
+
+        Thread.sleep(DURATION);
+        running.set(false);
+        latch.await();
+
+        long[] all = merge(latencies);
+        Arrays.sort(all);
+        System.out.println(String.format("transport:%s clients:%d batchSize:%d entrySize:%d prefetch:%d",
+            NettyUtils.useEpoll(EPOLL) ? "epoll" : "nio",
+            CLIENTS,
+            BATCH_SIZE,
+            ENTRY_SIZE,
+            PREFETCH));
+        System.out.println(String.format("throughput: %d entry/s, %.2f MB/s, gets: %d, p50: %.2f ms, p99: %.2f ms",
+            entries.get() * 1000 / DURATION,
+            bytes.get() * 1000.0 / DURATION / 1024 / 1024,
+            all.length,
+            percentile(all, 0.50) / 1000000.0,
+            percentile(all, 0.99) / 1000000.0));
+
+        nettyServer.stop();
+    }
+
+    private void consume(String destination, AtomicBoolean running, AtomicLong entries, AtomicLong bytes,
+                         long[] latency) throws Exception {
+        SocketChannel channel = SocketChannel.open();
+        channel.connect(new InetSocketAddress("127.0.0.1", PORT));
+        try {
+            Packet packet = Packet.parseFrom(readNextPacket(channel));
+            if (packet.getType() != PacketType.HANDSHAKE) {
+                throw new IOException("expect handshake but found other type.");
+            }
+
+            writeWithHeader(channel, Packet.newBuilder()
+                .setType(PacketType.CLIENTAUTHENTICATION)
+                .setVersion(NettyUtils.VERSION)
+                .setBody(ClientAuth.newBuilder().setUsername("").build().toByteString())
+                .build()
+                .toByteArray());
+            checkAck(Packet.parseFrom(readNextPacket(channel)));
+
+            writeWithHeader(channel, Packet.newBuilder()
+                .setType(PacketType.SUBSCRIPTION)
+                .setVersion(NettyUtils.VERSION)
+                .setBody(Sub.newBuilder().setDestination(destination).setClientId("1").build().toByteString())
+                .build()
+                .toByteArray());
+            checkAck(Packet.parseFrom(readNextPacket(channel)));
+
+            byte[] get = Packet.newBuilder()
+                .setType(PacketType.GET)
+                .setVersion(NettyUtils.VERSION)
+                .setBody(Get.newBuilder()
+                    .setDestination(destination)
+                    .setClientId("1")
+                    .setFetchSize(BATCH_SIZE)
+                    .setAutoAck(false)
+                    .build()
+                    .toByteString())
+                .build()
+                .toByteArray();
+            int count = 0;
+            long lastBatchId = 0;
+            Deque<Long> inflight = new ArrayDeque<Long>();
+            while (running.get()) {
+                while (inflight.size() < Math.max(1, PREFETCH)) {
+                    inflight.addLast(System.nanoTime());
+                    writeWithHeader(channel, get);
+                }
+                byte[] body = readNextPacket(channel);
+                long start = inflight.pollFirst();
+                if (count < latency.length - 1) {
+                    latency[count++] = System.nanoTime() - start;
+                }
+
+                packet = Packet.parseFrom(body);
+                if (packet.getType() != PacketType.MESSAGES) {
+                    checkAck(packet);
+                    continue;
+                }
+
+                Messages messages = Messages.parseFrom(packet.getBody());
+                entries.addAndGet(messages.getMessagesCount());
+                bytes.addAndGet(body.length);
+                if (messages.getBatchId() != -1L) {
+                    if (messages.getBatchId() <= lastBatchId) {
+                        throw new IOException("batchId out of order : " + messages.getBatchId() + " after "
+                                              + lastBatchId);
+                    }
+                    lastBatchId = messages.getBatchId();
+                    writeWithHeader(channel, Packet.newBuilder()
+                        .setType(PacketType.CLIENTACK)
+                        .setVersion(NettyUtils.VERSION)
+                        .setBody(ClientAck.newBuilder()
+                            .setDestination(destination)
+                            .setClientId("1")
+                            .setBatchId(messages.getBatchId())
+                            .build()
+                            .toByteString())
+                        .build()
+                        .toByteArray());
+                }
+            }
+            latency[latency.length - 1] = count;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static long[] merge(List<long[]> latencies) {
+        int size = 0;
+        for (long[] latency : latencies) {
+            size += (int) latency[latency.length - 1];
+        }
+
+        long[] all = new long[size];
+        int index = 0;
+        for (long[] latency : latencies) {
+            int count = (int) latency[latency.length - 1];
+            System.arraycopy(latency, 0, all, index, count);
+            index += count;
+        }
+        return all;
+    }
+
+    private static long percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percent))];
+    }
+
+    private static void checkAck(Packet packet) throws IOException {
+        if (packet.getType() != PacketType.ACK) {
+            throw new IOException("unexpected packet type when ack is expected");
+        }
+
+        Ack ack = Ack.parseFrom(packet.getBody());
+        if (ack.getErrorCode() > 0) {
+            throw new IOException("something goes wrong : " + ack.getErrorMessage());
+        }
+    }
+
+    private static byte[] readNextPacket(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(NettyUtils.HEADER_LENGTH);
+        read(channel, header);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+        read(channel, body);
+        return body.array();
+    }
+
+    private static void read(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("end of stream when reading packet");
+            }
+        }
+    }
+
+    private static void writeWithHeader(SocketChannel channel, byte[] body) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(NettyUtils.HEADER_LENGTH + body.length);
+        buffer.putInt(body.length).put(body);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 基于内存store和meta的instance，由单独的线程模拟parser不断写入数据
+     */
+    private static class PerformanceCanalInstance extends AbstractCanalLifeCycle implements CanalInstance {
+
+        private final String                     destination;
+        private final MemoryEventStoreWithBuffer eventStore;
+        private final MemoryMetaManager          metaManager;
+        private Thread                           producer;
+
+        public PerformanceCanalInstance(String destination){
+            this.destination = destination;
+            this.eventStore = new MemoryEventStoreWithBuffer();
+            this.eventStore.setBufferSize(16 * 1024);
+            this.eventStore.setBatchMode(BatchMode.ITEMSIZE);
+            this.metaManager = new MemoryMetaManager();
+        }
+
+        public void start() {
+            super.start();
+            metaManager.start();
+            eventStore.start();
+
+            producer = new Thread(new Runnable() {
+
+                public void run() {
+                    LogIdentity logIdentity = new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L);
+                    ByteString value = ByteString.copyFrom(new byte[ENTRY_SIZE]);
+                    long offset = 4;
+                    try {
+                        while (isStart()) {
+                            Entry entry = Entry.newBuilder()
+                                .setHeader(Header.newBuilder()
+                                    .setLogfileName("mysql-bin.000001")
+                                    .setLogfileOffset(offset)
+                                    .setExecuteTime(System.currentTimeMillis())
+                                    .setEventLength(ENTRY_SIZE))
+                                .setEntryType(EntryType.ROWDATA)
+                                .setStoreValue(value)
+                                .build();
+                            eventStore.put(new Event(logIdentity, entry));
+                            offset += ENTRY_SIZE;
+                        }
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            }, "perf-producer-" + destination);
+            producer.start();
+        }
+
+        public void stop() {
+            super.stop();
+            producer.interrupt();
+            eventStore.stop();
+            metaManager.stop();
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public CanalEventParser getEventParser() {
+            return null;
+        }
+
+        public CanalEventSink getEventSink() {
+            return null;
+        }
+
+        public CanalEventStore getEventStore() {
+            return eventStore;
+        }
+
+        public CanalMetaManager getMetaManager() {
+            return metaManager;
+        }
+
+        public CanalAlarmHandler getAlarmHandler() {
+            return null;
+        }
+
+        public boolean subscribeChange(ClientIdentity identity) {
+            return true;
+        }
+
+        public CanalMQConfig getMqConfig() {
+            return null;
+        }
+    }
+}
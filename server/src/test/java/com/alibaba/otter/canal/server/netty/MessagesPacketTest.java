@@ -0,0 +1,102 @@
+package com.alibaba.otter.canal.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试MESSAGES数据包的组装和protobuf的序列化结果一致
+ */
+public class MessagesPacketTest {
+
+    @Test
+    public void testRawEntries() {
+        List<Entry> entries = entries();
+        List<ByteString> rawEntries = new ArrayList<ByteString>();
+        for (Entry entry : entries) {
+            rawEntries.add(entry.toByteString());
+        }
+
+        ByteBuf packet = MessagesPacket.ofRawEntries(PooledByteBufAllocator.DEFAULT, 10L, rawEntries);
+        Assert.assertArrayEquals(expected(10L, rawEntries), toBytes(packet));
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+        List<Entry> entries = entries();
+        List<ByteString> rawEntries = new ArrayList<ByteString>();
+        for (Entry entry : entries) {
+            rawEntries.add(entry.toByteString());
+        }
+
+        ByteBuf packet = MessagesPacket.ofEntries(PooledByteBufAllocator.DEFAULT, 11L, entries);
+        Assert.assertArrayEquals(expected(11L, rawEntries), toBytes(packet));
+    }
+
+    @Test
+    public void testEmpty() {
+        ByteBuf packet = MessagesPacket.ofRawEntries(PooledByteBufAllocator.DEFAULT,
+            -1L,
+            Collections.<ByteString> emptyList());
+        Assert.assertArrayEquals(expected(-1L, Collections.<ByteString> emptyList()), toBytes(packet));
+    }
+
+    /**
+     * 包含小entry、跨chunk的entry以及超过chunk大小的entry
+     */
+    private static List<Entry> entries() {
+        List<Entry> entries = new ArrayList<Entry>();
+        int[] sizes = { 10, 100, 5000, 60 * 1024, 100, 200 * 1024, 3000, 10 };
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] value = new byte[sizes[i]];
+            for (int j = 0; j < value.length; j++) {
+                value[j] = (byte) (i + j);
+            }
+            entries.add(Entry.newBuilder()
+                .setHeader(Header.newBuilder().setLogfileName("mysql-bin.000001").setLogfileOffset(i))
+                .setEntryType(EntryType.ROWDATA)
+                .setStoreValue(ByteString.copyFrom(value))
+                .build());
+        }
+        return entries;
+    }
+
+    private static byte[] expected(long batchId, List<ByteString> rawEntries) {
+        byte[] body = Packet.newBuilder()
+            .setType(PacketType.MESSAGES)
+            .setBody(Messages.newBuilder().setBatchId(batchId).addAllMessages(rawEntries).build().toByteString())
+            .build()
+            .toByteArray();
+        byte[] bytes = new byte[NettyUtils.HEADER_LENGTH + body.length];
+        bytes[0] = (byte) (body.length >>> 24);
+        bytes[1] = (byte) (body.length >>> 16);
+        bytes[2] = (byte) (body.length >>> 8);
+        bytes[3] = (byte) body.length;
+        System.arraycopy(body, 0, bytes, NettyUtils.HEADER_LENGTH, body.length);
+        return bytes;
+    }
+
+    private static byte[] toBytes(ByteBuf packet) {
+        try {
+            byte[] bytes = new byte[packet.readableBytes()];
+            packet.readBytes(bytes);
+            return bytes;
+        } finally {
+            Assert.assertTrue(packet.release());
+        }
+    }
+}
@@ -20,7 +20,9 @@ import com.alibaba.otter.canal.sink.CanalEventDownStreamHandler;
 import com.alibaba.otter.canal.sink.CanalEventSink;
 import com.alibaba.otter.canal.sink.exception.CanalSinkException;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.file.FileMixedEventStore;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithDisruptor;
 import com.alibaba.otter.canal.store.model.Event;
 
 /**
@@ -56,6 +58,10 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
 
         if (eventStore instanceof MemoryEventStoreWithBuffer) {
             this.raw = ((MemoryEventStoreWithBuffer) eventStore).isRaw();
+        } else if (eventStore instanceof MemoryEventStoreWithDisruptor) {
+            this.raw = ((MemoryEventStoreWithDisruptor) eventStore).isRaw();
+        } else if (eventStore instanceof FileMixedEventStore) {
+            this.raw = ((FileMixedEventStore) eventStore).isRaw();
         }
 
         for (CanalEventDownStreamHandler handler : getHandlers()) {
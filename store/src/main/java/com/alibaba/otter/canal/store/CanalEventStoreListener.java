@@ -0,0 +1,12 @@
+package com.alibaba.otter.canal.store;
+
+/**
+ * store数据变化的监听
+ */
+public interface CanalEventStoreListener {
+
+    /**
+     * 有新的数据可以被get(put或者rollback之后)，在store的写入线程中回调，实现不能阻塞
+     */
+    void onAvailable();
+}
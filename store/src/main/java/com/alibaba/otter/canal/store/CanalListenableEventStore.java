@@ -0,0 +1,18 @@
+package com.alibaba.otter.canal.store;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+
+/**
+ * 支持数据可读通知的store，用于server端的异步get(long polling)，避免get请求阻塞调用线程
+ */
+public interface CanalListenableEventStore<T> extends CanalEventStore<T> {
+
+    /**
+     * 从start开始是否已经有足够batchSize的数据，和阻塞get的返回条件一致
+     */
+    boolean hasEnough(Position start, int batchSize) throws CanalStoreException;
+
+    void addListener(CanalEventStoreListener listener);
+
+    void removeListener(CanalEventStoreListener listener);
+}
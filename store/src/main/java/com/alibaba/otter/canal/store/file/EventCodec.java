@@ -0,0 +1,155 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * spill文件中{@linkplain Event}的编解码
+ *
+ * <pre>
+ * 1. Event的元数据(position/timestamp/gtid等)单独编码，读回时不需要解析entry
+ * 2. LogIdentity只记录在内存中的下标，spill文件只在当前进程中有效
+ * </pre>
+ */
+public class EventCodec {
+
+    private static final Charset    charset    = Charset.forName("UTF-8");
+    private static final byte       RAW        = 1;
+    private static final byte       ENTRY      = 2;
+    private final List<LogIdentity> identities = new ArrayList<LogIdentity>();
+
+    public byte[] encode(Event event) {
+        byte[] journalName = toBytes(event.getJournalName());
+        byte[] gtid = toBytes(event.getGtid());
+        byte flag;
+        byte[] payload;
+        if (event.getRawEntry() != null) {
+            flag = RAW;
+            payload = event.getRawEntry().toByteArray();
+        } else if (event.getEntry() != null) {
+            flag = ENTRY;
+            payload = event.getEntry().toByteArray();
+        } else {
+            throw new CanalStoreException("event has no entry : " + event);
+        }
+
+        int size = 1 + 4 + 4 + 4 + 8 + 8 + 8 + 8 + 4 + (4 + length(journalName)) + (4 + length(gtid))
+                   + (4 + payload.length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(flag);
+        buffer.putInt(indexOf(event.getLogIdentity()));
+        buffer.putInt(event.getEntryType() == null ? -1 : event.getEntryType().getNumber());
+        buffer.putInt(event.getEventType() == null ? -1 : event.getEventType().getNumber());
+        buffer.putLong(event.getExecuteTime());
+        buffer.putLong(event.getPosition());
+        buffer.putLong(event.getServerId());
+        buffer.putLong(event.getRawLength());
+        buffer.putInt(event.getRowsCount());
+        putBytes(buffer, journalName);
+        putBytes(buffer, gtid);
+        putBytes(buffer, payload);
+        return buffer.array();
+    }
+
+    /**
+     * 解码Event，withEntry=false时只解析元数据，用于ack等不需要entry的场景
+     */
+    public Event decode(ByteBuffer buffer, boolean withEntry) {
+        Event event = new Event();
+        byte flag = buffer.get();
+        int identity = buffer.getInt();
+        event.setLogIdentity(identity < 0 ? null : identities.get(identity));
+        int entryType = buffer.getInt();
+        event.setEntryType(entryType < 0 ? null : EntryType.valueOf(entryType));
+        int eventType = buffer.getInt();
+        event.setEventType(eventType < 0 ? null : EventType.valueOf(eventType));
+        event.setExecuteTime(buffer.getLong());
+        event.setPosition(buffer.getLong());
+        event.setServerId(buffer.getLong());
+        event.setRawLength(buffer.getLong());
+        event.setRowsCount(buffer.getInt());
+        event.setJournalName(toString(getBytes(buffer)));
+        event.setGtid(toString(getBytes(buffer)));
+
+        if (!withEntry) {
+            return event;
+        }
+
+        int length = buffer.getInt();
+        ByteBuffer payload = buffer.slice();
+        payload.limit(length);
+        if (flag == RAW) {
+            event.setRawEntry(ByteString.copyFrom(payload));
+        } else {
+            try {
+                event.setEntry(CanalEntry.Entry.parseFrom(ByteString.copyFrom(payload)));
+            } catch (InvalidProtocolBufferException e) {
+                throw new CanalStoreException(e);
+            }
+        }
+        return event;
+    }
+
+    public void clear() {
+        identities.clear();
+    }
+
+    private int indexOf(LogIdentity identity) {
+        if (identity == null) {
+            return -1;
+        }
+
+        // identity一般只有一个(主备切换时会有多个)，直接线性查找
+        for (int i = identities.size() - 1; i >= 0; i--) {
+            if (identities.get(i).equals(identity)) {
+                return i;
+            }
+        }
+
+        identities.add(identity);
+        return identities.size() - 1;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(charset);
+    }
+
+    private static String toString(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, charset);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
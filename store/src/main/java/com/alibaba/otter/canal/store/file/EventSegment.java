@@ -0,0 +1,168 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.store.CanalStoreException;
+
+/**
+ * 基于mmap的spill segment文件，只支持顺序追加写和按sequence随机读
+ *
+ * <pre>
+ * 文件格式：[int length][record] [int length][record] ...
+ * 1. 每个segment记录连续的一段sequence，firstSequence为segment中第一条记录的sequence
+ * 2. 每条记录的offset保存在内存中，segment只在本次进程中有效，重启后直接删除
+ * 3. 删除时主动unmap，不依赖gc释放mmap的虚拟内存和文件句柄，调用方需保证delete之后不再读取
+ * </pre>
+ */
+public class EventSegment {
+
+    private static final Logger    logger  = LoggerFactory.getLogger(EventSegment.class);
+    private final File             file;
+    private final long             firstSequence;
+    private final int              capacity;
+    private final FileChannel      channel;
+    private final MappedByteBuffer buffer;
+    private int[]                  offsets = new int[1024];
+    private int                    count   = 0;
+    private long                   bytes   = 0;
+
+    public EventSegment(File file, long firstSequence, int capacity){
+        this.file = file;
+        this.firstSequence = firstSequence;
+        this.capacity = capacity;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(capacity);
+            this.channel = raf.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            closeQuietly(raf);
+            throw new CanalStoreException("create spill segment " + file.getPath() + " failed", e);
+        }
+    }
+
+    /**
+     * 追加一条记录，空间不够时返回false
+     */
+    public boolean append(byte[] record) {
+        if (buffer.position() + 4 + record.length > capacity) {
+            return false;
+        }
+
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+
+        offsets[count++] = buffer.position();
+        buffer.putInt(record.length);
+        buffer.put(record);
+        bytes += record.length;
+        return true;
+    }
+
+    /**
+     * 读取指定sequence的记录，返回的ByteBuffer为mmap的视图，调用方需自行拷贝
+     */
+    public ByteBuffer read(long sequence) {
+        int index = (int) (sequence - firstSequence);
+        if (index < 0 || index >= count) {
+            throw new CanalStoreException("sequence " + sequence + " not in segment " + file.getName());
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(offsets[index]);
+        int length = view.getInt();
+        view.limit(view.position() + length);
+        return view.slice();
+    }
+
+    public boolean contains(long sequence) {
+        return sequence >= firstSequence && sequence <= getLastSequence();
+    }
+
+    public void delete() {
+        closeQuietly(channel);
+        unmap(buffer);
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public long getLastSequence() {
+        return firstSequence + count - 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 释放mmap，jdk9及以上使用Unsafe.invokeCleaner，jdk8使用DirectBuffer.cleaner()
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method invokeCleaner = null;
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // jdk8
+            }
+
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Throwable e) {
+            // 失败时退化为gc释放
+            logger.warn("unmap spill segment failed, fallback to gc", e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,869 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
+import com.alibaba.otter.canal.store.CanalListenableEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 内存+文件的混合store，内存中只保留最新的一段数据，超出部分spill到mmap的segment文件中
+ *
+ * <pre>
+ * 策略：
+ * 1. 所有数据按照put的顺序分配连续的sequence，(ackSequence, putSequence]为未ack的数据
+ * 2. 内存中保留[memSequence, putSequence]，内存不足时将最老的数据追加到segment文件，(ackSequence, memSequence)在文件中
+ * 3. get按照sequence顺序读取，先读文件再读内存，rollback之后可以从文件中重新读取
+ * 4. ack之后删除所有数据都已被ack的segment文件，已被ack的内存数据直接丢弃，不再写入文件
+ * 5. 只有当spill文件超过maxSpillSize时，put才会阻塞，避免慢消费拖住binlog的dump
+ * 6. segment文件只在当前进程中有效，启动时会清理掉残留的文件，重启后的数据依赖于cursor重新从binlog获取
+ * </pre>
+ */
+public class FileMixedEventStore extends AbstractCanalStoreScavenge implements CanalListenableEventStore<Event>, CanalStoreScavenge {
+
+    private static final Logger       logger          = LoggerFactory.getLogger(FileMixedEventStore.class);
+    private static final long         INIT_SEQUENCE   = -1;
+    private static final String       SEGMENT_SUFFIX  = ".seg";
+    private int                       bufferSize      = 16 * 1024;
+    private int                       bufferMemUnit   = 1024;                                      // memsize的单位，默认为1kb大小
+    private int                       indexMask;
+    private Event[]                   entries;
+
+    private File                      dataDir;
+    private File                      spillDir;
+    private int                       segmentSize     = 64 * 1024 * 1024;                          // 单个segment文件大小，默认64MB
+    private long                      maxSpillSize    = 4 * 1024 * 1024 * 1024L;                   // spill文件的总大小上限，默认4GB
+    private LinkedList<EventSegment>  segments        = new LinkedList<EventSegment>();
+    private EventCodec                codec           = new EventCodec();
+    private long                      spillSize       = 0;
+
+    // 记录下put/get/ack操作的三个下标
+    private AtomicLong                putSequence     = new AtomicLong(INIT_SEQUENCE);             // 代表当前put操作最后一次写操作发生的位置
+    private AtomicLong                getSequence     = new AtomicLong(INIT_SEQUENCE);             // 代表当前get操作读取的最后一条的位置
+    private AtomicLong                ackSequence     = new AtomicLong(INIT_SEQUENCE);             // 代表当前ack操作的最后一条的位置
+    private long                      memSequence     = INIT_SEQUENCE + 1;                         // 代表内存中保留的第一条的位置
+    private long                      memSize         = 0;                                         // 内存中保留数据的大小
+    private Event                     firstEvent;                                                  // 第一条put的数据，用于getFirstPosition
+    private Event                     ackEvent;                                                    // 最后一次ack的数据，用于getFirstPosition
+    private Event                     putEvent;                                                    // 最后一次put的数据，用于getLatestPosition
+
+    // 记录下put/get/ack操作的三个memsize大小
+    private AtomicLong                putMemSize      = new AtomicLong(0);
+    private AtomicLong                getMemSize      = new AtomicLong(0);
+    private AtomicLong                ackMemSize      = new AtomicLong(0);
+
+    // 记录下put/get/ack操作的三个execTime
+    private AtomicLong                putExecTime     = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                getExecTime     = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                ackExecTime     = new AtomicLong(System.currentTimeMillis());
+
+    // 记录下put/get/ack操作的三个table rows
+    private AtomicLong                putTableRows    = new AtomicLong(0);
+    private AtomicLong                getTableRows    = new AtomicLong(0);
+    private AtomicLong                ackTableRows    = new AtomicLong(0);
+
+    // 阻塞put/get操作控制信号
+    private ReentrantLock             lock            = new ReentrantLock();
+    private Condition                 notFull         = lock.newCondition();
+    private Condition                 notEmpty        = lock.newCondition();
+
+    private BatchMode                 batchMode       = BatchMode.ITEMSIZE;
+    private boolean                   ddlIsolation    = false;
+    private boolean                   raw             = true;                                      // 针对entry是否开启raw模式
+    // 数据可读的监听，用于server端的异步get
+    private List<CanalEventStoreListener> listeners = new CopyOnWriteArrayList<CanalEventStoreListener>();
+
+    public FileMixedEventStore(){
+
+    }
+
+    public FileMixedEventStore(BatchMode batchMode){
+        this.batchMode = batchMode;
+    }
+
+    public void start() throws CanalStoreException {
+        super.start();
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+        if (dataDir == null) {
+            throw new IllegalArgumentException("dataDir must be set");
+        }
+
+        indexMask = bufferSize - 1;
+        entries = new Event[bufferSize];
+        spillDir = StringUtils.isEmpty(destination) ? dataDir : new File(dataDir, destination);
+        try {
+            FileUtils.forceMkdir(spillDir);
+        } catch (IOException e) {
+            throw new CanalStoreException(e);
+        }
+
+        if (!spillDir.canRead() || !spillDir.canWrite()) {
+            throw new CanalStoreException("dir[" + spillDir.getPath() + "] can not read/write");
+        }
+
+        // 清理上一次进程残留的segment
+        File[] files = spillDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SEGMENT_SUFFIX)) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    public void stop() throws CanalStoreException {
+        super.stop();
+
+        cleanAll();
+    }
+
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkFreeSlotAt(data.size())) { // 检查是否有空位
+                    notFull.await(); // wait until not full
+                }
+            } catch (InterruptedException ie) {
+                notFull.signal(); // propagate to non-interrupted thread
+                throw ie;
+            }
+            doPut(data);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (checkFreeSlotAt(data.size())) {
+                    doPut(data);
+                    return true;
+                }
+                if (nanos <= 0) {
+                    return false;
+                }
+
+                try {
+                    nanos = notFull.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notFull.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!checkFreeSlotAt(data.size())) {
+                return false;
+            } else {
+                doPut(data);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Arrays.asList(data));
+    }
+
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Arrays.asList(data), timeout, unit);
+    }
+
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Arrays.asList(data));
+    }
+
+    /**
+     * 执行具体的put操作
+     */
+    private void doPut(List<Event> data) {
+        long current = putSequence.get();
+        long size = 0;
+        for (Event event : data) {
+            long eventSize = calculateSize(event);
+            // 腾出内存空间，最老的数据spill到文件，按循环中的sequence计算占用避免覆盖未spill的数据
+            while (checkMemFull(current, eventSize)) {
+                spillOldest();
+            }
+
+            long next = ++current;
+            entries[getIndex(next)] = event;
+            memSize += eventSize;
+            size += eventSize;
+            if (next == 0) {
+                firstEvent = event;
+            }
+        }
+
+        putEvent = data.get(data.size() - 1);
+        putSequence.set(current);
+
+        // 记录一下gets memsize信息，方便快速检索
+        if (batchMode.isMemSize()) {
+            putMemSize.getAndAdd(size);
+        }
+        profiling(data, OP.PUT);
+        // tell other threads that store is not empty
+        notEmpty.signal();
+        notifyListeners();
+    }
+
+    /**
+     * 将内存中最老的一条数据移出，未ack的数据写入segment文件
+     */
+    private void spillOldest() {
+        long sequence = memSequence;
+        int index = getIndex(sequence);
+        Event event = entries[index];
+        entries[index] = null;
+        memSize -= calculateSize(event);
+        memSequence++;
+
+        if (sequence <= ackSequence.get()) {
+            // 已经ack的数据直接丢弃
+            return;
+        }
+
+        byte[] record = codec.encode(event);
+        EventSegment segment = segments.peekLast();
+        if (segment == null || segment.getLastSequence() != sequence - 1 || !segment.append(record)) {
+            int capacity = Math.max(segmentSize, record.length + 4);
+            segment = new EventSegment(new File(spillDir, String.format("%020d", sequence) + SEGMENT_SUFFIX),
+                sequence,
+                capacity);
+            segments.addLast(segment);
+            spillSize += capacity;
+            if (!segment.append(record)) {
+                throw new CanalStoreException("append record to new segment " + segment.getFile().getName()
+                                              + " failed");
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("create spill segment {} , spillSize : {}", segment.getFile().getPath(), spillSize);
+            }
+        }
+    }
+
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkUnGetSlotAt((LogPosition) start, batchSize))
+                    notEmpty.await();
+            } catch (InterruptedException ie) {
+                notEmpty.signal(); // propagate to non-interrupted thread
+                throw ie;
+            }
+
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException,
+                                                                                        CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                    return doGet(start, batchSize);
+                }
+
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(start, batchSize);
+                }
+
+                try {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notEmpty.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+
+        long current = getSequence.get();
+        long maxAbleSequence = putSequence.get();
+        long next = current;
+        long end = current;
+        // 如果startPosition为null，说明是第一次，默认+1处理
+        if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            next = next + 1;
+        }
+
+        if (current >= maxAbleSequence) {
+            return new Events<Event>();
+        }
+
+        Events<Event> result = new Events<Event>();
+        List<Event> entrys = result.getEvents();
+        long memsize = 0;
+        if (batchMode.isItemSize()) {
+            end = (next + batchSize - 1) < maxAbleSequence ? (next + batchSize - 1) : maxAbleSequence;
+            // 提取数据并返回
+            for (; next <= end; next++) {
+                Event event = readEvent(next, true);
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                }
+            }
+        } else {
+            long maxMemSize = batchSize * bufferMemUnit;
+            for (; memsize <= maxMemSize && next <= maxAbleSequence; next++) {
+                // 永远保证可以取出第一条的记录，避免死锁
+                Event event = readEvent(next, true);
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                    memsize += calculateSize(event);
+                    end = next;// 记录end位点
+                }
+            }
+
+        }
+
+        PositionRange<LogPosition> range = new PositionRange<LogPosition>();
+        result.setPositionRange(range);
+
+        range.setStart(CanalEventUtils.createPosition(entrys.get(0)));
+        range.setEnd(CanalEventUtils.createPosition(entrys.get(result.getEvents().size() - 1)));
+        range.setEndSeq(end);
+        // 记录一下是否存在可以被ack的点
+
+        for (int i = entrys.size() - 1; i >= 0; i--) {
+            Event event = entrys.get(i);
+            // GTID模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtid之后的next,如果在事务头就记录了会丢这最后一个事务
+            if ((CanalEntry.EntryType.TRANSACTIONBEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtid()))
+                || CanalEntry.EntryType.TRANSACTIONEND == event.getEntryType() || isDdl(event.getEventType())) {
+                // 将事务头/尾设置可被为ack的点
+                range.setAck(CanalEventUtils.createPosition(event));
+                break;
+            }
+        }
+
+        if (getSequence.compareAndSet(current, end)) {
+            getMemSize.addAndGet(memsize);
+            profiling(result.getEvents(), OP.GET);
+            return result;
+        } else {
+            return new Events<Event>();
+        }
+    }
+
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long firstSeqeuence = ackSequence.get();
+            if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
+                // 没有ack过数据
+                return CanalEventUtils.createPosition(firstEvent, false);
+            } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence <= putSequence.get()) {
+                // 最后一次ack的位置数据，需要移动到下一条,included = false
+                return CanalEventUtils.createPosition(ackEvent, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long latestSequence = putSequence.get();
+            if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+                // 最后一次写入的数据，最后一条未消费的数据
+                return CanalEventUtils.createPosition(putEvent, true);
+            } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
+                // ack已经追上了put操作，included = false
+                return CanalEventUtils.createPosition(putEvent, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long sequence = ackSequence.get();
+            long maxSequence = getSequence.get();
+
+            boolean hasMatch = false;
+            long memsize = 0;
+            // ack没有list，但有已存在的foreach，还是节省一下list的开销
+            long localExecTime = 0L;
+            int deltaRows = 0;
+            if (seqId > 0) {
+                maxSequence = seqId;
+            }
+            for (long next = sequence + 1; next <= maxSequence; next++) {
+                // ack只需要元数据，文件中的数据不解析entry
+                Event event = readEvent(next, false);
+                if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                    localExecTime = event.getExecuteTime();
+                }
+                deltaRows += event.getRowsCount();
+                memsize += calculateSize(event);
+                if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                    // 找到对应的position，更新ack seq
+                    hasMatch = true;
+
+                    if (batchMode.isMemSize()) {
+                        ackMemSize.addAndGet(memsize);
+                    }
+
+                    ackSequence.set(next);
+                    ackEvent = event;
+                    releaseUntil(next);
+                    notFull.signal();
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
+                    }
+                    return;
+                }
+            }
+            if (!hasMatch) {// 找不到对应需要ack的position
+                throw new CanalStoreException("no match ack position" + position.toString());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放sequence及之前的内存和segment文件
+     */
+    private void releaseUntil(long sequence) {
+        Iterator<EventSegment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            EventSegment segment = iterator.next();
+            if (segment.getLastSequence() > sequence) {
+                break;
+            }
+
+            iterator.remove();
+            segment.delete();
+            spillSize -= segment.getCapacity();
+        }
+
+        for (long next = memSequence; next <= sequence; next++) {
+            int index = getIndex(next);
+            memSize -= calculateSize(entries[index]);
+            entries[index] = null;// 设置为null
+        }
+        if (memSequence <= sequence) {
+            memSequence = sequence + 1;
+        }
+    }
+
+    public void rollback() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            getSequence.set(ackSequence.get());
+            getMemSize.set(ackMemSize.get());
+            notifyListeners();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            putSequence.set(INIT_SEQUENCE);
+            getSequence.set(INIT_SEQUENCE);
+            ackSequence.set(INIT_SEQUENCE);
+            memSequence = INIT_SEQUENCE + 1;
+            memSize = 0;
+
+            putMemSize.set(0);
+            getMemSize.set(0);
+            ackMemSize.set(0);
+            entries = null;
+            firstEvent = null;
+            ackEvent = null;
+            putEvent = null;
+
+            for (EventSegment segment : segments) {
+                segment.delete();
+            }
+            segments.clear();
+            spillSize = 0;
+            codec.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // =================== helper method =================
+
+    /**
+     * 读取指定sequence的数据，在内存中直接返回，否则从segment文件中读取
+     */
+    private Event readEvent(long sequence, boolean withEntry) {
+        if (sequence >= memSequence) {
+            return entries[getIndex(sequence)];
+        }
+
+        // 一般读取的都是最老的几个segment，顺序查找即可
+        for (EventSegment segment : segments) {
+            if (segment.contains(sequence)) {
+                return codec.decode(segment.read(sequence), withEntry);
+            }
+        }
+
+        throw new CanalStoreException("sequence " + sequence + " is not found in spill segments");
+    }
+
+    /**
+     * 查询是否有空位，只有spill文件超过上限时才认为已满
+     */
+    private boolean checkFreeSlotAt(int size) {
+        if (putSequence.get() - memSequence + 1 + size <= bufferSize && !checkMemFull(putSequence.get(), 0)) {
+            // 内存中还有空间，不需要spill
+            return true;
+        }
+
+        return spillSize < maxSpillSize;
+    }
+
+    /**
+     * 内存中已经写到sequence时，是否已经无法再放下一条指定大小的数据
+     */
+    private boolean checkMemFull(long sequence, long eventSize) {
+        long count = sequence - memSequence + 1;
+        if (count <= 0) {
+            return false; // 至少保证一条数据可以放在内存中
+        }
+        if (count >= bufferSize) {
+            return true;
+        }
+        return batchMode.isMemSize() && memSize + eventSize > bufferSize * bufferMemUnit;
+    }
+
+    public boolean hasEnough(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return checkUnGetSlotAt((LogPosition) start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addListener(CanalEventStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CanalEventStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners() {
+        for (CanalEventStoreListener listener : listeners) {
+            listener.onAvailable();
+        }
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+                next = next + 1;// 少一条数据
+            }
+
+            if (current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence) {
+                return true;
+            } else {
+                return false;
+            }
+        } else {
+            // 处理内存大小判断
+            long currentSize = getMemSize.get();
+            long maxAbleSize = putMemSize.get();
+
+            if (maxAbleSize - currentSize >= batchSize * bufferMemUnit) {
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private long calculateSize(Event event) {
+        // 直接返回binlog中的事件大小
+        return event.getRawLength();
+    }
+
+    private int getIndex(long sequcnce) {
+        return (int) sequcnce & indexMask;
+    }
+
+    private boolean isDdl(EventType type) {
+        return type == EventType.ALTER || type == EventType.CREATE || type == EventType.ERASE
+               || type == EventType.RENAME || type == EventType.TRUNCATE || type == EventType.CINDEX
+               || type == EventType.DINDEX;
+    }
+
+    private void profiling(List<Event> events, OP op) {
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (events != null && !events.isEmpty()) {
+            for (Event e : events) {
+                if (localExecTime == 0 && e.getExecuteTime() > 0) {
+                    localExecTime = e.getExecuteTime();
+                }
+                deltaRows += e.getRowsCount();
+            }
+        }
+        switch (op) {
+            case PUT:
+                putTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    putExecTime.lazySet(localExecTime);
+                }
+                break;
+            case GET:
+                getTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    getExecTime.lazySet(localExecTime);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private enum OP {
+        PUT, GET
+    }
+
+    // ================ setter / getter ==================
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setBufferMemUnit(int bufferMemUnit) {
+        this.bufferMemUnit = bufferMemUnit;
+    }
+
+    public void setBatchMode(BatchMode batchMode) {
+        this.batchMode = batchMode;
+    }
+
+    public void setDdlIsolation(boolean ddlIsolation) {
+        this.ddlIsolation = ddlIsolation;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = new File(dataDir);
+    }
+
+    public void setDataDirByFile(File dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public void setMaxSpillSize(long maxSpillSize) {
+        this.maxSpillSize = maxSpillSize;
+    }
+
+    public int getSegmentCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AtomicLong getPutSequence() {
+        return putSequence;
+    }
+
+    public AtomicLong getAckSequence() {
+        return ackSequence;
+    }
+
+    public AtomicLong getPutMemSize() {
+        return putMemSize;
+    }
+
+    public AtomicLong getAckMemSize() {
+        return ackMemSize;
+    }
+
+    public BatchMode getBatchMode() {
+        return batchMode;
+    }
+
+    public AtomicLong getPutExecTime() {
+        return putExecTime;
+    }
+
+    public AtomicLong getGetExecTime() {
+        return getExecTime;
+    }
+
+    public AtomicLong getAckExecTime() {
+        return ackExecTime;
+    }
+
+    public AtomicLong getPutTableRows() {
+        return putTableRows;
+    }
+
+    public AtomicLong getGetTableRows() {
+        return getTableRows;
+    }
+
+    public AtomicLong getAckTableRows() {
+        return ackTableRows;
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.alibaba.otter.canal.store.model.WaitMode;
+
+/**
+ * {@linkplain MemoryEventStoreWithDisruptor}在put/get条件无法满足时的等待策略，参考disruptor的WaitStrategy实现
+ *
+ * <pre>
+ * 1. 等待方不持有任何锁，只在条件不满足时才进入等待
+ * 2. 只有BLOCKING模式在唤醒时才会涉及到锁，并且只在存在等待者时才加锁
+ * </pre>
+ */
+public abstract class EventStoreWaitStrategy {
+
+    /**
+     * 等待的条件
+     */
+    public interface Barrier {
+
+        boolean isReady();
+    }
+
+    public static EventStoreWaitStrategy create(WaitMode mode) {
+        if (mode.isBlocking()) {
+            return new BlockingWaitStrategy();
+        } else if (mode.isSleeping()) {
+            return new SleepingWaitStrategy();
+        } else if (mode.isYielding()) {
+            return new YieldingWaitStrategy();
+        } else if (mode.isBusySpin()) {
+            return new BusySpinWaitStrategy();
+        } else {
+            throw new IllegalArgumentException("unsupport WaitMode for " + mode);
+        }
+    }
+
+    /**
+     * 等待barrier条件满足或者超时
+     *
+     * @param nanos 最大等待时间，Long.MAX_VALUE代表一直等待
+     * @return 剩余的等待时间，<=0代表已经超时
+     */
+    public abstract long waitFor(Barrier barrier, long nanos) throws InterruptedException;
+
+    /**
+     * 条件发生变化后，唤醒阻塞中的等待者
+     */
+    public void signalAllWhenBlocking() {
+    }
+
+    private static long deadline(long nanos) {
+        return nanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + nanos;
+    }
+
+    private static long remaining(long deadline) {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    /**
+     * 基于wait/notify的阻塞等待，通过waiters计数避免无等待者时的加锁
+     */
+    static class BlockingWaitStrategy extends EventStoreWaitStrategy {
+
+        private final Object        mutex   = new Object();
+        private final AtomicInteger waiters = new AtomicInteger(0);
+
+        public long waitFor(Barrier barrier, long nanos) throws InterruptedException {
+            if (barrier.isReady()) {
+                return nanos;
+            }
+
+            long deadline = deadline(nanos);
+            synchronized (mutex) {
+                // 先登记等待者再检查条件，和signal方的先更新条件再检查等待者，保证不会丢失唤醒
+                waiters.incrementAndGet();
+                try {
+                    while (!barrier.isReady()) {
+                        nanos = remaining(deadline);
+                        if (nanos <= 0) {
+                            return nanos;
+                        }
+
+                        if (nanos == Long.MAX_VALUE) {
+                            mutex.wait();
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(mutex, nanos);
+                        }
+                    }
+                } finally {
+                    waiters.decrementAndGet();
+                }
+            }
+
+            return remaining(deadline);
+        }
+
+        public void signalAllWhenBlocking() {
+            if (waiters.get() > 0) {
+                synchronized (mutex) {
+                    mutex.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 自旋 -> yield -> parkNanos
+     */
+    static class SleepingWaitStrategy extends EventStoreWaitStrategy {
+
+        private static final int  SPIN_TRIES  = 100;
+        private static final int  YIELD_TRIES = 100;
+        private static final long SLEEP_NANOS = 100 * 1000L;
+
+        public long waitFor(Barrier barrier, long nanos) throws InterruptedException {
+            long deadline = deadline(nanos);
+            int counter = SPIN_TRIES + YIELD_TRIES;
+            while (!barrier.isReady()) {
+                nanos = remaining(deadline);
+                if (nanos <= 0) {
+                    return nanos;
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                if (counter > YIELD_TRIES) {
+                    --counter;
+                } else if (counter > 0) {
+                    --counter;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(Math.min(SLEEP_NANOS, nanos));
+                }
+            }
+
+            return remaining(deadline);
+        }
+    }
+
+    /**
+     * 自旋 -> yield
+     */
+    static class YieldingWaitStrategy extends EventStoreWaitStrategy {
+
+        private static final int SPIN_TRIES = 100;
+
+        public long waitFor(Barrier barrier, long nanos) throws InterruptedException {
+            long deadline = deadline(nanos);
+            int counter = SPIN_TRIES;
+            while (!barrier.isReady()) {
+                nanos = remaining(deadline);
+                if (nanos <= 0) {
+                    return nanos;
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                if (counter > 0) {
+                    --counter;
+                } else {
+                    Thread.yield();
+                }
+            }
+
+            return remaining(deadline);
+        }
+    }
+
+    /**
+     * 纯自旋
+     */
+    static class BusySpinWaitStrategy extends EventStoreWaitStrategy {
+
+        public long waitFor(Barrier barrier, long nanos) throws InterruptedException {
+            long deadline = deadline(nanos);
+            while (!barrier.isReady()) {
+                nanos = remaining(deadline);
+                if (nanos <= 0) {
+                    return nanos;
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+
+            return remaining(deadline);
+        }
+    }
+}
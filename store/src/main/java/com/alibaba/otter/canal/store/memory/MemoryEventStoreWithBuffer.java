@@ -2,6 +2,7 @@ package com.alibaba.otter.canal.store.memory;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -15,7 +16,8 @@ import com.alibaba.otter.canal.protocol.position.LogPosition;
 import com.alibaba.otter.canal.protocol.position.Position;
 import com.alibaba.otter.canal.protocol.position.PositionRange;
 import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
-import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
+import com.alibaba.otter.canal.store.CanalListenableEventStore;
 import com.alibaba.otter.canal.store.CanalStoreException;
 import com.alibaba.otter.canal.store.CanalStoreScavenge;
 import com.alibaba.otter.canal.store.helper.CanalEventUtils;
@@ -35,7 +37,7 @@ import com.alibaba.otter.canal.store.model.Events;
  * @author jianghang 2012-6-20 上午09:46:31
  * @version 1.0.0
  */
-public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge {
+public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalListenableEventStore<Event>, CanalStoreScavenge {
 
     private static final long INIT_SEQUENCE = -1;
     private int               bufferSize    = 16 * 1024;
@@ -71,6 +73,8 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private BatchMode         batchMode     = BatchMode.ITEMSIZE;                        // 默认为内存大小模式
     private boolean           ddlIsolation  = false;
     private boolean           raw           = true;                                      // 针对entry是否开启raw模式
+    // 数据可读的监听，用于server端的异步get
+    private List<CanalEventStoreListener> listeners = new CopyOnWriteArrayList<CanalEventStoreListener>();
 
     public MemoryEventStoreWithBuffer(){
 
@@ -208,6 +212,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         profiling(data, OP.PUT);
         // tell other threads that store is not empty
         notEmpty.signal();
+        notifyListeners();
     }
 
     public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
@@ -487,6 +492,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         try {
             getSequence.set(ackSequence.get());
             getMemSize.set(ackMemSize.get());
+            notifyListeners();
         } finally {
             lock.unlock();
         }
@@ -543,6 +549,30 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
+    public boolean hasEnough(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return checkUnGetSlotAt((LogPosition) start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addListener(CanalEventStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CanalEventStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners() {
+        for (CanalEventStoreListener listener : listeners) {
+            listener.onAvailable();
+        }
+    }
+
     /**
      * 检查是否存在需要get的数据,并且数量>=batchSize
      */
@@ -0,0 +1,680 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
+import com.alibaba.otter.canal.store.CanalListenableEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.EventStoreWaitStrategy.Barrier;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+import com.alibaba.otter.canal.store.model.WaitMode;
+import com.lmax.disruptor.Sequence;
+
+/**
+ * 基于disruptor风格的无锁memory store，语义和{@linkplain MemoryEventStoreWithBuffer}保持一致
+ *
+ * <pre>
+ * 和MemoryEventStoreWithBuffer的区别：
+ * 1. put/get/ack三个下标使用disruptor的Sequence(做了cache line padding)，避免伪共享
+ * 2. put操作通过claimSequence进行CAS占位，写完数据后按顺序发布putSequence，支持多个生产者
+ * 3. get/ack操作通过CAS推进getSequence/ackSequence，CAS失败的行为和原有实现一致
+ * 4. ack成功的线程释放对应slot的内存后再按顺序推进freeSequence，put以freeSequence判断是否有空位
+ * 5. put/get条件无法满足时，通过{@linkplain EventStoreWaitStrategy}进行等待，可通过waitMode配置
+ * </pre>
+ */
+public class MemoryEventStoreWithDisruptor extends AbstractCanalStoreScavenge implements CanalListenableEventStore<Event>, CanalStoreScavenge {
+
+    private static final long      INIT_SEQUENCE = -1;
+    private int                    bufferSize    = 16 * 1024;
+    private int                    bufferMemUnit = 1024;                        // memsize的单位，默认为1kb大小
+    private int                    indexMask;
+    private Event[]                entries;
+
+    // 记录下claim/put/get/ack操作的四个下标
+    private final Sequence         claimSequence = new Sequence(INIT_SEQUENCE); // 代表当前put操作已经占位的最后一个位置
+    private final Sequence         putSequence   = new Sequence(INIT_SEQUENCE); // 代表当前put操作最后一次发布的位置
+    private final Sequence         getSequence   = new Sequence(INIT_SEQUENCE); // 代表当前get操作读取的最后一条的位置
+    private final Sequence         ackSequence   = new Sequence(INIT_SEQUENCE); // 代表当前ack操作的最后一条的位置
+    private final Sequence         freeSequence  = new Sequence(INIT_SEQUENCE); // 代表ack之后已经释放的最后一条的位置，put只能复用这之前的slot
+
+    // 记录下put/get/ack操作的三个memsize大小
+    private AtomicLong             putMemSize    = new AtomicLong(0);
+    private AtomicLong             getMemSize    = new AtomicLong(0);
+    private AtomicLong             ackMemSize    = new AtomicLong(0);
+
+    // 记录下put/get/ack操作的三个execTime
+    private AtomicLong             putExecTime   = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong             getExecTime   = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong             ackExecTime   = new AtomicLong(System.currentTimeMillis());
+
+    // 记录下put/get/ack操作的三个table rows
+    private AtomicLong             putTableRows  = new AtomicLong(0);
+    private AtomicLong             getTableRows  = new AtomicLong(0);
+    private AtomicLong             ackTableRows  = new AtomicLong(0);
+
+    // 阻塞put/get操作的等待策略
+    private WaitMode               waitMode      = WaitMode.BLOCKING;
+    private EventStoreWaitStrategy notFull;
+    private EventStoreWaitStrategy notEmpty;
+
+    private BatchMode              batchMode     = BatchMode.ITEMSIZE;
+    private boolean                ddlIsolation  = false;
+    private boolean                raw           = true;                        // 针对entry是否开启raw模式
+    // 数据可读的监听，用于server端的异步get
+    private List<CanalEventStoreListener> listeners = new CopyOnWriteArrayList<CanalEventStoreListener>();
+
+    public MemoryEventStoreWithDisruptor(){
+
+    }
+
+    public MemoryEventStoreWithDisruptor(BatchMode batchMode){
+        this.batchMode = batchMode;
+    }
+
+    public void start() throws CanalStoreException {
+        super.start();
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+
+        indexMask = bufferSize - 1;
+        entries = new Event[bufferSize];
+        notFull = EventStoreWaitStrategy.create(waitMode);
+        notEmpty = EventStoreWaitStrategy.create(waitMode);
+    }
+
+    public void stop() throws CanalStoreException {
+        super.stop();
+
+        cleanAll();
+    }
+
+    public void put(final List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+
+        while (!tryPut(data)) {
+            notFull.waitFor(new Barrier() {
+
+                public boolean isReady() {
+                    return checkFreeSlotAt(claimSequence.get() + data.size());
+                }
+            }, Long.MAX_VALUE);
+        }
+    }
+
+    public boolean put(final List<Event> data, long timeout, TimeUnit unit) throws InterruptedException,
+                                                                           CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        for (;;) {
+            if (tryPut(data)) {
+                return true;
+            }
+            if (nanos <= 0) {
+                return false;
+            }
+
+            nanos = notFull.waitFor(new Barrier() {
+
+                public boolean isReady() {
+                    return checkFreeSlotAt(claimSequence.get() + data.size());
+                }
+            }, nanos);
+        }
+    }
+
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        for (;;) {
+            long current = claimSequence.get();
+            long end = current + data.size();
+            if (!checkFreeSlotAt(end)) {
+                return false;
+            }
+
+            if (claimSequence.compareAndSet(current, end)) {
+                doPut(data, current, end);
+                return true;
+            }
+        }
+    }
+
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Arrays.asList(data));
+    }
+
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Arrays.asList(data), timeout, unit);
+    }
+
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Arrays.asList(data));
+    }
+
+    /**
+     * 执行具体的put操作，(current, end]已经通过claimSequence占位成功
+     */
+    private void doPut(List<Event> data, long current, long end) {
+        // 先写数据，再更新对应的cursor
+        for (long next = current + 1; next <= end; next++) {
+            entries[getIndex(next)] = data.get((int) (next - current - 1));
+        }
+
+        // 多个生产者时，需要等待前一个占位的生产者发布完成，保证putSequence连续
+        while (putSequence.get() != current) {
+            Thread.yield();
+        }
+
+        // 记录一下gets memsize信息，方便快速检索
+        if (batchMode.isMemSize()) {
+            long size = 0;
+            for (Event event : data) {
+                size += calculateSize(event);
+            }
+
+            putMemSize.getAndAdd(size);
+        }
+
+        putSequence.setVolatile(end);
+        profiling(data, OP.PUT);
+        // tell other threads that store is not empty
+        notEmpty.signalAllWhenBlocking();
+        notifyListeners();
+    }
+
+    public Events<Event> get(final Position start, final int batchSize) throws InterruptedException,
+                                                                       CanalStoreException {
+        for (;;) {
+            notEmpty.waitFor(new Barrier() {
+
+                public boolean isReady() {
+                    return checkUnGetSlotAt((LogPosition) start, batchSize);
+                }
+            }, Long.MAX_VALUE);
+
+            Events<Event> result = doGet(start, batchSize);
+            if (!result.getEvents().isEmpty()) {
+                return result;
+            }
+        }
+    }
+
+    public Events<Event> get(final Position start, final int batchSize, long timeout, TimeUnit unit)
+                                                                                                    throws InterruptedException,
+                                                                                                    CanalStoreException {
+        notEmpty.waitFor(new Barrier() {
+
+            public boolean isReady() {
+                return checkUnGetSlotAt((LogPosition) start, batchSize);
+            }
+        }, unit.toNanos(timeout));
+
+        // 如果时间到了，有多少取多少
+        return doGet(start, batchSize);
+    }
+
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        return doGet(start, batchSize);
+    }
+
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+
+        long current = getSequence.get();
+        long maxAbleSequence = putSequence.get();
+        long next = current;
+        long end = current;
+        // 如果startPosition为null，说明是第一次，默认+1处理
+        if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            next = next + 1;
+        }
+
+        if (current >= maxAbleSequence) {
+            return new Events<Event>();
+        }
+
+        Events<Event> result = new Events<Event>();
+        List<Event> entrys = result.getEvents();
+        long memsize = 0;
+        if (batchMode.isItemSize()) {
+            end = (next + batchSize - 1) < maxAbleSequence ? (next + batchSize - 1) : maxAbleSequence;
+            // 提取数据并返回
+            for (; next <= end; next++) {
+                Event event = entries[getIndex(next)];
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                }
+            }
+        } else {
+            long maxMemSize = batchSize * bufferMemUnit;
+            for (; memsize <= maxMemSize && next <= maxAbleSequence; next++) {
+                // 永远保证可以取出第一条的记录，避免死锁
+                Event event = entries[getIndex(next)];
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                    memsize += calculateSize(event);
+                    end = next;// 记录end位点
+                }
+            }
+
+        }
+
+        if (entrys.isEmpty()) {
+            return result;
+        }
+
+        PositionRange<LogPosition> range = new PositionRange<LogPosition>();
+        result.setPositionRange(range);
+
+        range.setStart(CanalEventUtils.createPosition(entrys.get(0)));
+        range.setEnd(CanalEventUtils.createPosition(entrys.get(result.getEvents().size() - 1)));
+        range.setEndSeq(end);
+        // 记录一下是否存在可以被ack的点
+
+        for (int i = entrys.size() - 1; i >= 0; i--) {
+            Event event = entrys.get(i);
+            // GTID模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtid之后的next,如果在事务头就记录了会丢这最后一个事务
+            if ((CanalEntry.EntryType.TRANSACTIONBEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtid()))
+                || CanalEntry.EntryType.TRANSACTIONEND == event.getEntryType() || isDdl(event.getEventType())) {
+                // 将事务头/尾设置可被为ack的点
+                range.setAck(CanalEventUtils.createPosition(event));
+                break;
+            }
+        }
+
+        if (getSequence.compareAndSet(current, end)) {
+            getMemSize.addAndGet(memsize);
+            notFull.signalAllWhenBlocking();
+            profiling(result.getEvents(), OP.GET);
+            return result;
+        } else {
+            return new Events<Event>();
+        }
+    }
+
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        long firstSeqeuence = ackSequence.get();
+        long latestSequence = putSequence.get();
+        if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < latestSequence) {
+            // 没有ack过数据
+            Event event = entries[getIndex(firstSeqeuence + 1)]; // 最后一次ack为-1，需要移动到下一条,included
+                                                                 // = false
+            return CanalEventUtils.createPosition(event, false);
+        } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence < latestSequence) {
+            // ack未追上put操作
+            Event event = entries[getIndex(firstSeqeuence)]; // 最后一次ack的位置数据,需要移动到下一条,included
+            // = false
+            return CanalEventUtils.createPosition(event, false);
+        } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence == latestSequence) {
+            // 已经追上，store中没有数据
+            Event event = entries[getIndex(firstSeqeuence)]; // 最后一次ack的位置数据，和last为同一条，included
+                                                             // = false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        long latestSequence = putSequence.get();
+        if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+            Event event = entries[getIndex(latestSequence)]; // 最后一次写入的数据，最后一条未消费的数据
+            return CanalEventUtils.createPosition(event, true);
+        } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
+            // ack已经追上了put操作
+            Event event = entries[getIndex(latestSequence)]; // 最后一次写入的数据，included
+                                                             // =
+                                                             // false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        long sequence = ackSequence.get();
+        long maxSequence = getSequence.get();
+
+        boolean hasMatch = false;
+        long memsize = 0;
+        // ack没有list，但有已存在的foreach，还是节省一下list的开销
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (seqId > 0) {
+            maxSequence = seqId;
+        }
+        for (long next = sequence + 1; next <= maxSequence; next++) {
+            Event event = entries[getIndex(next)];
+            if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                localExecTime = event.getExecuteTime();
+            }
+            deltaRows += event.getRowsCount();
+            memsize += calculateSize(event);
+            if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                // 找到对应的position，更新ack seq
+                hasMatch = true;
+
+                if (ackSequence.compareAndSet(sequence, next)) {// 避免并发ack
+                    // 只有CAS成功的线程释放内存，freeSequence推进之前对应的slot不会被put覆盖
+                    if (batchMode.isMemSize()) {
+                        for (long index = sequence + 1; index < next; index++) {
+                            entries[getIndex(index)] = null;// 设置为null
+                        }
+
+                        // 考虑getFirstPosition/getLastPosition会获取最后一次ack的position信息
+                        // ack清理的时候只处理entry=null，释放内存
+                        Event lastEvent = entries[getIndex(next)];
+                        lastEvent.setEntry(null);
+                        lastEvent.setRawEntry(null);
+                    }
+
+                    // 多个ack并发时，需要等待前一个ack释放完成，保证freeSequence连续
+                    while (freeSequence.get() != sequence) {
+                        Thread.yield();
+                    }
+                    freeSequence.setVolatile(next);
+                    if (batchMode.isMemSize()) {
+                        ackMemSize.addAndGet(memsize);
+                    }
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
+                    }
+                    notFull.signalAllWhenBlocking();
+                    return;
+                }
+            }
+        }
+        if (!hasMatch) {// 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        }
+    }
+
+    public void rollback() throws CanalStoreException {
+        getSequence.setVolatile(ackSequence.get());
+        getMemSize.set(ackMemSize.get());
+        notFull.signalAllWhenBlocking();
+        notifyListeners();
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        claimSequence.set(INIT_SEQUENCE);
+        putSequence.set(INIT_SEQUENCE);
+        getSequence.set(INIT_SEQUENCE);
+        ackSequence.set(INIT_SEQUENCE);
+        freeSequence.setVolatile(INIT_SEQUENCE);
+
+        putMemSize.set(0);
+        getMemSize.set(0);
+        ackMemSize.set(0);
+        entries = null;
+    }
+
+    // =================== helper method =================
+
+    private long getMinimumGetOrAck() {
+        long get = getSequence.get();
+        long free = freeSequence.get();
+        return free <= get ? free : get;
+    }
+
+    /**
+     * 查询是否有空位
+     */
+    private boolean checkFreeSlotAt(final long sequence) {
+        final long wrapPoint = sequence - bufferSize;
+        final long minPoint = getMinimumGetOrAck();
+        if (wrapPoint > minPoint) { // 刚好追上一轮
+            return false;
+        } else {
+            // 在bufferSize模式上，再增加memSize控制
+            if (batchMode.isMemSize()) {
+                final long memsize = putMemSize.get() - ackMemSize.get();
+                if (memsize < bufferSize * bufferMemUnit) {
+                    return true;
+                } else {
+                    return false;
+                }
+            } else {
+                return true;
+            }
+        }
+    }
+
+    public boolean hasEnough(Position start, int batchSize) throws CanalStoreException {
+        return checkUnGetSlotAt((LogPosition) start, batchSize);
+    }
+
+    public void addListener(CanalEventStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CanalEventStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners() {
+        for (CanalEventStoreListener listener : listeners) {
+            listener.onAvailable();
+        }
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+                next = next + 1;// 少一条数据
+            }
+
+            if (current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence) {
+                return true;
+            } else {
+                return false;
+            }
+        } else {
+            // 处理内存大小判断
+            long currentSize = getMemSize.get();
+            long maxAbleSize = putMemSize.get();
+
+            if (maxAbleSize - currentSize >= batchSize * bufferMemUnit) {
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private long calculateSize(Event event) {
+        // 直接返回binlog中的事件大小
+        return event.getRawLength();
+    }
+
+    private int getIndex(long sequcnce) {
+        return (int) sequcnce & indexMask;
+    }
+
+    private boolean isDdl(EventType type) {
+        return type == EventType.ALTER || type == EventType.CREATE || type == EventType.ERASE
+               || type == EventType.RENAME || type == EventType.TRUNCATE || type == EventType.CINDEX
+               || type == EventType.DINDEX;
+    }
+
+    private void profiling(List<Event> events, OP op) {
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (events != null && !events.isEmpty()) {
+            for (Event e : events) {
+                if (localExecTime == 0 && e.getExecuteTime() > 0) {
+                    localExecTime = e.getExecuteTime();
+                }
+                deltaRows += e.getRowsCount();
+            }
+        }
+        switch (op) {
+            case PUT:
+                putTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    putExecTime.lazySet(localExecTime);
+                }
+                break;
+            case GET:
+                getTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    getExecTime.lazySet(localExecTime);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private enum OP {
+        PUT, GET
+    }
+
+    // ================ setter / getter ==================
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setBufferMemUnit(int bufferMemUnit) {
+        this.bufferMemUnit = bufferMemUnit;
+    }
+
+    public void setBatchMode(BatchMode batchMode) {
+        this.batchMode = batchMode;
+    }
+
+    public void setDdlIsolation(boolean ddlIsolation) {
+        this.ddlIsolation = ddlIsolation;
+    }
+
+    public WaitMode getWaitMode() {
+        return waitMode;
+    }
+
+    public void setWaitMode(WaitMode waitMode) {
+        this.waitMode = waitMode;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    public Sequence getPutSequence() {
+        return putSequence;
+    }
+
+    public Sequence getAckSequence() {
+        return ackSequence;
+    }
+
+    public AtomicLong getPutMemSize() {
+        return putMemSize;
+    }
+
+    public AtomicLong getAckMemSize() {
+        return ackMemSize;
+    }
+
+    public BatchMode getBatchMode() {
+        return batchMode;
+    }
+
+    public AtomicLong getPutExecTime() {
+        return putExecTime;
+    }
+
+    public AtomicLong getGetExecTime() {
+        return getExecTime;
+    }
+
+    public AtomicLong getAckExecTime() {
+        return ackExecTime;
+    }
+
+    public AtomicLong getPutTableRows() {
+        return putTableRows;
+    }
+
+    public AtomicLong getGetTableRows() {
+        return getTableRows;
+    }
+
+    public AtomicLong getAckTableRows() {
+        return ackTableRows;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.alibaba.otter.canal.store.model;
+
+/**
+ * 无锁store在put/get无法满足时的等待模式
+ */
+public enum WaitMode {
+
+    /** 基于wait/notify阻塞，只有存在等待者时才需要唤醒，cpu占用最低 */
+    BLOCKING,
+
+    /** 先自旋，再yield，最后parkNanos，延迟和cpu之间的折中 */
+    SLEEPING,
+
+    /** 先自旋，再yield，延迟低但会占满一个cpu */
+    YIELDING,
+
+    /** 纯自旋，延迟最低，只适合独占cpu的场景 */
+    BUSYSPIN;
+
+    public boolean isBlocking() {
+        return this == WaitMode.BLOCKING;
+    }
+
+    public boolean isSleeping() {
+        return this == WaitMode.SLEEPING;
+    }
+
+    public boolean isYielding() {
+        return this == WaitMode.YIELDING;
+    }
+
+    public boolean isBusySpin() {
+        return this == WaitMode.BUSYSPIN;
+    }
+}
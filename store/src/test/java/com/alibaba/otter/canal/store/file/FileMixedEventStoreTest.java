@@ -0,0 +1,178 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.buffer.MemoryEventStoreBase;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试内存+文件混合store的spill/get/rollback/ack
+ */
+public class FileMixedEventStoreTest extends MemoryEventStoreBase {
+
+    private File                dataDir;
+    private FileMixedEventStore eventStore;
+
+    @Before
+    public void setUp() {
+        dataDir = new File(System.getProperty("java.io.tmpdir"), "canal_spill_" + System.nanoTime());
+        eventStore = new FileMixedEventStore();
+        eventStore.setDataDirByFile(dataDir);
+        eventStore.setBufferSize(16);
+        eventStore.setSegmentSize(4 * 1024);
+        eventStore.setDestination("example");
+        eventStore.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (eventStore.isStart()) {
+            eventStore.stop();
+        }
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    @Test
+    public void testSpillAndGet() {
+        int total = 200;
+        for (int i = 0; i < total; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", i, 1L + i)));
+        }
+        // 超过内存的数据已经spill到文件
+        Assert.assertTrue(eventStore.getSegmentCount() > 1);
+
+        Position first = eventStore.getFirstPosition();
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 0, 1L), false), first);
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", total - 1, total), true),
+            eventStore.getLatestPosition());
+
+        Position position = null;
+        long expect = 0;
+        while (expect < total) {
+            Events<Event> events = eventStore.tryGet(position, 30);
+            Assert.assertFalse(events.getEvents().isEmpty());
+            for (Event event : events.getEvents()) {
+                Assert.assertEquals(expect, event.getPosition());
+                Assert.assertEquals(1L + expect, event.getExecuteTime());
+                Assert.assertNotNull(event.getRawEntry());
+                expect++;
+            }
+            position = events.getPositionRange().getEnd();
+        }
+        Assert.assertTrue(eventStore.tryGet(position, 30).getEvents().isEmpty());
+    }
+
+    @Test
+    public void testPutListOverflow() {
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", i, 1L + i)));
+        }
+        // 一次put的数据超过内存剩余空位，超出部分需要先把最老的数据spill到文件
+        List<Event> data = new ArrayList<Event>();
+        for (int i = 10; i < 20; i++) {
+            data.add(buildEvent("1", i, 1L + i));
+        }
+        Assert.assertTrue(eventStore.tryPut(data));
+        Assert.assertTrue(eventStore.getSegmentCount() > 0);
+
+        Events<Event> events = eventStore.tryGet(null, 30);
+        Assert.assertEquals(20, events.getEvents().size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(i, events.getEvents().get(i).getPosition());
+        }
+    }
+
+    @Test
+    public void testRollbackFromSpill() {
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", i, 1L + i)));
+        }
+
+        Events<Event> events1 = eventStore.tryGet(null, 50);
+        Assert.assertEquals(50, events1.getEvents().size());
+
+        eventStore.rollback();
+
+        Events<Event> events2 = eventStore.tryGet(null, 50);
+        Assert.assertEquals(50, events2.getEvents().size());
+        Assert.assertEquals(events1.getPositionRange().getStart(), events2.getPositionRange().getStart());
+        Assert.assertEquals(events1.getPositionRange().getEnd(), events2.getPositionRange().getEnd());
+    }
+
+    @Test
+    public void testAckDeleteSegment() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", i, 1L + i)));
+        }
+        int segmentCount = eventStore.getSegmentCount();
+        Assert.assertTrue(segmentCount > 1);
+
+        Events<Event> events = eventStore.get(null, 100, 100L, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(100, events.getEvents().size());
+        eventStore.ack(events.getPositionRange().getEnd());
+        Assert.assertTrue(eventStore.getSegmentCount() < segmentCount);
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 99, 100L), false),
+            eventStore.getFirstPosition());
+
+        // 继续获取剩余的数据，ack之后文件全部删除
+        events = eventStore.tryGet(events.getPositionRange().getEnd(), 100);
+        Assert.assertEquals(100, events.getEvents().size());
+        Assert.assertEquals(100L, events.getEvents().get(0).getPosition());
+        eventStore.ack(events.getPositionRange().getEnd());
+        Assert.assertEquals(0, eventStore.getSegmentCount());
+
+        File[] files = new File(dataDir, "example").listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(0, files.length);
+    }
+
+    @Test
+    public void testMaxSpillSize() {
+        eventStore.stop();
+        eventStore.setMaxSpillSize(4 * 1024);
+        eventStore.start();
+
+        boolean full = false;
+        for (int i = 0; i < 1000 && !full; i++) {
+            full = !eventStore.tryPut(buildEvent("1", i, 1L + i));
+        }
+        Assert.assertTrue(full);
+
+        // ack之后释放文件，可以继续put
+        Events<Event> events = eventStore.tryGet(null, 1000);
+        eventStore.ack(events.getPositionRange().getEnd());
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1000, 1001L)));
+    }
+
+    @Test
+    public void testMemSizeSpill() {
+        eventStore.stop();
+        long eventSize = buildEvent("1", 1L, 1L).getRawLength();
+        eventStore.setBatchMode(BatchMode.MEMSIZE);
+        eventStore.setBufferMemUnit((int) eventSize);
+        eventStore.setBufferSize(1024);
+        eventStore.start();
+
+        // 内存只能放下bufferSize * bufferMemUnit，多出的数据spill到文件
+        for (int i = 0; i < 2048; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L)));
+        }
+        Assert.assertTrue(eventStore.getSegmentCount() > 0);
+
+        Events<Event> events = eventStore.tryGet(null, 10);
+        Assert.assertEquals(11, events.getEvents().size());
+    }
+}
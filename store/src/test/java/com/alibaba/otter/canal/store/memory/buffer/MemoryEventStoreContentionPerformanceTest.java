@@ -0,0 +1,146 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithDisruptor;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+import com.alibaba.otter.canal.store.model.WaitMode;
+
+/**
+ * 对比MemoryEventStoreWithBuffer和MemoryEventStoreWithDisruptor在多线程put/get/ack竞争下的吞吐
+ *
+ * <pre>
+ * 模拟1个parser线程put，多个订阅线程get+ack，外加多个线程频繁调用getFirstPosition/getLatestPosition(比如监控/MQ线程)
+ * </pre>
+ */
+@Ignore
+public class MemoryEventStoreContentionPerformanceTest extends MemoryEventStoreBase {
+
+    private static final int  BUFFER_SIZE = 16 * 1024;
+    private static final int  BATCH_SIZE  = 100;
+    private static final int  CONSUMERS   = 4;
+    private static final int  OBSERVERS   = 4;
+    private static final long DURATION    = 10 * 1000L;
+
+    @Test
+    public void testContention() throws Exception {
+        MemoryEventStoreWithBuffer bufferStore = new MemoryEventStoreWithBuffer();
+        bufferStore.setBufferSize(BUFFER_SIZE);
+        bufferStore.setBatchMode(BatchMode.ITEMSIZE);
+        run("MemoryEventStoreWithBuffer", bufferStore);
+
+        for (WaitMode waitMode : WaitMode.values()) {
+            MemoryEventStoreWithDisruptor disruptorStore = new MemoryEventStoreWithDisruptor();
+            disruptorStore.setBufferSize(BUFFER_SIZE);
+            disruptorStore.setBatchMode(BatchMode.ITEMSIZE);
+            disruptorStore.setWaitMode(waitMode);
+            run("MemoryEventStoreWithDisruptor[" + waitMode + "]", disruptorStore);
+        }
+    }
+
+    private void run(String name, final CanalEventStore<Event> eventStore) throws Exception {
+        eventStore.start();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong putCount = new AtomicLong(0);
+        final AtomicLong getCount = new AtomicLong(0);
+        final AtomicLong observeCount = new AtomicLong(0);
+        final CountDownLatch latch = new CountDownLatch(1 + CONSUMERS + OBSERVERS);
+        ExecutorService executor = Executors.newFixedThreadPool(1 + CONSUMERS + OBSERVERS);
+
+        // 预先构造好event，避免测试protobuf的构造开销
+        final List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            events.add(buildEvent("1", i, 1L));
+        }
+
+        executor.submit(new Runnable() {
+
+            public void run() {
+                try {
+                    while (running.get()) {
+                        if (eventStore.put(events, 100, TimeUnit.MILLISECONDS)) {
+                            putCount.addAndGet(events.size());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+
+        for (int i = 0; i < CONSUMERS; i++) {
+            executor.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        while (running.get()) {
+                            Position position = eventStore.getFirstPosition();
+                            Events<Event> result = eventStore.get(position, BATCH_SIZE, 100, TimeUnit.MILLISECONDS);
+                            if (result.getEvents().isEmpty()) {
+                                continue;
+                            }
+
+                            getCount.addAndGet(result.getEvents().size());
+                            try {
+                                eventStore.ack(result.getPositionRange().getEnd(), result.getPositionRange()
+                                    .getEndSeq());
+                            } catch (Exception e) {
+                                // 并发ack时允许失败，由后续的ack推进
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        for (int i = 0; i < OBSERVERS; i++) {
+            executor.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        while (running.get()) {
+                            eventStore.getLatestPosition();
+                            observeCount.incrementAndGet();
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        Thread.sleep(DURATION);
+        running.set(false);
+        latch.await();
+        executor.shutdownNow();
+        eventStore.stop();
+
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(DURATION);
+        System.out.println(String.format("%-45s put tps : %10d , get tps : %10d , observe tps : %10d",
+            name,
+            putCount.get() / seconds,
+            getCount.get() / seconds,
+            observeCount.get() / seconds));
+    }
+}
@@ -0,0 +1,59 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试数据可读的通知以及hasEnough判断，用于server端的异步get
+ */
+public class MemoryEventStoreListenerTest extends MemoryEventStoreBase {
+
+    @Test
+    public void testListenerAndHasEnough() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        final AtomicInteger available = new AtomicInteger(0);
+        CanalEventStoreListener listener = new CanalEventStoreListener() {
+
+            public void onAvailable() {
+                available.incrementAndGet();
+            }
+        };
+        eventStore.addListener(listener);
+
+        Position first = eventStore.getFirstPosition();
+        Assert.assertNull(first);
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(1, available.get());
+        first = eventStore.getFirstPosition();
+        Assert.assertFalse(eventStore.hasEnough(first, 3));
+
+        for (int i = 1; i < 3; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        Assert.assertEquals(3, available.get());
+        Assert.assertTrue(eventStore.hasEnough(first, 3));
+        Assert.assertFalse(eventStore.hasEnough(first, 4));
+
+        // rollback之后数据重新可读
+        Events<Event> events = eventStore.tryGet(first, 3);
+        Assert.assertEquals(3, events.getEvents().size());
+        eventStore.rollback();
+        Assert.assertEquals(4, available.get());
+
+        eventStore.removeListener(listener);
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 4L)));
+        Assert.assertEquals(4, available.get());
+        eventStore.stop();
+    }
+}
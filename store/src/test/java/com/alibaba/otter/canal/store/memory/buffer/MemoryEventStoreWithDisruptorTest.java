@@ -0,0 +1,219 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithDisruptor;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+import com.alibaba.otter.canal.store.model.WaitMode;
+
+/**
+ * 测试无锁store的put/get/ack/rollback操作
+ */
+public class MemoryEventStoreWithDisruptorTest extends MemoryEventStoreBase {
+
+    @Test
+    public void testFullPut() {
+        int bufferSize = 16;
+        MemoryEventStoreWithDisruptor eventStore = new MemoryEventStoreWithDisruptor();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+
+        for (int i = 0; i < bufferSize; i++) {
+            boolean result = eventStore.tryPut(buildEvent("1", 1L, 1L + i));
+            Assert.assertTrue(result);
+        }
+
+        boolean result = eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize));
+        Assert.assertFalse(result);
+
+        try {
+            result = eventStore.put(buildEvent("1", 1L, 1L + bufferSize), 100L, TimeUnit.MILLISECONDS);
+        } catch (CanalStoreException e) {
+            Assert.fail(e.getMessage());
+        } catch (InterruptedException e) {
+            Assert.fail(e.getMessage());
+        }
+
+        Assert.assertFalse(result);
+        eventStore.stop();
+    }
+
+    @Test
+    public void testFullPutBatchGetAndAck() {
+        int bufferSize = 16;
+        MemoryEventStoreWithDisruptor eventStore = new MemoryEventStoreWithDisruptor();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Position lastest = eventStore.getLatestPosition();
+        Assert.assertEquals(first, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(lastest, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L + bufferSize - 1)));
+
+        Events<Event> entrys1 = eventStore.tryGet(first, bufferSize / 2);
+        Assert.assertEquals(bufferSize / 2, entrys1.getEvents().size());
+        Assert.assertEquals(first, entrys1.getPositionRange().getStart());
+
+        // 未ack之前仍然是满的
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize)));
+
+        eventStore.ack(entrys1.getPositionRange().getEnd());
+        Assert.assertEquals(CanalEventUtils.createPosition(entrys1.getEvents().get(bufferSize / 2 - 1), false),
+            eventStore.getFirstPosition());
+
+        // ack之后释放出空位
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize * 2)));
+
+        Events<Event> entrys2 = eventStore.tryGet(entrys1.getPositionRange().getEnd(), bufferSize);
+        Assert.assertEquals(bufferSize, entrys2.getEvents().size());
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 1L, 1L + bufferSize / 2)),
+            entrys2.getPositionRange().getStart());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testRollback() {
+        int bufferSize = 16;
+        MemoryEventStoreWithDisruptor eventStore = new MemoryEventStoreWithDisruptor();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Events<Event> entrys1 = eventStore.tryGet(first, bufferSize);
+        Assert.assertEquals(bufferSize / 2, entrys1.getEvents().size());
+        Assert.assertTrue(eventStore.tryGet(first, bufferSize).getEvents().isEmpty());
+
+        eventStore.rollback();
+
+        entrys1 = eventStore.tryGet(first, bufferSize);
+        Assert.assertEquals(bufferSize / 2, entrys1.getEvents().size());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testMemSizeGet() {
+        int bufferSize = 16;
+        long eventSize = buildEvent("1", 1L, 1L).getRawLength();
+        MemoryEventStoreWithDisruptor eventStore = new MemoryEventStoreWithDisruptor();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.setBufferMemUnit((int) eventSize);
+        eventStore.setBatchMode(BatchMode.MEMSIZE);
+        eventStore.start();
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        // memunit为单个event的大小，按照memsize获取时会多取一条
+        Position first = eventStore.getFirstPosition();
+        Events<Event> entrys = eventStore.tryGet(first, 4);
+        Assert.assertEquals(5, entrys.getEvents().size());
+        eventStore.ack(entrys.getPositionRange().getEnd());
+        Assert.assertEquals(5 * eventSize, eventStore.getAckMemSize().get());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testBlockingGetTimeout() throws Exception {
+        MemoryEventStoreWithDisruptor eventStore = new MemoryEventStoreWithDisruptor();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L)));
+        // 数据不够batchSize，超时后有多少取多少
+        long start = System.currentTimeMillis();
+        Events<Event> entrys = eventStore.get(null, 10, 100L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100L);
+        Assert.assertEquals(1, entrys.getEvents().size());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testConcurrentPutGetAck() throws Exception {
+        for (WaitMode waitMode : WaitMode.values()) {
+            doConcurrentPutGetAck(waitMode);
+        }
+    }
+
+    private void doConcurrentPutGetAck(WaitMode waitMode) throws Exception {
+        final int total = 20000;
+        final MemoryEventStoreWithDisruptor eventStore = new MemoryEventStoreWithDisruptor();
+        eventStore.setBufferSize(64);
+        eventStore.setWaitMode(waitMode);
+        eventStore.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<Long> result = new ArrayList<Long>();
+        executor.submit(new Runnable() {
+
+            public void run() {
+                try {
+                    for (int i = 0; i < total; i++) {
+                        eventStore.put(buildEvent("1", i, 1L));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+        executor.submit(new Runnable() {
+
+            public void run() {
+                try {
+                    Position position = null;
+                    while (result.size() < total) {
+                        Events<Event> events = eventStore.get(position, 10, 100L, TimeUnit.MILLISECONDS);
+                        if (events.getEvents().isEmpty()) {
+                            continue;
+                        }
+                        for (Event event : events.getEvents()) {
+                            result.add(event.getPosition());
+                        }
+                        position = events.getPositionRange().getEnd();
+                        eventStore.ack(position);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+
+        Assert.assertTrue("timeout with waitMode " + waitMode, latch.await(30, TimeUnit.SECONDS));
+        executor.shutdownNow();
+        eventStore.stop();
+
+        Assert.assertEquals(total, result.size());
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals(Long.valueOf(i), result.get(i));// 取出来的数据一定是递增的
+        }
+    }
+}